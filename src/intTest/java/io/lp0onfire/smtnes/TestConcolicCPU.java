@@ -0,0 +1,59 @@
+package io.lp0onfire.smtnes;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TestConcolicCPU {
+
+  // LDA $2000; TAY; LDA $01F0,Y; STA $10
+  private static final int[] PROGRAM = {0xAD, 0x00, 0x20, 0xA8, 0xB9, 0xF0, 0x01, 0x85, 0x10};
+
+  private ConcolicCPU run(Map<String, Integer> assignment) {
+    byte[] rom = new byte[0x1000];
+    for (int i = 0; i < PROGRAM.length; ++i) {
+      rom[i] = (byte)PROGRAM[i];
+    }
+    rom[0xFFC] = 0x00;
+    rom[0xFFD] = (byte)0x80;
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setPageHandler(0, cpu.getRAMHandler());
+    cpu.setPageHandler(1, cpu.getRAMHandler());
+    ConcretePageHandler romHandler = ConcretePageHandler.rom(rom);
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, romHandler);
+    }
+    ConcolicCPU concolic = new ConcolicCPU(cpu, assignment);
+    concolic.makeSymbolicReads(0x2000, "pad");
+    concolic.run(8 + 4 + 2 + 4);
+    return concolic;
+  }
+
+  @Test(timeout=10000)
+  public void testExploreOtherPath() throws IOException {
+    ConcolicCPU first = run(new HashMap<String, Integer>());
+    assertEquals("page not crossed", first.getPath().get(0).getDecision());
+    assertEquals("address $01F0", first.getPath().get(1).getDecision());
+
+    Map<String, Integer> alternative;
+    Map<String, Integer> otherAddress;
+    try (Z3 z3 = new Z3()) {
+      z3.open();
+      alternative = first.explore(z3.getSession(), 0);
+      // another address on the same page
+      otherAddress = first.explore(z3.getSession(), 1);
+    }
+    assertNotNull(alternative);
+    assertTrue(alternative.get("pad_0") >= 0x10);
+    assertNotNull(otherAddress);
+    assertTrue(otherAddress.get("pad_0") > 0x00 && otherAddress.get("pad_0") < 0x10);
+
+    ConcolicCPU second = run(alternative);
+    assertEquals("page crossed", second.getPath().get(0).getDecision());
+  }
+
+}
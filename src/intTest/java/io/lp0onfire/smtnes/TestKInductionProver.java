@@ -0,0 +1,160 @@
+package io.lp0onfire.smtnes;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorAddExpression;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.BitVectorUnsignedLessThanExpression;
+import io.lp0onfire.smtnes.smt2.ConditionalExpression;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.NotExpression;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestKInductionProver {
+
+  // x := 0, y := 0
+  private static class Init implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("x", "y"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("x"), new Numeral("4")));
+      exprs.add(new BitVectorDeclaration(outputs.get("y"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("x"), new BinaryConstant("0000"))));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("y"), new BinaryConstant("0000"))));
+      return exprs;
+    }
+  }
+
+  // x counts 0..7 and wraps; y := x
+  private static class Step implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("x", "y"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("x", "y"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      Symbol x = inputs.get("x");
+      exprs.add(new BitVectorDeclaration(outputs.get("x"), new Numeral("4")));
+      exprs.add(new BitVectorDeclaration(outputs.get("y"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("x"), new ConditionalExpression(
+          new EqualsExpression(x, new BinaryConstant("0111")), new BinaryConstant("0000"),
+          new BitVectorAddExpression(x, new BinaryConstant("0001"))))));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("y"), x)));
+      return exprs;
+    }
+  }
+
+  // var < bound, or var != bound if negated
+  private static class Compare implements CodeGenerator {
+    private final String var;
+    private final String bound;
+    private final boolean notEqual;
+
+    public Compare(String var, String bound, boolean notEqual) {
+      this.var = var;
+      this.bound = bound;
+      this.notEqual = notEqual;
+    }
+
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList(var));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      Symbol v = inputs.get(var);
+      BinaryConstant b = new BinaryConstant(bound);
+      exprs.add(new Assertion(notEqual ? new NotExpression(new EqualsExpression(v, b))
+          : new BitVectorUnsignedLessThanExpression(v, b)));
+      return exprs;
+    }
+  }
+
+  private InductionResult prove(CodeGenerator property, CodeGenerator invariant, int maxK) throws Exception {
+    try (SolverSession base = new SolverSession(SolverConfiguration.z3());
+        SolverSession step = new SolverSession(SolverConfiguration.z3())) {
+      base.open();
+      step.open();
+      KInductionProver prover = new KInductionProver(base, step,
+          Arrays.<CodeGenerator>asList(new Init()), Arrays.<CodeGenerator>asList(new Step()));
+      if (invariant != null) {
+        prover.addInvariant(invariant);
+      }
+      return prover.prove(property, maxK);
+    }
+  }
+
+  @Test
+  public void testInductive() throws Exception {
+    InductionResult result = prove(new Compare("x", "1000", false), null, 5);
+    assertEquals(InductionResult.Outcome.PROVED, result.getOutcome());
+    assertEquals(1, result.getDepth());
+  }
+
+  @Test
+  public void testFalsified() throws Exception {
+    InductionResult result = prove(new Compare("x", "0101", false), null, 10);
+    assertEquals(InductionResult.Outcome.FALSIFIED, result.getOutcome());
+    assertEquals(5, result.getDepth());
+  }
+
+  @Test
+  public void testNeedsInvariant() throws Exception {
+    // from x = 8, which can't happen, the next state is x = 9
+    assertEquals(InductionResult.Outcome.INCONCLUSIVE, prove(new Compare("x", "1001", true), null, 1).getOutcome());
+    InductionResult result = prove(new Compare("x", "1001", true), new Compare("x", "1000", false), 1);
+    assertEquals(InductionResult.Outcome.PROVED, result.getOutcome());
+  }
+
+  @Test
+  public void testNeedsTwoSteps() throws Exception {
+    // y is the previous x, so y < 8 in the next state needs x < 8 now, which only shows up as y < 8 a cycle later
+    assertEquals(InductionResult.Outcome.INCONCLUSIVE, prove(new Compare("y", "1000", false), null, 1).getOutcome());
+    InductionResult result = prove(new Compare("y", "1000", false), null, 5);
+    assertEquals(InductionResult.Outcome.PROVED, result.getOutcome());
+    assertEquals(2, result.getDepth());
+  }
+
+}
@@ -1,100 +1,112 @@
 package io.lp0onfire.smtnes;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.solver.ContingencyCheck;
+import io.lp0onfire.smtnes.solver.ContingencyResult;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverResult;
+import io.lp0onfire.smtnes.solver.SolverResultCache;
+import io.lp0onfire.smtnes.solver.SolverSession;
 
 public class Z3 implements AutoCloseable {
 
-  private static String pathToZ3 = null;
-  
-  private void findZ3() throws FileNotFoundException {
-    Map<String, String> env = System.getenv();
-    if (env.containsKey("PATH")) {
-      String[] paths = env.get("PATH").split(":");
-      for (String path : paths) {
-        File z3 = new File(path + "/z3");
-        if (z3.exists() && !z3.isDirectory() && z3.canExecute()) {
-          pathToZ3 = path + "/z3";
-          break;
-        }
-      }
-    } else {
-      File z3 = new File("./z3");
-      if (z3.exists() && !z3.isDirectory() && z3.canExecute()) {
-        pathToZ3 = "./z3";
-      }
-    }
-    if (pathToZ3 == null) {
-      throw new FileNotFoundException("cannot find Z3 executable");
-    }
-  }
-  
+  private static SolverConfiguration config = null;
+  // set by the first session opened when -Dsmtnes.solverCache=<directory> is given
+  private static SolverResultCache cache = null;
+
   public Z3() throws FileNotFoundException {
-    if (pathToZ3 == null) {
-      findZ3();
+    if (config == null) {
+      config = SolverConfiguration.z3();
     }
   }
 
-  private Process z3Process = null;
-  private BufferedWriter writer;
-  private BufferedReader reader;
-  
+  private SolverSession session = null;
+  public SolverSession getSession() {
+    return this.session;
+  }
+
   public void open() throws IOException {
-    List<String> command = new LinkedList<>();
-    command.add(pathToZ3);
-    command.add("-smt2");
-    command.add("-in");
-    ProcessBuilder builder = new ProcessBuilder(command);
-    builder.redirectErrorStream(true);
-    z3Process = builder.start();
-    
-    OutputStream os = z3Process.getOutputStream();
-    OutputStreamWriter osw = new OutputStreamWriter(os);
-    writer = new BufferedWriter(osw);
-    
-    InputStream is = z3Process.getInputStream();
-    InputStreamReader isr = new InputStreamReader(is);
-    reader = new BufferedReader(isr);
-    
-    write("(set-logic QF_ABV)");
+    session = new SolverSession(config);
+    session.open();
+    openCache(session);
   }
-  
+
   public void write(String data) throws IOException {
-    if (z3Process == null) throw new IllegalStateException("Z3 session has not been opened");
-    writer.write(data);
-    writer.newLine();
+    if (session == null) throw new IllegalStateException("Z3 session has not been opened");
+    session.write(data);
   }
-  
+
+  public void write(SExpression expr) throws IOException {
+    if (session == null) throw new IllegalStateException("Z3 session has not been opened");
+    session.write(expr);
+  }
+
   public boolean checkSat() throws IOException {
-    write("(check-sat)");
-    write("(exit)");
-    writer.flush();
-    writer.close();
-    String result = reader.readLine();
-    if (result.equals("sat")) {
+    if (session == null) throw new IllegalStateException("Z3 session has not been opened");
+    SolverResult result = session.checkSat();
+    if (result == SolverResult.SAT) {
       return true;
-    } else if(result.equals("unsat")) {
+    } else if (result == SolverResult.UNSAT) {
       return false;
     } else {
-      throw new RuntimeException("Z3 encountered an error: " + result);
+      throw new RuntimeException("Z3 could not decide the formula: " + result);
     }
   }
-  
+
+  // Check properties both ways against exprs, sending exprs only once.
+  public ContingencyResult checkContingency(List<SExpression> exprs, List<SExpression> properties) throws IOException {
+    if (session == null) throw new IllegalStateException("Z3 session has not been opened");
+    if (cache != null) {
+      return ContingencyCheck.check(session, exprs, properties, cache);
+    }
+    return ContingencyCheck.check(session, exprs, properties);
+  }
+
+  // Same, with the properties given by the Markers in exprs.
+  public ContingencyResult checkContingency(List<SExpression> exprs) throws IOException {
+    if (session == null) throw new IllegalStateException("Z3 session has not been opened");
+    if (cache != null) {
+      // the properties only mention declared terms, so they can go after the formula
+      List<SExpression> formula = new ArrayList<>();
+      List<SExpression> properties = new ArrayList<>();
+      for (SExpression expr : exprs) {
+        if (expr instanceof Marker) {
+          properties.addAll(((Marker) expr).getExprs());
+        } else {
+          formula.add(expr);
+        }
+      }
+      return ContingencyCheck.check(session, formula, properties, cache);
+    }
+    ContingencyCheck check = new ContingencyCheck(session);
+    for (SExpression expr : exprs) {
+      if (expr instanceof Marker) {
+        check.writeProperties(((Marker) expr).getExprs());
+      } else {
+        session.write(expr);
+      }
+    }
+    return check.check();
+  }
+
+  private static synchronized void openCache(SolverSession session) throws IOException {
+    String cacheDirectory = System.getProperty("smtnes.solverCache");
+    if (cache == null && cacheDirectory != null && !cacheDirectory.isEmpty()) {
+      cache = new SolverResultCache(new File(cacheDirectory), session);
+    }
+  }
+
   @Override
   public void close() {
-    if (z3Process != null) {
-      z3Process.destroyForcibly();
+    if (session != null) {
+      session.close();
     }
   }
-  
+
 }
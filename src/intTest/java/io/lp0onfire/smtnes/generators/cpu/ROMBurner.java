@@ -1,11 +1,13 @@
 package io.lp0onfire.smtnes.generators.cpu;
 
 import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcretePageHandler;
 import io.lp0onfire.smtnes.PageHandler;
 import io.lp0onfire.smtnes.smt2.ArrayDeclaration;
 import io.lp0onfire.smtnes.smt2.ArrayReadExpression;
 import io.lp0onfire.smtnes.smt2.Assertion;
 import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
 import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
 import io.lp0onfire.smtnes.smt2.BitVectorExtractExpression;
 import io.lp0onfire.smtnes.smt2.EqualsExpression;
@@ -20,8 +22,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 // Burns a 1-page (256 bytes) ROM and provides initialization and page handlers.
 public class ROMBurner {
   
@@ -68,13 +68,10 @@ public class ROMBurner {
         // fill the contents of PRG_ROM
         for (int addr = 0; addr < 0x1000; ++addr) {
           // calculate N-bit address
-          String bits = Integer.toBinaryString(addr);
-          // zero-pad on the left
-          int zeroCount = PRG_ROM_address_bits - bits.length();
-          BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+          BitVectorConstant index = BitVectorConstant.of(addr, PRG_ROM_address_bits);
           byte data = romData[addr];
           exprs.add(new Assertion(new EqualsExpression(
-              new ArrayReadExpression(PRG_ROM, index), new BinaryConstant(data))));
+              new ArrayReadExpression(PRG_ROM, index), BitVectorConstant.of(data & 0xFF, 8))));
         }
         
         return exprs;
@@ -138,4 +135,9 @@ public class ROMBurner {
   public PageHandler getCPUPageHandler() {
     return PRG_ROM_PageHandler;
   }
+  
+  // the same ROM for a ConcreteCPU; sees later writes too
+  public ConcretePageHandler getConcretePageHandler() {
+    return ConcretePageHandler.rom(romData);
+  }
 }
@@ -0,0 +1,108 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import static org.junit.Assert.*;
+import io.lp0onfire.smtnes.BoundedModelChecker;
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.PageHandler;
+import io.lp0onfire.smtnes.StateVariableRegistry;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class TestBoundedModelChecker {
+
+  // A holds value
+  private static class AccumulatorIs implements CodeGenerator {
+    private final String value;
+
+    public AccumulatorIs(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("CPU_A"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new Assertion(new EqualsExpression(inputs.get("CPU_A"), new HexConstant(value))));
+      return exprs;
+    }
+  }
+
+  // $0000: A9 5A  LDA #$5A
+  private BoundedModelChecker setUp(SolverSession session) throws Exception {
+    ROMBurner burner = new ROMBurner("TestROM");
+    burner.write(0x000, 0xA9);
+    burner.write(0x001, 0x5A);
+    // reset vector
+    burner.write(0xFFD, 0x00); // high byte
+    burner.write(0xFFC, 0x00); // low byte
+
+    ArrayList<PageHandler> pageHandlers = new ArrayList<>(16);
+    PageHandler ramPageHandler = burner.getCPUPageHandler();
+    PageHandler nullPageHandler = new NullPageHandler();
+    pageHandlers.add(0, ramPageHandler);
+    for (int i = 1; i < 15; ++i) {
+      pageHandlers.add(i, nullPageHandler);
+    }
+    pageHandlers.add(15, ramPageHandler);
+
+    List<CodeGenerator> step = Arrays.asList(new CPUCycle(),
+        new CPUMemoryControllerFrontHalf(pageHandlers), nullPageHandler, ramPageHandler,
+        new CPUMemoryControllerBackHalf(pageHandlers));
+    BoundedModelChecker bmc = new BoundedModelChecker(session, new StateVariableRegistry(), step);
+    bmc.apply(new CPUPowerOn());
+    bmc.apply(burner.getInitializer());
+    return bmc;
+  }
+
+  @Test
+  public void testFirstReachableDepth() throws Exception {
+    try (SolverSession session = new SolverSession(SolverConfiguration.z3())) {
+      session.open();
+      BoundedModelChecker bmc = setUp(session);
+      // 8 cycles of reset, then 2 for LDA #imm
+      assertEquals(10, bmc.findReachable(new AccumulatorIs("5a"), 20));
+      bmc.getTrace().load(session, CPUTrace.VARIABLES);
+      assertEquals(0x5a, bmc.getTrace().getValue(10, "CPU_A").getValue());
+      assertEquals(0x00, bmc.getTrace().getValue(9, "CPU_A").getValue());
+      // only one query per depth, all in the one session
+      assertEquals(11, session.getCheckSatCount());
+    }
+  }
+
+  @Test
+  public void testUnreachable() throws Exception {
+    try (SolverSession session = new SolverSession(SolverConfiguration.z3())) {
+      session.open();
+      BoundedModelChecker bmc = setUp(session);
+      assertEquals(-1, bmc.findReachable(new AccumulatorIs("77"), 12));
+      assertEquals(12, bmc.getDepth());
+      assertEquals(0, session.getAssertionLevel());
+    }
+  }
+
+}
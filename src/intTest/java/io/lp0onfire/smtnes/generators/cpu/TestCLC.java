@@ -10,10 +10,10 @@ import io.lp0onfire.smtnes.smt2.BinaryConstant;
 import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
 import io.lp0onfire.smtnes.smt2.EqualsExpression;
 import io.lp0onfire.smtnes.smt2.HexConstant;
-import io.lp0onfire.smtnes.smt2.NotExpression;
 import io.lp0onfire.smtnes.smt2.Numeral;
 import io.lp0onfire.smtnes.smt2.SExpression;
 import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.ContingencyResult;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -24,7 +24,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.collections4.ListUtils;
 import org.junit.Test;
 
 public class TestCLC {
@@ -159,32 +158,15 @@ public class TestCLC {
       
     };
     
-    List<SExpression> positiveContingents = new LinkedList<>();
-    List<SExpression> negativeContingents = new LinkedList<>();
-    for (SExpression expr : reg.apply(verifyX)) {
-      positiveContingents.add(new Assertion(expr));
-      negativeContingents.add(new Assertion(new NotExpression(expr)));
-    }
-    
-    boolean positiveResult;
-    boolean negativeResult;
+    List<SExpression> properties = reg.apply(verifyX);
     
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : ListUtils.union(exprs, positiveContingents)) {
-        z3.write(expr.toString());
-      }
-      positiveResult = z3.checkSat();
-    }
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : ListUtils.union(exprs, negativeContingents)) {
-        z3.write(expr.toString());
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs, properties);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
   
@@ -16,7 +16,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 // Integration test for all of the following:
@@ -49,10 +48,7 @@ public class TestCPUMemoryBus {
       Symbol RAM = outputs.get("CPU_RAM");
       exprs.add(new ArrayDeclaration(RAM, new Numeral("11"), new Numeral("8")));
       for (int i = 0; i < 2048; ++i) {
-        String bits = Integer.toBinaryString(i);
-        // zero-pad on the left
-        int zeroCount = 11 - bits.length();
-        BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+        BitVectorConstant index = BitVectorConstant.of(i, 11);
         exprs.add(new Assertion(new EqualsExpression(
             new ArrayReadExpression(RAM, index), ramInitialValue)));
       }
@@ -125,7 +121,7 @@ public class TestCPUMemoryBus {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
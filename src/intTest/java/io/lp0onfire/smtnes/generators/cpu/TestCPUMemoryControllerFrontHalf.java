@@ -75,7 +75,7 @@ public class TestCPUMemoryControllerFrontHalf {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -101,7 +101,7 @@ public class TestCPUMemoryControllerFrontHalf {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -127,7 +127,7 @@ public class TestCPUMemoryControllerFrontHalf {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -10,7 +10,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 import io.lp0onfire.smtnes.CodeGenerator;
@@ -21,6 +20,7 @@ import io.lp0onfire.smtnes.smt2.ArrayDeclaration;
 import io.lp0onfire.smtnes.smt2.ArrayReadExpression;
 import io.lp0onfire.smtnes.smt2.Assertion;
 import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
 import io.lp0onfire.smtnes.smt2.EqualsExpression;
 import io.lp0onfire.smtnes.smt2.Numeral;
 import io.lp0onfire.smtnes.smt2.SExpression;
@@ -56,10 +56,7 @@ public class TestCPURAMHandler {
       Symbol RAM = outputs.get("CPU_RAM");
       exprs.add(new ArrayDeclaration(RAM, new Numeral("11"), new Numeral("8")));
       for (int i = 0; i < 2048; ++i) {
-        String bits = Integer.toBinaryString(i);
-        // zero-pad on the left
-        int zeroCount = 11 - bits.length();
-        BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+        BitVectorConstant index = BitVectorConstant.of(i, 11);
         exprs.add(new Assertion(new EqualsExpression(
             new ArrayReadExpression(RAM, index), ramInitialValue)));
       }
@@ -121,7 +118,7 @@ public class TestCPURAMHandler {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -156,7 +153,7 @@ public class TestCPURAMHandler {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -194,7 +191,7 @@ public class TestCPURAMHandler {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -232,7 +229,7 @@ public class TestCPURAMHandler {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -0,0 +1,97 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import static org.junit.Assert.*;
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcreteCPU;
+import io.lp0onfire.smtnes.ExecutionTrace;
+import io.lp0onfire.smtnes.PageHandler;
+import io.lp0onfire.smtnes.StateVariableRegistry;
+import io.lp0onfire.smtnes.Z3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestCPUResetFastForward {
+
+  // $0000: A9 5A  LDA #$5A, with the reset vector at $0000
+  private ROMBurner burnROM() {
+    ROMBurner burner = new ROMBurner("TestROM");
+    burner.write(0x000, 0xA9);
+    burner.write(0x001, 0x5A);
+    burner.write(0xFFD, 0x00);
+    burner.write(0xFFC, 0x00);
+    return burner;
+  }
+
+  // powers on, resets and then runs cycles more cycles, returning the trace
+  // from the end of the reset onwards
+  private ExecutionTrace run(ROMBurner burner, int cycles) throws IOException {
+    ArrayList<PageHandler> pageHandlers = new ArrayList<>(16);
+    PageHandler romPageHandler = burner.getCPUPageHandler();
+    PageHandler nullPageHandler = new NullPageHandler();
+    pageHandlers.add(0, romPageHandler);
+    for (int i = 1; i < 15; ++i) {
+      pageHandlers.add(i, nullPageHandler);
+    }
+    pageHandlers.add(15, romPageHandler);
+
+    ConcreteCPU memoryMap = new ConcreteCPU();
+    memoryMap.setPageHandler(0, burner.getConcretePageHandler());
+    memoryMap.setPageHandler(15, burner.getConcretePageHandler());
+
+    List<CodeGenerator> cycle = Arrays.asList(
+        new CPUCycle(),
+        new CPUMemoryControllerFrontHalf(pageHandlers),
+        nullPageHandler,
+        romPageHandler,
+        new CPUMemoryControllerBackHalf(pageHandlers));
+
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    try (Z3 z3 = new Z3()) {
+      z3.open();
+      z3.getSession().writeAll(reg.apply(new CPUPowerOn()));
+      z3.getSession().writeAll(reg.apply(burner.getInitializer()));
+      for (CodeGenerator gen : CPUResetFastForward.resetSequence(memoryMap, cycle)) {
+        z3.getSession().writeAll(reg.apply(gen));
+      }
+      trace.markCycle();
+      for (int i = 0; i < cycles; ++i) {
+        for (CodeGenerator gen : cycle) {
+          z3.getSession().writeAll(reg.apply(gen));
+        }
+        trace.markCycle();
+      }
+      assertTrue(z3.checkSat());
+      trace.load(z3.getSession(), CPUTrace.VARIABLES);
+    }
+    return trace;
+  }
+
+  @Test(timeout=60 * 1000)
+  public void testSameStateAsFullReset() throws IOException {
+    ROMBurner burner = burnROM();
+    ExecutionTrace fast = run(burner, 2);
+    ExecutionTrace full;
+    CPUResetFastForward.setUseFullResetSequence(true);
+    try {
+      full = run(burner, 2);
+    } finally {
+      CPUResetFastForward.setUseFullResetSequence(false);
+    }
+    for (int cycle = 0; cycle <= 2; ++cycle) {
+      for (String var : CPUTrace.VARIABLES) {
+        assertEquals(var + " in cycle " + cycle,
+            full.getValue(cycle, var).getValue(), fast.getValue(cycle, var).getValue());
+      }
+    }
+    // LDA #$5A took the two cycles
+    assertEquals(0x5A, fast.getValue(2, "CPU_A").getValue());
+    assertEquals(CPUState.InstructionFetch, CPUTrace.getState(fast, 2));
+  }
+
+}
@@ -15,7 +15,6 @@ import io.lp0onfire.smtnes.StateVariableRegistry;
 import io.lp0onfire.smtnes.Z3;
 import io.lp0onfire.smtnes.smt2.*;
 
-import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -70,7 +69,7 @@ public class TestCPUResetSequence {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -128,7 +127,7 @@ public class TestCPUResetSequence {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -181,10 +180,7 @@ public class TestCPUResetSequence {
         Symbol RAM = outputs.get("CPU_RAM");
         exprs.add(new ArrayDeclaration(RAM, new Numeral("11"), new Numeral("8")));
         for (int i = 0; i < 2048; ++i) {
-          String bits = Integer.toBinaryString(i);
-          // zero-pad on the left
-          int zeroCount = 11 - bits.length();
-          BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+          BitVectorConstant index = BitVectorConstant.of(i, 11);
           BinaryConstant value;
           if (i == 2045) { // 0x7fd
             value = new BinaryConstant("11110000");
@@ -243,7 +239,7 @@ public class TestCPUResetSequence {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -0,0 +1,76 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import static org.junit.Assert.*;
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ExecutionTrace;
+import io.lp0onfire.smtnes.PageHandler;
+import io.lp0onfire.smtnes.StateVariableRegistry;
+import io.lp0onfire.smtnes.Z3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+// Runs a short program, then reads the whole execution back out of the model.
+public class TestCPUTrace {
+
+  @Test
+  public void testTrace() throws Exception {
+    // $0000: A9 5A  LDA #$5A
+    // $0002: 85 10  STA $10
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+
+    ROMBurner burner = new ROMBurner("TestROM");
+    burner.write(0x000, 0xA9);
+    burner.write(0x001, 0x5A);
+    burner.write(0x002, 0x85);
+    burner.write(0x003, 0x10);
+    // reset vector
+    burner.write(0xFFD, 0x00); // high byte
+    burner.write(0xFFC, 0x00); // low byte
+
+    ArrayList<PageHandler> pageHandlers = new ArrayList<>(16);
+    PageHandler ramPageHandler = burner.getCPUPageHandler();
+    PageHandler nullPageHandler = new NullPageHandler();
+    pageHandlers.add(0, ramPageHandler);
+    for (int i = 1; i < 15; ++i) {
+      pageHandlers.add(i, nullPageHandler);
+    }
+    pageHandlers.add(15, ramPageHandler);
+
+    CodeGenerator memoryControllerFront = new CPUMemoryControllerFrontHalf(pageHandlers);
+    CodeGenerator memoryControllerBack = new CPUMemoryControllerBackHalf(pageHandlers);
+    CodeGenerator cpuCycle = new CPUCycle();
+
+    try (Z3 z3 = new Z3()) {
+      z3.open();
+      z3.getSession().writeAll(reg.apply(new CPUPowerOn()));
+      z3.getSession().writeAll(reg.apply(burner.getInitializer()));
+      // 8 cycles of reset, 2 for LDA #imm, 3 for STA zpg
+      for (int i = 0; i < 13; ++i) {
+        z3.getSession().writeAll(reg.apply(cpuCycle));
+        z3.getSession().writeAll(reg.apply(memoryControllerFront));
+        z3.getSession().writeAll(reg.apply(nullPageHandler));
+        z3.getSession().writeAll(reg.apply(ramPageHandler));
+        z3.getSession().writeAll(reg.apply(memoryControllerBack));
+        trace.markCycle();
+      }
+      assertTrue(z3.checkSat());
+      trace.load(z3.getSession(), CPUTrace.VARIABLES);
+    }
+
+    String[] lines = trace.format(CPUTrace.VARIABLES).split("\n");
+    assertEquals(13, lines.length);
+    assertTrue(lines[12].startsWith("12: "));
+    assertTrue(lines[12].contains(" CPU_A=#x5a"));
+    assertEquals(CPUState.InstructionFetch, CPUTrace.getState(trace, 7));
+    assertEquals(0x5A, trace.getValue(12, "CPU_A").getValue());
+    List<ExecutionTrace.Write> writes = CPUTrace.getRAMWrites(trace);
+    assertEquals(1, writes.size());
+    assertEquals(0x0010, writes.get(0).getAddress());
+    assertEquals(0x5A, writes.get(0).getData());
+  }
+
+}
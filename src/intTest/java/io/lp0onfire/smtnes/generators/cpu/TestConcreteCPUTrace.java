@@ -0,0 +1,100 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import static org.junit.Assert.*;
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcreteCPU;
+import io.lp0onfire.smtnes.ConcretePageHandler;
+import io.lp0onfire.smtnes.ExecutionTrace;
+import io.lp0onfire.smtnes.PageHandler;
+import io.lp0onfire.smtnes.StateVariableRegistry;
+import io.lp0onfire.smtnes.Z3;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+// Runs the same program on ConcreteCPU and through the solver, and checks
+// that every register and bus signal agrees in every cycle.
+public class TestConcreteCPUTrace {
+
+  @Test
+  public void testSameTrace() throws Exception {
+    // $0000: A9 5A  LDA #$5A
+    // $0002: 85 10  STA $10
+    // $0004: A2 03  LDX #$03
+    // $0006: A8     TAY
+    // $0007: E8     INX
+    // $0008: 38     SEC
+    // $0009: B5 12  LDA $12,X
+    // $000B: 88     DEY
+    int[] program = {0xA9, 0x5A, 0x85, 0x10, 0xA2, 0x03, 0xA8, 0xE8, 0x38, 0xB5, 0x12, 0x88};
+    int cycles = 8 + 2 + 3 + 2 + 2 + 2 + 2 + 4 + 2;
+
+    ROMBurner burner = new ROMBurner("TestROM");
+    byte[] rom = new byte[0x1000];
+    for (int i = 0; i < rom.length; ++i) {
+      rom[i] = (byte)0xEA;
+    }
+    for (int i = 0; i < program.length; ++i) {
+      burner.write(i, program[i]);
+      rom[i] = (byte)program[i];
+    }
+    // reset vector
+    burner.write(0xFFD, 0x00);
+    burner.write(0xFFC, 0x00);
+    rom[0xFFD] = 0x00;
+    rom[0xFFC] = 0x00;
+    // LDA $12,X reads this
+    burner.write(0x016, 0x81);
+    rom[0x016] = (byte)0x81;
+
+    ArrayList<PageHandler> pageHandlers = new ArrayList<>(16);
+    PageHandler romPageHandler = burner.getCPUPageHandler();
+    PageHandler nullPageHandler = new NullPageHandler();
+    pageHandlers.add(0, romPageHandler);
+    for (int i = 1; i < 15; ++i) {
+      pageHandlers.add(i, nullPageHandler);
+    }
+    pageHandlers.add(15, romPageHandler);
+
+    CodeGenerator memoryControllerFront = new CPUMemoryControllerFrontHalf(pageHandlers);
+    CodeGenerator memoryControllerBack = new CPUMemoryControllerBackHalf(pageHandlers);
+    CodeGenerator cpuCycle = new CPUCycle();
+
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    try (Z3 z3 = new Z3()) {
+      z3.open();
+      z3.getSession().writeAll(reg.apply(new CPUPowerOn()));
+      z3.getSession().writeAll(reg.apply(burner.getInitializer()));
+      trace.markCycle();
+      for (int i = 0; i < cycles; ++i) {
+        z3.getSession().writeAll(reg.apply(cpuCycle));
+        z3.getSession().writeAll(reg.apply(memoryControllerFront));
+        z3.getSession().writeAll(reg.apply(nullPageHandler));
+        z3.getSession().writeAll(reg.apply(romPageHandler));
+        z3.getSession().writeAll(reg.apply(memoryControllerBack));
+        trace.markCycle();
+      }
+      assertTrue(z3.checkSat());
+      trace.load(z3.getSession(), CPUTrace.VARIABLES);
+    }
+
+    ConcreteCPU cpu = new ConcreteCPU();
+    ConcretePageHandler concreteROM = ConcretePageHandler.rom(rom);
+    cpu.setPageHandler(0, concreteROM);
+    cpu.setPageHandler(15, concreteROM);
+    for (int cycle = 0; cycle <= cycles; ++cycle) {
+      if (cycle > 0) {
+        cpu.step();
+      }
+      for (String var : CPUTrace.VARIABLES) {
+        assertEquals(var + " in cycle " + cycle,
+            trace.getValue(cycle, var).getValue(), cpu.getStateVariable(var));
+      }
+    }
+    assertEquals(0x81, cpu.getA());
+    assertEquals(0x02, cpu.getY());
+  }
+
+}
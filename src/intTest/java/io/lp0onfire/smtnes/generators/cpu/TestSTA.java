@@ -10,10 +10,10 @@ import io.lp0onfire.smtnes.smt2.Assertion;
 import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
 import io.lp0onfire.smtnes.smt2.EqualsExpression;
 import io.lp0onfire.smtnes.smt2.HexConstant;
-import io.lp0onfire.smtnes.smt2.NotExpression;
 import io.lp0onfire.smtnes.smt2.Numeral;
 import io.lp0onfire.smtnes.smt2.SExpression;
 import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.ContingencyResult;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -136,41 +136,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
   
@@ -297,41 +269,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
   
@@ -433,41 +377,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
   
@@ -595,41 +511,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
 
@@ -756,41 +644,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
     
   }
   
@@ -919,41 +779,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
   }
   
   @Test
@@ -1081,41 +913,13 @@ public class TestSTA {
       exprs.addAll(reg.apply(memoryControllerBack));
     }
     
-    boolean positiveResult;
-    boolean negativeResult;
-    
+    ContingencyResult result;
     try(Z3 z3 = new Z3()) {
       z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(extra);
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      positiveResult = z3.checkSat();
-    }
-    try(Z3 z3 = new Z3()) {
-      z3.open();
-      for(SExpression expr : exprs) {
-        if (expr instanceof Marker) {
-          Marker marker = (Marker) expr;
-          for (SExpression extra : marker.getExprs()) {
-            SExpression assertion = new Assertion(new NotExpression(extra));
-            z3.write(assertion.toString());
-          }
-        } else {
-          z3.write(expr.toString()); 
-        }
-      }
-      negativeResult = z3.checkSat();
+      result = z3.checkContingency(exprs);
     }
     
-    interpretResult(positiveResult, negativeResult);
+    interpretResult(result.isPositiveSatisfiable(), result.isNegativeSatisfiable());
   }
   
 }
@@ -0,0 +1,110 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.PageHandler;
+import io.lp0onfire.smtnes.StateVariableRegistry;
+import io.lp0onfire.smtnes.smt2.*;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverResult;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// Power-on, ROM contents and the reset sequence are loaded into the solver once
+// and shared by every query about the program that follows.
+public class TestSharedPrefix {
+
+  private final List<SExpression> prefix = new LinkedList<>();
+  private final List<SExpression> program = new LinkedList<>();
+  private final StateVariableRegistry reg = new StateVariableRegistry();
+
+  // $0000: A9 5A  LDA #$5A
+  private void generate() {
+    ROMBurner burner = new ROMBurner("TestROM");
+    burner.write(0x000, 0xA9);
+    burner.write(0x001, 0x5A);
+    // reset vector
+    burner.write(0xFFD, 0x00); // high byte
+    burner.write(0xFFC, 0x00); // low byte
+
+    ArrayList<PageHandler> pageHandlers = new ArrayList<>(16);
+    PageHandler ramPageHandler = burner.getCPUPageHandler();
+    PageHandler nullPageHandler = new NullPageHandler();
+    pageHandlers.add(0, ramPageHandler);
+    for (int i = 1; i < 15; ++i) {
+      pageHandlers.add(i, nullPageHandler);
+    }
+    pageHandlers.add(15, ramPageHandler);
+
+    CodeGenerator memoryControllerFront = new CPUMemoryControllerFrontHalf(pageHandlers);
+    CodeGenerator memoryControllerBack = new CPUMemoryControllerBackHalf(pageHandlers);
+    CodeGenerator cpuCycle = new CPUCycle();
+
+    prefix.addAll(reg.apply(new CPUPowerOn()));
+    prefix.addAll(reg.apply(burner.getInitializer()));
+    for (int i = 0; i < 8; ++i) {
+      prefix.addAll(reg.apply(cpuCycle));
+      prefix.addAll(reg.apply(memoryControllerFront));
+      prefix.addAll(reg.apply(nullPageHandler));
+      prefix.addAll(reg.apply(ramPageHandler));
+      prefix.addAll(reg.apply(memoryControllerBack));
+    }
+    prefix.addAll(reg.apply(new VerifyCPUState(CPUState.InstructionFetch)));
+
+    for (int i = 0; i < 2; ++i) {
+      program.addAll(reg.apply(cpuCycle));
+      program.addAll(reg.apply(memoryControllerFront));
+      program.addAll(reg.apply(nullPageHandler));
+      program.addAll(reg.apply(ramPageHandler));
+      program.addAll(reg.apply(memoryControllerBack));
+    }
+  }
+
+  private List<SExpression> suffix(final String value) {
+    List<SExpression> exprs = new LinkedList<>(program);
+    exprs.addAll(reg.apply(new CodeGenerator() {
+      @Override
+      public Set<String> getStateVariablesRead() {
+        return new HashSet<>(Arrays.asList("CPU_A"));
+      }
+
+      @Override
+      public Set<String> getStateVariablesWritten() {
+        return new HashSet<>();
+      }
+
+      @Override
+      public List<SExpression> generateCode(Map<String, Symbol> inputs,
+          Map<String, Symbol> outputs) {
+        List<SExpression> code = new LinkedList<>();
+        code.add(new Assertion(new EqualsExpression(inputs.get("CPU_A"), new HexConstant(value))));
+        return code;
+      }
+    }));
+    return exprs;
+  }
+
+  @Test(timeout=60 * 1000)
+  public void testSharedPrefix() throws Exception {
+    generate();
+    try (SolverSession session = new SolverSession(SolverConfiguration.z3())) {
+      session.open();
+      assertEquals(SolverResult.SAT, session.checkSat(prefix, suffix("5A")));
+      assertEquals(SolverResult.UNSAT, session.checkSat(prefix, suffix("00")));
+      assertEquals(SolverResult.UNSAT, session.checkSat(prefix, suffix("A9")));
+      assertEquals(1, session.getPrefixesLoaded());
+      assertEquals(2, session.getPrefixesReused());
+    }
+  }
+
+}
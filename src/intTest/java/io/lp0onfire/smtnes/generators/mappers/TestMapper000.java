@@ -50,7 +50,7 @@ public class TestMapper000 {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -93,7 +93,7 @@ public class TestMapper000 {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
@@ -137,7 +137,7 @@ public class TestMapper000 {
     try(Z3 z3 = new Z3()) {
       z3.open();
       for(SExpression expr : exprs) {
-        z3.write(expr.toString());
+        z3.write(expr);
       }
       assertTrue(z3.checkSat());
     }
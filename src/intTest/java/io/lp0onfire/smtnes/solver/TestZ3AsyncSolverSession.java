@@ -0,0 +1,66 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class TestZ3AsyncSolverSession {
+
+  @Test(timeout=5000)
+  public void testIncremental() throws Exception {
+    try (AsyncSolverSession session = new AsyncSolverSession(SolverConfiguration.z3())) {
+      session.open();
+      session.write("(declare-fun x () (_ BitVec 6))");
+      CompletableFuture<SolverResult> first = session.checkSat();
+
+      session.push();
+      session.write("(assert (= (bvnot x) x))");
+      CompletableFuture<SolverResult> second = session.checkSat();
+      session.pop();
+
+      session.push();
+      session.write("(assert (= x #b101010))");
+      CompletableFuture<SolverResult> third = session.checkSat();
+      CompletableFuture<String> value = session.getValue(new Symbol("x"));
+      session.pop();
+
+      assertEquals(SolverResult.SAT, first.get());
+      assertEquals(SolverResult.UNSAT, second.get());
+      assertEquals(SolverResult.SAT, third.get());
+      assertEquals("((x #b101010))", value.get());
+    }
+  }
+
+  // A long chain of definitions with a check after every step; the producer
+  // never waits for an answer until the end.
+  @Test(timeout=30000)
+  public void testStreaming() throws Exception {
+    List<CompletableFuture<SolverResult>> results = new ArrayList<>();
+    try (AsyncSolverSession session = new AsyncSolverSession(SolverConfiguration.z3(), 64)) {
+      session.open();
+      session.write("(declare-fun x0 () (_ BitVec 16))");
+      for (int i = 1; i <= 2000; ++i) {
+        session.write("(declare-fun x" + i + " () (_ BitVec 16))");
+        session.write("(assert (= x" + i + " (bvadd x" + (i - 1) + " #x0001)))");
+        if (i % 100 == 0) {
+          results.add(session.checkSat());
+        }
+      }
+      session.write("(assert (= x0 x2000))");
+      results.add(session.checkSat());
+
+      for (int i = 0; i < results.size() - 1; ++i) {
+        assertEquals(SolverResult.SAT, results.get(i).get());
+      }
+      // 2000 increments can't wrap a 16-bit value back round to where it started
+      assertEquals(SolverResult.UNSAT, results.get(results.size() - 1).get());
+    }
+  }
+
+}
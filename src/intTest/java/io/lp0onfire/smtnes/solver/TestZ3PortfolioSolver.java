@@ -0,0 +1,39 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.NotExpression;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestZ3PortfolioSolver {
+
+  @Test(timeout=10000)
+  public void testRace() throws Exception {
+    SolverConfiguration plain = SolverConfiguration.z3();
+    SolverConfiguration seeded = SolverConfiguration.z3("sat.random_seed=7", "smt.random_seed=7");
+    List<SExpression> script = new ArrayList<>();
+    Symbol x = new Symbol("x");
+    script.add(new BitVectorDeclaration(x, new Numeral("8")));
+    script.add(new Assertion(new EqualsExpression(x, new HexConstant("5a"))));
+    script.add(new Assertion(new NotExpression(new EqualsExpression(x, new HexConstant("5a")))));
+    try (PortfolioSolver portfolio = new PortfolioSolver(Arrays.asList(plain, seeded))) {
+      PortfolioResult result = portfolio.checkSat(script);
+      assertEquals(SolverResult.UNSAT, result.getResult());
+      assertNotNull(result.getWinner());
+      assertEquals(1, portfolio.getWins(plain) + portfolio.getWins(seeded));
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestZ3SolverPool {
+
+  @Test(timeout=30000)
+  public void testParallelQueries() throws Exception {
+    final int sessions = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(sessions);
+    try (final SolverPool pool = new SolverPool(SolverConfiguration.z3(), sessions)) {
+      List<Future<SolverResult>> results = new ArrayList<>();
+      for (int i = 0; i < 64; ++i) {
+        final int value = i;
+        results.add(executor.submit(new Callable<SolverResult>() {
+          @Override
+          public SolverResult call() throws Exception {
+            try (SolverSession session = pool.acquire()) {
+              // declaring x again would fail if the session hadn't been reset
+              session.write("(declare-fun x () (_ BitVec 8))");
+              session.write("(assert (= (bvadd x x) (_ bv" + value + " 8)))");
+              return session.checkSat();
+            }
+          }
+        }));
+      }
+      for (int i = 0; i < results.size(); ++i) {
+        // 2x = v has a solution exactly when v is even
+        assertEquals(i % 2 == 0 ? SolverResult.SAT : SolverResult.UNSAT, results.get(i).get());
+      }
+      assertEquals(sessions, pool.getSessionsStarted());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
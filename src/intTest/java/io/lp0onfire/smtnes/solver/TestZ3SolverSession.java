@@ -0,0 +1,48 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import org.junit.Test;
+
+public class TestZ3SolverSession {
+
+  @Test(timeout=5000)
+  public void testIncremental() throws Exception {
+    try (SolverSession session = new SolverSession(SolverConfiguration.z3())) {
+      session.open();
+      session.write("(declare-fun x () (_ BitVec 6))");
+      assertEquals(SolverResult.SAT, session.checkSat());
+
+      session.push();
+      session.write("(assert (= (bvnot x) x))");
+      assertEquals(SolverResult.UNSAT, session.checkSat());
+      session.pop();
+
+      // the contradiction is gone with the scope it was asserted in
+      session.push();
+      session.write("(assert (= x #b101010))");
+      assertEquals(SolverResult.SAT, session.checkSat());
+      assertEquals("((x #b101010))", session.getValue(new Symbol("x")));
+      session.pop();
+
+      assertEquals(3, session.getCheckSatCount());
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testReset() throws Exception {
+    try (SolverSession session = new SolverSession(SolverConfiguration.z3())) {
+      session.open();
+      session.write("(declare-fun x () (_ BitVec 6))");
+      session.write("(assert (= (bvnot x) x))");
+      assertEquals(SolverResult.UNSAT, session.checkSat());
+      session.reset();
+      // x can be declared again after a reset
+      session.write("(declare-fun x () (_ BitVec 6))");
+      assertEquals(SolverResult.SAT, session.checkSat());
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package io.lp0onfire.smtnes;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Any number of machines, as BitSlicedCPUs of 64 lanes each, run in parallel
+// on a fork/join pool. Machine i is lane i % 64 of slice i / 64. The machines
+// never interact, so run() lets each slice go for the whole number of cycles
+// on its own rather than synchronizing every cycle; page handlers are shared by
+// every slice, and so across threads, and have to be read-only.
+public class BitSlicedBatch {
+
+  private final BitSlicedCPU[] slices;
+
+  private final int machineCount;
+  public int getMachineCount() {
+    return this.machineCount;
+  }
+
+  private final ForkJoinPool pool;
+
+  public BitSlicedBatch(int machineCount, ForkJoinPool pool) {
+    if (machineCount <= 0) {
+      throw new IllegalArgumentException("a batch needs at least one machine");
+    }
+    this.machineCount = machineCount;
+    this.pool = pool;
+    this.slices = new BitSlicedCPU[(machineCount + BitSlicedCPU.LANES - 1) / BitSlicedCPU.LANES];
+    for (int i = 0; i < slices.length; ++i) {
+      slices[i] = new BitSlicedCPU();
+    }
+  }
+
+  public BitSlicedBatch(int machineCount) {
+    this(machineCount, ForkJoinPool.commonPool());
+  }
+
+  public int getSliceCount() {
+    return slices.length;
+  }
+
+  public BitSlicedCPU getSlice(int index) {
+    return slices[index];
+  }
+
+  private BitSlicedCPU sliceOf(int machine) {
+    if (machine < 0 || machine >= machineCount) {
+      throw new IllegalArgumentException("machine " + machine + " out of range");
+    }
+    return slices[machine / BitSlicedCPU.LANES];
+  }
+
+  private static int laneOf(int machine) {
+    return machine % BitSlicedCPU.LANES;
+  }
+
+  public void setPageHandler(int pageNumber, ConcretePageHandler handler) {
+    for (BitSlicedCPU slice : slices) {
+      slice.setPageHandler(pageNumber, handler);
+    }
+  }
+
+  public void attachMapper(Mapper mapper) {
+    for (BitSlicedCPU slice : slices) {
+      slice.attachMapper(mapper);
+    }
+  }
+
+  public long getStateVariable(int machine, String name) {
+    return sliceOf(machine).getStateVariable(laneOf(machine), name);
+  }
+
+  public void setStateVariable(int machine, String name, long value) {
+    sliceOf(machine).setStateVariable(laneOf(machine), name, value);
+  }
+
+  public int readRAM(int machine, int address) {
+    return sliceOf(machine).readRAM(laneOf(machine), address);
+  }
+
+  public void writeRAM(int machine, int address, int data) {
+    sliceOf(machine).writeRAM(laneOf(machine), address, data);
+  }
+
+  public void load(int machine, ConcreteCPU cpu) {
+    sliceOf(machine).load(laneOf(machine), cpu);
+  }
+
+  public boolean isHalted(int machine) {
+    return sliceOf(machine).isHalted(laneOf(machine));
+  }
+
+  // Advance every machine by cycles cycles.
+  public void run(long cycles) {
+    pool.invoke(new Run(0, slices.length, cycles));
+  }
+
+  // slices [from, to), split in half until there's one left
+  private class Run extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final long cycles;
+
+    Run(int from, int to, long cycles) {
+      this.from = from;
+      this.to = to;
+      this.cycles = cycles;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        slices[from].run(cycles);
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(new Run(from, middle, cycles), new Run(middle, to, cycles));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,718 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// 64 ConcreteCPUs in one, bit-sliced: every bit of every register is a long,
+// with bit i of each word belonging to machine (lane) i. A cycle applies each
+// transition of the state machine once to all the lanes in that state, with
+// bitwise operations on whole words, so machines running the same code in
+// lockstep (the usual case when only their data differs) cost about as much
+// as one. Lanes are grouped by CPU_State, then by opcode or reset phase, and
+// for the memory access by address; each group is handled separately under a
+// mask of its lanes, so machines whose paths diverge still come out exactly
+// as 64 separate ConcreteCPUs would.
+//
+// Every lane has its own internal RAM, attached with INTERNAL_RAM. Any other
+// page handler is shared by all the lanes: it's called once per group of lanes
+// reading the same address, and once per lane for a write, so it should be
+// read-only (like ConcretePageHandler.rom() or a Mapper000) for the lanes to
+// be independent.
+//
+// An opcode that CPUCycle doesn't implement halts its lane instead of throwing
+// as ConcreteCPU does: the lane's state stays as it was before the fetch, and
+// the other lanes carry on.
+public class BitSlicedCPU {
+
+  public static final int LANES = 64;
+
+  private static final int RAM_SIZE = 2048;
+  private static final int STATE_WIDTH = CPUState.getStateWidth();
+
+  // CPUState.fromIndex() without the search, since step() needs it for every group of lanes
+  private static final CPUState[] STATES = new CPUState[1 << STATE_WIDTH];
+  static {
+    for (CPUState state : CPUState.values()) {
+      STATES[state.getIndex()] = state;
+    }
+  }
+
+  // the state variables each lane has, by the names the generators give them
+  public static final List<String> STATE_VARIABLES = Collections.unmodifiableList(Arrays.asList(
+      "CPU_A", "CPU_X", "CPU_Y", "CPU_SP", "CPU_P", "CPU_PC", "CPU_CalcAddr", "CPU_TmpAddr",
+      "CPU_BranchOffset", "CPU_AddressBus", "CPU_WriteEnable", "CPU_DataOut", "CPU_DataIn",
+      "CPU_ResetSequence", "CPU_State"));
+
+  // Attach to a page to give it each lane's own internal RAM, as ConcreteCPU.getRAMHandler() does.
+  // Only a BitSlicedCPU can use it.
+  public static final ConcretePageHandler INTERNAL_RAM = new ConcretePageHandler() {
+    @Override
+    public int access(int address, boolean writeEnable, int data) {
+      throw new IllegalStateException("internal RAM only exists inside a BitSlicedCPU");
+    }
+  };
+
+  // $01 in every lane
+  private static final long[] ONE = {-1L, 0, 0, 0, 0, 0, 0, 0};
+  // $FF in every lane
+  private static final long[] MINUS_ONE = {-1L, -1L, -1L, -1L, -1L, -1L, -1L, -1L};
+  private static final long[] ZERO = new long[8];
+
+  private final long[] A = new long[8];
+  private final long[] X = new long[8];
+  private final long[] Y = new long[8];
+  private final long[] SP = new long[8];
+  private final long[] P = new long[8];
+  private final long[] PC = new long[16];
+  private final long[] CalcAddr = new long[16];
+  private final long[] TmpAddr = new long[16];
+  private final long[] BranchOffset = new long[8];
+  private final long[] AddressBus = new long[16];
+  private final long[] WriteEnable = new long[1];
+  private final long[] DataOut = new long[8];
+  private final long[] DataIn = new long[8];
+  private final long[] ResetSequence = new long[3];
+  private final long[] State = new long[STATE_WIDTH];
+  private final long[][] RAM = new long[RAM_SIZE][8];
+
+  // scratch words for intermediate values
+  private final long[] t8 = new long[8];
+  private final long[] t16 = new long[16];
+  private final long[] u16 = new long[16];
+
+  private long halted = 0;
+  public long getHaltedLanes() {
+    return this.halted;
+  }
+
+  private long cycleCount = 0;
+  public long getCycleCount() {
+    return this.cycleCount;
+  }
+
+  private final ConcretePageHandler[] pageHandlers = new ConcretePageHandler[16];
+
+  // 64 machines in the state CPUPowerOn sets up, with nothing attached to any page.
+  public BitSlicedCPU() {
+    for (int i = 0; i < 16; ++i) {
+      pageHandlers[i] = ConcretePageHandler.NULL;
+    }
+    assignConstant(P, 0x20, -1L);
+    assignConstant(State, CPUState.Resetting.getIndex(), -1L);
+  }
+
+  public void setPageHandler(int pageNumber, ConcretePageHandler handler) {
+    if (pageNumber < 0 || pageNumber >= 16) {
+      throw new IllegalArgumentException("page number " + pageNumber + " out of range");
+    }
+    pageHandlers[pageNumber] = handler;
+  }
+
+  // Attach the mapper to every page it decodes.
+  public void attachMapper(Mapper mapper) {
+    for (int i = 0; i < 16; ++i) {
+      if (mapper.decodesCPUPage(i)) {
+        setPageHandler(i, mapper.getConcreteCPUPageHandler(i));
+      }
+    }
+  }
+
+  private static void checkLane(int lane) {
+    if (lane < 0 || lane >= LANES) {
+      throw new IllegalArgumentException("lane " + lane + " out of range");
+    }
+  }
+
+  public boolean isHalted(int lane) {
+    checkLane(lane);
+    return (halted & (1L << lane)) != 0;
+  }
+
+  private long[] planes(String name) {
+    switch (name) {
+    case "CPU_A": return A;
+    case "CPU_X": return X;
+    case "CPU_Y": return Y;
+    case "CPU_SP": return SP;
+    case "CPU_P": return P;
+    case "CPU_PC": return PC;
+    case "CPU_CalcAddr": return CalcAddr;
+    case "CPU_TmpAddr": return TmpAddr;
+    case "CPU_BranchOffset": return BranchOffset;
+    case "CPU_AddressBus": return AddressBus;
+    case "CPU_WriteEnable": return WriteEnable;
+    case "CPU_DataOut": return DataOut;
+    case "CPU_DataIn": return DataIn;
+    case "CPU_ResetSequence": return ResetSequence;
+    case "CPU_State": return State;
+    default:
+      throw new IllegalArgumentException("unknown CPU state variable '" + name + "'");
+    }
+  }
+
+  // The value of a state variable in one lane, as ConcreteCPU.getStateVariable() gives it.
+  public long getStateVariable(int lane, String name) {
+    checkLane(lane);
+    return laneValue(planes(name), lane);
+  }
+
+  public void setStateVariable(int lane, String name, long value) {
+    checkLane(lane);
+    long[] planes = planes(name);
+    if (value < 0 || value >= (1L << planes.length)) {
+      throw new IllegalArgumentException("value " + value + " does not fit in " + name);
+    }
+    if (name.equals("CPU_State")) {
+      CPUState.fromIndex((int)value);
+    }
+    assignConstant(planes, (int)value, 1L << lane);
+  }
+
+  public CPUState getState(int lane) {
+    return CPUState.fromIndex((int)getStateVariable(lane, "CPU_State"));
+  }
+
+  public int readRAM(int lane, int address) {
+    checkLane(lane);
+    return laneValue(RAM[address & (RAM_SIZE - 1)], lane);
+  }
+
+  public void writeRAM(int lane, int address, int data) {
+    checkLane(lane);
+    assignConstant(RAM[address & (RAM_SIZE - 1)], data & 0xFF, 1L << lane);
+  }
+
+  // Put cpu's state and RAM in lane; the lane is no longer halted.
+  public void load(int lane, ConcreteCPU cpu) {
+    for (String var : STATE_VARIABLES) {
+      setStateVariable(lane, var, cpu.getStateVariable(var));
+    }
+    byte[] ram = cpu.getRAM();
+    for (int i = 0; i < RAM_SIZE; ++i) {
+      writeRAM(lane, i, ram[i] & 0xFF);
+    }
+    halted &= ~(1L << lane);
+  }
+
+  public void run(long cycles) {
+    for (long i = 0; i < cycles; ++i) {
+      step();
+    }
+  }
+
+  // One cycle of every lane that isn't halted.
+  public void step() {
+    long remaining = ~halted;
+    while (remaining != 0) {
+      int stateIndex = laneValue(State, Long.numberOfTrailingZeros(remaining));
+      long lanes = equal(State, stateIndex) & remaining;
+      remaining &= ~lanes;
+      cpuCycle(STATES[stateIndex], lanes);
+    }
+    memory();
+    cycleCount += 1;
+  }
+
+  // bitwise helpers; m is always the mask of lanes to change
+
+  private static int laneValue(long[] planes, int lane) {
+    int value = 0;
+    for (int b = 0; b < planes.length; ++b) {
+      value |= (int)((planes[b] >>> lane) & 1) << b;
+    }
+    return value;
+  }
+
+  // the lanes in which planes hold value
+  private static long equal(long[] planes, int value) {
+    long m = -1L;
+    for (int b = 0; b < planes.length; ++b) {
+      m &= ((value >>> b) & 1) != 0 ? planes[b] : ~planes[b];
+    }
+    return m;
+  }
+
+  // dst = src, as far as the narrower of the two goes
+  private static void assign(long[] dst, long[] src, long m) {
+    int width = Math.min(dst.length, src.length);
+    for (int b = 0; b < width; ++b) {
+      dst[b] = (dst[b] & ~m) | (src[b] & m);
+    }
+  }
+
+  private static void assignConstant(long[] dst, int value, long m) {
+    for (int b = 0; b < dst.length; ++b) {
+      dst[b] = ((value >>> b) & 1) != 0 ? (dst[b] | m) : (dst[b] & ~m);
+    }
+  }
+
+  // out = a + b over out.length bits, in every lane, zero-extending a and b; returns the carry out
+  private static long add(long[] out, long[] a, long[] b) {
+    long carry = 0;
+    for (int i = 0; i < out.length; ++i) {
+      long ai = (i < a.length) ? a[i] : 0;
+      long bi = (i < b.length) ? b[i] : 0;
+      out[i] = ai ^ bi ^ carry;
+      carry = (ai & bi) | (carry & (ai ^ bi));
+    }
+    return carry;
+  }
+
+  // out = hi ++ lo
+  private static void concat(long[] out, long[] hi, long[] lo) {
+    System.arraycopy(lo, 0, out, 0, 8);
+    System.arraycopy(hi, 0, out, 8, 8);
+  }
+
+  // bus helpers; everything is computed from the current values before they're replaced
+
+  private void read(long[] address, long m) {
+    assign(AddressBus, address, m);
+    WriteEnable[0] &= ~m;
+    assign(DataOut, ZERO, m);
+  }
+
+  private void write(long[] address, long[] data, long m) {
+    assign(AddressBus, address, m);
+    WriteEnable[0] |= m;
+    assign(DataOut, data, m);
+  }
+
+  // a zero-page address, $00 ++ value
+  private void readZeroPage(long[] value, long m) {
+    concat(u16, ZERO, value);
+    read(u16, m);
+  }
+
+  private void writeZeroPage(long[] value, long[] data, long m) {
+    concat(u16, ZERO, value);
+    write(u16, data, m);
+  }
+
+  private void setState(CPUState state, long m) {
+    assignConstant(State, state.getIndex(), m);
+  }
+
+  private void fetchPC(long m) {
+    read(PC, m);
+  }
+
+  private void incrementPC(long m) {
+    add(t16, PC, ONE);
+    assign(PC, t16, m);
+  }
+
+  // the last cycle of every instruction
+  private void nextInstruction(long m) {
+    fetchPC(m);
+    incrementPC(m);
+    setState(CPUState.InstructionFetch, m);
+  }
+
+  // CPUCycle keeps P[Z] in bit 7 and P[N] in bit 1
+  private void setZN(long[] value, long m) {
+    long z = ~(value[0] | value[1] | value[2] | value[3] | value[4] | value[5] | value[6] | value[7]);
+    P[7] = (P[7] & ~m) | (z & m);
+    P[1] = (P[1] & ~m) | (value[7] & m);
+  }
+
+  private void setFlag(int bitPosition, boolean value, long m) {
+    P[bitPosition] = value ? (P[bitPosition] | m) : (P[bitPosition] & ~m);
+    nextInstruction(m);
+  }
+
+  private void loadRegister(long[] register, long m) {
+    assign(register, DataIn, m);
+    setZN(DataIn, m);
+    nextInstruction(m);
+  }
+
+  private void transfer(long[] dst, long[] src, long m) {
+    assign(dst, src, m);
+    setZN(src, m);
+    nextInstruction(m);
+  }
+
+  private void increment(long[] register, long[] delta, long m) {
+    add(t8, register, delta);
+    assign(register, t8, m);
+    setZN(t8, m);
+    nextInstruction(m);
+  }
+
+  // CalcAddr = DataIn; read [DataIn]
+  private void zeroPageIndexedSetup(CPUState nextState, long m) {
+    concat(t16, ZERO, DataIn);
+    assign(CalcAddr, t16, m);
+    read(t16, m);
+    setState(nextState, m);
+  }
+
+  // CalcAddr = DataIn; read [PC++]
+  private void absoluteSetup(CPUState nextState, long m) {
+    concat(t16, ZERO, DataIn);
+    assign(CalcAddr, t16, m);
+    fetchPC(m);
+    incrementPC(m);
+    setState(nextState, m);
+  }
+
+  // DataIn ++ CalcAddr[7:0]
+  private long[] absoluteAddress() {
+    concat(u16, DataIn, CalcAddr);
+    return u16;
+  }
+
+  // ConcreteCPU.indexedRead()
+  private void indexedRead(long[] index, CPUState overflowState, CPUState nextState, long m) {
+    long overflow = add(t8, CalcAddr, index) & m;
+    concat(t16, DataIn, CalcAddr);
+    add(t16, t16, index);
+    assign(CalcAddr, t16, m);
+    if (overflow != 0) {
+      concat(u16, DataIn, t8);
+      read(u16, overflow);
+      setState(overflowState, overflow);
+    }
+    if ((m & ~overflow) != 0) {
+      read(CalcAddr, m & ~overflow);
+      setState(nextState, m & ~overflow);
+    }
+  }
+
+  // ConcreteCPU.indexedWriteSetup()
+  private void indexedWriteSetup(long[] index, CPUState nextState, long m) {
+    add(t8, CalcAddr, index);
+    concat(u16, DataIn, t8);
+    read(u16, m);
+    concat(t16, DataIn, CalcAddr);
+    add(t16, t16, index);
+    assign(CalcAddr, t16, m);
+    setState(nextState, m);
+  }
+
+  private void decode(int opcode, long m) {
+    switch (opcode) {
+    // implied: the second cycle reads [PC] again
+    case 0x18: fetchPC(m); setState(CPUState.CLC_IMP_Cycle1, m); break;
+    case 0xD8: fetchPC(m); setState(CPUState.CLD_IMP_Cycle1, m); break;
+    case 0x58: fetchPC(m); setState(CPUState.CLI_IMP_Cycle1, m); break;
+    case 0xB8: fetchPC(m); setState(CPUState.CLV_IMP_Cycle1, m); break;
+    case 0x38: fetchPC(m); setState(CPUState.SEC_IMP_Cycle1, m); break;
+    case 0xF8: fetchPC(m); setState(CPUState.SED_IMP_Cycle1, m); break;
+    case 0x78: fetchPC(m); setState(CPUState.SEI_IMP_Cycle1, m); break;
+    case 0xCA: fetchPC(m); setState(CPUState.DEX_IMP_Cycle1, m); break;
+    case 0x88: fetchPC(m); setState(CPUState.DEY_IMP_Cycle1, m); break;
+    case 0xE8: fetchPC(m); setState(CPUState.INX_IMP_Cycle1, m); break;
+    case 0xC8: fetchPC(m); setState(CPUState.INY_IMP_Cycle1, m); break;
+    case 0xAA: fetchPC(m); setState(CPUState.TAX_IMP_Cycle1, m); break;
+    case 0xA8: fetchPC(m); setState(CPUState.TAY_IMP_Cycle1, m); break;
+    case 0xBA: fetchPC(m); setState(CPUState.TSX_IMP_Cycle1, m); break;
+    case 0x8A: fetchPC(m); setState(CPUState.TXA_IMP_Cycle1, m); break;
+    case 0x9A: fetchPC(m); setState(CPUState.TXS_IMP_Cycle1, m); break;
+    case 0x98: fetchPC(m); setState(CPUState.TYA_IMP_Cycle1, m); break;
+    // everything else reads its first operand byte at [PC++]
+    case 0xA9: operand(CPUState.LDA_IMM_Cycle1, m); break;
+    case 0xA5: operand(CPUState.LDA_ZPG_Cycle1, m); break;
+    case 0xB5: operand(CPUState.LDA_ZPX_Cycle1, m); break;
+    case 0xAD: operand(CPUState.LDA_ABS_Cycle1, m); break;
+    case 0xBD: operand(CPUState.LDA_ABX_Cycle1, m); break;
+    case 0xB9: operand(CPUState.LDA_ABY_Cycle1, m); break;
+    case 0xA1: operand(CPUState.LDA_INX_Cycle1, m); break;
+    case 0xB1: operand(CPUState.LDA_INY_Cycle1, m); break;
+    case 0xA2: operand(CPUState.LDX_IMM_Cycle1, m); break;
+    case 0xA6: operand(CPUState.LDX_ZPG_Cycle1, m); break;
+    case 0xB6: operand(CPUState.LDX_ZPY_Cycle1, m); break;
+    case 0xAE: operand(CPUState.LDX_ABS_Cycle1, m); break;
+    case 0xBE: operand(CPUState.LDX_ABY_Cycle1, m); break;
+    case 0x85: operand(CPUState.STA_ZPG_Cycle1, m); break;
+    case 0x95: operand(CPUState.STA_ZPX_Cycle1, m); break;
+    case 0x8D: operand(CPUState.STA_ABS_Cycle1, m); break;
+    case 0x9D: operand(CPUState.STA_ABX_Cycle1, m); break;
+    case 0x99: operand(CPUState.STA_ABY_Cycle1, m); break;
+    case 0x81: operand(CPUState.STA_INX_Cycle1, m); break;
+    case 0x91: operand(CPUState.STA_INY_Cycle1, m); break;
+    case 0x86: operand(CPUState.STX_ZPG_Cycle1, m); break;
+    case 0x96: operand(CPUState.STX_ZPY_Cycle1, m); break;
+    case 0x8E: operand(CPUState.STX_ABS_Cycle1, m); break;
+    case 0x84: operand(CPUState.STY_ZPG_Cycle1, m); break;
+    case 0x94: operand(CPUState.STY_ZPX_Cycle1, m); break;
+    case 0x8C: operand(CPUState.STY_ABS_Cycle1, m); break;
+    default:
+      halted |= m;
+      break;
+    }
+  }
+
+  private void operand(CPUState nextState, long m) {
+    fetchPC(m);
+    incrementPC(m);
+    setState(nextState, m);
+  }
+
+  private void reset(int phase, long m) {
+    switch (phase) {
+    case 0:
+    case 1:
+      // read memory at PC
+      read(PC, m);
+      break;
+    case 2:
+    case 3:
+    case 4:
+      // read and decrement SP
+      concat(u16, ONE, SP);
+      read(u16, m);
+      add(t8, SP, MINUS_ONE);
+      assign(SP, t8, m);
+      break;
+    case 5:
+      // set P[FI] = 1, read 0xFFFC
+      P[2] |= m;
+      assignConstant(u16, 0xFFFC, -1L);
+      read(u16, m);
+      break;
+    case 6:
+      // set PC_low = DataIn, read 0xFFFD
+      assign(PC, DataIn, m);
+      assignConstant(u16, 0xFFFD, -1L);
+      read(u16, m);
+      break;
+    case 7:
+      // set PC_high = DataIn, set up instruction fetch (and increment PC)
+      concat(u16, DataIn, PC);
+      read(u16, m);
+      add(t16, u16, ONE);
+      assign(PC, t16, m);
+      setState(CPUState.InstructionFetch, m);
+      break;
+    }
+    add(t8, ResetSequence, ONE);
+    assign(ResetSequence, t8, m);
+  }
+
+  private void cpuCycle(CPUState state, long m) {
+    switch (state) {
+    case Resetting: {
+      long rest = m;
+      while (rest != 0) {
+        int phase = laneValue(ResetSequence, Long.numberOfTrailingZeros(rest));
+        long lanes = equal(ResetSequence, phase) & rest;
+        rest &= ~lanes;
+        reset(phase, lanes);
+      }
+      break;
+    }
+    case InstructionFetch: {
+      long rest = m;
+      while (rest != 0) {
+        int opcode = laneValue(DataIn, Long.numberOfTrailingZeros(rest));
+        long lanes = equal(DataIn, opcode) & rest;
+        rest &= ~lanes;
+        decode(opcode, lanes);
+      }
+      break;
+    }
+
+    case CLC_IMP_Cycle1: setFlag(0, false, m); break;
+    case CLD_IMP_Cycle1: setFlag(3, false, m); break;
+    case CLI_IMP_Cycle1: setFlag(2, false, m); break;
+    case CLV_IMP_Cycle1: setFlag(6, false, m); break;
+    case SEC_IMP_Cycle1: setFlag(0, true, m); break;
+    case SED_IMP_Cycle1: setFlag(3, true, m); break;
+    case SEI_IMP_Cycle1: setFlag(2, true, m); break;
+
+    case DEX_IMP_Cycle1: increment(X, MINUS_ONE, m); break;
+    case DEY_IMP_Cycle1: increment(Y, MINUS_ONE, m); break;
+    case INX_IMP_Cycle1: increment(X, ONE, m); break;
+    case INY_IMP_Cycle1: increment(Y, ONE, m); break;
+
+    case TAX_IMP_Cycle1: transfer(X, A, m); break;
+    case TAY_IMP_Cycle1: transfer(Y, A, m); break;
+    case TSX_IMP_Cycle1: transfer(X, SP, m); break;
+    case TXA_IMP_Cycle1: transfer(A, X, m); break;
+    case TXS_IMP_Cycle1: transfer(SP, X, m); break;
+    case TYA_IMP_Cycle1: transfer(A, Y, m); break;
+
+    // the last cycle of every LDA/LDX
+    case LDA_IMM_Cycle1:
+    case LDA_ZPG_Cycle2:
+    case LDA_ZPX_Cycle3:
+    case LDA_ABS_Cycle3:
+    case LDA_ABX_Cycle3:
+    case LDA_ABY_Cycle3:
+    case LDA_INX_Cycle5:
+    case LDA_INY_Cycle4:
+      loadRegister(A, m); break;
+    case LDX_IMM_Cycle1:
+    case LDX_ZPG_Cycle2:
+    case LDX_ZPY_Cycle3:
+    case LDX_ABS_Cycle3:
+    case LDX_ABY_Cycle3:
+      loadRegister(X, m); break;
+
+    // zeropage
+    case LDA_ZPG_Cycle1: readZeroPage(DataIn, m); setState(CPUState.LDA_ZPG_Cycle2, m); break;
+    case LDX_ZPG_Cycle1: readZeroPage(DataIn, m); setState(CPUState.LDX_ZPG_Cycle2, m); break;
+    case STA_ZPG_Cycle1: writeZeroPage(DataIn, A, m); setState(CPUState.STA_ZPG_Cycle2, m); break;
+    case STX_ZPG_Cycle1: writeZeroPage(DataIn, X, m); setState(CPUState.STX_ZPG_Cycle2, m); break;
+    case STY_ZPG_Cycle1: writeZeroPage(DataIn, Y, m); setState(CPUState.STY_ZPG_Cycle2, m); break;
+
+    // zeropage,x and zeropage,y
+    case LDA_ZPX_Cycle1: zeroPageIndexedSetup(CPUState.LDA_ZPX_Cycle2, m); break;
+    case LDA_ZPX_Cycle2: add(t8, CalcAddr, X); readZeroPage(t8, m); setState(CPUState.LDA_ZPX_Cycle3, m); break;
+    case LDX_ZPY_Cycle1: zeroPageIndexedSetup(CPUState.LDX_ZPY_Cycle2, m); break;
+    case LDX_ZPY_Cycle2: add(t8, CalcAddr, Y); readZeroPage(t8, m); setState(CPUState.LDX_ZPY_Cycle3, m); break;
+    case STA_ZPX_Cycle1: zeroPageIndexedSetup(CPUState.STA_ZPX_Cycle2, m); break;
+    case STA_ZPX_Cycle2: add(t8, CalcAddr, X); writeZeroPage(t8, A, m); setState(CPUState.STA_ZPX_Cycle3, m); break;
+    case STX_ZPY_Cycle1: zeroPageIndexedSetup(CPUState.STX_ZPY_Cycle2, m); break;
+    case STX_ZPY_Cycle2: add(t8, CalcAddr, Y); writeZeroPage(t8, X, m); setState(CPUState.STX_ZPY_Cycle3, m); break;
+    case STY_ZPX_Cycle1: zeroPageIndexedSetup(CPUState.STY_ZPX_Cycle2, m); break;
+    case STY_ZPX_Cycle2: add(t8, CalcAddr, X); writeZeroPage(t8, Y, m); setState(CPUState.STY_ZPX_Cycle3, m); break;
+
+    // absolute: low byte of the address, then the high byte
+    case LDA_ABS_Cycle1: absoluteSetup(CPUState.LDA_ABS_Cycle2, m); break;
+    case LDA_ABS_Cycle2: read(absoluteAddress(), m); setState(CPUState.LDA_ABS_Cycle3, m); break;
+    case LDX_ABS_Cycle1: absoluteSetup(CPUState.LDX_ABS_Cycle2, m); break;
+    case LDX_ABS_Cycle2: read(absoluteAddress(), m); setState(CPUState.LDX_ABS_Cycle3, m); break;
+    case STA_ABS_Cycle1: absoluteSetup(CPUState.STA_ABS_Cycle2, m); break;
+    case STA_ABS_Cycle2: write(absoluteAddress(), A, m); setState(CPUState.STA_ABS_Cycle3, m); break;
+    case STX_ABS_Cycle1: absoluteSetup(CPUState.STX_ABS_Cycle2, m); break;
+    case STX_ABS_Cycle2: write(absoluteAddress(), X, m); setState(CPUState.STX_ABS_Cycle3, m); break;
+    case STY_ABS_Cycle1: absoluteSetup(CPUState.STY_ABS_Cycle2, m); break;
+    case STY_ABS_Cycle2: write(absoluteAddress(), Y, m); setState(CPUState.STY_ABS_Cycle3, m); break;
+
+    // absolute,x and absolute,y
+    case LDA_ABX_Cycle1: absoluteSetup(CPUState.LDA_ABX_Cycle2, m); break;
+    case LDA_ABX_Cycle2: indexedRead(X, CPUState.LDA_ABX_Cycle2x, CPUState.LDA_ABX_Cycle3, m); break;
+    case LDA_ABX_Cycle2x: read(CalcAddr, m); setState(CPUState.LDA_ABX_Cycle3, m); break;
+    case LDA_ABY_Cycle1: absoluteSetup(CPUState.LDA_ABY_Cycle2, m); break;
+    case LDA_ABY_Cycle2: indexedRead(Y, CPUState.LDA_ABY_Cycle2x, CPUState.LDA_ABY_Cycle3, m); break;
+    case LDA_ABY_Cycle2x: read(CalcAddr, m); setState(CPUState.LDA_ABY_Cycle3, m); break;
+    case LDX_ABY_Cycle1: absoluteSetup(CPUState.LDX_ABY_Cycle2, m); break;
+    case LDX_ABY_Cycle2: indexedRead(Y, CPUState.LDX_ABY_Cycle2x, CPUState.LDX_ABY_Cycle3, m); break;
+    case LDX_ABY_Cycle2x: read(CalcAddr, m); setState(CPUState.LDX_ABY_Cycle3, m); break;
+    // only the low byte of CalcAddr is set here
+    case STA_ABX_Cycle1:
+      assign(CalcAddr, DataIn, m); operand(CPUState.STA_ABX_Cycle2, m); break;
+    case STA_ABX_Cycle2: indexedWriteSetup(X, CPUState.STA_ABX_Cycle3, m); break;
+    case STA_ABX_Cycle3: write(CalcAddr, A, m); setState(CPUState.STA_ABX_Cycle4, m); break;
+    case STA_ABY_Cycle1:
+      assign(CalcAddr, DataIn, m); operand(CPUState.STA_ABY_Cycle2, m); break;
+    case STA_ABY_Cycle2: indexedWriteSetup(Y, CPUState.STA_ABY_Cycle3, m); break;
+    case STA_ABY_Cycle3: write(CalcAddr, A, m); setState(CPUState.STA_ABY_Cycle4, m); break;
+
+    // (indirect,x)
+    case LDA_INX_Cycle1: indirectSetup(CPUState.LDA_INX_Cycle2, m); break;
+    case LDA_INX_Cycle2: indirectIndexX(CPUState.LDA_INX_Cycle3, m); break;
+    case LDA_INX_Cycle3: indirectLow(CPUState.LDA_INX_Cycle4, m); break;
+    case LDA_INX_Cycle4:
+      concat(t16, DataIn, CalcAddr); assign(CalcAddr, t16, m); read(CalcAddr, m);
+      setState(CPUState.LDA_INX_Cycle5, m); break;
+    case STA_INX_Cycle1: indirectSetup(CPUState.STA_INX_Cycle2, m); break;
+    case STA_INX_Cycle2: indirectIndexX(CPUState.STA_INX_Cycle3, m); break;
+    case STA_INX_Cycle3: indirectLow(CPUState.STA_INX_Cycle4, m); break;
+    case STA_INX_Cycle4:
+      concat(t16, DataIn, CalcAddr); assign(CalcAddr, t16, m); write(CalcAddr, A, m);
+      setState(CPUState.STA_INX_Cycle5, m); break;
+
+    // (indirect),y
+    case LDA_INY_Cycle1: indirectSetup(CPUState.LDA_INY_Cycle2, m); break;
+    case LDA_INY_Cycle2: indirectHigh(CPUState.LDA_INY_Cycle3, m); break;
+    case LDA_INY_Cycle3: indexedRead(Y, CPUState.LDA_INY_Cycle3x, CPUState.LDA_INY_Cycle4, m); break;
+    case LDA_INY_Cycle3x: read(CalcAddr, m); setState(CPUState.LDA_INY_Cycle4, m); break;
+    case STA_INY_Cycle1: indirectSetup(CPUState.STA_INY_Cycle2, m); break;
+    case STA_INY_Cycle2: indirectHigh(CPUState.STA_INY_Cycle3, m); break;
+    case STA_INY_Cycle3: indexedWriteSetup(Y, CPUState.STA_INY_Cycle4, m); break;
+    case STA_INY_Cycle4: write(CalcAddr, A, m); setState(CPUState.STA_INY_Cycle5, m); break;
+
+    // the cycle after a write
+    case STA_ZPG_Cycle2:
+    case STA_ZPX_Cycle3:
+    case STA_ABS_Cycle3:
+    case STA_ABX_Cycle4:
+    case STA_ABY_Cycle4:
+    case STA_INX_Cycle5:
+    case STA_INY_Cycle5:
+    case STX_ZPG_Cycle2:
+    case STX_ZPY_Cycle3:
+    case STX_ABS_Cycle3:
+    case STY_ZPG_Cycle2:
+    case STY_ZPX_Cycle3:
+    case STY_ABS_Cycle3:
+      nextInstruction(m); break;
+    }
+  }
+
+  // TmpAddr = DataIn; read [DataIn]
+  private void indirectSetup(CPUState nextState, long m) {
+    concat(t16, ZERO, DataIn);
+    assign(TmpAddr, t16, m);
+    read(t16, m);
+    setState(nextState, m);
+  }
+
+  // TmpAddr = $00 ++ (TmpAddr + X); read [TmpAddr]
+  private void indirectIndexX(CPUState nextState, long m) {
+    add(t8, TmpAddr, X);
+    concat(t16, ZERO, t8);
+    assign(TmpAddr, t16, m);
+    read(t16, m);
+    setState(nextState, m);
+  }
+
+  // CalcAddr = DataIn; TmpAddr = $00 ++ (TmpAddr + 1); read [TmpAddr]
+  private void indirectLow(CPUState nextState, long m) {
+    concat(t16, ZERO, DataIn);
+    assign(CalcAddr, t16, m);
+    add(t8, TmpAddr, ONE);
+    concat(t16, ZERO, t8);
+    assign(TmpAddr, t16, m);
+    read(t16, m);
+    setState(nextState, m);
+  }
+
+  // CalcAddr = DataIn; read [$00 ++ (TmpAddr + 1)]
+  private void indirectHigh(CPUState nextState, long m) {
+    concat(t16, ZERO, DataIn);
+    assign(CalcAddr, t16, m);
+    add(t8, TmpAddr, ONE);
+    readZeroPage(t8, m);
+    setState(nextState, m);
+  }
+
+  // The memory controller and page handlers, once per group of lanes with the same address.
+  private void memory() {
+    long remaining = ~halted;
+    while (remaining != 0) {
+      int address = laneValue(AddressBus, Long.numberOfTrailingZeros(remaining));
+      long lanes = equal(AddressBus, address) & remaining;
+      remaining &= ~lanes;
+      long writes = lanes & WriteEnable[0];
+      ConcretePageHandler handler = pageHandlers[address >>> 12];
+      if (handler == INTERNAL_RAM) {
+        // CPURAMHandler returns what was written
+        long[] cell = RAM[address & (RAM_SIZE - 1)];
+        for (int b = 0; b < 8; ++b) {
+          cell[b] = (cell[b] & ~writes) | (DataOut[b] & writes);
+          DataIn[b] = (DataIn[b] & ~lanes) | (cell[b] & lanes);
+        }
+      } else {
+        long reads = lanes & ~writes;
+        if (reads != 0) {
+          assignConstant(DataIn, handler.access(address, false, 0) & 0xFF, reads);
+        }
+        while (writes != 0) {
+          int lane = Long.numberOfTrailingZeros(writes);
+          int data = laneValue(DataOut, lane);
+          assignConstant(DataIn, handler.access(address, true, data) & 0xFF, 1L << lane);
+          writes &= writes - 1;
+        }
+      }
+    }
+  }
+
+}
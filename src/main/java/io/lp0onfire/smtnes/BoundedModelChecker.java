@@ -0,0 +1,150 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.PartialEvaluator;
+import io.lp0onfire.smtnes.solver.SolverResult;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Looks for the shortest execution that reaches a target, one cycle at a time,
+// in a single solver session. The transition relation (CPUCycle, the memory
+// controller and the page handlers, for instance) is unrolled at the bottom
+// assertion level, so everything the solver learns about the first n cycles
+// is still there when it checks n+1; only the target is asserted in a scope
+// of its own, and popped again if it can't be reached yet. If the registry has
+// a PartialEvaluator, it is pushed and popped along with the target's scope,
+// so nothing it learns from a target outlives the target.
+//
+// Initial state comes from applying generators such as CPUPowerOn with apply()
+// before the search starts. A target is any generator that only reads state and
+// asserts something about it, like VerifyCPUState; it can't have a template in the
+// registry, since the template's definition would be popped along with the target.
+// Depth d is the state after d cycles; getTrace() has one entry per depth, so once
+// a target has been reached, getTrace().load() reads back how the machine got there.
+public class BoundedModelChecker {
+
+  private final SolverSession session;
+  public SolverSession getSession() {
+    return this.session;
+  }
+
+  private final StateVariableRegistry registry;
+  public StateVariableRegistry getRegistry() {
+    return this.registry;
+  }
+
+  private final List<CodeGenerator> step;
+
+  private final ExecutionTrace trace;
+  public ExecutionTrace getTrace() {
+    return this.trace;
+  }
+
+  // number of cycles unrolled so far
+  private int depth = 0;
+  public int getDepth() {
+    return this.depth;
+  }
+
+  // whether a reached target's scope is still open, so its model can be read
+  private boolean targetAsserted = false;
+  // the registry's evaluator when the target's scope was opened, if it had one
+  private PartialEvaluator targetEvaluator = null;
+
+  // step is applied once per cycle, in order.
+  public BoundedModelChecker(SolverSession session, StateVariableRegistry registry, List<CodeGenerator> step) {
+    if (step.isEmpty()) {
+      throw new IllegalArgumentException("transition relation needs at least one generator");
+    }
+    if (registry.getEliminator() != null) {
+      // it would share definitions made inside a target's scope after the scope is popped
+      throw new IllegalArgumentException("bounded model checking can't be used with common subexpression elimination");
+    }
+    this.session = session;
+    this.registry = registry;
+    this.step = Collections.unmodifiableList(new ArrayList<>(step));
+    this.trace = new ExecutionTrace(registry);
+  }
+
+  private void closeTarget() throws IOException {
+    if (targetAsserted) {
+      session.pop();
+      if (targetEvaluator != null) {
+        targetEvaluator.pop();
+        targetEvaluator = null;
+      }
+      targetAsserted = false;
+    }
+  }
+
+  // Add gen's code to the path for good, e.g. to set up the initial state.
+  public void apply(CodeGenerator gen) throws IOException {
+    closeTarget();
+    session.writeAll(registry.apply(gen));
+  }
+
+  private void markInitialState() {
+    if (trace.getCycleCount() == 0) {
+      trace.markCycle();
+    }
+  }
+
+  // Unroll one more cycle.
+  public void step() throws IOException {
+    closeTarget();
+    markInitialState();
+    for (CodeGenerator gen : step) {
+      session.writeAll(registry.apply(gen));
+    }
+    depth += 1;
+    trace.markCycle();
+  }
+
+  // Is target satisfiable in the state at the current depth?
+  // If so, its scope is left open for reading back the model.
+  public boolean check(CodeGenerator target) throws IOException {
+    if (registry.hasTemplate(target)) {
+      // the define-fun would be written inside the target's scope and gone after the pop
+      throw new IllegalArgumentException("target can't have a template in the registry");
+    }
+    closeTarget();
+    markInitialState();
+    session.push();
+    targetAsserted = true;
+    targetEvaluator = registry.getPartialEvaluator();
+    if (targetEvaluator != null) {
+      targetEvaluator.push();
+    }
+    session.writeAll(registry.apply(target));
+    SolverResult result = session.checkSat();
+    if (result == SolverResult.UNKNOWN) {
+      closeTarget();
+      throw new IOException("solver could not decide whether the target is reachable at depth " + depth);
+    }
+    if (result == SolverResult.UNSAT) {
+      closeTarget();
+      return false;
+    }
+    return true;
+  }
+
+  // Check target at the current depth and at each deeper one up to maxDepth.
+  // Returns the first depth at which it can be reached, or -1 if it can't be
+  // reached within maxDepth cycles; either way the unrolling stays where it
+  // stopped, so a later search carries on from there.
+  public int findReachable(CodeGenerator target, int maxDepth) throws IOException {
+    while (true) {
+      if (check(target)) {
+        return depth;
+      }
+      if (depth >= maxDepth) {
+        return -1;
+      }
+      step();
+    }
+  }
+
+}
@@ -0,0 +1,12 @@
+package io.lp0onfire.smtnes;
+
+// A run of instructions in ROM, translated by Recompiler. Public only so the
+// classes it generates, which have a class loader of their own, can implement it.
+public interface CompiledBlock {
+
+  // Run instructions from the start of the block on state, which must be at the
+  // instruction fetch of the first one, for as long as the next instruction is sure
+  // to finish by the time state.cycles reaches limit. Stops at an instruction fetch.
+  void run(MachineState state, long limit);
+
+}
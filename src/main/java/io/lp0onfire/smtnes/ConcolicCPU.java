@@ -0,0 +1,489 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.*;
+import io.lp0onfire.smtnes.solver.Model;
+import io.lp0onfire.smtnes.solver.SolverResult;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Runs a ConcreteCPU with a few bytes designated symbolic: RAM cells, and
+// the bytes read from addresses such as a controller port. Every run is
+// concrete, with each symbolic input taking a value from the assignment it was
+// created with (or, failing that, whatever the machine would have had there).
+// Alongside, each register, RAM cell and DataIn that has been computed from
+// symbolic inputs carries an expression over them, built from the same
+// operations CPUCycle uses.
+//
+// Data flow on its own costs nothing. Only where the state machine decides
+// something from symbolic data (which opcode to decode, which address to put
+// on the bus, whether an indexed address crosses a page, the reset vector) is
+// the decision recorded in the path, as a constraint over the inputs that held
+// in this run. getAlternative(i) is then the small query for inputs that agree
+// with the path up to decision i and go the other way there; explore() puts it
+// to a solver and returns the assignment to run next.
+//
+// P isn't tracked: nothing CPUCycle implements branches on it or stores it.
+public class ConcolicCPU {
+
+  private static final int RAM_SIZE = 2048;
+
+  private static final Numeral BYTE = new Numeral("8");
+  private static final Numeral SEVEN = new Numeral("7");
+  private static final Numeral ZERO = new Numeral("0");
+  private static final Numeral FIFTEEN = new Numeral("15");
+
+  private final ConcreteCPU cpu;
+  public ConcreteCPU getCPU() {
+    return this.cpu;
+  }
+
+  private final Map<String, Integer> assignment;
+
+  // every input this run has created so far, in order, with the value it took
+  private final Map<String, Integer> inputs = new LinkedHashMap<>();
+  public Map<String, Integer> getInputs() {
+    return Collections.unmodifiableMap(inputs);
+  }
+
+  private final Map<String, Symbol> inputSymbols = new HashMap<>();
+
+  // address -> name of the inputs read there
+  private final Map<Integer, String> symbolicReads = new HashMap<>();
+  private final Map<String, Integer> readCounts = new HashMap<>();
+
+  private final List<PathConstraint> path = new ArrayList<>();
+  public List<PathConstraint> getPath() {
+    return Collections.unmodifiableList(path);
+  }
+
+  // a decision already made on the same condition doesn't constrain the path any further
+  private final Set<SExpression> conditions = new HashSet<>();
+
+  private final Simplifier simplifier = new Simplifier();
+
+  // expressions for the CPU state variables of the same names; null where the value is concrete
+  private SExpression A = null;
+  private SExpression X = null;
+  private SExpression Y = null;
+  private SExpression SP = null;
+  private SExpression CalcAddr = null;
+  private SExpression TmpAddr = null;
+  private SExpression DataIn = null;
+  private final SExpression[] RAM = new SExpression[RAM_SIZE];
+
+  // cpu has its page handlers attached already; its internal RAM is the one tracked.
+  // Inputs are given values from assignment by name, as returned by explore().
+  public ConcolicCPU(ConcreteCPU cpu, Map<String, Integer> assignment) {
+    this.cpu = cpu;
+    this.assignment = new HashMap<>(assignment);
+  }
+
+  public ConcolicCPU(ConcreteCPU cpu) {
+    this(cpu, new HashMap<String, Integer>());
+  }
+
+  private Symbol newInput(String name, int value) {
+    if (inputs.containsKey(name)) {
+      throw new IllegalArgumentException("symbolic input '" + name + "' already exists");
+    }
+    Symbol sym = new Symbol(name);
+    inputs.put(name, value);
+    inputSymbols.put(name, sym);
+    return sym;
+  }
+
+  private int valueOf(String name, int otherwise) {
+    Integer value = assignment.get(name);
+    if (value == null) {
+      return otherwise;
+    }
+    if (value < 0 || value > 0xFF) {
+      throw new IllegalArgumentException("value " + value + " of input '" + name + "' is not a byte");
+    }
+    return value;
+  }
+
+  // Make the RAM cell at address an input called name.
+  public void makeSymbolic(int address, String name) {
+    int value = valueOf(name, cpu.readRAM(address));
+    RAM[address & (RAM_SIZE - 1)] = newInput(name, value);
+    cpu.writeRAM(address, value);
+  }
+
+  // Make every byte read from address a new input, called name_0, name_1, ...
+  // in the order they're read.
+  public void makeSymbolicReads(int address, String name) {
+    if (address < 0 || address > 0xFFFF) {
+      throw new IllegalArgumentException("address " + address + " out of range");
+    }
+    symbolicReads.put(address, name);
+  }
+
+  // The expression for a CPU state variable (CPU_A, CPU_X, CPU_Y, CPU_SP,
+  // CPU_CalcAddr, CPU_TmpAddr or CPU_DataIn), or null if its value is concrete.
+  public SExpression getSymbolicValue(String name) {
+    switch (name) {
+    case "CPU_A": return A;
+    case "CPU_X": return X;
+    case "CPU_Y": return Y;
+    case "CPU_SP": return SP;
+    case "CPU_CalcAddr": return CalcAddr;
+    case "CPU_TmpAddr": return TmpAddr;
+    case "CPU_DataIn": return DataIn;
+    default:
+      throw new IllegalArgumentException("no symbolic value is kept for '" + name + "'");
+    }
+  }
+
+  public SExpression getSymbolicRAM(int address) {
+    return RAM[address & (RAM_SIZE - 1)];
+  }
+
+  public void run(long cycles) {
+    for (long i = 0; i < cycles; ++i) {
+      step();
+    }
+  }
+
+  // One cycle of the ConcreteCPU, with the symbolic state carried along.
+  public void step() {
+    long cycle = cpu.getCycleCount();
+    SExpression address = null;
+    SExpression dataOut = null;
+    if (A != null || X != null || Y != null || SP != null
+        || CalcAddr != null || TmpAddr != null || DataIn != null) {
+      SExpression[] bus = symbolicCycle(cycle);
+      address = bus[0];
+      dataOut = bus[1];
+    }
+
+    cpu.step();
+
+    int concreteAddress = cpu.getAddressBus();
+    if (address != null) {
+      decide(cycle, String.format("address $%04X", concreteAddress),
+          new EqualsExpression(address, BitVectorConstant.of(concreteAddress, 16)));
+    }
+    boolean ram = cpu.getPageHandler(concreteAddress >>> 12) == cpu.getRAMHandler();
+    if (cpu.getWriteEnable() == 1) {
+      if (ram) {
+        // and CPURAMHandler returns what was written
+        RAM[concreteAddress & (RAM_SIZE - 1)] = dataOut;
+        DataIn = dataOut;
+      } else {
+        DataIn = null;
+      }
+    } else if (!symbolicReads.isEmpty() && symbolicReads.containsKey(concreteAddress)) {
+      String base = symbolicReads.get(concreteAddress);
+      Integer count = readCounts.get(base);
+      int n = (count == null) ? 0 : count;
+      readCounts.put(base, n + 1);
+      String name = base + "_" + n;
+      int value = valueOf(name, cpu.getDataIn());
+      DataIn = newInput(name, value);
+      cpu.setStateVariable("CPU_DataIn", value);
+    } else if (ram) {
+      DataIn = RAM[concreteAddress & (RAM_SIZE - 1)];
+    } else {
+      DataIn = null;
+    }
+  }
+
+  private void decide(long cycle, String decision, SExpression condition) {
+    if (conditions.add(condition)) {
+      path.add(new PathConstraint(cycle, decision, condition));
+    }
+  }
+
+  // the expression if there is one, otherwise the concrete value as a constant
+  private static SExpression term(SExpression sym, long value, int width) {
+    return (sym != null) ? sym : BitVectorConstant.of(value, width);
+  }
+
+  // null if expr has nothing symbolic left in it
+  private SExpression fold(SExpression expr) {
+    SExpression folded = simplifier.simplify(expr);
+    return (folded instanceof BitVectorConstant) ? null : folded;
+  }
+
+  private SExpression zeroExtend(SExpression byteValue) {
+    return (byteValue == null) ? null : new BitVectorConcatExpression(BitVectorConstant.of(0, 8), byteValue);
+  }
+
+  private SExpression low(SExpression word) {
+    return (word == null) ? null : fold(new BitVectorExtractExpression(word, SEVEN, ZERO));
+  }
+
+  private SExpression high(SExpression word) {
+    return (word == null) ? null : fold(new BitVectorExtractExpression(word, FIFTEEN, BYTE));
+  }
+
+  private SExpression add(SExpression a, int aValue, SExpression b, int bValue, int width) {
+    if (a == null && b == null) {
+      return null;
+    }
+    return fold(new BitVectorAddExpression(term(a, aValue, width), term(b, bValue, width)));
+  }
+
+  private SExpression concat(SExpression hi, int hiValue, SExpression lo, int loValue) {
+    if (hi == null && lo == null) {
+      return null;
+    }
+    return fold(new BitVectorConcatExpression(term(hi, hiValue, 8), term(lo, loValue, 8)));
+  }
+
+  // The symbolic half of cpuCycle: updates the registers' expressions from the
+  // values before the cycle, records any decision made on symbolic data, and
+  // returns the expressions for the address and data put on the bus.
+  private SExpression[] symbolicCycle(long cycle) {
+    int x = cpu.getX();
+    int y = cpu.getY();
+    int sp = cpu.getSP();
+    int calcAddr = (int)cpu.getStateVariable("CPU_CalcAddr");
+    int tmpAddr = (int)cpu.getStateVariable("CPU_TmpAddr");
+    int dataIn = cpu.getDataIn();
+
+    SExpression address = null;
+    SExpression dataOut = null;
+
+    switch (cpu.getState()) {
+    case Resetting:
+      switch (cpu.getResetSequence()) {
+      case 2:
+      case 3:
+      case 4:
+        address = concat(null, 0x01, SP, sp);
+        SP = add(SP, sp, null, 0xFF, 8);
+        break;
+      case 6:
+      case 7:
+        if (DataIn != null) {
+          decide(cycle, String.format("reset vector byte %02X", dataIn),
+              new EqualsExpression(DataIn, BitVectorConstant.of(dataIn, 8)));
+        }
+        break;
+      }
+      break;
+    case InstructionFetch:
+      if (DataIn != null) {
+        decide(cycle, String.format("opcode %02X", dataIn),
+            new EqualsExpression(DataIn, BitVectorConstant.of(dataIn, 8)));
+      }
+      break;
+
+    case DEX_IMP_Cycle1: X = add(X, x, null, 0xFF, 8); break;
+    case DEY_IMP_Cycle1: Y = add(Y, y, null, 0xFF, 8); break;
+    case INX_IMP_Cycle1: X = add(X, x, null, 0x01, 8); break;
+    case INY_IMP_Cycle1: Y = add(Y, y, null, 0x01, 8); break;
+
+    case TAX_IMP_Cycle1: X = A; break;
+    case TAY_IMP_Cycle1: Y = A; break;
+    case TSX_IMP_Cycle1: X = SP; break;
+    case TXA_IMP_Cycle1: A = X; break;
+    case TXS_IMP_Cycle1: SP = X; break;
+    case TYA_IMP_Cycle1: A = Y; break;
+
+    case LDA_IMM_Cycle1:
+    case LDA_ZPG_Cycle2:
+    case LDA_ZPX_Cycle3:
+    case LDA_ABS_Cycle3:
+    case LDA_ABX_Cycle3:
+    case LDA_ABY_Cycle3:
+    case LDA_INX_Cycle5:
+    case LDA_INY_Cycle4:
+      A = DataIn; break;
+    case LDX_IMM_Cycle1:
+    case LDX_ZPG_Cycle2:
+    case LDX_ZPY_Cycle3:
+    case LDX_ABS_Cycle3:
+    case LDX_ABY_Cycle3:
+      X = DataIn; break;
+
+    // zeropage
+    case LDA_ZPG_Cycle1:
+    case LDX_ZPG_Cycle1:
+      address = zeroExtend(DataIn); break;
+    case STA_ZPG_Cycle1: address = zeroExtend(DataIn); dataOut = A; break;
+    case STX_ZPG_Cycle1: address = zeroExtend(DataIn); dataOut = X; break;
+    case STY_ZPG_Cycle1: address = zeroExtend(DataIn); dataOut = Y; break;
+
+    // zeropage,x and zeropage,y
+    case LDA_ZPX_Cycle1:
+    case LDX_ZPY_Cycle1:
+    case STA_ZPX_Cycle1:
+    case STX_ZPY_Cycle1:
+    case STY_ZPX_Cycle1:
+      CalcAddr = zeroExtend(DataIn); address = CalcAddr; break;
+    case LDA_ZPX_Cycle2: address = zeroPage(CalcAddr, calcAddr, X, x); break;
+    case LDX_ZPY_Cycle2: address = zeroPage(CalcAddr, calcAddr, Y, y); break;
+    case STA_ZPX_Cycle2: address = zeroPage(CalcAddr, calcAddr, X, x); dataOut = A; break;
+    case STX_ZPY_Cycle2: address = zeroPage(CalcAddr, calcAddr, Y, y); dataOut = X; break;
+    case STY_ZPX_Cycle2: address = zeroPage(CalcAddr, calcAddr, X, x); dataOut = Y; break;
+
+    // absolute
+    case LDA_ABS_Cycle1:
+    case LDX_ABS_Cycle1:
+    case STA_ABS_Cycle1:
+    case STX_ABS_Cycle1:
+    case STY_ABS_Cycle1:
+    case LDA_ABX_Cycle1:
+    case LDA_ABY_Cycle1:
+    case LDX_ABY_Cycle1:
+      CalcAddr = zeroExtend(DataIn); break;
+    case LDA_ABS_Cycle2:
+    case LDX_ABS_Cycle2:
+      address = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); break;
+    case STA_ABS_Cycle2: address = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); dataOut = A; break;
+    case STX_ABS_Cycle2: address = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); dataOut = X; break;
+    case STY_ABS_Cycle2: address = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); dataOut = Y; break;
+
+    // absolute,x and absolute,y, and the indexed half of (indirect),y
+    case LDA_ABX_Cycle2: address = indexedRead(cycle, calcAddr, dataIn, X, x); break;
+    case LDA_ABY_Cycle2:
+    case LDX_ABY_Cycle2:
+    case LDA_INY_Cycle3:
+      address = indexedRead(cycle, calcAddr, dataIn, Y, y); break;
+    case LDA_ABX_Cycle2x:
+    case LDA_ABY_Cycle2x:
+    case LDX_ABY_Cycle2x:
+    case LDA_INY_Cycle3x:
+      address = CalcAddr; break;
+    case STA_ABX_Cycle1:
+    case STA_ABY_Cycle1:
+      CalcAddr = concat(high(CalcAddr), calcAddr >>> 8, DataIn, dataIn); break;
+    case STA_ABX_Cycle2: address = indexedWriteSetup(calcAddr, dataIn, X, x); break;
+    case STA_ABY_Cycle2:
+    case STA_INY_Cycle3:
+      address = indexedWriteSetup(calcAddr, dataIn, Y, y); break;
+    case STA_ABX_Cycle3:
+    case STA_ABY_Cycle3:
+    case STA_INY_Cycle4:
+      address = CalcAddr; dataOut = A; break;
+
+    // (indirect,x), and the first cycle of (indirect),y
+    case LDA_INX_Cycle1:
+    case STA_INX_Cycle1:
+    case LDA_INY_Cycle1:
+    case STA_INY_Cycle1:
+      TmpAddr = zeroExtend(DataIn); address = TmpAddr; break;
+    case LDA_INX_Cycle2:
+    case STA_INX_Cycle2:
+      TmpAddr = zeroPage(TmpAddr, tmpAddr, X, x); address = TmpAddr; break;
+    case LDA_INX_Cycle3:
+    case STA_INX_Cycle3:
+      CalcAddr = zeroExtend(DataIn); TmpAddr = zeroPage(TmpAddr, tmpAddr, null, 1); address = TmpAddr; break;
+    case LDA_INX_Cycle4:
+      CalcAddr = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); address = CalcAddr; break;
+    case STA_INX_Cycle4:
+      CalcAddr = concat(DataIn, dataIn, low(CalcAddr), calcAddr & 0xFF); address = CalcAddr; dataOut = A; break;
+
+    // (indirect),y
+    case LDA_INY_Cycle2:
+    case STA_INY_Cycle2:
+      address = zeroPage(TmpAddr, tmpAddr, null, 1); CalcAddr = zeroExtend(DataIn); break;
+
+    default:
+      // only PC is on the bus, and only P changes
+      break;
+    }
+    return new SExpression[]{address, dataOut};
+  }
+
+  // $00 ++ (low byte of base + index)
+  private SExpression zeroPage(SExpression base, int baseValue, SExpression index, int indexValue) {
+    return zeroExtend(add(low(base), baseValue & 0xFF, index, indexValue, 8));
+  }
+
+  // ConcreteCPU.indexedRead(): whether the low byte overflows is a decision
+  private SExpression indexedRead(long cycle, int calcAddr, int dataIn, SExpression index, int indexValue) {
+    SExpression lowByte = low(CalcAddr);
+    if (lowByte != null || index != null) {
+      SExpression sum = new BitVectorAddExpression(
+          new BitVectorConcatExpression(BitVectorConstant.of(0, 8), term(lowByte, calcAddr & 0xFF, 8)),
+          new BitVectorConcatExpression(BitVectorConstant.of(0, 8), term(index, indexValue, 8)));
+      SExpression overflow = new BitVectorUnsignedGreaterEqualExpression(sum, BitVectorConstant.of(0x100, 16));
+      if ((calcAddr & 0xFF) + indexValue >= 0x100) {
+        decide(cycle, "page crossed", fold(overflow));
+      } else {
+        decide(cycle, "page not crossed", fold(new NotExpression(overflow)));
+      }
+    }
+    SExpression withoutCarry = concat(DataIn, dataIn, add(lowByte, calcAddr & 0xFF, index, indexValue, 8),
+        (calcAddr + indexValue) & 0xFF);
+    CalcAddr = add(concat(DataIn, dataIn, lowByte, calcAddr & 0xFF), ((dataIn << 8) | (calcAddr & 0xFF)),
+        zeroExtend(index), indexValue, 16);
+    if ((calcAddr & 0xFF) + indexValue >= 0x100) {
+      return withoutCarry;
+    } else {
+      return CalcAddr;
+    }
+  }
+
+  // ConcreteCPU.indexedWriteSetup(), which doesn't depend on the overflow
+  private SExpression indexedWriteSetup(int calcAddr, int dataIn, SExpression index, int indexValue) {
+    SExpression lowByte = low(CalcAddr);
+    SExpression address = concat(DataIn, dataIn, add(lowByte, calcAddr & 0xFF, index, indexValue, 8),
+        (calcAddr + indexValue) & 0xFF);
+    CalcAddr = add(concat(DataIn, dataIn, lowByte, calcAddr & 0xFF), ((dataIn << 8) | (calcAddr & 0xFF)),
+        zeroExtend(index), indexValue, 16);
+    return address;
+  }
+
+  // Declarations of the inputs so far, the path up to decision index, and
+  // the negation of decision index. Satisfiable exactly if some assignment of
+  // the inputs takes the same path up to there and the other way at index.
+  public List<SExpression> getAlternative(int index) {
+    if (index < 0 || index >= path.size()) {
+      throw new IllegalArgumentException("no decision " + index + " in a path of " + path.size());
+    }
+    List<SExpression> exprs = new LinkedList<>();
+    for (String name : inputs.keySet()) {
+      exprs.add(new BitVectorDeclaration(inputSymbols.get(name), BYTE));
+    }
+    for (int i = 0; i < index; ++i) {
+      exprs.add(new Assertion(path.get(i).getCondition()));
+    }
+    exprs.add(new Assertion(new NotExpression(path.get(index).getCondition())));
+    return exprs;
+  }
+
+  // Solve getAlternative(index) in its own scope on session, and return the
+  // assignment to run a new ConcolicCPU with, or null if there is none
+  // (or the solver couldn't find one).
+  public Map<String, Integer> explore(SolverSession session, int index) throws IOException {
+    List<SExpression> query = getAlternative(index);
+    session.push();
+    try {
+      session.writeAll(query);
+      if (session.checkSat() != SolverResult.SAT) {
+        return null;
+      }
+      Symbol[] symbols = new Symbol[inputs.size()];
+      int i = 0;
+      for (String name : inputs.keySet()) {
+        symbols[i++] = inputSymbols.get(name);
+      }
+      Map<String, Integer> alternative = new LinkedHashMap<>();
+      if (symbols.length > 0) {
+        Model model = session.getValues(symbols);
+        for (Symbol sym : symbols) {
+          alternative.put(sym.getName(), (int)model.getBitVector(sym).getValue());
+        }
+      }
+      return alternative;
+    } finally {
+      session.pop();
+    }
+  }
+
+}
@@ -0,0 +1,532 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+
+// A plain Java interpreter for the machine that CPUCycle, the memory controller
+// and the page handlers describe, for programs whose inputs are all known.
+// step() is one cycle of the same state machine: the same CPUState after
+// every cycle, the same reset phases in CPU_ResetSequence, the same values on
+// the address bus, and the same CPU_RAM. A run can be compared cycle by cycle
+// with an ExecutionTrace of the symbolic version, without a solver.
+//
+// The microcode is copied from CPUCycle as it is, including the places where it
+// differs from a real 6502 (P[Z] is kept in bit 7 and P[N] in bit 1, TXS sets the
+// flags, and so on). Where CPUCycle leaves a variable unconstrained in some
+// state (e.g. PC while an absolute address is put on the bus, or CalcAddr in
+// most instructions), the variable keeps its previous value here, which is one
+// of the executions the solver could pick. An opcode that CPUCycle doesn't
+// implement leaves the whole next state unconstrained, so it is an
+// IllegalStateException instead.
+public class ConcreteCPU {
+
+  private static final int RAM_SIZE = 2048;
+
+  private int A = 0;
+  public int getA() {
+    return this.A;
+  }
+
+  private int X = 0;
+  public int getX() {
+    return this.X;
+  }
+
+  private int Y = 0;
+  public int getY() {
+    return this.Y;
+  }
+
+  private int SP = 0;
+  public int getSP() {
+    return this.SP;
+  }
+
+  private int P = 0x20;
+  public int getP() {
+    return this.P;
+  }
+
+  private int PC = 0;
+  public int getPC() {
+    return this.PC;
+  }
+
+  private int CalcAddr = 0;
+  private int TmpAddr = 0;
+  // no implemented instruction uses it yet
+  private int BranchOffset = 0;
+
+  private int AddressBus = 0;
+  public int getAddressBus() {
+    return this.AddressBus;
+  }
+
+  private int WriteEnable = 0;
+  public int getWriteEnable() {
+    return this.WriteEnable;
+  }
+
+  private int DataOut = 0;
+  public int getDataOut() {
+    return this.DataOut;
+  }
+
+  private int DataIn = 0;
+  public int getDataIn() {
+    return this.DataIn;
+  }
+
+  private int ResetSequence = 0;
+  public int getResetSequence() {
+    return this.ResetSequence;
+  }
+
+  private CPUState State = CPUState.Resetting;
+  public CPUState getState() {
+    return this.State;
+  }
+
+  private final byte[] RAM = new byte[RAM_SIZE];
+
+  private long cycleCount = 0;
+  public long getCycleCount() {
+    return this.cycleCount;
+  }
+
+  private final ConcretePageHandler[] pageHandlers = new ConcretePageHandler[16];
+
+  // CPURAMHandler: CPU_RAM decoded from the low 11 address bits
+  private final ConcretePageHandler ramHandler = new ConcretePageHandler() {
+    @Override
+    public int access(int address, boolean writeEnable, int data) {
+      if (writeEnable) {
+        RAM[address & (RAM_SIZE - 1)] = (byte)data;
+        return data;
+      } else {
+        return RAM[address & (RAM_SIZE - 1)] & 0xFF;
+      }
+    }
+  };
+
+  // The state CPUPowerOn sets up, with nothing attached to any page.
+  public ConcreteCPU() {
+    for (int i = 0; i < 16; ++i) {
+      pageHandlers[i] = ConcretePageHandler.NULL;
+    }
+  }
+
+  // The handler for this CPU's internal RAM, to attach to pages 0 and 1 as a real NES does.
+  public ConcretePageHandler getRAMHandler() {
+    return this.ramHandler;
+  }
+
+  public void setPageHandler(int pageNumber, ConcretePageHandler handler) {
+    if (pageNumber < 0 || pageNumber >= 16) {
+      throw new IllegalArgumentException("page number " + pageNumber + " out of range");
+    }
+    pageHandlers[pageNumber] = handler;
+  }
+
+  public ConcretePageHandler getPageHandler(int pageNumber) {
+    if (pageNumber < 0 || pageNumber >= 16) {
+      throw new IllegalArgumentException("page number " + pageNumber + " out of range");
+    }
+    return pageHandlers[pageNumber];
+  }
+
+  // Attach the mapper to every page it decodes.
+  public void attachMapper(Mapper mapper) {
+    for (int i = 0; i < 16; ++i) {
+      if (mapper.decodesCPUPage(i)) {
+        setPageHandler(i, mapper.getConcreteCPUPageHandler(i));
+      }
+    }
+  }
+
+  // What a read cycle at address would see on DataIn, without running one.
+  public int readMemory(int address) {
+    return pageHandlers[(address >>> 12) & 0xF].access(address & 0xFFFF, false, 0) & 0xFF;
+  }
+
+  public int readRAM(int address) {
+    return RAM[address & (RAM_SIZE - 1)] & 0xFF;
+  }
+
+  public void writeRAM(int address, int data) {
+    RAM[address & (RAM_SIZE - 1)] = (byte)data;
+  }
+
+  public byte[] getRAM() {
+    return RAM.clone();
+  }
+
+  // the RAM itself rather than a copy, for MachineState
+  byte[] getRAMArray() {
+    return RAM;
+  }
+
+  // The value of a CPU state variable, by the name the generators give it
+  // (CPU_A, CPU_PC, CPU_State, ...; not CPU_RAM).
+  public long getStateVariable(String name) {
+    switch (name) {
+    case "CPU_A": return A;
+    case "CPU_X": return X;
+    case "CPU_Y": return Y;
+    case "CPU_SP": return SP;
+    case "CPU_P": return P;
+    case "CPU_PC": return PC;
+    case "CPU_CalcAddr": return CalcAddr;
+    case "CPU_TmpAddr": return TmpAddr;
+    case "CPU_BranchOffset": return BranchOffset;
+    case "CPU_AddressBus": return AddressBus;
+    case "CPU_WriteEnable": return WriteEnable;
+    case "CPU_DataOut": return DataOut;
+    case "CPU_DataIn": return DataIn;
+    case "CPU_ResetSequence": return ResetSequence;
+    case "CPU_State": return State.getIndex();
+    default:
+      throw new IllegalArgumentException("unknown CPU state variable '" + name + "'");
+    }
+  }
+
+  public void setStateVariable(String name, long value) {
+    switch (name) {
+    case "CPU_A": A = checkWidth(name, value, 8); break;
+    case "CPU_X": X = checkWidth(name, value, 8); break;
+    case "CPU_Y": Y = checkWidth(name, value, 8); break;
+    case "CPU_SP": SP = checkWidth(name, value, 8); break;
+    case "CPU_P": P = checkWidth(name, value, 8); break;
+    case "CPU_PC": PC = checkWidth(name, value, 16); break;
+    case "CPU_CalcAddr": CalcAddr = checkWidth(name, value, 16); break;
+    case "CPU_TmpAddr": TmpAddr = checkWidth(name, value, 16); break;
+    case "CPU_BranchOffset": BranchOffset = checkWidth(name, value, 8); break;
+    case "CPU_AddressBus": AddressBus = checkWidth(name, value, 16); break;
+    case "CPU_WriteEnable": WriteEnable = checkWidth(name, value, 1); break;
+    case "CPU_DataOut": DataOut = checkWidth(name, value, 8); break;
+    case "CPU_DataIn": DataIn = checkWidth(name, value, 8); break;
+    case "CPU_ResetSequence": ResetSequence = checkWidth(name, value, 3); break;
+    case "CPU_State": State = CPUState.fromIndex(checkWidth(name, value, CPUState.getStateWidth())); break;
+    default:
+      throw new IllegalArgumentException("unknown CPU state variable '" + name + "'");
+    }
+  }
+
+  private static int checkWidth(String name, long value, int width) {
+    if (value < 0 || value >= (1L << width)) {
+      throw new IllegalArgumentException("value " + value + " does not fit in " + name);
+    }
+    return (int)value;
+  }
+
+  public void run(long cycles) {
+    for (long i = 0; i < cycles; ++i) {
+      step();
+    }
+  }
+
+  // cycles Recompiler ran without step()
+  void addCycles(long cycles) {
+    cycleCount += cycles;
+  }
+
+  // One cycle: CPUCycle, then the memory controller and whichever page handler is selected.
+  public void step() {
+    cpuCycle();
+    DataIn = pageHandlers[AddressBus >>> 12].access(AddressBus, WriteEnable == 1, DataOut) & 0xFF;
+    cycleCount += 1;
+  }
+
+  // bus helpers; everything is computed from the current values before they're replaced
+
+  private void read(int address) {
+    AddressBus = address;
+    WriteEnable = 0;
+    DataOut = 0;
+  }
+
+  private void write(int address, int data) {
+    AddressBus = address;
+    WriteEnable = 1;
+    DataOut = data;
+  }
+
+  private void fetchPC() {
+    read(PC);
+  }
+
+  private void incrementPC() {
+    PC = (PC + 1) & 0xFFFF;
+  }
+
+  // the last cycle of every instruction
+  private void nextInstruction() {
+    fetchPC();
+    incrementPC();
+    State = CPUState.InstructionFetch;
+  }
+
+  // CPUCycle keeps P[Z] in bit 7 and P[N] in bit 1
+  private void setZN(int value) {
+    P = (P & 0x7D) | (value == 0 ? 0x80 : 0) | ((value & 0x80) != 0 ? 0x02 : 0);
+  }
+
+  private void setFlag(int bitPosition, boolean value) {
+    if (value) {
+      P |= (1 << bitPosition);
+    } else {
+      P &= ~(1 << bitPosition);
+    }
+    nextInstruction();
+  }
+
+  // $00 ++ (low byte of base + index)
+  private static int zeroPage(int base, int index) {
+    return (base + index) & 0xFF;
+  }
+
+  // cycle 2 of absolute,x / absolute,y reads, and cycle 3 of (indirect),y:
+  // CalcAddr = (DataIn ++ CalcAddr[7:0]) + index, reading the address without the
+  // carry first if the low byte overflows
+  private void indexedRead(int index, CPUState overflowState, CPUState nextState) {
+    int low = (CalcAddr & 0xFF) + index;
+    CalcAddr = (((DataIn << 8) | (CalcAddr & 0xFF)) + index) & 0xFFFF;
+    if (low >= 0x100) {
+      read((DataIn << 8) | (low & 0xFF));
+      State = overflowState;
+    } else {
+      read(CalcAddr);
+      State = nextState;
+    }
+  }
+
+  // the same for writes, which always take the extra cycle
+  private void indexedWriteSetup(int index, CPUState nextState) {
+    read((DataIn << 8) | ((CalcAddr + index) & 0xFF));
+    CalcAddr = (((DataIn << 8) | (CalcAddr & 0xFF)) + index) & 0xFFFF;
+    State = nextState;
+  }
+
+  private void decode(int opcode) {
+    switch (opcode) {
+    // implied: the second cycle reads [PC] again
+    case 0x18: fetchPC(); State = CPUState.CLC_IMP_Cycle1; break;
+    case 0xD8: fetchPC(); State = CPUState.CLD_IMP_Cycle1; break;
+    case 0x58: fetchPC(); State = CPUState.CLI_IMP_Cycle1; break;
+    case 0xB8: fetchPC(); State = CPUState.CLV_IMP_Cycle1; break;
+    case 0x38: fetchPC(); State = CPUState.SEC_IMP_Cycle1; break;
+    case 0xF8: fetchPC(); State = CPUState.SED_IMP_Cycle1; break;
+    case 0x78: fetchPC(); State = CPUState.SEI_IMP_Cycle1; break;
+    case 0xCA: fetchPC(); State = CPUState.DEX_IMP_Cycle1; break;
+    case 0x88: fetchPC(); State = CPUState.DEY_IMP_Cycle1; break;
+    case 0xE8: fetchPC(); State = CPUState.INX_IMP_Cycle1; break;
+    case 0xC8: fetchPC(); State = CPUState.INY_IMP_Cycle1; break;
+    case 0xAA: fetchPC(); State = CPUState.TAX_IMP_Cycle1; break;
+    case 0xA8: fetchPC(); State = CPUState.TAY_IMP_Cycle1; break;
+    case 0xBA: fetchPC(); State = CPUState.TSX_IMP_Cycle1; break;
+    case 0x8A: fetchPC(); State = CPUState.TXA_IMP_Cycle1; break;
+    case 0x9A: fetchPC(); State = CPUState.TXS_IMP_Cycle1; break;
+    case 0x98: fetchPC(); State = CPUState.TYA_IMP_Cycle1; break;
+    // everything else reads its first operand byte
+    case 0xA9: fetchPC(); incrementPC(); State = CPUState.LDA_IMM_Cycle1; break;
+    case 0xA5: fetchPC(); incrementPC(); State = CPUState.LDA_ZPG_Cycle1; break;
+    case 0xB5: fetchPC(); incrementPC(); State = CPUState.LDA_ZPX_Cycle1; break;
+    case 0xAD: fetchPC(); incrementPC(); State = CPUState.LDA_ABS_Cycle1; break;
+    case 0xBD: fetchPC(); incrementPC(); State = CPUState.LDA_ABX_Cycle1; break;
+    case 0xB9: fetchPC(); incrementPC(); State = CPUState.LDA_ABY_Cycle1; break;
+    case 0xA1: fetchPC(); incrementPC(); State = CPUState.LDA_INX_Cycle1; break;
+    case 0xB1: fetchPC(); incrementPC(); State = CPUState.LDA_INY_Cycle1; break;
+    case 0xA2: fetchPC(); incrementPC(); State = CPUState.LDX_IMM_Cycle1; break;
+    case 0xA6: fetchPC(); incrementPC(); State = CPUState.LDX_ZPG_Cycle1; break;
+    case 0xB6: fetchPC(); incrementPC(); State = CPUState.LDX_ZPY_Cycle1; break;
+    case 0xAE: fetchPC(); incrementPC(); State = CPUState.LDX_ABS_Cycle1; break;
+    case 0xBE: fetchPC(); incrementPC(); State = CPUState.LDX_ABY_Cycle1; break;
+    case 0x85: fetchPC(); incrementPC(); State = CPUState.STA_ZPG_Cycle1; break;
+    case 0x95: fetchPC(); incrementPC(); State = CPUState.STA_ZPX_Cycle1; break;
+    case 0x8D: fetchPC(); incrementPC(); State = CPUState.STA_ABS_Cycle1; break;
+    case 0x9D: fetchPC(); incrementPC(); State = CPUState.STA_ABX_Cycle1; break;
+    case 0x99: fetchPC(); incrementPC(); State = CPUState.STA_ABY_Cycle1; break;
+    case 0x81: fetchPC(); incrementPC(); State = CPUState.STA_INX_Cycle1; break;
+    case 0x91: fetchPC(); incrementPC(); State = CPUState.STA_INY_Cycle1; break;
+    case 0x86: fetchPC(); incrementPC(); State = CPUState.STX_ZPG_Cycle1; break;
+    case 0x96: fetchPC(); incrementPC(); State = CPUState.STX_ZPY_Cycle1; break;
+    case 0x8E: fetchPC(); incrementPC(); State = CPUState.STX_ABS_Cycle1; break;
+    case 0x84: fetchPC(); incrementPC(); State = CPUState.STY_ZPG_Cycle1; break;
+    case 0x94: fetchPC(); incrementPC(); State = CPUState.STY_ZPX_Cycle1; break;
+    case 0x8C: fetchPC(); incrementPC(); State = CPUState.STY_ABS_Cycle1; break;
+    default:
+      throw new IllegalStateException(String.format("opcode %02X at $%04X is not implemented",
+          opcode, (PC - 1) & 0xFFFF));
+    }
+  }
+
+  private void reset() {
+    switch (ResetSequence) {
+    case 0:
+    case 1:
+      // read memory at PC
+      read(PC);
+      break;
+    case 2:
+    case 3:
+    case 4:
+      // read and decrement SP
+      read(0x0100 | SP);
+      SP = (SP - 1) & 0xFF;
+      break;
+    case 5:
+      // set P[FI] = 1, read 0xFFFC
+      P |= 0x04;
+      read(0xFFFC);
+      break;
+    case 6:
+      // set PC_low = DataIn, read 0xFFFD
+      PC = (PC & 0xFF00) | DataIn;
+      read(0xFFFD);
+      break;
+    case 7:
+      // set PC_high = DataIn, set up instruction fetch (and increment PC)
+      int vector = (DataIn << 8) | (PC & 0xFF);
+      read(vector);
+      PC = (vector + 1) & 0xFFFF;
+      State = CPUState.InstructionFetch;
+      break;
+    }
+    ResetSequence = (ResetSequence + 1) & 0x7;
+  }
+
+  private void cpuCycle() {
+    switch (State) {
+    case Resetting: reset(); break;
+    case InstructionFetch: decode(DataIn); break;
+
+    case CLC_IMP_Cycle1: setFlag(0, false); break;
+    case CLD_IMP_Cycle1: setFlag(3, false); break;
+    case CLI_IMP_Cycle1: setFlag(2, false); break;
+    case CLV_IMP_Cycle1: setFlag(6, false); break;
+    case SEC_IMP_Cycle1: setFlag(0, true); break;
+    case SED_IMP_Cycle1: setFlag(3, true); break;
+    case SEI_IMP_Cycle1: setFlag(2, true); break;
+
+    case DEX_IMP_Cycle1: X = (X - 1) & 0xFF; setZN(X); nextInstruction(); break;
+    case DEY_IMP_Cycle1: Y = (Y - 1) & 0xFF; setZN(Y); nextInstruction(); break;
+    case INX_IMP_Cycle1: X = (X + 1) & 0xFF; setZN(X); nextInstruction(); break;
+    case INY_IMP_Cycle1: Y = (Y + 1) & 0xFF; setZN(Y); nextInstruction(); break;
+
+    case TAX_IMP_Cycle1: X = A; setZN(A); nextInstruction(); break;
+    case TAY_IMP_Cycle1: Y = A; setZN(A); nextInstruction(); break;
+    case TSX_IMP_Cycle1: X = SP; setZN(SP); nextInstruction(); break;
+    case TXA_IMP_Cycle1: A = X; setZN(X); nextInstruction(); break;
+    case TXS_IMP_Cycle1: SP = X; setZN(X); nextInstruction(); break;
+    case TYA_IMP_Cycle1: A = Y; setZN(Y); nextInstruction(); break;
+
+    // the last cycle of every LDA/LDX
+    case LDA_IMM_Cycle1:
+    case LDA_ZPG_Cycle2:
+    case LDA_ZPX_Cycle3:
+    case LDA_ABS_Cycle3:
+    case LDA_ABX_Cycle3:
+    case LDA_ABY_Cycle3:
+    case LDA_INX_Cycle5:
+    case LDA_INY_Cycle4:
+      A = DataIn; setZN(DataIn); nextInstruction(); break;
+    case LDX_IMM_Cycle1:
+    case LDX_ZPG_Cycle2:
+    case LDX_ZPY_Cycle3:
+    case LDX_ABS_Cycle3:
+    case LDX_ABY_Cycle3:
+      X = DataIn; setZN(DataIn); nextInstruction(); break;
+
+    // zeropage
+    case LDA_ZPG_Cycle1: read(DataIn); State = CPUState.LDA_ZPG_Cycle2; break;
+    case LDX_ZPG_Cycle1: read(DataIn); State = CPUState.LDX_ZPG_Cycle2; break;
+    case STA_ZPG_Cycle1: write(DataIn, A); State = CPUState.STA_ZPG_Cycle2; break;
+    case STX_ZPG_Cycle1: write(DataIn, X); State = CPUState.STX_ZPG_Cycle2; break;
+    case STY_ZPG_Cycle1: write(DataIn, Y); State = CPUState.STY_ZPG_Cycle2; break;
+
+    // zeropage,x and zeropage,y
+    case LDA_ZPX_Cycle1: CalcAddr = DataIn; read(DataIn); State = CPUState.LDA_ZPX_Cycle2; break;
+    case LDA_ZPX_Cycle2: read(zeroPage(CalcAddr, X)); State = CPUState.LDA_ZPX_Cycle3; break;
+    case LDX_ZPY_Cycle1: CalcAddr = DataIn; read(DataIn); State = CPUState.LDX_ZPY_Cycle2; break;
+    case LDX_ZPY_Cycle2: read(zeroPage(CalcAddr, Y)); State = CPUState.LDX_ZPY_Cycle3; break;
+    case STA_ZPX_Cycle1: CalcAddr = DataIn; read(DataIn); State = CPUState.STA_ZPX_Cycle2; break;
+    case STA_ZPX_Cycle2: write(zeroPage(CalcAddr, X), A); State = CPUState.STA_ZPX_Cycle3; break;
+    case STX_ZPY_Cycle1: CalcAddr = DataIn; read(DataIn); State = CPUState.STX_ZPY_Cycle2; break;
+    case STX_ZPY_Cycle2: write(zeroPage(CalcAddr, Y), X); State = CPUState.STX_ZPY_Cycle3; break;
+    case STY_ZPX_Cycle1: CalcAddr = DataIn; read(DataIn); State = CPUState.STY_ZPX_Cycle2; break;
+    case STY_ZPX_Cycle2: write(zeroPage(CalcAddr, X), Y); State = CPUState.STY_ZPX_Cycle3; break;
+
+    // absolute: low byte of the address, then the high byte
+    case LDA_ABS_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.LDA_ABS_Cycle2; break;
+    case LDA_ABS_Cycle2: read((DataIn << 8) | (CalcAddr & 0xFF)); State = CPUState.LDA_ABS_Cycle3; break;
+    case LDX_ABS_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.LDX_ABS_Cycle2; break;
+    case LDX_ABS_Cycle2: read((DataIn << 8) | (CalcAddr & 0xFF)); State = CPUState.LDX_ABS_Cycle3; break;
+    case STA_ABS_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.STA_ABS_Cycle2; break;
+    case STA_ABS_Cycle2: write((DataIn << 8) | (CalcAddr & 0xFF), A); State = CPUState.STA_ABS_Cycle3; break;
+    case STX_ABS_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.STX_ABS_Cycle2; break;
+    case STX_ABS_Cycle2: write((DataIn << 8) | (CalcAddr & 0xFF), X); State = CPUState.STX_ABS_Cycle3; break;
+    case STY_ABS_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.STY_ABS_Cycle2; break;
+    case STY_ABS_Cycle2: write((DataIn << 8) | (CalcAddr & 0xFF), Y); State = CPUState.STY_ABS_Cycle3; break;
+
+    // absolute,x and absolute,y
+    case LDA_ABX_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.LDA_ABX_Cycle2; break;
+    case LDA_ABX_Cycle2: indexedRead(X, CPUState.LDA_ABX_Cycle2x, CPUState.LDA_ABX_Cycle3); break;
+    case LDA_ABX_Cycle2x: read(CalcAddr); State = CPUState.LDA_ABX_Cycle3; break;
+    case LDA_ABY_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.LDA_ABY_Cycle2; break;
+    case LDA_ABY_Cycle2: indexedRead(Y, CPUState.LDA_ABY_Cycle2x, CPUState.LDA_ABY_Cycle3); break;
+    case LDA_ABY_Cycle2x: read(CalcAddr); State = CPUState.LDA_ABY_Cycle3; break;
+    case LDX_ABY_Cycle1: CalcAddr = DataIn; fetchPC(); incrementPC(); State = CPUState.LDX_ABY_Cycle2; break;
+    case LDX_ABY_Cycle2: indexedRead(Y, CPUState.LDX_ABY_Cycle2x, CPUState.LDX_ABY_Cycle3); break;
+    case LDX_ABY_Cycle2x: read(CalcAddr); State = CPUState.LDX_ABY_Cycle3; break;
+    // only the low byte of CalcAddr is set here
+    case STA_ABX_Cycle1:
+      CalcAddr = (CalcAddr & 0xFF00) | DataIn; fetchPC(); incrementPC(); State = CPUState.STA_ABX_Cycle2; break;
+    case STA_ABX_Cycle2: indexedWriteSetup(X, CPUState.STA_ABX_Cycle3); break;
+    case STA_ABX_Cycle3: write(CalcAddr, A); State = CPUState.STA_ABX_Cycle4; break;
+    case STA_ABY_Cycle1:
+      CalcAddr = (CalcAddr & 0xFF00) | DataIn; fetchPC(); incrementPC(); State = CPUState.STA_ABY_Cycle2; break;
+    case STA_ABY_Cycle2: indexedWriteSetup(Y, CPUState.STA_ABY_Cycle3); break;
+    case STA_ABY_Cycle3: write(CalcAddr, A); State = CPUState.STA_ABY_Cycle4; break;
+
+    // (indirect,x)
+    case LDA_INX_Cycle1: TmpAddr = DataIn; read(DataIn); State = CPUState.LDA_INX_Cycle2; break;
+    case LDA_INX_Cycle2: TmpAddr = zeroPage(TmpAddr, X); read(TmpAddr); State = CPUState.LDA_INX_Cycle3; break;
+    case LDA_INX_Cycle3:
+      CalcAddr = DataIn; TmpAddr = zeroPage(TmpAddr, 1); read(TmpAddr); State = CPUState.LDA_INX_Cycle4; break;
+    case LDA_INX_Cycle4:
+      CalcAddr = (DataIn << 8) | (CalcAddr & 0xFF); read(CalcAddr); State = CPUState.LDA_INX_Cycle5; break;
+    case STA_INX_Cycle1: TmpAddr = DataIn; read(DataIn); State = CPUState.STA_INX_Cycle2; break;
+    case STA_INX_Cycle2: TmpAddr = zeroPage(TmpAddr, X); read(TmpAddr); State = CPUState.STA_INX_Cycle3; break;
+    case STA_INX_Cycle3:
+      CalcAddr = DataIn; TmpAddr = zeroPage(TmpAddr, 1); read(TmpAddr); State = CPUState.STA_INX_Cycle4; break;
+    case STA_INX_Cycle4:
+      CalcAddr = (DataIn << 8) | (CalcAddr & 0xFF); write(CalcAddr, A); State = CPUState.STA_INX_Cycle5; break;
+
+    // (indirect),y
+    case LDA_INY_Cycle1: TmpAddr = DataIn; read(DataIn); State = CPUState.LDA_INY_Cycle2; break;
+    case LDA_INY_Cycle2: CalcAddr = DataIn; read(zeroPage(TmpAddr, 1)); State = CPUState.LDA_INY_Cycle3; break;
+    case LDA_INY_Cycle3: indexedRead(Y, CPUState.LDA_INY_Cycle3x, CPUState.LDA_INY_Cycle4); break;
+    case LDA_INY_Cycle3x: read(CalcAddr); State = CPUState.LDA_INY_Cycle4; break;
+    case STA_INY_Cycle1: TmpAddr = DataIn; read(DataIn); State = CPUState.STA_INY_Cycle2; break;
+    case STA_INY_Cycle2: CalcAddr = DataIn; read(zeroPage(TmpAddr, 1)); State = CPUState.STA_INY_Cycle3; break;
+    case STA_INY_Cycle3: indexedWriteSetup(Y, CPUState.STA_INY_Cycle4); break;
+    case STA_INY_Cycle4: write(CalcAddr, A); State = CPUState.STA_INY_Cycle5; break;
+
+    // the cycle after a write
+    case STA_ZPG_Cycle2:
+    case STA_ZPX_Cycle3:
+    case STA_ABS_Cycle3:
+    case STA_ABX_Cycle4:
+    case STA_ABY_Cycle4:
+    case STA_INX_Cycle5:
+    case STA_INY_Cycle5:
+    case STX_ZPG_Cycle2:
+    case STX_ZPY_Cycle3:
+    case STX_ABS_Cycle3:
+    case STY_ZPG_Cycle2:
+    case STY_ZPX_Cycle3:
+    case STY_ABS_Cycle3:
+      nextInstruction(); break;
+    }
+  }
+
+}
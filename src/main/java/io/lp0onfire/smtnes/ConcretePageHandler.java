@@ -0,0 +1,25 @@
+package io.lp0onfire.smtnes;
+
+// The concrete counterpart of a PageHandler, for ConcreteCPU.
+// Called once per cycle for the page the CPU's address bus selects (chip select = 1),
+// with the CPU's AddressBus, WriteEnable and DataOut; returns the handler's DataOut,
+// which the memory controller forwards to the CPU's DataIn.
+public interface ConcretePageHandler {
+
+  int access(int address, boolean writeEnable, int data);
+
+  // Like NullPageHandler: nothing is attached, and reads see $00.
+  public static final ConcretePageHandler NULL = new ConcretePageHandler() {
+    @Override
+    public int access(int address, boolean writeEnable, int data) {
+      return 0;
+    }
+  };
+
+  // Read-only memory decoded from the low address bits, as Mapper000 does for PRG ROM;
+  // data.length must be a power of two. Writes are ignored.
+  public static ConcretePageHandler rom(final byte[] data) {
+    return new ROMPageHandler(data);
+  }
+
+}
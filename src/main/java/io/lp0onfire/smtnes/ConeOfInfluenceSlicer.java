@@ -0,0 +1,288 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.AndExpression;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.Implication;
+import io.lp0onfire.smtnes.smt2.IndexedIdentifier;
+import io.lp0onfire.smtnes.smt2.ReservedSymbols;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Removes the parts of a script that cannot influence the property being checked.
+//
+// The registry reports every generator application to the slicer (see
+// StateVariableRegistry.setSlicer), so the slicer knows which state variable
+// versions each command writes. A conjunct of an assertion that mentions outputs
+// of its own application is only kept if one of those outputs is needed. One
+// that mentions none of them (a property, or a check like VerifyCPUState) is
+// always kept, and so is anything the registry didn't produce. Every symbol that
+// a kept command mentions is needed, so the cone is followed back through
+// earlier versions.
+//
+// This relies on each generator being able to produce some value for its outputs
+// whatever its inputs are. That holds for all of ours, and it means that
+// dropping the code for outputs nobody reads can't change satisfiability.
+public class ConeOfInfluenceSlicer {
+
+  // state variable versions written by the application that produced each command
+  private final Map<SExpression, Set<Symbol>> writtenBy = new IdentityHashMap<>();
+
+  private long commandsBefore = 0;
+  public long getCommandsBefore() {
+    return this.commandsBefore;
+  }
+
+  private long commandsAfter = 0;
+  public long getCommandsAfter() {
+    return this.commandsAfter;
+  }
+
+  private long declarationsRemoved = 0;
+  public long getDeclarationsRemoved() {
+    return this.declarationsRemoved;
+  }
+
+  private long assertionsRemoved = 0;
+  public long getAssertionsRemoved() {
+    return this.assertionsRemoved;
+  }
+
+  // conjuncts dropped from assertions that were otherwise kept
+  private long conjunctsRemoved = 0;
+  public long getConjunctsRemoved() {
+    return this.conjunctsRemoved;
+  }
+
+  public String getReport() {
+    return commandsBefore + " -> " + commandsAfter + " commands (" + declarationsRemoved
+        + " declarations and " + assertionsRemoved + " assertions removed, "
+        + conjunctsRemoved + " conjuncts removed from the rest)";
+  }
+
+  // Remember that code was produced by a generator application writing outputs.
+  public void record(Collection<Symbol> outputs, List<SExpression> code) {
+    Set<Symbol> written = Collections.unmodifiableSet(new HashSet<>(outputs));
+    for (SExpression expr : code) {
+      if (writtenBy.containsKey(expr)) {
+        // the same object came out of two applications; we can't tell which one it belongs to
+        writtenBy.put(expr, Collections.<Symbol>emptySet());
+      } else {
+        writtenBy.put(expr, written);
+      }
+    }
+  }
+
+  // One separately removable piece of a command. Assertions of the form
+  // (=> p (and c1 c2 ...)) and (and c1 c2 ...) are split into one piece per
+  // conjunct, since CPUCycle puts the updates of all registers for a state
+  // into a single assertion.
+  private static class Piece {
+    final SExpression premise;
+    final SExpression conjunct;
+    Set<Symbol> mentions;
+    boolean kept = false;
+
+    Piece(SExpression premise, SExpression conjunct) {
+      this.premise = premise;
+      this.conjunct = conjunct;
+    }
+  }
+
+  public List<SExpression> slice(List<SExpression> script) {
+    return slice(script, Collections.<Symbol>emptySet());
+  }
+
+  // Keep only the commands in the cone of influence of roots and of
+  // the assertions that constrain existing state.
+  public List<SExpression> slice(List<SExpression> script, Collection<Symbol> roots) {
+    // for each symbol, the pieces that must be kept if it is needed
+    Map<Symbol, List<Piece>> definitions = new HashMap<>();
+    Map<SExpression, List<Piece>> pieces = new IdentityHashMap<>();
+    Deque<Symbol> worklist = new ArrayDeque<>(roots);
+
+    for (SExpression expr : script) {
+      ExpressionList command = (expr instanceof ExpressionList) ? (ExpressionList)expr : null;
+      if (isDeclaration(command, ReservedSymbols.DECLARE_FUN)) {
+        Piece piece = new Piece(null, null);
+        piece.mentions = Collections.emptySet();
+        pieces.put(expr, Collections.singletonList(piece));
+        addDefinition(definitions, (Symbol)command.get(1), piece);
+      } else if (isDeclaration(command, ReservedSymbols.DEFINE_FUN)
+          && ((ExpressionList)command.get(2)).size() == 0) {
+        // a nullary define-fun is only needed where it's used
+        Piece piece = new Piece(null, null);
+        piece.mentions = symbolsIn(command.get(4));
+        pieces.put(expr, Collections.singletonList(piece));
+        addDefinition(definitions, (Symbol)command.get(1), piece);
+      } else if (command != null && command.size() == 2 && command.get(0).equals(ReservedSymbols.ASSERT)) {
+        List<Piece> split = split(command.get(1));
+        pieces.put(expr, split);
+        Set<Symbol> written = writtenBy.get(expr);
+        for (Piece piece : split) {
+          boolean constrainsOutput = false;
+          if (written != null) {
+            for (Symbol symbol : piece.mentions) {
+              if (written.contains(symbol)) {
+                addDefinition(definitions, symbol, piece);
+                constrainsOutput = true;
+              }
+            }
+          }
+          if (!constrainsOutput) {
+            keep(piece, worklist);
+          }
+        }
+      } else {
+        // function definitions, options, and anything else we don't understand
+        Piece piece = new Piece(null, null);
+        piece.kept = true;
+        pieces.put(expr, Collections.singletonList(piece));
+      }
+    }
+
+    Set<Symbol> needed = new HashSet<>();
+    while (!worklist.isEmpty()) {
+      Symbol symbol = worklist.pop();
+      if (!needed.add(symbol)) {
+        continue;
+      }
+      List<Piece> defs = definitions.get(symbol);
+      if (defs != null) {
+        for (Piece def : defs) {
+          keep(def, worklist);
+        }
+      }
+    }
+
+    List<SExpression> result = new ArrayList<>(script.size());
+    for (SExpression expr : script) {
+      List<Piece> split = pieces.get(expr);
+      List<Piece> keptPieces = new ArrayList<>(split.size());
+      for (Piece piece : split) {
+        if (piece.kept) {
+          keptPieces.add(piece);
+        }
+      }
+      if (keptPieces.size() == split.size()) {
+        result.add(expr);
+      } else if (!((ExpressionList)expr).get(0).equals(ReservedSymbols.ASSERT)) {
+        declarationsRemoved += 1;
+      } else if (keptPieces.isEmpty()) {
+        assertionsRemoved += 1;
+      } else {
+        conjunctsRemoved += split.size() - keptPieces.size();
+        result.add(rebuild(keptPieces));
+      }
+    }
+    commandsBefore += script.size();
+    commandsAfter += result.size();
+    return result;
+  }
+
+  private static boolean isDeclaration(ExpressionList command, Symbol keyword) {
+    return command != null && command.size() >= 4 && command.get(0).equals(keyword)
+        && command.get(1) instanceof Symbol && command.get(2) instanceof ExpressionList;
+  }
+
+  private static boolean isApplication(SExpression term, Symbol op) {
+    return term instanceof ExpressionList && !(term instanceof IndexedIdentifier)
+        && ((ExpressionList)term).size() > 1 && ((ExpressionList)term).get(0).equals(op);
+  }
+
+  private static List<Piece> split(SExpression body) {
+    SExpression premise = null;
+    Set<Symbol> premiseSymbols = Collections.emptySet();
+    if (isApplication(body, ReservedSymbols.IMPLIES) && ((ExpressionList)body).size() == 3) {
+      premise = ((ExpressionList)body).get(1);
+      premiseSymbols = symbolsIn(premise);
+      body = ((ExpressionList)body).get(2);
+    }
+    List<SExpression> conjuncts = new ArrayList<>();
+    flatten(body, conjuncts);
+    List<Piece> split = new ArrayList<>(conjuncts.size());
+    for (SExpression conjunct : conjuncts) {
+      Piece piece = new Piece(premise, conjunct);
+      piece.mentions = symbolsIn(conjunct);
+      piece.mentions.addAll(premiseSymbols);
+      split.add(piece);
+    }
+    return split;
+  }
+
+  private static void flatten(SExpression term, List<SExpression> conjuncts) {
+    if (isApplication(term, ReservedSymbols.AND)) {
+      ExpressionList list = (ExpressionList)term;
+      for (int i = 1; i < list.size(); ++i) {
+        flatten(list.get(i), conjuncts);
+      }
+    } else {
+      conjuncts.add(term);
+    }
+  }
+
+  // An assertion of just the given pieces, which all come from the same command.
+  private static SExpression rebuild(List<Piece> kept) {
+    SExpression body;
+    if (kept.size() == 1) {
+      body = kept.get(0).conjunct;
+    } else {
+      SExpression[] conjuncts = new SExpression[kept.size()];
+      for (int i = 0; i < conjuncts.length; ++i) {
+        conjuncts[i] = kept.get(i).conjunct;
+      }
+      body = new AndExpression(conjuncts);
+    }
+    SExpression premise = kept.get(0).premise;
+    return new Assertion((premise == null) ? body : new Implication(premise, body));
+  }
+
+  private static void addDefinition(Map<Symbol, List<Piece>> definitions, Symbol symbol, Piece piece) {
+    List<Piece> defs = definitions.get(symbol);
+    if (defs == null) {
+      defs = new LinkedList<>();
+      definitions.put(symbol, defs);
+    }
+    defs.add(piece);
+  }
+
+  private static void keep(Piece piece, Deque<Symbol> worklist) {
+    if (!piece.kept) {
+      piece.kept = true;
+      worklist.addAll(piece.mentions);
+    }
+  }
+
+  // Every symbol occurring in term outside of operator position.
+  private static Set<Symbol> symbolsIn(SExpression term) {
+    Set<Symbol> symbols = new HashSet<>();
+    Set<SExpression> visited = Collections.newSetFromMap(new IdentityHashMap<SExpression, Boolean>());
+    collectSymbols(term, symbols, visited);
+    return symbols;
+  }
+
+  private static void collectSymbols(SExpression term, Set<Symbol> symbols, Set<SExpression> visited) {
+    if (term instanceof Symbol) {
+      symbols.add((Symbol)term);
+    } else if (term instanceof ExpressionList && !(term instanceof IndexedIdentifier) && visited.add(term)) {
+      ExpressionList list = (ExpressionList)term;
+      for (int i = 1; i < list.size(); ++i) {
+        collectSymbols(list.get(i), symbols, visited);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.ArrayValue;
+import io.lp0onfire.smtnes.solver.Model;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Turns a satisfying model back into a cycle-by-cycle account of what the
+// machine did. While the script is being generated, markCycle() is called
+// at the end of every cycle to note which version of each state variable
+// (CPU_PC_12, CPU_A_7, ...) holds its value at that point; after a sat
+// check-sat, load() asks the solver for the values of all of those
+// in one go.
+public class ExecutionTrace {
+
+  // A write seen on the bus: in this cycle, data was written to address.
+  public static class Write {
+    private final int cycle;
+    public int getCycle() {
+      return this.cycle;
+    }
+
+    private final long address;
+    public long getAddress() {
+      return this.address;
+    }
+
+    private final long data;
+    public long getData() {
+      return this.data;
+    }
+
+    public Write(int cycle, long address, long data) {
+      this.cycle = cycle;
+      this.address = address;
+      this.data = data;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("cycle %d: [%04x] <- %02x", cycle, address, data);
+    }
+  }
+
+  private final StateVariableRegistry registry;
+  private final List<Map<String, Symbol>> cycles = new ArrayList<>();
+
+  private Model model = null;
+  public Model getModel() {
+    return this.model;
+  }
+  public void setModel(Model model) {
+    this.model = model;
+  }
+
+  public ExecutionTrace(StateVariableRegistry registry) {
+    this.registry = registry;
+  }
+
+  // Record the current version of every state variable as the state at the end of a cycle.
+  public void markCycle() {
+    cycles.add(Collections.unmodifiableMap(registry.getCurrentVersions()));
+  }
+
+  public int getCycleCount() {
+    return cycles.size();
+  }
+
+  // The symbol holding var at the end of cycle (counting from 0, in the order markCycle() was called).
+  public Symbol getSymbol(int cycle, String var) {
+    if (cycle < 0 || cycle >= cycles.size()) {
+      throw new IndexOutOfBoundsException("cycle " + cycle + " has not been recorded");
+    }
+    Symbol symbol = cycles.get(cycle).get(var);
+    if (symbol == null) {
+      throw new IllegalArgumentException("state variable '" + var + "' was not defined by cycle " + cycle);
+    }
+    return symbol;
+  }
+
+  // Every symbol needed to trace vars, once each; a variable that didn't
+  // change between two cycles is only asked for once.
+  public List<SExpression> getTerms(Collection<String> vars) {
+    Set<SExpression> terms = new LinkedHashSet<>();
+    for (Map<String, Symbol> cycle : cycles) {
+      for (String var : vars) {
+        Symbol symbol = cycle.get(var);
+        if (symbol != null) {
+          terms.add(symbol);
+        }
+      }
+    }
+    return new ArrayList<>(terms);
+  }
+
+  // Fetch the values of vars in every recorded cycle from session,
+  // which must have just answered sat.
+  public void load(SolverSession session, Collection<String> vars) throws IOException {
+    List<SExpression> terms = getTerms(vars);
+    model = session.getValues(terms.toArray(new SExpression[terms.size()]));
+  }
+
+  private Model checkModel() {
+    if (model == null) {
+      throw new IllegalStateException("execution trace has not been loaded");
+    }
+    return model;
+  }
+
+  public BitVectorConstant getValue(int cycle, String var) {
+    return checkModel().getBitVector(getSymbol(cycle, var));
+  }
+
+  public ArrayValue getArray(int cycle, String var) {
+    return checkModel().getArray(getSymbol(cycle, var));
+  }
+
+  // Every cycle in which the write-enable signal was 1, with the address
+  // and data signals at the time.
+  public List<Write> getWrites(String writeEnable, String address, String data) {
+    List<Write> writes = new ArrayList<>();
+    for (int cycle = 0; cycle < cycles.size(); ++cycle) {
+      if (getValue(cycle, writeEnable).getValue() == 1) {
+        writes.add(new Write(cycle, getValue(cycle, address).getValue(), getValue(cycle, data).getValue()));
+      }
+    }
+    return writes;
+  }
+
+  // One line per cycle, "cycle: VAR=value ...", for vars that the model has values for.
+  public String format(Collection<String> vars) {
+    Model m = checkModel();
+    StringBuilder sb = new StringBuilder();
+    for (int cycle = 0; cycle < cycles.size(); ++cycle) {
+      sb.append(cycle).append(':');
+      for (String var : vars) {
+        Symbol symbol = cycles.get(cycle).get(var);
+        if (symbol != null && m.contains(symbol)) {
+          sb.append(' ').append(var).append('=').append(m.get(symbol));
+        }
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+}
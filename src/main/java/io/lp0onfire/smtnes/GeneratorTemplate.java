@@ -0,0 +1,135 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.AndExpression;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BooleanLiteral;
+import io.lp0onfire.smtnes.smt2.DefineFunction;
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.ReservedSymbols;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Simplifier;
+import io.lp0onfire.smtnes.smt2.SortChecker;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Emits a generator's code once, as a Boolean define-fun over its current
+// (input) and next (output) state variables. Each application after that
+// only declares the new outputs and asserts the predicate on them.
+// This works for any generator whose code consists only of declarations
+// of its outputs followed by assertions, which is true of all of ours.
+class GeneratorTemplate {
+
+  private final CodeGenerator generator;
+  private final Symbol name;
+
+  // parameter order: inputs, then outputs, each sorted by variable name
+  private List<String> inputVariables = null;
+  private List<String> outputVariables = null;
+  private Map<String, SExpression> outputSorts = null;
+
+  public GeneratorTemplate(CodeGenerator generator, Symbol name) {
+    this.generator = generator;
+    this.name = name;
+  }
+
+  public List<SExpression> instantiate(Map<String, Symbol> inputs, Map<String, Symbol> outputs,
+      Map<String, SExpression> variableSorts, Simplifier simplifier) {
+    List<SExpression> exprs = new LinkedList<>();
+    if (inputVariables == null) {
+      exprs.add(define(new ArrayList<>(new TreeSet<>(inputs.keySet())),
+          new ArrayList<>(new TreeSet<>(outputs.keySet())), variableSorts, simplifier));
+    } else if (!inputs.keySet().equals(new TreeSet<>(inputVariables))
+        || !outputs.keySet().equals(new TreeSet<>(outputVariables))) {
+      throw new IllegalStateException("state variables of templated generator '" + name + "' changed between applications");
+    }
+
+    SExpression[] application = new SExpression[1 + inputVariables.size() + outputVariables.size()];
+    int i = 0;
+    application[i++] = name;
+    for (String var : inputVariables) {
+      application[i++] = inputs.get(var);
+    }
+    for (String var : outputVariables) {
+      Symbol output = outputs.get(var);
+      exprs.add(new ExpressionList(ReservedSymbols.DECLARE_FUN, output, new ExpressionList(), outputSorts.get(var)));
+      application[i++] = output;
+    }
+    exprs.add(new Assertion(new ExpressionList(application)));
+    return exprs;
+  }
+
+  private DefineFunction define(List<String> inputVariables, List<String> outputVariables,
+      Map<String, SExpression> variableSorts, Simplifier simplifier) {
+    Map<String, SExpression> outputSorts = new HashMap<>();
+
+    // run the generator once over placeholder symbols, which become the parameters;
+    // the variable names were validated when the registry first saw them
+    List<Symbol> parameters = new ArrayList<>();
+    List<SExpression> parameterSorts = new ArrayList<>();
+    Map<String, Symbol> inputParameters = new HashMap<>();
+    for (String var : inputVariables) {
+      SExpression sort = variableSorts.get(var);
+      if (sort == null) {
+        throw new IllegalStateException("sort of state variable '" + var + "' is unknown");
+      }
+      Symbol param = Symbol.trusted("in!" + var);
+      inputParameters.put(var, param);
+      parameters.add(param);
+      parameterSorts.add(sort);
+    }
+    Map<String, Symbol> outputParameters = new HashMap<>();
+    Map<Symbol, String> outputsByParameter = new HashMap<>();
+    for (String var : outputVariables) {
+      Symbol param = Symbol.trusted("out!" + var);
+      outputParameters.put(var, param);
+      outputsByParameter.put(param, var);
+    }
+
+    List<SExpression> code = generator.generateCode(inputParameters, outputParameters);
+    if (simplifier != null) {
+      code = simplifier.simplifyAll(generator.getClass().getName(), code);
+    }
+
+    List<SExpression> assertions = new ArrayList<>();
+    for (SExpression expr : code) {
+      ExpressionList command = (expr instanceof ExpressionList) ? (ExpressionList)expr : null;
+      if (command != null && command.size() == 4 && command.get(0).equals(ReservedSymbols.DECLARE_FUN)
+          && outputsByParameter.containsKey(command.get(1))) {
+        outputSorts.put(outputsByParameter.get(command.get(1)), command.get(3));
+      } else if (command != null && command.size() == 2 && command.get(0).equals(ReservedSymbols.ASSERT)) {
+        assertions.add(command.get(1));
+      } else {
+        throw new IllegalStateException("cannot make a template for '" + name + "': unexpected command " + expr);
+      }
+    }
+    for (String var : outputVariables) {
+      if (!outputSorts.containsKey(var)) {
+        throw new IllegalStateException("cannot make a template for '" + name + "': output '" + var + "' is never declared");
+      }
+      parameters.add(outputParameters.get(var));
+      parameterSorts.add(outputSorts.get(var));
+    }
+
+    SExpression body;
+    if (assertions.isEmpty()) {
+      body = BooleanLiteral.TRUE;
+    } else if (assertions.size() == 1) {
+      body = assertions.get(0);
+    } else {
+      body = new AndExpression(assertions.toArray(new SExpression[assertions.size()]));
+    }
+    DefineFunction definition = new DefineFunction(name, parameters, parameterSorts, SortChecker.BOOL, body);
+    // only remember the shape once the definition has been built successfully
+    this.inputVariables = inputVariables;
+    this.outputVariables = outputVariables;
+    this.outputSorts = outputSorts;
+    return definition;
+  }
+
+}
@@ -0,0 +1,48 @@
+package io.lp0onfire.smtnes;
+
+// Outcome of a KInductionProver run.
+public class InductionResult {
+
+  public enum Outcome {
+    // holds in every reachable state
+    PROVED,
+    // violated after getDepth() cycles from the initial state
+    FALSIFIED,
+    // neither, within the number of cycles allowed
+    INCONCLUSIVE,
+  }
+
+  private final Outcome outcome;
+  public Outcome getOutcome() {
+    return this.outcome;
+  }
+
+  // k for PROVED, the length of the counterexample for FALSIFIED,
+  // and the largest k tried for INCONCLUSIVE
+  private final int depth;
+  public int getDepth() {
+    return this.depth;
+  }
+
+  public InductionResult(Outcome outcome, int depth) {
+    this.outcome = outcome;
+    this.depth = depth;
+  }
+
+  public boolean isProved() {
+    return outcome == Outcome.PROVED;
+  }
+
+  @Override
+  public String toString() {
+    switch (outcome) {
+    case PROVED:
+      return "proved by " + depth + "-induction";
+    case FALSIFIED:
+      return "falsified after " + depth + " cycles";
+    default:
+      return "inconclusive up to k = " + depth;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.AndExpression;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.NotExpression;
+import io.lp0onfire.smtnes.smt2.ReservedSymbols;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.SolverResult;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Proves that a property holds in every reachable state, not just for the
+// first n cycles, by k-induction over the transition relation.
+//
+// For k = 1, 2, ...:
+// - base case: no state within k-1 cycles of the initial state violates the
+//   property. This is a BoundedModelChecker in one session.
+// - inductive step: starting from any state at all (see SymbolicState), k
+//   consecutive states that satisfy the property can't be followed by one that
+//   doesn't. This is a second session that unrolls the same transition relation
+//   from the symbolic state, assuming the property in each state as it goes.
+//
+// The step case is strengthened automatically in two ways. The property and
+// invariants are assumed in all k states leading up to the one checked, not just
+// the last. And "any state" only frees the variables the transition relation
+// writes: the rest, such as the contents of ROM, never change, so the step session
+// applies init as well and they keep their initial values. Without that nothing
+// that depends on what the program is could ever be proved.
+// If the step case is unsatisfiable the property is proved; if the base case is
+// satisfiable, there's a counterexample of that length.
+//
+// Properties are rarely inductive on their own, since an unconstrained state
+// can be one the machine could never actually get into. Invariants added with
+// addInvariant() rule such states out; they are proved along with the property
+// (so they must hold too) and assumed in every state of the step case.
+// Properties and invariants are generators that only read state and assert
+// something about it.
+public class KInductionProver {
+
+  private final BoundedModelChecker base;
+  private final SolverSession stepSession;
+  private final StateVariableRegistry stepRegistry = new StateVariableRegistry();
+  private final List<CodeGenerator> transition;
+  private final List<CodeGenerator> invariants = new ArrayList<>();
+
+  // init sets up the initial state, from nothing; transition is applied once per cycle.
+  // The two sessions must be distinct.
+  public KInductionProver(SolverSession baseSession, SolverSession stepSession,
+      List<CodeGenerator> init, List<CodeGenerator> transition) throws IOException {
+    if (baseSession == stepSession) {
+      throw new IllegalArgumentException("base case and inductive step need separate sessions");
+    }
+    this.transition = Collections.unmodifiableList(new ArrayList<>(transition));
+    this.base = new BoundedModelChecker(baseSession, new StateVariableRegistry(), transition);
+    for (CodeGenerator gen : init) {
+      base.apply(gen);
+    }
+    this.stepSession = stepSession;
+    Set<String> changing = new HashSet<>();
+    for (CodeGenerator gen : transition) {
+      changing.addAll(gen.getStateVariablesWritten());
+    }
+    for (CodeGenerator gen : init) {
+      stepSession.writeAll(stepRegistry.apply(gen));
+    }
+    stepSession.writeAll(stepRegistry.apply(SymbolicState.of(base.getRegistry(), changing)));
+  }
+
+  // The base case; once a property has been falsified, its trace shows how.
+  public BoundedModelChecker getBaseCase() {
+    return this.base;
+  }
+
+  public void addInvariant(CodeGenerator invariant) {
+    checkPredicate(invariant);
+    invariants.add(invariant);
+  }
+
+  private static void checkPredicate(CodeGenerator gen) {
+    if (!gen.getStateVariablesWritten().isEmpty()) {
+      throw new IllegalArgumentException("properties and invariants can't write state variables");
+    }
+  }
+
+  public InductionResult prove(CodeGenerator property, int maxK) throws IOException {
+    checkPredicate(property);
+    if (maxK < 1) {
+      throw new IllegalArgumentException("k must be at least 1");
+    }
+    if (base.getDepth() != 0) {
+      throw new IllegalStateException("this prover has already been used");
+    }
+    List<CodeGenerator> predicates = new ArrayList<>(invariants);
+    predicates.add(property);
+    CodeGenerator violation = new Violation(predicates);
+
+    for (int k = 1; k <= maxK; ++k) {
+      // base case: the state after k-1 cycles is fine
+      if (k > 1) {
+        base.step();
+      }
+      if (base.check(violation)) {
+        return new InductionResult(InductionResult.Outcome.FALSIFIED, k - 1);
+      }
+
+      // step case: assume the latest state is fine, take one more step, and look for one that isn't
+      for (CodeGenerator predicate : predicates) {
+        stepSession.writeAll(stepRegistry.apply(predicate));
+      }
+      for (CodeGenerator gen : transition) {
+        stepSession.writeAll(stepRegistry.apply(gen));
+      }
+      stepSession.push();
+      stepSession.writeAll(stepRegistry.apply(violation));
+      SolverResult result = stepSession.checkSat();
+      stepSession.pop();
+      if (result == SolverResult.UNKNOWN) {
+        throw new IOException("solver could not decide the inductive step for k = " + k);
+      }
+      if (result == SolverResult.UNSAT) {
+        return new InductionResult(InductionResult.Outcome.PROVED, k);
+      }
+    }
+    return new InductionResult(InductionResult.Outcome.INCONCLUSIVE, maxK);
+  }
+
+  // Asserts that at least one of the predicates is false.
+  private static class Violation implements CodeGenerator {
+    private final List<CodeGenerator> predicates;
+
+    public Violation(List<CodeGenerator> predicates) {
+      this.predicates = predicates;
+    }
+
+    @Override
+    public Set<String> getStateVariablesRead() {
+      Set<String> vars = new HashSet<>();
+      for (CodeGenerator predicate : predicates) {
+        vars.addAll(predicate.getStateVariablesRead());
+      }
+      return vars;
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      List<SExpression> asserted = new ArrayList<>();
+      for (CodeGenerator predicate : predicates) {
+        Map<String, Symbol> predicateInputs = new HashMap<>();
+        for (String var : predicate.getStateVariablesRead()) {
+          predicateInputs.put(var, inputs.get(var));
+        }
+        for (SExpression expr : predicate.generateCode(predicateInputs, new HashMap<String, Symbol>())) {
+          if (isAssertion(expr)) {
+            asserted.add(((ExpressionList)expr).get(1));
+          } else {
+            // declarations and definitions the assertions depend on
+            exprs.add(expr);
+          }
+        }
+      }
+      if (asserted.isEmpty()) {
+        throw new IllegalArgumentException("property asserts nothing");
+      }
+      SExpression all = (asserted.size() == 1) ? asserted.get(0)
+          : new AndExpression(asserted.toArray(new SExpression[asserted.size()]));
+      exprs.add(new Assertion(new NotExpression(all)));
+      return exprs;
+    }
+
+    private static boolean isAssertion(SExpression expr) {
+      return expr instanceof ExpressionList && ((ExpressionList)expr).size() == 2
+          && ((ExpressionList)expr).get(0).equals(ReservedSymbols.ASSERT);
+    }
+  }
+
+}
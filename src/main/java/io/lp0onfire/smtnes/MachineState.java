@@ -0,0 +1,279 @@
+package io.lp0onfire.smtnes;
+
+// A ConcreteCPU between instructions, as the code Recompiler generates runs on it.
+// Each instruction method does everything ConcreteCPU does from the InstructionFetch
+// cycle up to (but not including) the fetch of the next opcode, with the operand
+// bytes passed in, since they come from ROM. Nothing reads the bus or PC in between,
+// so they're left alone until the generated code stops, when next() or fetch() sets
+// them up as the last fetch would have. Reads of the instruction's own bytes aren't
+// repeated, as ROM reads have no effect, but every other access goes to the same page
+// handler in the same order as ConcreteCPU's. Public, fields included, because
+// generated classes are defined by a class loader of their own and can't see
+// anything package-private.
+public final class MachineState {
+
+  public int A;
+  public int X;
+  public int Y;
+  public int SP;
+  public int P;
+  public int PC;
+  public int CalcAddr;
+  public int TmpAddr;
+  public int AddressBus;
+  public int WriteEnable;
+  public int DataOut;
+  public int DataIn;
+
+  // cycles run since this state was loaded
+  public long cycles = 0;
+
+  private final byte[] RAM;
+
+  // null for pages with the CPU's own RAM attached
+  private final ConcretePageHandler[] pageHandlers = new ConcretePageHandler[16];
+
+  // cpu must be at an instruction fetch
+  MachineState(ConcreteCPU cpu) {
+    this.RAM = cpu.getRAMArray();
+    for (int i = 0; i < 16; ++i) {
+      ConcretePageHandler handler = cpu.getPageHandler(i);
+      pageHandlers[i] = (handler == cpu.getRAMHandler()) ? null : handler;
+    }
+    A = cpu.getA();
+    X = cpu.getX();
+    Y = cpu.getY();
+    SP = cpu.getSP();
+    P = cpu.getP();
+    PC = cpu.getPC();
+    CalcAddr = (int)cpu.getStateVariable("CPU_CalcAddr");
+    TmpAddr = (int)cpu.getStateVariable("CPU_TmpAddr");
+    AddressBus = cpu.getAddressBus();
+    WriteEnable = cpu.getWriteEnable();
+    DataOut = cpu.getDataOut();
+    DataIn = cpu.getDataIn();
+  }
+
+  // Write the registers back and count the cycles run; RAM is shared already.
+  void store(ConcreteCPU cpu) {
+    cpu.setStateVariable("CPU_A", A);
+    cpu.setStateVariable("CPU_X", X);
+    cpu.setStateVariable("CPU_Y", Y);
+    cpu.setStateVariable("CPU_SP", SP);
+    cpu.setStateVariable("CPU_P", P);
+    cpu.setStateVariable("CPU_PC", PC);
+    cpu.setStateVariable("CPU_CalcAddr", CalcAddr);
+    cpu.setStateVariable("CPU_TmpAddr", TmpAddr);
+    cpu.setStateVariable("CPU_AddressBus", AddressBus);
+    cpu.setStateVariable("CPU_WriteEnable", WriteEnable);
+    cpu.setStateVariable("CPU_DataOut", DataOut);
+    cpu.setStateVariable("CPU_DataIn", DataIn);
+    cpu.addCycles(cycles);
+    cycles = 0;
+  }
+
+  ConcretePageHandler getPageHandler(int pageNumber) {
+    return pageHandlers[pageNumber];
+  }
+
+  private int read(int address) {
+    ConcretePageHandler handler = pageHandlers[address >>> 12];
+    if (handler == null) {
+      return RAM[address & 0x7FF] & 0xFF;
+    }
+    return handler.access(address, false, 0) & 0xFF;
+  }
+
+  private void write(int address, int data) {
+    ConcretePageHandler handler = pageHandlers[address >>> 12];
+    if (handler == null) {
+      RAM[address & 0x7FF] = (byte)data;
+    } else {
+      handler.access(address, true, data);
+    }
+  }
+
+  // the fetch in the last cycle of an instruction, when the next opcode is known to be opcode
+  public void next(int address, int opcode) {
+    AddressBus = address;
+    WriteEnable = 0;
+    DataOut = 0;
+    DataIn = opcode;
+    PC = (address + 1) & 0xFFFF;
+  }
+
+  // the same, reading the next opcode
+  public void fetch(int address) {
+    next(address, read(address));
+  }
+
+  // CPUCycle keeps P[Z] in bit 7 and P[N] in bit 1
+  private void setZN(int value) {
+    P = (P & 0x7D) | (value == 0 ? 0x80 : 0) | ((value & 0x80) != 0 ? 0x02 : 0);
+  }
+
+  private void setFlag(int bitPosition, boolean value) {
+    if (value) {
+      P |= (1 << bitPosition);
+    } else {
+      P &= ~(1 << bitPosition);
+    }
+    cycles += 2;
+  }
+
+  // implied
+
+  public void CLC_IMP() { setFlag(0, false); }
+  public void CLD_IMP() { setFlag(3, false); }
+  public void CLI_IMP() { setFlag(2, false); }
+  public void CLV_IMP() { setFlag(6, false); }
+  public void SEC_IMP() { setFlag(0, true); }
+  public void SED_IMP() { setFlag(3, true); }
+  public void SEI_IMP() { setFlag(2, true); }
+
+  public void DEX_IMP() { X = (X - 1) & 0xFF; setZN(X); cycles += 2; }
+  public void DEY_IMP() { Y = (Y - 1) & 0xFF; setZN(Y); cycles += 2; }
+  public void INX_IMP() { X = (X + 1) & 0xFF; setZN(X); cycles += 2; }
+  public void INY_IMP() { Y = (Y + 1) & 0xFF; setZN(Y); cycles += 2; }
+
+  public void TAX_IMP() { X = A; setZN(A); cycles += 2; }
+  public void TAY_IMP() { Y = A; setZN(A); cycles += 2; }
+  public void TSX_IMP() { X = SP; setZN(SP); cycles += 2; }
+  public void TXA_IMP() { A = X; setZN(X); cycles += 2; }
+  public void TXS_IMP() { SP = X; setZN(X); cycles += 2; }
+  public void TYA_IMP() { A = Y; setZN(Y); cycles += 2; }
+
+  // addressing modes of loads; each returns the byte loaded
+
+  private int zeroPageLoad(int zeroPage) {
+    cycles += 3;
+    return read(zeroPage);
+  }
+
+  private int zeroPageIndexedLoad(int zeroPage, int index) {
+    CalcAddr = zeroPage;
+    read(zeroPage);
+    cycles += 4;
+    return read((zeroPage + index) & 0xFF);
+  }
+
+  private int absoluteLoad(int address) {
+    CalcAddr = address & 0xFF;
+    cycles += 4;
+    return read(address);
+  }
+
+  // the high byte comes from high, and the index is added to low, reading the address
+  // without the carry first if that overflows (ConcreteCPU.indexedRead)
+  private int indexedLoad(int high, int low, int index) {
+    int sum = low + index;
+    CalcAddr = (((high << 8) | low) + index) & 0xFFFF;
+    if (sum >= 0x100) {
+      read((high << 8) | (sum & 0xFF));
+      cycles += 1;
+    }
+    return read(CalcAddr);
+  }
+
+  private int absoluteIndexedLoad(int address, int index) {
+    cycles += 4;
+    return indexedLoad(address >>> 8, address & 0xFF, index);
+  }
+
+  // (zeroPage,x): leaves the pointer in CalcAddr
+  private void indirectX(int zeroPage) {
+    TmpAddr = zeroPage;
+    read(zeroPage);
+    TmpAddr = (TmpAddr + X) & 0xFF;
+    CalcAddr = read(TmpAddr);
+    TmpAddr = (TmpAddr + 1) & 0xFF;
+    CalcAddr = (read(TmpAddr) << 8) | CalcAddr;
+    cycles += 6;
+  }
+
+  private int indirectYLoad(int zeroPage) {
+    TmpAddr = zeroPage;
+    int low = read(zeroPage);
+    CalcAddr = low;
+    int high = read((TmpAddr + 1) & 0xFF);
+    cycles += 5;
+    return indexedLoad(high, low, Y);
+  }
+
+  private void loadA(int value) {
+    A = value;
+    setZN(value);
+  }
+
+  private void loadX(int value) {
+    X = value;
+    setZN(value);
+  }
+
+  public void LDA_IMM(int value) { loadA(value); cycles += 2; }
+  public void LDA_ZPG(int zeroPage) { loadA(zeroPageLoad(zeroPage)); }
+  public void LDA_ZPX(int zeroPage) { loadA(zeroPageIndexedLoad(zeroPage, X)); }
+  public void LDA_ABS(int address) { loadA(absoluteLoad(address)); }
+  public void LDA_ABX(int address) { loadA(absoluteIndexedLoad(address, X)); }
+  public void LDA_ABY(int address) { loadA(absoluteIndexedLoad(address, Y)); }
+  public void LDA_INX(int zeroPage) { indirectX(zeroPage); loadA(read(CalcAddr)); }
+  public void LDA_INY(int zeroPage) { loadA(indirectYLoad(zeroPage)); }
+
+  public void LDX_IMM(int value) { loadX(value); cycles += 2; }
+  public void LDX_ZPG(int zeroPage) { loadX(zeroPageLoad(zeroPage)); }
+  public void LDX_ZPY(int zeroPage) { loadX(zeroPageIndexedLoad(zeroPage, Y)); }
+  public void LDX_ABS(int address) { loadX(absoluteLoad(address)); }
+  public void LDX_ABY(int address) { loadX(absoluteIndexedLoad(address, Y)); }
+
+  // addressing modes of stores
+
+  private void zeroPageStore(int zeroPage, int data) {
+    write(zeroPage, data);
+    cycles += 3;
+  }
+
+  private void zeroPageIndexedStore(int zeroPage, int index, int data) {
+    CalcAddr = zeroPage;
+    read(zeroPage);
+    write((zeroPage + index) & 0xFF, data);
+    cycles += 4;
+  }
+
+  private void absoluteStore(int address, int data) {
+    CalcAddr = address & 0xFF;
+    write(address, data);
+    cycles += 4;
+  }
+
+  // always reads the address without the carry first (ConcreteCPU.indexedWriteSetup)
+  private void indexedStore(int high, int low, int index, int data) {
+    read((high << 8) | ((low + index) & 0xFF));
+    CalcAddr = (((high << 8) | low) + index) & 0xFFFF;
+    write(CalcAddr, data);
+  }
+
+  public void STA_ZPG(int zeroPage) { zeroPageStore(zeroPage, A); }
+  public void STA_ZPX(int zeroPage) { zeroPageIndexedStore(zeroPage, X, A); }
+  public void STA_ABS(int address) { absoluteStore(address, A); }
+  public void STA_ABX(int address) { indexedStore(address >>> 8, address & 0xFF, X, A); cycles += 5; }
+  public void STA_ABY(int address) { indexedStore(address >>> 8, address & 0xFF, Y, A); cycles += 5; }
+  public void STA_INX(int zeroPage) { indirectX(zeroPage); write(CalcAddr, A); }
+
+  public void STA_INY(int zeroPage) {
+    TmpAddr = zeroPage;
+    int low = read(zeroPage);
+    CalcAddr = low;
+    int high = read((TmpAddr + 1) & 0xFF);
+    indexedStore(high, low, Y, A);
+    cycles += 6;
+  }
+
+  public void STX_ZPG(int zeroPage) { zeroPageStore(zeroPage, X); }
+  public void STX_ZPY(int zeroPage) { zeroPageIndexedStore(zeroPage, Y, X); }
+  public void STX_ABS(int address) { absoluteStore(address, X); }
+
+  public void STY_ZPG(int zeroPage) { zeroPageStore(zeroPage, Y); }
+  public void STY_ZPX(int zeroPage) { zeroPageIndexedStore(zeroPage, X, Y); }
+  public void STY_ABS(int address) { absoluteStore(address, Y); }
+
+}
@@ -35,5 +35,14 @@ public abstract class Mapper {
     }
   }
   protected abstract PageHandler _getCPUPageHandler(int pageNumber);
+  // the same, for running the ROM on a ConcreteCPU
+  public ConcretePageHandler getConcreteCPUPageHandler(int pageNumber) {
+    if (decodesCPUPage(pageNumber)) {
+      return _getConcreteCPUPageHandler(pageNumber);
+    } else {
+      throw new IllegalArgumentException("mapper has no handler at page " + pageNumber);
+    }
+  }
+  protected abstract ConcretePageHandler _getConcreteCPUPageHandler(int pageNumber);
   
 }
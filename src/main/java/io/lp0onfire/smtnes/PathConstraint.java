@@ -0,0 +1,38 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.SExpression;
+
+// One decision a ConcolicCPU run took on symbolic data: a Boolean formula over
+// the run's symbolic inputs that held in that run. Negating it (with the
+// constraints before it kept) asks for inputs that decide the other way.
+public class PathConstraint {
+
+  // the cycle during which the decision was made, counted from the start of the run
+  private final long cycle;
+  public long getCycle() {
+    return this.cycle;
+  }
+
+  // what was decided, e.g. "opcode A9" or "address $0123"
+  private final String decision;
+  public String getDecision() {
+    return this.decision;
+  }
+
+  private final SExpression condition;
+  public SExpression getCondition() {
+    return this.condition;
+  }
+
+  public PathConstraint(long cycle, String decision, SExpression condition) {
+    this.cycle = cycle;
+    this.decision = decision;
+    this.condition = condition;
+  }
+
+  @Override
+  public String toString() {
+    return "cycle " + cycle + ": " + decision + " " + condition;
+  }
+
+}
@@ -0,0 +1,32 @@
+package io.lp0onfire.smtnes;
+
+// ConcretePageHandler.rom(); a class of its own so Recompiler can tell ROM pages
+// apart and get at what they hold.
+final class ROMPageHandler implements ConcretePageHandler {
+
+  private final byte[] data;
+  byte[] getData() {
+    return this.data;
+  }
+
+  private final int mask;
+
+  ROMPageHandler(byte[] data) {
+    if (data.length == 0 || (data.length & (data.length - 1)) != 0) {
+      throw new IllegalArgumentException("ROM size " + data.length + " is not a power of two");
+    }
+    this.data = data;
+    this.mask = data.length - 1;
+  }
+
+  @Override
+  public int access(int address, boolean writeEnable, int value) {
+    return data[address & mask] & 0xFF;
+  }
+
+  // the byte at address, as a read would see it
+  int read(int address) {
+    return data[address & mask] & 0xFF;
+  }
+
+}
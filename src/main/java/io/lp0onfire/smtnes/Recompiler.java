@@ -0,0 +1,402 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+
+import java.lang.ref.SoftReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+// Fast-forward for ConcreteCPU: run(cpu, n) leaves cpu exactly as cpu.run(n) would,
+// but code in ROM (pages with a ConcretePageHandler.rom() or a Mapper000 attached)
+// runs as JVM classes generated from it, a block at a time, rather than a cycle at
+// a time through the interpreter.
+//
+// CPUCycle has no branches or jumps yet, so a block is just the instructions from
+// where it starts up to the first one CPUCycle doesn't implement, the end of the
+// page (4 KiB) or MAX_BLOCK_LENGTH instructions, whichever comes first. Blocks are
+// cached by the SHA-256 of the ROM and their address, and shared by every Recompiler
+// (and every ROM page handler with the same contents), so they're only generated
+// once. Tables for ROMs nothing is running any more are only softly held, so they
+// go when memory runs short, and clear() drops them all. Code anywhere else, RAM in
+// particular, is interpreted, which is also how self-modifying code is handled:
+// ROM can't be written, and RAM never gets compiled. The rest of the machine is
+// taken as-is: page handlers (other than ROM) see every access ConcreteCPU would
+// make, in the same order, but mustn't be replaced while run() is going, and ROM
+// contents mustn't change once a block has been compiled.
+public class Recompiler {
+
+  // the longest block, in instructions; about 40 bytes of bytecode each, which keeps
+  // run() under the size (8000 bytes) HotSpot will still JIT-compile
+  public static final int MAX_BLOCK_LENGTH = 128;
+
+  private static final String STATE = "io/lp0onfire/smtnes/MachineState";
+  private static final String COMPILED_BLOCK = "io/lp0onfire/smtnes/CompiledBlock";
+
+  // the MachineState method for each opcode CPUCycle implements, and how many cycles it can take
+  private static final class Instruction {
+    final String method;
+    final int length;
+    final int maxCycles;
+
+    Instruction(String method, int maxCycles) {
+      this.method = method;
+      this.maxCycles = maxCycles;
+      if (method.endsWith("_IMP")) {
+        this.length = 1;
+      } else if (method.endsWith("_ABS") || method.endsWith("_ABX") || method.endsWith("_ABY")) {
+        this.length = 3;
+      } else {
+        this.length = 2;
+      }
+    }
+  }
+
+  private static final Instruction[] INSTRUCTIONS = new Instruction[256];
+
+  private static void instruction(int opcode, String method, int maxCycles) {
+    INSTRUCTIONS[opcode] = new Instruction(method, maxCycles);
+  }
+
+  static {
+    instruction(0x18, "CLC_IMP", 2);
+    instruction(0xD8, "CLD_IMP", 2);
+    instruction(0x58, "CLI_IMP", 2);
+    instruction(0xB8, "CLV_IMP", 2);
+    instruction(0x38, "SEC_IMP", 2);
+    instruction(0xF8, "SED_IMP", 2);
+    instruction(0x78, "SEI_IMP", 2);
+    instruction(0xCA, "DEX_IMP", 2);
+    instruction(0x88, "DEY_IMP", 2);
+    instruction(0xE8, "INX_IMP", 2);
+    instruction(0xC8, "INY_IMP", 2);
+    instruction(0xAA, "TAX_IMP", 2);
+    instruction(0xA8, "TAY_IMP", 2);
+    instruction(0xBA, "TSX_IMP", 2);
+    instruction(0x8A, "TXA_IMP", 2);
+    instruction(0x9A, "TXS_IMP", 2);
+    instruction(0x98, "TYA_IMP", 2);
+    instruction(0xA9, "LDA_IMM", 2);
+    instruction(0xA5, "LDA_ZPG", 3);
+    instruction(0xB5, "LDA_ZPX", 4);
+    instruction(0xAD, "LDA_ABS", 4);
+    instruction(0xBD, "LDA_ABX", 5);
+    instruction(0xB9, "LDA_ABY", 5);
+    instruction(0xA1, "LDA_INX", 6);
+    instruction(0xB1, "LDA_INY", 6);
+    instruction(0xA2, "LDX_IMM", 2);
+    instruction(0xA6, "LDX_ZPG", 3);
+    instruction(0xB6, "LDX_ZPY", 4);
+    instruction(0xAE, "LDX_ABS", 4);
+    instruction(0xBE, "LDX_ABY", 5);
+    instruction(0x85, "STA_ZPG", 3);
+    instruction(0x95, "STA_ZPX", 4);
+    instruction(0x8D, "STA_ABS", 4);
+    instruction(0x9D, "STA_ABX", 5);
+    instruction(0x99, "STA_ABY", 5);
+    instruction(0x81, "STA_INX", 6);
+    instruction(0x91, "STA_INY", 6);
+    instruction(0x86, "STX_ZPG", 3);
+    instruction(0x96, "STX_ZPY", 4);
+    instruction(0x8E, "STX_ABS", 4);
+    instruction(0x84, "STY_ZPG", 3);
+    instruction(0x94, "STY_ZPX", 4);
+    instruction(0x8C, "STY_ABS", 4);
+  }
+
+  // blocks for one ROM, by the SHA-256 of what it holds; each table holds a class
+  // loader and a slot for every address, so they're let go once nothing uses them
+  private static final Map<String, SoftReference<BlockTable>> tables = new HashMap<>();
+
+  private static long blocksCompiled = 0;
+  // Blocks generated so far, by every Recompiler, since the last clear().
+  public static synchronized long getBlocksCompiled() {
+    return blocksCompiled;
+  }
+
+  // Forget every compiled block and start counting again. Recompilers that have
+  // already run keep the tables they're using; new ones compile from scratch.
+  public static synchronized void clear() {
+    tables.clear();
+    blocksCompiled = 0;
+  }
+
+  private static synchronized BlockTable tableFor(byte[] rom) {
+    String hash = sha256(rom);
+    SoftReference<BlockTable> ref = tables.get(hash);
+    BlockTable table = (ref == null) ? null : ref.get();
+    if (table == null) {
+      // drop the entries for tables that have been collected
+      Iterator<SoftReference<BlockTable>> it = tables.values().iterator();
+      while (it.hasNext()) {
+        if (it.next().get() == null) {
+          it.remove();
+        }
+      }
+      table = new BlockTable(hash, rom.clone());
+      tables.put(hash, new SoftReference<>(table));
+    }
+    return table;
+  }
+
+  private static synchronized void countBlock() {
+    blocksCompiled += 1;
+  }
+
+  private static String sha256(byte[] data) {
+    final MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to provide SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : md.digest(data)) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+
+  // generated classes get a loader of their own, which sees CompiledBlock and MachineState
+  private static final class BlockLoader extends ClassLoader {
+    BlockLoader() {
+      super(CompiledBlock.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
+  private static final class BlockTable {
+    private final String hash;
+    private final byte[] rom;
+    private final int mask;
+    private final BlockLoader loader = new BlockLoader();
+    // by address; EMPTY where there's nothing to compile
+    private final CompiledBlock[] blocks = new CompiledBlock[0x10000];
+
+    BlockTable(String hash, byte[] rom) {
+      this.hash = hash;
+      this.rom = rom;
+      this.mask = rom.length - 1;
+    }
+
+    private int read(int address) {
+      return rom[address & mask] & 0xFF;
+    }
+
+    synchronized CompiledBlock blockAt(int address) {
+      if (blocks[address] == null) {
+        CompiledBlock block = compile(address);
+        blocks[address] = (block == null) ? EMPTY : block;
+      }
+      return (blocks[address] == EMPTY) ? null : blocks[address];
+    }
+
+    // null if the first instruction can't be compiled
+    private CompiledBlock compile(int start) {
+      int page = start >>> 12;
+      int[] addresses = new int[MAX_BLOCK_LENGTH + 1];
+      int length = 0;
+      int maxCycles = 0;
+      int address = start;
+      while (length < MAX_BLOCK_LENGTH) {
+        Instruction insn = INSTRUCTIONS[read(address)];
+        if (insn == null || ((address + insn.length - 1) >>> 12) != page) {
+          break;
+        }
+        addresses[length++] = address;
+        maxCycles += insn.maxCycles;
+        address += insn.length;
+      }
+      if (length == 0) {
+        return null;
+      }
+      // where the block stops
+      addresses[length] = address;
+
+      String name = String.format("io/lp0onfire/smtnes/recompiled/Block_%s_%04X", hash.substring(0, 16), start);
+      ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+      cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null,
+          "java/lang/Object", new String[] {COMPILED_BLOCK});
+
+      MethodVisitor init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+      init.visitCode();
+      init.visitVarInsn(Opcodes.ALOAD, 0);
+      init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+      init.visitInsn(Opcodes.RETURN);
+      init.visitMaxs(0, 0);
+      init.visitEnd();
+
+      // run(state, limit), with locals this, state, and limit (two slots). Most of the
+      // time, when fetching from ROM, the block will only run once or a few times
+      // before control moves on, and so runs as bytecode rather than being compiled by
+      // the JIT; so it's kept to one call per instruction, and the bus and PC are only
+      // set up for the instruction fetch where the block stops. If the whole block fits
+      // in what's left of the limit it runs straight through, and otherwise checks
+      // before each instruction.
+      MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "run", "(L" + STATE + ";J)V", null, null);
+      mv.visitCode();
+      Label checked = new Label();
+      emitLimitCheck(mv, maxCycles, checked);
+      for (int i = 0; i < length; ++i) {
+        emitInstruction(mv, addresses[i]);
+      }
+      emitFetch(mv, addresses[length], page);
+      mv.visitInsn(Opcodes.RETURN);
+
+      mv.visitLabel(checked);
+      Label[] stops = new Label[length];
+      for (int i = 0; i < length; ++i) {
+        stops[i] = new Label();
+        emitLimitCheck(mv, INSTRUCTIONS[read(addresses[i])].maxCycles, stops[i]);
+        emitInstruction(mv, addresses[i]);
+      }
+      emitFetch(mv, addresses[length], page);
+      mv.visitInsn(Opcodes.RETURN);
+      for (int i = 0; i < length; ++i) {
+        mv.visitLabel(stops[i]);
+        emitFetch(mv, addresses[i], page);
+        mv.visitInsn(Opcodes.RETURN);
+      }
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+      cw.visitEnd();
+
+      try {
+        Class<?> block = loader.define(name.replace('/', '.'), cw.toByteArray());
+        countBlock();
+        return (CompiledBlock)block.getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("could not load the block generated for $"
+            + String.format("%04X", start), e);
+      }
+    }
+
+    // if (state.cycles > limit - maxCycles) goto stop;
+    private void emitLimitCheck(MethodVisitor mv, int maxCycles, Label stop) {
+      mv.visitVarInsn(Opcodes.ALOAD, 1);
+      mv.visitFieldInsn(Opcodes.GETFIELD, STATE, "cycles", "J");
+      mv.visitVarInsn(Opcodes.LLOAD, 2);
+      mv.visitLdcInsn(Long.valueOf(maxCycles));
+      mv.visitInsn(Opcodes.LSUB);
+      mv.visitInsn(Opcodes.LCMP);
+      mv.visitJumpInsn(Opcodes.IFGT, stop);
+    }
+
+    // state.XXX_YYY(operand);
+    private void emitInstruction(MethodVisitor mv, int address) {
+      Instruction insn = INSTRUCTIONS[read(address)];
+      mv.visitVarInsn(Opcodes.ALOAD, 1);
+      if (insn.length == 1) {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STATE, insn.method, "()V", false);
+      } else {
+        int operand = read(address + 1);
+        if (insn.length == 3) {
+          operand |= read(address + 2) << 8;
+        }
+        mv.visitLdcInsn(Integer.valueOf(operand));
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STATE, insn.method, "(I)V", false);
+      }
+    }
+
+    // state.next(address, opcode), or state.fetch(address) off the end of the page
+    private void emitFetch(MethodVisitor mv, int address, int page) {
+      mv.visitVarInsn(Opcodes.ALOAD, 1);
+      mv.visitLdcInsn(Integer.valueOf(address & 0xFFFF));
+      if ((address >>> 12) == page) {
+        mv.visitLdcInsn(Integer.valueOf(read(address)));
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STATE, "next", "(II)V", false);
+      } else {
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STATE, "fetch", "(I)V", false);
+      }
+    }
+  }
+
+  private static final CompiledBlock EMPTY = new CompiledBlock() {
+    @Override
+    public void run(MachineState state, long limit) {
+    }
+  };
+
+  // tables for the ROM page handlers this Recompiler has seen, so each is only hashed once
+  private final Map<ROMPageHandler, BlockTable> handlerTables = new IdentityHashMap<>();
+
+  private long compiledCycles = 0;
+  public long getCompiledCycles() {
+    return this.compiledCycles;
+  }
+
+  private long interpretedCycles = 0;
+  public long getInterpretedCycles() {
+    return this.interpretedCycles;
+  }
+
+  // Advance cpu by cycles cycles.
+  public void run(ConcreteCPU cpu, long cycles) {
+    long done = 0;
+    while (done < cycles) {
+      if (cpu.getState() == CPUState.InstructionFetch) {
+        CompiledBlock block = blockAt(cpu.getPageHandler(cpu.getAddressBus() >>> 12),
+            cpu.getAddressBus(), cpu.getPC(), cpu.getDataIn());
+        if (block != null) {
+          long ran = runCompiled(cpu, block, cycles - done);
+          if (ran > 0) {
+            done += ran;
+            compiledCycles += ran;
+            continue;
+          }
+        }
+      }
+      cpu.step();
+      done += 1;
+      interpretedCycles += 1;
+    }
+  }
+
+  // from one block to the next for as long as they can go; returns the cycles run
+  private long runCompiled(ConcreteCPU cpu, CompiledBlock first, long limit) {
+    MachineState state = new MachineState(cpu);
+    CompiledBlock block = first;
+    while (block != null) {
+      long before = state.cycles;
+      block.run(state, limit);
+      if (state.cycles == before) {
+        break;
+      }
+      block = blockAt(state.getPageHandler(state.AddressBus >>> 12),
+          state.AddressBus, state.PC, state.DataIn);
+    }
+    long ran = state.cycles;
+    state.store(cpu);
+    return ran;
+  }
+
+  // the block for the instruction fetched from address, if that came from ROM
+  private CompiledBlock blockAt(ConcretePageHandler handler, int address, int pc, int dataIn) {
+    if (!(handler instanceof ROMPageHandler) || pc != ((address + 1) & 0xFFFF)) {
+      return null;
+    }
+    ROMPageHandler rom = (ROMPageHandler)handler;
+    if (rom.read(address) != dataIn) {
+      return null;
+    }
+    BlockTable table = handlerTables.get(rom);
+    if (table == null) {
+      table = tableFor(rom.getData());
+      handlerTables.put(rom, table);
+    }
+    return table.blockAt(address);
+  }
+
+}
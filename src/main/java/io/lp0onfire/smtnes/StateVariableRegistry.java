@@ -1,17 +1,105 @@
 package io.lp0onfire.smtnes;
 
+import io.lp0onfire.smtnes.smt2.CommonSubexpressionEliminator;
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.PartialEvaluator;
+import io.lp0onfire.smtnes.smt2.ReservedSymbols;
 import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptWriter;
+import io.lp0onfire.smtnes.smt2.Simplifier;
 import io.lp0onfire.smtnes.smt2.Symbol;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class StateVariableRegistry {
 
   private Map<String, Long> stateIndex = new HashMap<>();
   
+  // If set, every generator's output is run through the simplifier
+  // before it is returned; statistics are kept per generator class.
+  private Simplifier simplifier = null;
+  public Simplifier getSimplifier() {
+    return this.simplifier;
+  }
+  public void setSimplifier(Simplifier simplifier) {
+    this.simplifier = simplifier;
+  }
+  
+  // If set, generated code is specialized against the state values known so far
+  // (see PartialEvaluator) before any other pass runs. Templates are ignored while
+  // this is set, since an application of a template can't be specialized.
+  private PartialEvaluator partialEvaluator = null;
+  public PartialEvaluator getPartialEvaluator() {
+    return this.partialEvaluator;
+  }
+  public void setPartialEvaluator(PartialEvaluator partialEvaluator) {
+    this.partialEvaluator = partialEvaluator;
+  }
+  
+  // If set, repeated subterms in each generator's output are bound once
+  // with define-fun (after simplification, if that is also enabled).
+  // The eliminator must see everything this registry produces, in order.
+  private CommonSubexpressionEliminator eliminator = null;
+  public CommonSubexpressionEliminator getEliminator() {
+    return this.eliminator;
+  }
+  public void setEliminator(CommonSubexpressionEliminator eliminator) {
+    this.eliminator = eliminator;
+  }
+  
+  // If set, every application is reported to the slicer so that a script
+  // built from this registry's output can be cut down to a property's cone of influence.
+  private ConeOfInfluenceSlicer slicer = null;
+  public ConeOfInfluenceSlicer getSlicer() {
+    return this.slicer;
+  }
+  public void setSlicer(ConeOfInfluenceSlicer slicer) {
+    this.slicer = slicer;
+  }
+  
+  // Sort of every state variable, taken from the declarations of generator outputs.
+  private Map<String, SExpression> variableSorts = new HashMap<>();
+  public SExpression getVariableSort(String var) {
+    return variableSorts.get(var);
+  }
+  
+  private Map<CodeGenerator, GeneratorTemplate> templates = new IdentityHashMap<>();
+  
+  // From now on, emit gen's code once as (define-fun name (inputs... outputs...) Bool ...)
+  // and have each application only declare the outputs and assert the predicate.
+  // The definition is written out the first time gen is applied.
+  public void setTemplate(CodeGenerator gen, String name) {
+    templates.put(gen, new GeneratorTemplate(gen, new Symbol(name)));
+  }
+  
+  public boolean hasTemplate(CodeGenerator gen) {
+    return templates.containsKey(gen);
+  }
+  
+  // The symbol for the latest version of var, i.e. what the next generator to read it would get.
+  public Symbol getCurrentVersion(String var) {
+    if (!stateIndex.containsKey(var)) {
+      throw new java.lang.IllegalStateException("state variable '" + var + "' has not been defined");
+    }
+    return Symbol.trusted(var + "_" + stateIndex.get(var).toString());
+  }
+  
+  // The latest version of every state variable defined so far, by name.
+  public SortedMap<String, Symbol> getCurrentVersions() {
+    SortedMap<String, Symbol> versions = new TreeMap<>();
+    for (String var : stateIndex.keySet()) {
+      versions.put(var, getCurrentVersion(var));
+    }
+    return versions;
+  }
+  
   public List<SExpression> apply(CodeGenerator gen) {
     Set<String> variablesRead = gen.getStateVariablesRead();
     Map<String, Symbol> inputs = new HashMap<>();
@@ -21,26 +109,69 @@ public class StateVariableRegistry {
         throw new java.lang.IllegalStateException("attempt to use state variable '" + var + "' before it is defined");
       }
       // otherwise, get the index of the latest version
+      // (the name was validated when the variable was first written)
       Long idx = stateIndex.get(var);
-      inputs.put(var, new Symbol(var + "_" + idx.toString()));
+      inputs.put(var, Symbol.trusted(var + "_" + idx.toString()));
     }
     Set<String> variablesWritten = gen.getStateVariablesWritten();
     Map<String, Symbol> outputs = new HashMap<>();
     for (String var : variablesWritten) {
-      Long idx;
       if (stateIndex.containsKey(var)) {
-        // if the variable already exists, increment its index and use the new version
-        idx = stateIndex.get(var) + 1L;
+        // if the variable already exists, increment its index and use the new version;
+        // the base name has already been checked, so skip validation
+        Long idx = stateIndex.get(var) + 1L;
         stateIndex.put(var, idx);
+        outputs.put(var, Symbol.trusted(var + "_" + idx.toString()));
       } else {
-        // otherwise, use a version with index 0
-        idx = 0L;
+        // otherwise, use a version with index 0, validating the name once here
+        Symbol first = new Symbol(var + "_0");
         stateIndex.put(var, 0L);
+        outputs.put(var, first);
       }
-      outputs.put(var, new Symbol(var + "_" + idx.toString()));
     }
     // run the generator
-    return gen.generateCode(inputs, outputs);
+    List<SExpression> code;
+    GeneratorTemplate template = templates.get(gen);
+    if (template != null && partialEvaluator == null) {
+      code = template.instantiate(inputs, outputs, variableSorts, simplifier);
+    } else {
+      code = gen.generateCode(inputs, outputs);
+      if (partialEvaluator != null) {
+        code = partialEvaluator.evaluate(code);
+      }
+      if (simplifier != null) {
+        code = simplifier.simplifyAll(gen.getClass().getName(), code);
+      }
+    }
+    recordSorts(outputs, code);
+    if (eliminator != null) {
+      code = eliminator.eliminate(code);
+    }
+    if (slicer != null) {
+      slicer.record(outputs.values(), code);
+    }
+    return code;
+  }
+  
+  private void recordSorts(Map<String, Symbol> outputs, List<SExpression> code) {
+    Map<Symbol, String> variables = new HashMap<>();
+    for (Map.Entry<String, Symbol> output : outputs.entrySet()) {
+      variables.put(output.getValue(), output.getKey());
+    }
+    for (SExpression expr : code) {
+      if (expr instanceof ExpressionList) {
+        ExpressionList command = (ExpressionList)expr;
+        if (command.size() == 4 && command.get(0).equals(ReservedSymbols.DECLARE_FUN)
+            && variables.containsKey(command.get(1))) {
+          variableSorts.put(variables.get(command.get(1)), command.get(3));
+        }
+      }
+    }
+  }
+  
+  // Same as apply(gen), but streams the generated code straight to out.
+  public void apply(CodeGenerator gen, ScriptWriter out) throws IOException {
+    out.writeAll(apply(gen));
   }
   
 }
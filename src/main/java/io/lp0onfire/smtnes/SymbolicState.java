@@ -0,0 +1,68 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.ConstantDeclaration;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Defines state variables without constraining them at all, so that
+// whatever is applied next has to work from any state whatsoever rather
+// than from power-on. Each variable needs a sort; the sorts a registry has
+// seen are a good source (see StateVariableRegistry.getVariableSort()).
+public class SymbolicState implements CodeGenerator {
+
+  private final Map<String, SExpression> sorts;
+
+  public SymbolicState(Map<String, SExpression> sorts) {
+    this.sorts = Collections.unmodifiableMap(new TreeMap<>(sorts));
+  }
+
+  // Every variable registry has defined so far, with the sort it has there.
+  public static SymbolicState of(StateVariableRegistry registry) {
+    return of(registry, registry.getCurrentVersions().keySet());
+  }
+
+  // Same, but only those of variables; the rest keep whatever values they have.
+  public static SymbolicState of(StateVariableRegistry registry, Set<String> variables) {
+    Map<String, SExpression> sorts = new TreeMap<>();
+    for (String var : registry.getCurrentVersions().keySet()) {
+      if (!variables.contains(var)) {
+        continue;
+      }
+      SExpression sort = registry.getVariableSort(var);
+      if (sort == null) {
+        throw new IllegalStateException("sort of state variable '" + var + "' is not known");
+      }
+      sorts.put(var, sort);
+    }
+    return new SymbolicState(sorts);
+  }
+
+  @Override
+  public Set<String> getStateVariablesRead() {
+    return new HashSet<>();
+  }
+
+  @Override
+  public Set<String> getStateVariablesWritten() {
+    return new HashSet<>(sorts.keySet());
+  }
+
+  @Override
+  public List<SExpression> generateCode(Map<String, Symbol> inputs,
+      Map<String, Symbol> outputs) {
+    List<SExpression> exprs = new LinkedList<>();
+    for (Map.Entry<String, SExpression> entry : sorts.entrySet()) {
+      exprs.add(new ConstantDeclaration(outputs.get(entry.getKey()), entry.getValue()));
+    }
+    return exprs;
+  }
+
+}
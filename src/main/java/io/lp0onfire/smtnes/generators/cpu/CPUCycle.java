@@ -63,42 +63,47 @@ public class CPUCycle implements CodeGenerator {
   private Symbol ResetSequence_next;
   private Symbol State_next;
 
+  // Shared across cycles so that constants and repeated subterms
+  // (preserveA(), fetchPC(), ...) are allocated once rather than per use.
+  private final ExpressionFactory factory = new ExpressionFactory();
+  
   // helpers for subexpressions
   private EqualsExpression preserveA() {
-    return new EqualsExpression(A_current, A_next);
+    return factory.intern(new EqualsExpression(A_current, A_next));
   }
   
   private EqualsExpression preserveX() {
-    return new EqualsExpression(X_current, X_next);
+    return factory.intern(new EqualsExpression(X_current, X_next));
   }
   
   private EqualsExpression preserveY() {
-    return new EqualsExpression(Y_current, Y_next);
+    return factory.intern(new EqualsExpression(Y_current, Y_next));
   }
   
   private EqualsExpression preserveSP() {
-    return new EqualsExpression(SP_current, SP_next);
+    return factory.intern(new EqualsExpression(SP_current, SP_next));
   }
   
   private EqualsExpression preserveP() {
-    return new EqualsExpression(P_current, P_next);
+    return factory.intern(new EqualsExpression(P_current, P_next));
   }
   
   private EqualsExpression preservePC() {
-    return new EqualsExpression(PC_current, PC_next);
+    return factory.intern(new EqualsExpression(PC_current, PC_next));
   }
   
   // Set up a read from the address pointed to by the current program counter.
   private AndExpression fetchPC() {
-    return new AndExpression(
+    return factory.intern(new AndExpression(
         new EqualsExpression(AddressBus_next, PC_current),
-        new EqualsExpression(WriteEnable_next, new BinaryConstant("0")),
-        new EqualsExpression(DataOut_next, new BinaryConstant("00000000"))
-        );
+        new EqualsExpression(WriteEnable_next, factory.binaryConstant("0")),
+        new EqualsExpression(DataOut_next, factory.binaryConstant("00000000"))
+        ));
   }
   
   private EqualsExpression incrementPC() {
-    return new EqualsExpression(PC_next, new BitVectorAddExpression(PC_current, new BinaryConstant("0000000000000001")));
+    return factory.intern(new EqualsExpression(PC_next, 
+        new BitVectorAddExpression(PC_current, factory.binaryConstant("0000000000000001"))));
   }
   
   @Override
@@ -189,6 +194,9 @@ public class CPUCycle implements CodeGenerator {
     exprs.addAll(instruction_TXS());
     exprs.addAll(instruction_TYA());
     
+    // share structurally identical subterms between all of the above
+    factory.internAll(exprs);
+    
     return exprs;
   }
 
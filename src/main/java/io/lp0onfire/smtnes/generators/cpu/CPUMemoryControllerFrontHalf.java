@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 import io.lp0onfire.smtnes.CodeGenerator;
 import io.lp0onfire.smtnes.PageHandler;
 import io.lp0onfire.smtnes.smt2.*;
@@ -77,10 +75,7 @@ public class CPUMemoryControllerFrontHalf implements CodeGenerator {
        
     for (int i = 0; i < 16; ++i) {
       // convert i to a 4-bit constant
-      String bits = Integer.toBinaryString(i);
-      // zero-pad on the left
-      int zeroCount = 4 - bits.length();
-      BinaryConstant pageNumber = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+      BitVectorConstant pageNumber = BitVectorConstant.of(i, 4);
       // read the top 4 bits of the address
       SExpression addressPage = new BitVectorExtractExpression(inputs.get("CPU_AddressBus"), new Numeral("15"), new Numeral("12"));
       
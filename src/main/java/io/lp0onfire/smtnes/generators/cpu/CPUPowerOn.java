@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 import io.lp0onfire.smtnes.CodeGenerator;
 import io.lp0onfire.smtnes.smt2.*;
 
@@ -54,12 +52,9 @@ public class CPUPowerOn implements CodeGenerator {
     Symbol RAM = outputs.get("CPU_RAM");
     exprs.add(new ArrayDeclaration(RAM, new Numeral("11"), new Numeral("8")));
     for (int i = 0; i < 2048; ++i) {
-      String bits = Integer.toBinaryString(i);
-      // zero-pad on the left
-      int zeroCount = 11 - bits.length();
-      BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+      BitVectorConstant index = BitVectorConstant.of(i, 11);
       exprs.add(new Assertion(new EqualsExpression(
-          new ArrayReadExpression(RAM, index), new BinaryConstant("00000000"))));
+          new ArrayReadExpression(RAM, index), BitVectorConstant.of(0, 8))));
     }
     
     // declare CPU registers and initialize to zero (except P, which gets 0x20)
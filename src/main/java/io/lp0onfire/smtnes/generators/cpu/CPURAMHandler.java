@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 import io.lp0onfire.smtnes.PageHandler;
 import io.lp0onfire.smtnes.smt2.*;
 
@@ -74,11 +72,7 @@ public class CPURAMHandler extends PageHandler {
           new EqualsExpression(RAM_next, RAM_current))));
     } else {
       for (int i = 0; i < 2048; ++i) {
-        // convert i to an 11-bit constant
-        String bits = Integer.toBinaryString(i);
-        // zero-pad on the left
-        int zeroCount = 11 - bits.length();
-        BinaryConstant address = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+        BitVectorConstant address = BitVectorConstant.of(i, 11);
         exprs.add(new Assertion(new Implication(new EqualsExpression(ChipSelect, new BinaryConstant("0")), 
             new EqualsExpression(
                 new ArrayReadExpression(RAM_next, address), 
@@ -101,11 +95,7 @@ public class CPURAMHandler extends PageHandler {
           new EqualsExpression(RAM_next, RAM_current))));
     } else {
       for (int i = 0; i < 2048; ++i) {
-        // convert i to an 11-bit constant
-        String bits = Integer.toBinaryString(i);
-        // zero-pad on the left
-        int zeroCount = 11 - bits.length();
-        BinaryConstant address = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+        BitVectorConstant address = BitVectorConstant.of(i, 11);
         exprs.add(new Assertion(new Implication(new AndExpression(
             new EqualsExpression(ChipSelect, new BinaryConstant("1")),
             new EqualsExpression(WriteEnable, new BinaryConstant("0"))
@@ -135,11 +125,7 @@ public class CPURAMHandler extends PageHandler {
           new EqualsExpression(RAM_next, new ArrayWriteExpression(RAM_current, RAM_Address, DataIn)))));
     } else {
       for (int i = 0; i < 2048; ++i) {
-        // convert i to an 11-bit constant
-        String bits = Integer.toBinaryString(i);
-        // zero-pad on the left
-        int zeroCount = 11 - bits.length();
-        BinaryConstant address = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+        BitVectorConstant address = BitVectorConstant.of(i, 11);
         exprs.add(new Assertion(new Implication(new AndExpression(
             new EqualsExpression(ChipSelect, new BinaryConstant("1")),
             new EqualsExpression(WriteEnable, new BinaryConstant("1"))
@@ -0,0 +1,137 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcreteCPU;
+import io.lp0onfire.smtnes.smt2.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Takes the CPU from the start of a reset to its first instruction fetch in
+// one step, instead of eight cycles of CPUCycle, the memory controller and the
+// page handlers. The reset only reads memory, and what it reads that matters
+// (the vector at $FFFC/$FFFD and the opcode it points to) is ROM, so the end
+// state can be worked out in advance from the same memory map on a ConcreteCPU:
+// - PC = vector + 1, AddressBus = vector, DataIn = the opcode there
+// - SP = SP - 3, P = P | $04 (P[I])
+// - State = InstructionFetch, ResetSequence = 0, and a read on the bus
+// Everything else (A, X, Y, the address temporaries, RAM) is untouched,
+// exactly as after the full sequence.
+//
+// It also asserts that the CPU is at the start of a reset, as CPUPowerOn leaves it.
+public class CPUResetFastForward implements CodeGenerator {
+
+  public static final int RESET_CYCLES = 8;
+
+  // If true, resetSequence() unrolls the reset cycle by cycle instead,
+  // for tests of CPUCycle's reset phases and anything else that needs to see them.
+  private static boolean useFullResetSequence = false;
+  public static void setUseFullResetSequence(boolean b) {
+    useFullResetSequence = b;
+  }
+
+  // What to apply after CPUPowerOn to reach the first instruction fetch:
+  // a CPUResetFastForward for memoryMap, or the generators in cycle, in order,
+  // RESET_CYCLES times.
+  public static List<CodeGenerator> resetSequence(ConcreteCPU memoryMap, List<CodeGenerator> cycle) {
+    List<CodeGenerator> gens = new ArrayList<>();
+    if (useFullResetSequence) {
+      for (int i = 0; i < RESET_CYCLES; ++i) {
+        gens.addAll(cycle);
+      }
+    } else {
+      gens.add(new CPUResetFastForward(memoryMap));
+    }
+    return Collections.unmodifiableList(gens);
+  }
+
+  private final int resetVector;
+  public int getResetVector() {
+    return this.resetVector;
+  }
+
+  private final int firstOpcode;
+  public int getFirstOpcode() {
+    return this.firstOpcode;
+  }
+
+  // memoryMap has the same page handlers as the symbolic machine; its CPU state isn't used.
+  public CPUResetFastForward(ConcreteCPU memoryMap) {
+    this.resetVector = (memoryMap.readMemory(0xFFFD) << 8) | memoryMap.readMemory(0xFFFC);
+    this.firstOpcode = memoryMap.readMemory(resetVector);
+  }
+
+  @Override
+  public Set<String> getStateVariablesRead() {
+    return new HashSet<>(Arrays.asList(
+        "CPU_SP", "CPU_P", "CPU_ResetSequence", "CPU_State"));
+  }
+
+  @Override
+  public Set<String> getStateVariablesWritten() {
+    return new HashSet<>(Arrays.asList(
+        "CPU_PC", "CPU_SP", "CPU_P",
+        "CPU_AddressBus", "CPU_WriteEnable", "CPU_DataOut", "CPU_DataIn",
+        "CPU_ResetSequence", "CPU_State"));
+  }
+
+  @Override
+  public List<SExpression> generateCode(Map<String, Symbol> inputs,
+      Map<String, Symbol> outputs) {
+    List<SExpression> exprs = new LinkedList<>();
+
+    // phase 0 of the reset
+    exprs.add(new Assertion(new EqualsExpression(inputs.get("CPU_State"), CPUState.Resetting.toBinaryConstant())));
+    exprs.add(new Assertion(new EqualsExpression(inputs.get("CPU_ResetSequence"), BitVectorConstant.of(0, 3))));
+
+    Symbol PC = outputs.get("CPU_PC");
+    exprs.add(new BitVectorDeclaration(PC, new Numeral("16")));
+    exprs.add(new Assertion(new EqualsExpression(PC, BitVectorConstant.of((resetVector + 1) & 0xFFFF, 16))));
+
+    // phases 2-4 each decrement SP
+    Symbol SP = outputs.get("CPU_SP");
+    exprs.add(new BitVectorDeclaration(SP, new Numeral("8")));
+    exprs.add(new Assertion(new EqualsExpression(SP,
+        new BitVectorSubtractExpression(inputs.get("CPU_SP"), BitVectorConstant.of(3, 8)))));
+
+    // phase 5 sets P[I]
+    Symbol P = outputs.get("CPU_P");
+    exprs.add(new BitVectorDeclaration(P, new Numeral("8")));
+    exprs.add(new Assertion(new EqualsExpression(P,
+        new BitVectorOrExpression(inputs.get("CPU_P"), BitVectorConstant.of(0x04, 8)))));
+
+    // phase 7 sets up the fetch of the first opcode, which the memory controller then delivers
+    Symbol AddressBus = outputs.get("CPU_AddressBus");
+    exprs.add(new BitVectorDeclaration(AddressBus, new Numeral("16")));
+    exprs.add(new Assertion(new EqualsExpression(AddressBus, BitVectorConstant.of(resetVector, 16))));
+
+    Symbol WriteEnable = outputs.get("CPU_WriteEnable");
+    exprs.add(new BitVectorDeclaration(WriteEnable, new Numeral("1")));
+    exprs.add(new Assertion(new EqualsExpression(WriteEnable, BitVectorConstant.of(0, 1))));
+
+    Symbol DataOut = outputs.get("CPU_DataOut");
+    exprs.add(new BitVectorDeclaration(DataOut, new Numeral("8")));
+    exprs.add(new Assertion(new EqualsExpression(DataOut, BitVectorConstant.of(0, 8))));
+
+    Symbol DataIn = outputs.get("CPU_DataIn");
+    exprs.add(new BitVectorDeclaration(DataIn, new Numeral("8")));
+    exprs.add(new Assertion(new EqualsExpression(DataIn, BitVectorConstant.of(firstOpcode, 8))));
+
+    Symbol ResetSequence = outputs.get("CPU_ResetSequence");
+    exprs.add(new BitVectorDeclaration(ResetSequence, new Numeral("3")));
+    exprs.add(new Assertion(new EqualsExpression(ResetSequence, BitVectorConstant.of(0, 3))));
+
+    Symbol State = outputs.get("CPU_State");
+    exprs.add(new BitVectorDeclaration(State, new Numeral(Integer.toString(CPUState.getStateWidth()))));
+    exprs.add(new Assertion(new EqualsExpression(State, CPUState.InstructionFetch.toBinaryConstant())));
+
+    return exprs;
+  }
+
+}
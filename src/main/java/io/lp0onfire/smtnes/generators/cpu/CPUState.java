@@ -1,8 +1,6 @@
 package io.lp0onfire.smtnes.generators.cpu;
 
-import org.apache.commons.lang3.StringUtils;
-
-import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
 
 public enum CPUState {
 
@@ -114,11 +112,13 @@ public enum CPUState {
     return this.index;
   }
   
-  public BinaryConstant toBinaryConstant() {
-    String bits = Integer.toBinaryString(getIndex());
-    // zero-pad on the left
-    int zeroCount = getStateWidth() - bits.length();
-    return new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+  // constants are immutable, so every use of a state can share one instance
+  private BitVectorConstant binaryConstant = null;
+  public BitVectorConstant toBinaryConstant() {
+    if (binaryConstant == null) {
+      binaryConstant = BitVectorConstant.of(getIndex(), getStateWidth());
+    }
+    return binaryConstant;
   }
   
   private static Integer maxIndex = null;
@@ -134,6 +134,16 @@ public enum CPUState {
     return maxIndex;
   }
   
+  // The state with the given index, e.g. from a model's value for CPU_State.
+  public static CPUState fromIndex(int index) {
+    for (CPUState state : CPUState.values()) {
+      if (state.getIndex() == index) {
+        return state;
+      }
+    }
+    throw new IllegalArgumentException("no CPU state has index " + index);
+  }
+  
   public static int getStateWidth() {
     // Get the number of bits needed to represent any CPUState as a bitvector.
     return Integer.toBinaryString(getMaxIndex()).length();
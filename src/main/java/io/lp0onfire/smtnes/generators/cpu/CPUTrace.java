@@ -0,0 +1,51 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import io.lp0onfire.smtnes.ExecutionTrace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Which CPU state variables make up an ExecutionTrace, and how to read
+// CPU-specific things back out of one.
+public class CPUTrace {
+
+  public static final List<String> REGISTERS = Collections.unmodifiableList(Arrays.asList(
+      "CPU_PC", "CPU_A", "CPU_X", "CPU_Y", "CPU_SP", "CPU_P", "CPU_State", "CPU_ResetSequence"));
+
+  public static final List<String> BUS_SIGNALS = Collections.unmodifiableList(Arrays.asList(
+      "CPU_AddressBus", "CPU_WriteEnable", "CPU_DataOut", "CPU_DataIn"));
+
+  // registers and bus signals; RAM is left out since the writes say how it changed
+  public static final List<String> VARIABLES;
+  static {
+    List<String> vars = new ArrayList<>(REGISTERS);
+    vars.addAll(BUS_SIGNALS);
+    VARIABLES = Collections.unmodifiableList(vars);
+  }
+
+  public static CPUState getState(ExecutionTrace trace, int cycle) {
+    return CPUState.fromIndex((int)trace.getValue(cycle, "CPU_State").getValue());
+  }
+
+  // Writes the CPU put on the bus, whichever device they went to.
+  public static List<ExecutionTrace.Write> getWrites(ExecutionTrace trace) {
+    return trace.getWrites("CPU_WriteEnable", "CPU_AddressBus", "CPU_DataOut");
+  }
+
+  // Writes that landed in internal RAM ($0000-$1FFF, mirrored every $0800).
+  public static List<ExecutionTrace.Write> getRAMWrites(ExecutionTrace trace) {
+    List<ExecutionTrace.Write> writes = new ArrayList<>();
+    for (ExecutionTrace.Write write : getWrites(trace)) {
+      if (write.getAddress() < 0x2000) {
+        writes.add(write);
+      }
+    }
+    return writes;
+  }
+
+  private CPUTrace() {
+  }
+
+}
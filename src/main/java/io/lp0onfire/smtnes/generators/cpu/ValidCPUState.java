@@ -0,0 +1,46 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorUnsignedLessThanExpression;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Asserts that CPU_State encodes one of the CPUStates. Power-on and CPUCycle
+// never produce anything else, but an unconstrained symbolic state can,
+// so this is the first invariant to give a KInductionProver.
+public class ValidCPUState implements CodeGenerator {
+
+  @Override
+  public Set<String> getStateVariablesRead() {
+    return new HashSet<String>(Arrays.asList(new String[]{
+        "CPU_State"
+    }));
+  }
+
+  @Override
+  public Set<String> getStateVariablesWritten() {
+    return new HashSet<>();
+  }
+
+  @Override
+  public List<SExpression> generateCode(Map<String, Symbol> inputs,
+      Map<String, Symbol> outputs) {
+    List<SExpression> exprs = new LinkedList<>();
+    
+    // state indices are contiguous from 0
+    BitVectorConstant limit = BitVectorConstant.of(CPUState.getMaxIndex() + 1, CPUState.getStateWidth());
+    exprs.add(new Assertion(new BitVectorUnsignedLessThanExpression(inputs.get("CPU_State"), limit)));
+    
+    return exprs;
+  }
+  
+}
@@ -7,9 +7,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.lang3.StringUtils;
-
 import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcretePageHandler;
 import io.lp0onfire.smtnes.Mapper;
 import io.lp0onfire.smtnes.PageHandler;
 import io.lp0onfire.smtnes.ROM;
@@ -80,13 +79,10 @@ public class Mapper000 extends Mapper {
         // fill the contents of PRG_ROM
         for (int addr = 0; addr < PRG_ROM_size; ++addr) {
           // calculate N-bit address
-          String bits = Integer.toBinaryString(addr);
-          // zero-pad on the left
-          int zeroCount = PRG_ROM_address_bits - bits.length();
-          BinaryConstant index = new BinaryConstant(StringUtils.repeat('0', zeroCount) + bits);
+          BitVectorConstant index = BitVectorConstant.of(addr, PRG_ROM_address_bits);
           byte data = getROM().readPRG_ROM(addr);
           exprs.add(new Assertion(new EqualsExpression(
-              new ArrayReadExpression(PRG_ROM, index), new BinaryConstant(data))));
+              new ArrayReadExpression(PRG_ROM, index), BitVectorConstant.of(data & 0xFF, 8))));
         }
         
         return exprs;
@@ -170,4 +166,19 @@ public class Mapper000 extends Mapper {
     }
   }
   
+  private ConcretePageHandler concretePRG_ROM_PageHandler = null;
+  
+  @Override
+  protected ConcretePageHandler _getConcreteCPUPageHandler(int pageNumber) {
+    if (pageNumber >= 8 && pageNumber <= 15) {
+      // 16 KiB of PRG ROM is mirrored at $C000 by the same address decoding
+      if (concretePRG_ROM_PageHandler == null) {
+        concretePRG_ROM_PageHandler = ConcretePageHandler.rom(getROM().getPRG_ROM());
+      }
+      return concretePRG_ROM_PageHandler;
+    } else {
+      return null;
+    }
+  }
+  
 }
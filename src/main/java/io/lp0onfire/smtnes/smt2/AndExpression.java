@@ -1,12 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class AndExpression extends ExpressionList {
 
   public AndExpression(SExpression... expr) {
-    super(ArrayUtils.addAll(
-        new SExpression[] { new Symbol("and") }, expr));
+    super(ReservedSymbols.AND, expr);
+  }
+  
+  private AndExpression(AndExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected AndExpression withChildren(SExpression[] children) {
+    return new AndExpression(this, children);
   }
   
 }
@@ -17,10 +17,10 @@ public class ArrayDeclaration extends ExpressionList {
   
   // (declare-fun [symbol] () (Array (_ BitVec [addressWidth]) (_ BitVec [dataWidth])))
   public ArrayDeclaration(Symbol symbol, Numeral addressWidth, Numeral dataWidth) {
-    super(new Symbol("declare-fun"), symbol, new ExpressionList(),
-        new ExpressionList(new Symbol("Array"),
-            new IndexedIdentifier(new Symbol("BitVec"), addressWidth),
-            new IndexedIdentifier(new Symbol("BitVec"), dataWidth)));
+    super(ReservedSymbols.DECLARE_FUN, symbol, new ExpressionList(),
+        new ExpressionList(ReservedSymbols.ARRAY,
+            new IndexedIdentifier(ReservedSymbols.BITVEC, addressWidth),
+            new IndexedIdentifier(ReservedSymbols.BITVEC, dataWidth)));
     // it isn't an official rule that array widths must be >0, but
     // semantically having width=0 is nonsense since bitvectors
     // of width 0 are not allowed
@@ -35,4 +35,16 @@ public class ArrayDeclaration extends ExpressionList {
     this.dataWidth = dataWidth;
   }
   
+  private ArrayDeclaration(ArrayDeclaration original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+    this.addressWidth = original.addressWidth;
+    this.dataWidth = original.dataWidth;
+  }
+  
+  @Override
+  protected ArrayDeclaration withChildren(SExpression[] children) {
+    return new ArrayDeclaration(this, children);
+  }
+  
 }
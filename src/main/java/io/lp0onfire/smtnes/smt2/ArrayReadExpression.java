@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class ArrayReadExpression extends ExpressionList {
 
   public ArrayReadExpression(SExpression array, SExpression index) {
-    super(new Symbol("select"), array, index);
+    super(ReservedSymbols.SELECT, array, index);
+  }
+  
+  private ArrayReadExpression(ArrayReadExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected ArrayReadExpression withChildren(SExpression[] children) {
+    return new ArrayReadExpression(this, children);
   }
   
 }
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class ArrayWriteExpression extends ExpressionList {
 
   public ArrayWriteExpression(SExpression array, SExpression index, SExpression value) {
-    super(new Symbol("store"), array, index, value);
+    super(ReservedSymbols.STORE, array, index, value);
+  }
+  
+  private ArrayWriteExpression(ArrayWriteExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected ArrayWriteExpression withChildren(SExpression[] children) {
+    return new ArrayWriteExpression(this, children);
   }
   
 }
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class Assertion extends ExpressionList {
 
   public Assertion(SExpression expr) {
-    super(new Symbol("assert"), expr);
+    super(ReservedSymbols.ASSERT, expr);
+  }
+  
+  private Assertion(Assertion original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected Assertion withChildren(SExpression[] children) {
+    return new Assertion(this, children);
   }
   
 }
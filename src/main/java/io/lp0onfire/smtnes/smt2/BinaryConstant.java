@@ -1,15 +1,20 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.StringUtils;
+import java.io.IOException;
 
+// A bit-vector constant written as a binary literal, kept as its string of bits
+// so that it can be any width and is always written out in #b form.
+// It compares equal to a BitVectorConstant or HexConstant that prints the same text.
 public class BinaryConstant extends SExpression {
 
   private final String bits;
   public String getBits() {
     return this.bits;
   }
-  
-  public void verifyBits(String bits) {
+
+  private int hash = 0;
+
+  public static void verifyBits(String bits) {
     if (bits.length() == 0) {
       throw new IllegalArgumentException("binary constant cannot be empty");
     } else {
@@ -23,24 +28,56 @@ public class BinaryConstant extends SExpression {
       }
     }
   }
-  
+
   public BinaryConstant(String bits) {
     verifyBits(bits);
     this.bits = bits;
   }
-  
+
   public BinaryConstant(byte value) {
-    String bits = Integer.toBinaryString(value & 0xFF);
-    // zero-pad on the left
-    int zeroCount = 8 - bits.length();
-    bits = StringUtils.repeat('0', zeroCount) + bits;
-    verifyBits(bits);
-    this.bits = bits;
+    StringBuilder sb = new StringBuilder(8);
+    for (int i = 7; i >= 0; --i) {
+      sb.append(((value >>> i) & 1) == 0 ? '0' : '1');
+    }
+    this.bits = sb.toString();
+  }
+
+  public int getWidth() {
+    return bits.length();
   }
-  
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof BinaryConstant) {
+      return this.bits.equals(((BinaryConstant)o).bits);
+    } else if (o instanceof BitVectorConstant) {
+      return o.equals(this);
+    } else {
+      return false;
+    }
+  }
+
+  // the hash of the printed text, like the other bit-vector literals
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = toString().hashCode();
+      hash = h;
+    }
+    return h;
+  }
+
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    out.append("#b").append(bits);
+  }
+
   @Override
   public String toString() {
     return "#b" + bits;
   }
-  
+
 }
@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorAddExpression extends ExpressionList {
   public BitVectorAddExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvadd"), e1, e2);
+    super(ReservedSymbols.BVADD, e1, e2);
+  }
+  private BitVectorAddExpression(BitVectorAddExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorAddExpression withChildren(SExpression[] children) {
+    return new BitVectorAddExpression(this, children);
   }
 }
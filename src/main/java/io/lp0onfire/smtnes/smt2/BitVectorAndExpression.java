@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorAndExpression extends ExpressionList {
   public BitVectorAndExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvand"), e1, e2);
+    super(ReservedSymbols.BVAND, e1, e2);
+  }
+  private BitVectorAndExpression(BitVectorAndExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorAndExpression withChildren(SExpression[] children) {
+    return new BitVectorAndExpression(this, children);
   }
 }
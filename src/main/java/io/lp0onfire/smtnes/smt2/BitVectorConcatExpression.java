@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class BitVectorConcatExpression extends ExpressionList {
 
   public BitVectorConcatExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("concat"), e1, e2);
+    super(ReservedSymbols.CONCAT, e1, e2);
+  }
+  
+  private BitVectorConcatExpression(BitVectorConcatExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected BitVectorConcatExpression withChildren(SExpression[] children) {
+    return new BitVectorConcatExpression(this, children);
   }
   
 }
@@ -0,0 +1,201 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.io.IOException;
+
+// A bit-vector constant of up to 64 bits, stored as a number rather than as
+// a string of digits. The textual form is only produced when the constant
+// is written out: #x when the width is a multiple of four, #b otherwise.
+public class BitVectorConstant extends SExpression {
+
+  public static final int MAX_WIDTH = 64;
+
+  // Widths that show up over and over again in generated code
+  // (flags, the reset sequence counter, data bytes, RAM addresses, addresses).
+  // Constants of these widths are shared; entries are created on first use.
+  private static final int[] POOLED_WIDTHS = {1, 3, 8, 11, 16};
+  private static final BitVectorConstant[][] pools = new BitVectorConstant[MAX_WIDTH + 1][];
+  static {
+    for (int width : POOLED_WIDTHS) {
+      pools[width] = new BitVectorConstant[1 << width];
+    }
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final long value;
+  public long getValue() {
+    return this.value;
+  }
+
+  private final int width;
+  public int getWidth() {
+    return this.width;
+  }
+
+  private int hash = 0;
+
+  protected static long mask(int width) {
+    return (width == MAX_WIDTH) ? -1L : (1L << width) - 1L;
+  }
+
+  protected static void checkWidth(int width) {
+    if (width < 1 || width > MAX_WIDTH) {
+      throw new IllegalArgumentException("bit-vector constant width must be between 1 and " + MAX_WIDTH);
+    }
+  }
+
+  protected BitVectorConstant(long value, int width) {
+    checkWidth(width);
+    if ((value & ~mask(width)) != 0) {
+      throw new IllegalArgumentException("value " + value + " does not fit in " + width + " bits");
+    }
+    this.value = value;
+    this.width = width;
+  }
+
+  public static BitVectorConstant of(long value, int width) {
+    checkWidth(width);
+    BitVectorConstant[] pool = pools[width];
+    if (pool == null || value < 0 || value >= pool.length) {
+      return new BitVectorConstant(value, width);
+    }
+    BitVectorConstant c = pool[(int)value];
+    if (c == null) {
+      c = new BitVectorConstant(value, width);
+      pool[(int)value] = c;
+    }
+    return c;
+  }
+
+  // Arithmetic and logic, with the same semantics as the corresponding
+  // SMT-LIB bit-vector operators. Both operands must have the same width
+  // except for concat.
+
+  private void checkSameWidth(BitVectorConstant other) {
+    if (this.width != other.width) {
+      throw new IllegalArgumentException("bit-vector width mismatch: " + this.width + " vs. " + other.width);
+    }
+  }
+
+  public BitVectorConstant add(BitVectorConstant other) {
+    checkSameWidth(other);
+    return of((value + other.value) & mask(width), width);
+  }
+
+  public BitVectorConstant subtract(BitVectorConstant other) {
+    checkSameWidth(other);
+    return of((value - other.value) & mask(width), width);
+  }
+
+  public BitVectorConstant and(BitVectorConstant other) {
+    checkSameWidth(other);
+    return of(value & other.value, width);
+  }
+
+  public BitVectorConstant or(BitVectorConstant other) {
+    checkSameWidth(other);
+    return of(value | other.value, width);
+  }
+
+  public BitVectorConstant xor(BitVectorConstant other) {
+    checkSameWidth(other);
+    return of(value ^ other.value, width);
+  }
+
+  public BitVectorConstant not() {
+    return of(~value & mask(width), width);
+  }
+
+  public BitVectorConstant negate() {
+    return of(-value & mask(width), width);
+  }
+
+  // this becomes the high-order part of the result
+  public BitVectorConstant concat(BitVectorConstant low) {
+    if (this.width + low.width > MAX_WIDTH) {
+      throw new IllegalArgumentException("concatenation would exceed " + MAX_WIDTH + " bits");
+    }
+    return of((value << low.width) | low.value, width + low.width);
+  }
+
+  public BitVectorConstant extract(int upper, int lower) {
+    if (lower < 0 || upper < lower || upper >= width) {
+      throw new IllegalArgumentException("extract indices [" + upper + ":" + lower + "] out of range for width " + width);
+    }
+    int resultWidth = upper - lower + 1;
+    return of((value >>> lower) & mask(resultWidth), resultWidth);
+  }
+
+  public boolean unsignedLessThan(BitVectorConstant other) {
+    checkSameWidth(other);
+    return Long.compareUnsigned(value, other.value) < 0;
+  }
+
+  public boolean unsignedGreaterEqual(BitVectorConstant other) {
+    return !unsignedLessThan(other);
+  }
+
+  // Equality is by printed text, as for every SExpression: #b00001111 and #x0f
+  // are different constants. Two BitVectorConstants print the same text exactly
+  // when their values and widths match, so only the literal classes need the text.
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof BitVectorConstant) {
+      BitVectorConstant other = (BitVectorConstant)o;
+      return this.value == other.value && this.width == other.width;
+    } else if (o instanceof HexConstant || o instanceof BinaryConstant) {
+      return toString().equals(o.toString());
+    } else {
+      return false;
+    }
+  }
+
+  // the hash of the printed text, so that it agrees with HexConstant and BinaryConstant
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = toString().hashCode();
+      hash = h;
+    }
+    return h;
+  }
+
+  protected void writeBinary(Appendable out) throws IOException {
+    out.append("#b");
+    for (int i = width - 1; i >= 0; --i) {
+      out.append(((value >>> i) & 1L) == 0 ? '0' : '1');
+    }
+  }
+
+  protected void writeHex(Appendable out) throws IOException {
+    out.append("#x");
+    for (int i = width - 4; i >= 0; i -= 4) {
+      out.append(HEX_DIGITS[(int)((value >>> i) & 0xF)]);
+    }
+  }
+
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    if (width % 4 == 0) {
+      writeHex(out);
+    } else {
+      writeBinary(out);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(width + 2);
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      // StringBuilder doesn't throw
+      throw new IllegalStateException(e);
+    }
+    return sb.toString();
+  }
+
+}
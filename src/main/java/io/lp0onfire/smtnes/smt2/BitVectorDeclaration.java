@@ -14,8 +14,8 @@ public class BitVectorDeclaration extends ExpressionList {
   
   // (declare-fun [symbol] () (_ BitVec [width]))
   public BitVectorDeclaration(Symbol symbol, Numeral width) {
-    super(new Symbol("declare-fun"), symbol, new ExpressionList(),
-        new IndexedIdentifier(new Symbol("BitVec"), width));
+    super(ReservedSymbols.DECLARE_FUN, symbol, new ExpressionList(),
+        new IndexedIdentifier(ReservedSymbols.BITVEC, width));
     if (width.getDigits().equals("0")) {
       throw new IllegalArgumentException("bitvector width must be greater than 0");
     }
@@ -23,4 +23,15 @@ public class BitVectorDeclaration extends ExpressionList {
     this.width = width;
   }
   
+  private BitVectorDeclaration(BitVectorDeclaration original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+    this.width = original.width;
+  }
+  
+  @Override
+  protected BitVectorDeclaration withChildren(SExpression[] children) {
+    return new BitVectorDeclaration(this, children);
+  }
+  
 }
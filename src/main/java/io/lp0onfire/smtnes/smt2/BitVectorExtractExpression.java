@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class BitVectorExtractExpression extends ExpressionList {
 
   public BitVectorExtractExpression(SExpression bitvector, Numeral upperIndex, Numeral lowerIndex) {
-    super(new IndexedIdentifier(new Symbol("extract"), upperIndex, lowerIndex), bitvector);
+    super(new IndexedIdentifier(ReservedSymbols.EXTRACT, upperIndex, lowerIndex), bitvector);
+  }
+  
+  private BitVectorExtractExpression(BitVectorExtractExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected BitVectorExtractExpression withChildren(SExpression[] children) {
+    return new BitVectorExtractExpression(this, children);
   }
   
 }
@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorLeftShiftExpression extends ExpressionList {
   public BitVectorLeftShiftExpression(SExpression shiftedValue, SExpression shiftAmount) {
-    super(new Symbol("bvshl"), shiftedValue, shiftAmount);
+    super(ReservedSymbols.BVSHL, shiftedValue, shiftAmount);
+  }
+  private BitVectorLeftShiftExpression(BitVectorLeftShiftExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorLeftShiftExpression withChildren(SExpression[] children) {
+    return new BitVectorLeftShiftExpression(this, children);
   }
 }
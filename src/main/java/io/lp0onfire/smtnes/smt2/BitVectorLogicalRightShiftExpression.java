@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorLogicalRightShiftExpression extends ExpressionList {
   public BitVectorLogicalRightShiftExpression(SExpression shiftedValue, SExpression shiftAmount) {
-    super(new Symbol("bvlshr"), shiftedValue, shiftAmount);
+    super(ReservedSymbols.BVLSHR, shiftedValue, shiftAmount);
+  }
+  private BitVectorLogicalRightShiftExpression(BitVectorLogicalRightShiftExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorLogicalRightShiftExpression withChildren(SExpression[] children) {
+    return new BitVectorLogicalRightShiftExpression(this, children);
   }
 }
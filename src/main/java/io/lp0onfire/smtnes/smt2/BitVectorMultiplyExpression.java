@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorMultiplyExpression extends ExpressionList {
   public BitVectorMultiplyExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvmul"), e1, e2);
+    super(ReservedSymbols.BVMUL, e1, e2);
+  }
+  private BitVectorMultiplyExpression(BitVectorMultiplyExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorMultiplyExpression withChildren(SExpression[] children) {
+    return new BitVectorMultiplyExpression(this, children);
   }
 }
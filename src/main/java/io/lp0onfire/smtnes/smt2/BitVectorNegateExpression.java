@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorNegateExpression extends ExpressionList {
   public BitVectorNegateExpression(SExpression e) {
-    super(new Symbol("bvneg"), e);
+    super(ReservedSymbols.BVNEG, e);
+  }
+  private BitVectorNegateExpression(BitVectorNegateExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorNegateExpression withChildren(SExpression[] children) {
+    return new BitVectorNegateExpression(this, children);
   }
 }
@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorNotExpression extends ExpressionList {
   public BitVectorNotExpression(SExpression e) {
-    super(new Symbol("bvnot"), e);
+    super(ReservedSymbols.BVNOT, e);
+  }
+  private BitVectorNotExpression(BitVectorNotExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorNotExpression withChildren(SExpression[] children) {
+    return new BitVectorNotExpression(this, children);
   }
 }
@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorOrExpression extends ExpressionList {
   public BitVectorOrExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvor"), e1, e2);
+    super(ReservedSymbols.BVOR, e1, e2);
+  }
+  private BitVectorOrExpression(BitVectorOrExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorOrExpression withChildren(SExpression[] children) {
+    return new BitVectorOrExpression(this, children);
   }
 }
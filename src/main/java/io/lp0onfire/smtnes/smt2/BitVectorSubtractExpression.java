@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorSubtractExpression extends ExpressionList {
   public BitVectorSubtractExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvsub"), e1, e2);
+    super(ReservedSymbols.BVSUB, e1, e2);
+  }
+  private BitVectorSubtractExpression(BitVectorSubtractExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorSubtractExpression withChildren(SExpression[] children) {
+    return new BitVectorSubtractExpression(this, children);
   }
 }
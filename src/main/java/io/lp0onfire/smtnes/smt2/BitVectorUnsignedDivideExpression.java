@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorUnsignedDivideExpression extends ExpressionList {
   public BitVectorUnsignedDivideExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvudiv"), e1, e2);
+    super(ReservedSymbols.BVUDIV, e1, e2);
+  }
+  private BitVectorUnsignedDivideExpression(BitVectorUnsignedDivideExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorUnsignedDivideExpression withChildren(SExpression[] children) {
+    return new BitVectorUnsignedDivideExpression(this, children);
   }
 }
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class BitVectorUnsignedGreaterEqualExpression extends ExpressionList {
 
   public BitVectorUnsignedGreaterEqualExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvuge"), e1, e2);
+    super(ReservedSymbols.BVUGE, e1, e2);
+  }
+  
+  private BitVectorUnsignedGreaterEqualExpression(BitVectorUnsignedGreaterEqualExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected BitVectorUnsignedGreaterEqualExpression withChildren(SExpression[] children) {
+    return new BitVectorUnsignedGreaterEqualExpression(this, children);
   }
   
 }
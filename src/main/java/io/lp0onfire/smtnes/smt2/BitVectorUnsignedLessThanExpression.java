@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class BitVectorUnsignedLessThanExpression extends ExpressionList {
 
   public BitVectorUnsignedLessThanExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvult"), e1, e2);
+    super(ReservedSymbols.BVULT, e1, e2);
+  }
+  
+  private BitVectorUnsignedLessThanExpression(BitVectorUnsignedLessThanExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected BitVectorUnsignedLessThanExpression withChildren(SExpression[] children) {
+    return new BitVectorUnsignedLessThanExpression(this, children);
   }
   
 }
@@ -2,6 +2,13 @@ package io.lp0onfire.smtnes.smt2;
 
 public class BitVectorUnsignedRemainderExpression extends ExpressionList {
   public BitVectorUnsignedRemainderExpression(SExpression e1, SExpression e2) {
-    super(new Symbol("bvurem"), e1, e2);
+    super(ReservedSymbols.BVUREM, e1, e2);
+  }
+  private BitVectorUnsignedRemainderExpression(BitVectorUnsignedRemainderExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  @Override
+  protected BitVectorUnsignedRemainderExpression withChildren(SExpression[] children) {
+    return new BitVectorUnsignedRemainderExpression(this, children);
   }
 }
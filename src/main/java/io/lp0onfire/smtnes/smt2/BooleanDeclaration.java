@@ -0,0 +1,26 @@
+package io.lp0onfire.smtnes.smt2;
+
+public class BooleanDeclaration extends ExpressionList {
+
+  private final Symbol symbol;
+  public Symbol getSymbol() {
+    return this.symbol;
+  }
+  
+  // (declare-fun [symbol] () Bool)
+  public BooleanDeclaration(Symbol symbol) {
+    super(ReservedSymbols.DECLARE_FUN, symbol, new ExpressionList(), ReservedSymbols.BOOL);
+    this.symbol = symbol;
+  }
+  
+  private BooleanDeclaration(BooleanDeclaration original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+  }
+  
+  @Override
+  protected BooleanDeclaration withChildren(SExpression[] children) {
+    return new BooleanDeclaration(this, children);
+  }
+  
+}
@@ -7,8 +7,15 @@ public class BooleanLiteral extends Symbol {
     return this.literal;
   }
   
+  public static final BooleanLiteral TRUE = new BooleanLiteral(true);
+  public static final BooleanLiteral FALSE = new BooleanLiteral(false);
+  
+  public static BooleanLiteral valueOf(boolean lit) {
+    return lit ? TRUE : FALSE;
+  }
+  
   public BooleanLiteral(boolean lit) {
-    super(lit ? "true" : "false");
+    super(lit ? "true" : "false", false);
     this.literal = lit;
   }
   
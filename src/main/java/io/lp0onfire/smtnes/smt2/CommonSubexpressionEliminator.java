@@ -0,0 +1,147 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Output pass that finds compound terms occurring more than once in the
+// assertions of a batch and binds each of them once with a nullary define-fun,
+// placed just before the first command that uses it.
+// Terms whose sort can't be worked out are left alone, and so are the bodies
+// of let, forall and exists, which may mention the symbols they bind. The SortChecker
+// should see every declaration in the script, so the same eliminator
+// needs to process every batch in order.
+public class CommonSubexpressionEliminator {
+
+  private final SortChecker sorts;
+  public SortChecker getSortChecker() {
+    return this.sorts;
+  }
+
+  // '!' never shows up in state variable names, so this can't collide with them
+  private final String prefix;
+  private long nextIndex = 0;
+
+  private long definitionsIntroduced = 0;
+  public long getDefinitionsIntroduced() {
+    return this.definitionsIntroduced;
+  }
+
+  public CommonSubexpressionEliminator() {
+    this(new SortChecker(), "cse!");
+  }
+
+  public CommonSubexpressionEliminator(SortChecker sorts, String prefix) {
+    // validate once; the generated names are built from this prefix
+    new Symbol(prefix + "0");
+    this.sorts = sorts;
+    this.prefix = prefix;
+  }
+
+  public List<SExpression> eliminate(List<SExpression> exprs) {
+    Map<SExpression, Integer> counts = new HashMap<>();
+    for (SExpression expr : exprs) {
+      sorts.observe(expr);
+      if (isAssertion(expr)) {
+        count(((ExpressionList)expr).get(1), counts);
+      }
+    }
+    Map<SExpression, Symbol> names = new HashMap<>();
+    List<SExpression> result = new ArrayList<>(exprs.size());
+    for (SExpression expr : exprs) {
+      if (isAssertion(expr)) {
+        SExpression body = ((ExpressionList)expr).get(1);
+        SExpression rewritten = rewrite(body, counts, names, result);
+        result.add(rewritten == body ? expr : new Assertion(rewritten));
+      } else {
+        result.add(expr);
+      }
+    }
+    return result;
+  }
+
+  private static boolean isAssertion(SExpression expr) {
+    if (expr instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)expr;
+      return list.size() == 2 && list.get(0).equals(ReservedSymbols.ASSERT);
+    } else {
+      return false;
+    }
+  }
+
+  private static boolean isCompoundTerm(SExpression term) {
+    return term instanceof ExpressionList && !(term instanceof IndexedIdentifier)
+        && ((ExpressionList)term).size() >= 2;
+  }
+
+  // (let ((x e) ...) body), (forall ((x S) ...) body) or (exists ((x S) ...) body)
+  private static boolean isBinder(ExpressionList list) {
+    SExpression op = list.get(0);
+    return list.size() == 3 && list.get(1) instanceof ExpressionList
+        && (op.equals(ReservedSymbols.LET) || op.equals(ReservedSymbols.FORALL) || op.equals(ReservedSymbols.EXISTS));
+  }
+
+  // Count occurrences, only descending into a term the first time we see it;
+  // that way a subterm's count isn't inflated just because its parent repeats.
+  private static void count(SExpression term, Map<SExpression, Integer> counts) {
+    if (!isCompoundTerm(term)) {
+      return;
+    }
+    Integer c = counts.get(term);
+    if (c == null) {
+      counts.put(term, 1);
+      ExpressionList list = (ExpressionList)term;
+      if (isBinder(list)) {
+        return;
+      }
+      for (int i = 1; i < list.size(); ++i) {
+        count(list.get(i), counts);
+      }
+    } else {
+      counts.put(term, c + 1);
+    }
+  }
+
+  private SExpression rewrite(SExpression term, Map<SExpression, Integer> counts,
+      Map<SExpression, Symbol> names, List<SExpression> out) {
+    if (!isCompoundTerm(term)) {
+      return term;
+    }
+    Symbol name = names.get(term);
+    if (name != null) {
+      return name;
+    }
+    ExpressionList list = (ExpressionList)term;
+    if (isBinder(list)) {
+      return term;
+    }
+    SExpression[] args = new SExpression[list.size() - 1];
+    boolean changed = false;
+    for (int i = 0; i < args.length; ++i) {
+      SExpression arg = list.get(i + 1);
+      args[i] = rewrite(arg, counts, names, out);
+      if (args[i] != arg) {
+        changed = true;
+      }
+    }
+    SExpression rewritten = changed ? new ExpressionList(list.get(0), args, false) : term;
+    Integer c = counts.get(term);
+    if (c != null && c > 1) {
+      // repeated subterms have been named already, so this doesn't walk the whole term
+      SExpression sort = sorts.sortOf(rewritten);
+      if (sort != null) {
+        name = Symbol.trusted(prefix + nextIndex);
+        nextIndex += 1;
+        // inner definitions were added by the recursive calls above, so they come first
+        out.add(new DefineFunction(name, sort, rewritten));
+        sorts.declare(name, sort);
+        names.put(term, name);
+        definitionsIntroduced += 1;
+        return name;
+      }
+    }
+    return rewritten;
+  }
+
+}
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class ConditionalExpression extends ExpressionList {
 
   public ConditionalExpression(SExpression condition, SExpression iftrue, SExpression iffalse) {
-    super(new Symbol("ite"), condition, iftrue, iffalse);
+    super(ReservedSymbols.ITE, condition, iftrue, iffalse);
+  }
+  
+  private ConditionalExpression(ConditionalExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected ConditionalExpression withChildren(SExpression[] children) {
+    return new ConditionalExpression(this, children);
   }
   
 }
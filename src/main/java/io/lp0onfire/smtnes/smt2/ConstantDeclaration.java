@@ -0,0 +1,33 @@
+package io.lp0onfire.smtnes.smt2;
+
+public class ConstantDeclaration extends ExpressionList {
+
+  private final Symbol symbol;
+  public Symbol getSymbol() {
+    return this.symbol;
+  }
+  
+  private final SExpression sort;
+  public SExpression getSort() {
+    return this.sort;
+  }
+  
+  // (declare-fun [symbol] () [sort]), for a sort that is only known at run time
+  public ConstantDeclaration(Symbol symbol, SExpression sort) {
+    super(ReservedSymbols.DECLARE_FUN, symbol, new ExpressionList(), sort);
+    this.symbol = symbol;
+    this.sort = sort;
+  }
+  
+  private ConstantDeclaration(ConstantDeclaration original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+    this.sort = original.sort;
+  }
+  
+  @Override
+  protected ConstantDeclaration withChildren(SExpression[] children) {
+    return new ConstantDeclaration(this, children);
+  }
+  
+}
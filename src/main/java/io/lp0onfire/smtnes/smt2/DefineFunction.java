@@ -0,0 +1,68 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class DefineFunction extends ExpressionList {
+
+  private final Symbol symbol;
+  public Symbol getSymbol() {
+    return this.symbol;
+  }
+  
+  private final List<Symbol> parameters;
+  public List<Symbol> getParameters() {
+    return this.parameters;
+  }
+  
+  private final SExpression sort;
+  public SExpression getSort() {
+    return this.sort;
+  }
+  
+  private final SExpression body;
+  public SExpression getBody() {
+    return this.body;
+  }
+  
+  // (define-fun [symbol] () [sort] [body])
+  public DefineFunction(Symbol symbol, SExpression sort, SExpression body) {
+    this(symbol, Collections.<Symbol>emptyList(), Collections.<SExpression>emptyList(), sort, body);
+  }
+  
+  // (define-fun [symbol] (([p1] [s1]) ... ([pN] [sN])) [sort] [body])
+  public DefineFunction(Symbol symbol, List<Symbol> parameters, List<SExpression> parameterSorts,
+      SExpression sort, SExpression body) {
+    super(ReservedSymbols.DEFINE_FUN, symbol, sortedVariables(parameters, parameterSorts), sort, body);
+    this.symbol = symbol;
+    this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+    this.sort = sort;
+    this.body = body;
+  }
+  
+  private static ExpressionList sortedVariables(List<Symbol> parameters, List<SExpression> parameterSorts) {
+    if (parameters.size() != parameterSorts.size()) {
+      throw new IllegalArgumentException("every parameter of a defined function needs exactly one sort");
+    }
+    SExpression[] vars = new SExpression[parameters.size()];
+    for (int i = 0; i < vars.length; ++i) {
+      vars[i] = new ExpressionList(parameters.get(i), parameterSorts.get(i));
+    }
+    return new ExpressionList(vars);
+  }
+  
+  private DefineFunction(DefineFunction original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+    this.parameters = original.parameters;
+    this.sort = original.sort;
+    this.body = original.body;
+  }
+  
+  @Override
+  protected DefineFunction withChildren(SExpression[] children) {
+    return new DefineFunction(this, children);
+  }
+  
+}
@@ -1,12 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class DistinctExpression extends ExpressionList {
 
   public DistinctExpression(SExpression... expr) {
-    super(ArrayUtils.addAll(
-        new SExpression[] { new Symbol("distinct") }, expr));
+    super(ReservedSymbols.DISTINCT, expr);
+  }
+  
+  private DistinctExpression(DistinctExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected DistinctExpression withChildren(SExpression[] children) {
+    return new DistinctExpression(this, children);
   }
   
 }
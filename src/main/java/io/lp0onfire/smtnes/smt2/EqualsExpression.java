@@ -1,12 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class EqualsExpression extends ExpressionList {
 
   public EqualsExpression(SExpression... expr) {
-    super(ArrayUtils.addAll(
-        new SExpression[] { new Symbol("=") }, expr));
+    super(ReservedSymbols.EQUALS, expr);
+  }
+  
+  private EqualsExpression(EqualsExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected EqualsExpression withChildren(SExpression[] children) {
+    return new EqualsExpression(this, children);
   }
   
 }
@@ -0,0 +1,88 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+// Hash-consing factory for expressions.
+// intern() returns a single shared instance for every structurally equal
+// expression it has seen, so generators that build the same subterm over and over
+// (e.g. (= CPU_A_3 CPU_A_4) in every CPUCycle implication) only keep one copy alive.
+// Entries are weakly held; once no generated code refers to a term any more,
+// it drops out of the table.
+public class ExpressionFactory {
+
+  private final Map<SExpression, WeakReference<SExpression>> pool = new WeakHashMap<>();
+  
+  public int size() {
+    return pool.size();
+  }
+  
+  // Returns the shared instance equal to expr, registering one (and, recursively,
+  // its subexpressions) if none exists yet: expr itself, or a copy of it if some of
+  // its children already had shared instances. expr is never changed.
+  // Structurally equal expressions of different classes (e.g. an AndExpression
+  // and a plain ExpressionList starting with "and") are not merged.
+  @SuppressWarnings("unchecked")
+  public <T extends SExpression> T intern(T expr) {
+    WeakReference<SExpression> ref = pool.get(expr);
+    if (ref != null) {
+      SExpression canonical = ref.get();
+      if (canonical != null && canonical.getClass() == expr.getClass()) {
+        return (T)canonical;
+      }
+    }
+    if (expr instanceof ExpressionList) {
+      // expr is new, but its children may not be; share them where possible,
+      // in a copy, since expr itself belongs to the caller
+      ExpressionList list = (ExpressionList)expr;
+      SExpression[] children = null;
+      for (int i = 0; i < list.size(); ++i) {
+        SExpression child = list.get(i);
+        SExpression canonicalChild = intern(child);
+        if (canonicalChild != child && children == null) {
+          children = new SExpression[list.size()];
+          for (int j = 0; j < i; ++j) {
+            children[j] = list.get(j);
+          }
+        }
+        if (children != null) {
+          children[i] = canonicalChild;
+        }
+      }
+      ExpressionList copy = (children == null) ? null : list.withChildren(children);
+      if (copy != null) {
+        expr = (T)copy;
+      }
+    }
+    pool.put(expr, new WeakReference<SExpression>(expr));
+    return expr;
+  }
+  
+  // Interns every expression in the list, replacing each one with its shared instance.
+  public void internAll(List<SExpression> exprs) {
+    ListIterator<SExpression> it = exprs.listIterator();
+    while (it.hasNext()) {
+      it.set(intern(it.next()));
+    }
+  }
+  
+  public Symbol symbol(String name) {
+    return intern(new Symbol(name));
+  }
+  
+  public Numeral numeral(String digits) {
+    return intern(new Numeral(digits));
+  }
+  
+  public BinaryConstant binaryConstant(String bits) {
+    return intern(new BinaryConstant(bits));
+  }
+  
+  public HexConstant hexConstant(String digits) {
+    return intern(new HexConstant(digits));
+  }
+  
+}
@@ -1,49 +1,186 @@
 package io.lp0onfire.smtnes.smt2;
 
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
 
 public class ExpressionList extends SExpression {
 
-  private final List<SExpression> exprs;
+  // Lists are stored as an optional operator (the head of an application, e.g. "and")
+  // followed by a flat array of operands. Subclasses that apply a fixed operator
+  // to a variable number of arguments pass it separately so that the argument array
+  // doesn't have to be copied just to prepend it.
+  // Neither the operator nor the array contents change after construction;
+  // withChildren() makes a new list instead.
+  private final SExpression operator;
+  private final SExpression[] operands;
+  
+  // Returns an unmodifiable view of all subexpressions, including the operator.
   public List<SExpression> getExprs() {
-    return this.exprs;
+    return new ExpressionsView();
+  }
+  
+  public int size() {
+    return (operator == null ? 0 : 1) + operands.length;
+  }
+  
+  public SExpression get(int index) {
+    if (operator == null) {
+      return operands[index];
+    } else if (index == 0) {
+      return operator;
+    } else {
+      return operands[index - 1];
+    }
   }
   
   public ExpressionList(SExpression... values) {
-    if (values == null) {
+    this(null, values, true);
+  }
+  
+  public ExpressionList(List<SExpression> values) {
+    this(null, toArray(values), false);
+  }
+  
+  protected ExpressionList(Symbol operator, SExpression[] operands) {
+    this(operator, operands, true);
+  }
+  
+  // Callers that build a fresh operand array can hand it over without a copy.
+  ExpressionList(SExpression operator, SExpression[] operands, boolean copyOperands) {
+    if (operands == null) {
       throw new NullPointerException("null subexpression in ExpressionList");
     }
-    for (SExpression value : values) {
-      if (value == null) {
+    for (SExpression operand : operands) {
+      if (operand == null) {
         throw new NullPointerException("null subexpression in ExpressionList");
       }
     }
-    exprs = new LinkedList<SExpression>(Arrays.asList(values));
+    this.operator = operator;
+    this.operands = (copyOperands ? operands.clone() : operands);
   }
   
-  public ExpressionList(List<SExpression> values) {
+  private static SExpression[] toArray(List<SExpression> values) {
     if (values == null) {
       throw new NullPointerException("null subexpression in ExpressionList");
     }
-    for (SExpression value : values) {
-      if (value == null) {
+    return values.toArray(new SExpression[values.size()]);
+  }
+  
+  private class ExpressionsView extends AbstractList<SExpression> implements RandomAccess {
+    @Override
+    public SExpression get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("index " + index + " out of range for list of size " + size());
+      }
+      return ExpressionList.this.get(index);
+    }
+
+    @Override
+    public int size() {
+      return ExpressionList.this.size();
+    }
+  }
+  
+  // For subclasses' copy constructors: a list like original, but holding children
+  // in place of get(0) ... get(size() - 1).
+  protected ExpressionList(ExpressionList original, SExpression[] children) {
+    if (children.length != original.size()) {
+      throw new IllegalArgumentException("expected " + original.size() + " children, got " + children.length);
+    }
+    for (SExpression child : children) {
+      if (child == null) {
         throw new NullPointerException("null subexpression in ExpressionList");
       }
     }
-    exprs = new LinkedList<SExpression>(values);
+    if (original.operator == null) {
+      this.operator = null;
+      this.operands = children.clone();
+    } else {
+      this.operator = children[0];
+      this.operands = Arrays.copyOfRange(children, 1, children.length);
+    }
+  }
+
+  // A copy of this list, of the same class (and with any fields a subclass adds),
+  // holding children in place of get(0) ... get(size() - 1). Used by ExpressionFactory
+  // to share equal children without changing the list it was handed. Every subclass
+  // overrides this with its own copy constructor; for one that doesn't, this returns
+  // null and the caller has to make do with the original.
+  protected ExpressionList withChildren(SExpression[] children) {
+    if (getClass() != ExpressionList.class) {
+      return null;
+    }
+    return new ExpressionList(this, children);
+  }
+  
+  // cached, since interning looks up the same (deep) lists repeatedly
+  private int hash = 0;
+  
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof ExpressionList) {
+      ExpressionList other = (ExpressionList)o;
+      if (this.hashCode() != other.hashCode()) {
+        return false;
+      }
+      int n = this.size();
+      if (n != other.size()) {
+        return false;
+      }
+      for (int i = 0; i < n; ++i) {
+        if (!this.get(i).equals(other.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    } else {
+      return false;
+    }
+  }
+  
+  @Override
+  public int hashCode() {
+    if (hash == 0) {
+      int h = 1;
+      if (operator != null) {
+        h = 31 * h + operator.hashCode();
+      }
+      for (SExpression operand : operands) {
+        h = 31 * h + operand.hashCode();
+      }
+      hash = h;
+    }
+    return hash;
+  }
+  
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    out.append('(');
+    if (operator != null) {
+      out.append(' ');
+      operator.writeTo(out);
+    }
+    for (SExpression operand : operands) {
+      out.append(' ');
+      operand.writeTo(out);
+    }
+    out.append(" )");
   }
   
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
-    sb.append("(");
-    for (SExpression expr : exprs) {
-      sb.append(" ");
-      sb.append(expr.toString());
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      // StringBuilder.append() never throws
+      throw new IllegalStateException(e);
     }
-    sb.append(" )");
     return sb.toString();
   }
   
@@ -0,0 +1,195 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Reads s-expressions back in, e.g. from a solver's get-value or get-model response.
+// Bit-vector literals of up to 64 bits become BitVectorConstants (wider ones
+// stay HexConstant or BinaryConstant), true and false become BooleanLiterals,
+// and everything else is a Symbol, Numeral or ExpressionList. Strings and
+// keywords are kept as Symbols holding their exact text.
+//
+// The input is read a character at a time without any lookahead beyond the
+// current expression, so expressions can be parsed off a stream as they arrive.
+// Nesting is handled with an explicit stack, since a model for a large array
+// can be thousands of stores deep.
+public class ExpressionParser {
+
+  private final Reader in;
+  // a character that was read but not used yet, or -2 if there isn't one
+  private int pending = -2;
+
+  public ExpressionParser(Reader in) {
+    this.in = in;
+  }
+
+  public static SExpression parse(String text) {
+    List<SExpression> exprs = parseAll(text);
+    if (exprs.size() != 1) {
+      throw new IllegalArgumentException("expected exactly one expression, found " + exprs.size());
+    }
+    return exprs.get(0);
+  }
+
+  public static List<SExpression> parseAll(String text) {
+    ExpressionParser parser = new ExpressionParser(new StringReader(text));
+    List<SExpression> exprs = new ArrayList<>();
+    try {
+      SExpression expr;
+      while ((expr = parser.next()) != null) {
+        exprs.add(expr);
+      }
+    } catch (IOException e) {
+      // StringReader doesn't throw
+      throw new IllegalStateException(e);
+    }
+    return exprs;
+  }
+
+  private int read() throws IOException {
+    if (pending != -2) {
+      int c = pending;
+      pending = -2;
+      return c;
+    }
+    return in.read();
+  }
+
+  // The next complete expression, or null at the end of the input.
+  // Malformed input is an IllegalArgumentException.
+  public SExpression next() throws IOException {
+    Deque<List<SExpression>> open = new ArrayDeque<>();
+    while (true) {
+      int c = read();
+      if (c == -1) {
+        if (!open.isEmpty()) {
+          throw new IllegalArgumentException("unexpected end of input inside a list");
+        }
+        return null;
+      }
+      char ch = (char)c;
+      SExpression expr;
+      if (Character.isWhitespace(ch)) {
+        continue;
+      } else if (ch == ';') {
+        skipComment();
+        continue;
+      } else if (ch == '(') {
+        open.push(new ArrayList<SExpression>());
+        continue;
+      } else if (ch == ')') {
+        if (open.isEmpty()) {
+          throw new IllegalArgumentException("unbalanced ')'");
+        }
+        List<SExpression> items = open.pop();
+        expr = new ExpressionList(null, items.toArray(new SExpression[items.size()]), false);
+      } else if (ch == '"') {
+        expr = Symbol.trusted(readString());
+      } else if (ch == '|') {
+        expr = Symbol.trusted(readQuotedSymbol());
+      } else {
+        expr = token(readToken(ch));
+      }
+      if (open.isEmpty()) {
+        return expr;
+      }
+      open.peek().add(expr);
+    }
+  }
+
+  private void skipComment() throws IOException {
+    int c;
+    do {
+      c = read();
+    } while (c != -1 && c != '\n');
+  }
+
+  private String readString() throws IOException {
+    StringBuilder sb = new StringBuilder("\"");
+    while (true) {
+      int c = read();
+      if (c == -1) {
+        throw new IllegalArgumentException("unterminated string literal");
+      }
+      sb.append((char)c);
+      if (c == '"') {
+        // "" is an escaped quote
+        int d = read();
+        if (d != '"') {
+          pending = d;
+          return sb.toString();
+        }
+        sb.append('"');
+      }
+    }
+  }
+
+  private String readQuotedSymbol() throws IOException {
+    StringBuilder sb = new StringBuilder("|");
+    while (true) {
+      int c = read();
+      if (c == -1) {
+        throw new IllegalArgumentException("unterminated quoted symbol");
+      }
+      sb.append((char)c);
+      if (c == '|') {
+        return sb.toString();
+      }
+    }
+  }
+
+  private String readToken(char first) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append(first);
+    while (true) {
+      int c = read();
+      if (c == -1 || Character.isWhitespace(c) || c == '(' || c == ')' || c == '"' || c == '|' || c == ';') {
+        pending = c;
+        return sb.toString();
+      }
+      sb.append((char)c);
+    }
+  }
+
+  private static SExpression token(String text) {
+    if (text.startsWith("#x")) {
+      String digits = text.substring(2);
+      if (digits.length() * 4 <= BitVectorConstant.MAX_WIDTH) {
+        return BitVectorConstant.of(parseDigits(digits, 16, text), digits.length() * 4);
+      }
+      return new HexConstant(digits);
+    } else if (text.startsWith("#b")) {
+      String bits = text.substring(2);
+      if (bits.length() <= BitVectorConstant.MAX_WIDTH) {
+        return BitVectorConstant.of(parseDigits(bits, 2, text), bits.length());
+      }
+      return new BinaryConstant(bits);
+    } else if (Character.isDigit(text.charAt(0))) {
+      return new Numeral(text);
+    } else if (text.equals("true")) {
+      return BooleanLiteral.TRUE;
+    } else if (text.equals("false")) {
+      return BooleanLiteral.FALSE;
+    } else {
+      // includes keywords such as :reason-unknown
+      return Symbol.trusted(text);
+    }
+  }
+
+  private static long parseDigits(String digits, int radix, String text) {
+    if (digits.isEmpty()) {
+      throw new IllegalArgumentException("malformed constant '" + text + "'");
+    }
+    try {
+      return Long.parseUnsignedLong(digits, radix);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("malformed constant '" + text + "'");
+    }
+  }
+
+}
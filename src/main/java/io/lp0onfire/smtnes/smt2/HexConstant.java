@@ -1,11 +1,15 @@
 package io.lp0onfire.smtnes.smt2;
 
+import java.io.IOException;
+
 public class HexConstant extends SExpression {
 
   private final String digits;
   public String getDigits() {
     return this.digits;
   }
+
+  private int hash = 0;
   
   public void verifyDigits(String digits) {
     if (digits.length() == 0) {
@@ -34,6 +38,35 @@ public class HexConstant extends SExpression {
     this.digits = digits;
   }
   
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof HexConstant) {
+      return this.digits.equals(((HexConstant)o).digits);
+    } else if (o instanceof BitVectorConstant) {
+      return o.equals(this);
+    } else {
+      return false;
+    }
+  }
+  
+  // the hash of the printed text, like the other bit-vector literals
+  @Override
+  public int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = toString().hashCode();
+      hash = h;
+    }
+    return h;
+  }
+  
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    out.append("#x").append(digits);
+  }
+  
   @Override
   public String toString() {
     return "#x" + digits;
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class Implication extends ExpressionList {
 
   public Implication(SExpression premise, SExpression conclusion) {
-    super(new Symbol("=>"), premise, conclusion);
+    super(ReservedSymbols.IMPLIES, premise, conclusion);
+  }
+  
+  private Implication(Implication original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected Implication withChildren(SExpression[] children) {
+    return new Implication(this, children);
   }
   
 }
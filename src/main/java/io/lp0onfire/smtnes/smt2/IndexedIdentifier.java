@@ -1,11 +1,9 @@
 package io.lp0onfire.smtnes.smt2;
 
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.List;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class IndexedIdentifier extends ExpressionList implements Identifier {
   
   // Indexed identifiers are defined as the application
@@ -23,16 +21,31 @@ public class IndexedIdentifier extends ExpressionList implements Identifier {
   }
   
   public IndexedIdentifier(Symbol sym, Numeral... numerals) {
-    super(ArrayUtils.addAll(new SExpression[]{
-        new Symbol("_"),
-        sym
-    }, numerals));
+    super(ReservedSymbols.UNDERSCORE, prependSymbol(sym, numerals), false);
     if (numerals.length == 0) {
       throw new IllegalArgumentException("indexed identifier must contain at least one index");
     } else {
       this.symbol = sym;
-      this.indices = new LinkedList<Numeral>(Arrays.asList(numerals));
+      this.indices = Collections.unmodifiableList(Arrays.asList(numerals.clone()));
     }
   }
   
+  private static SExpression[] prependSymbol(Symbol sym, Numeral[] numerals) {
+    SExpression[] operands = new SExpression[numerals.length + 1];
+    operands[0] = sym;
+    System.arraycopy(numerals, 0, operands, 1, numerals.length);
+    return operands;
+  }
+  
+  private IndexedIdentifier(IndexedIdentifier original, SExpression[] children) {
+    super(original, children);
+    this.symbol = original.symbol;
+    this.indices = original.indices;
+  }
+  
+  @Override
+  protected IndexedIdentifier withChildren(SExpression[] children) {
+    return new IndexedIdentifier(this, children);
+  }
+  
 }
@@ -3,7 +3,16 @@ package io.lp0onfire.smtnes.smt2;
 public class NotExpression extends ExpressionList {
 
   public NotExpression(SExpression subexpression) {
-    super(new Symbol("not"), subexpression);
+    super(ReservedSymbols.NOT, subexpression);
+  }
+  
+  private NotExpression(NotExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected NotExpression withChildren(SExpression[] children) {
+    return new NotExpression(this, children);
   }
   
 }
@@ -1,5 +1,6 @@
 package io.lp0onfire.smtnes.smt2;
 
+import java.io.IOException;
 
 public class Numeral extends SExpression {
 
@@ -35,6 +36,27 @@ public class Numeral extends SExpression {
     this.digits = digits;
   }
   
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof Numeral) {
+      return this.digits.equals(((Numeral)o).digits);
+    } else {
+      return false;
+    }
+  }
+  
+  @Override
+  public int hashCode() {
+    return this.digits.hashCode();
+  }
+  
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    out.append(this.digits);
+  }
+  
   @Override
   public String toString() {
     return this.digits;
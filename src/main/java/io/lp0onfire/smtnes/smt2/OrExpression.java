@@ -1,12 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class OrExpression extends ExpressionList {
 
   public OrExpression(SExpression... expr) {
-    super(ArrayUtils.addAll(
-        new SExpression[] { new Symbol("or") }, expr));
+    super(ReservedSymbols.OR, expr);
+  }
+  
+  private OrExpression(OrExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected OrExpression withChildren(SExpression[] children) {
+    return new OrExpression(this, children);
   }
   
 }
@@ -0,0 +1,358 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Specializes generated code against the state values that are already known.
+//
+// Every top-level assertion of the form (= sym constant) teaches the evaluator
+// the value of sym, and (= (select array constant) constant) teaches it an
+// array cell. Later code has those symbols and cells replaced by their values,
+// is run through the Simplifier, and has its conjunctions split into separate
+// assertions, which lets further facts be learned. When the CPU state
+// is concrete this cuts each cycle down to the branch that actually fires.
+//
+// Only facts that are themselves asserted are used, so the result is
+// equivalent to the input. The asserted facts are kept in the output.
+// That only holds as long as none of those assertions is ever taken back: what
+// is learned is kept for every later call to evaluate(), so code that goes to a
+// solver between push and pop (or into check-sat-assuming) has to be evaluated
+// between push() and pop() here too, or not by this evaluator at all.
+//
+// Symbols bound by let, forall and exists are left alone within their scope.
+public class PartialEvaluator {
+
+  private final Simplifier simplifier = new Simplifier();
+
+  private Map<Symbol, SExpression> knownValues = new HashMap<>();
+  // Arrays asserted equal to each other share one map, which is sound
+  // because a cell learned about either of them holds for both.
+  private Map<Symbol, Map<SExpression, SExpression>> knownCells = new HashMap<>();
+
+  // what was known at each push()
+  private final Deque<Map<Symbol, SExpression>> savedValues = new ArrayDeque<>();
+  private final Deque<Map<Symbol, Map<SExpression, SExpression>>> savedCells = new ArrayDeque<>();
+
+  // Remember what is known now, to go back to at the matching pop().
+  public void push() {
+    savedValues.push(new HashMap<>(knownValues));
+    savedCells.push(copyCells(knownCells));
+  }
+
+  // Forget everything learned since the matching push().
+  public void pop() {
+    if (savedValues.isEmpty()) {
+      throw new IllegalStateException("pop() without a matching push()");
+    }
+    knownValues = savedValues.pop();
+    knownCells = savedCells.pop();
+  }
+
+  public int getScopeLevel() {
+    return savedValues.size();
+  }
+
+  // a copy that shares maps between the same arrays as cells does
+  private static Map<Symbol, Map<SExpression, SExpression>> copyCells(Map<Symbol, Map<SExpression, SExpression>> cells) {
+    Map<Map<SExpression, SExpression>, Map<SExpression, SExpression>> copies = new IdentityHashMap<>();
+    Map<Symbol, Map<SExpression, SExpression>> copy = new HashMap<>();
+    for (Map.Entry<Symbol, Map<SExpression, SExpression>> entry : cells.entrySet()) {
+      Map<SExpression, SExpression> cellsCopy = copies.get(entry.getValue());
+      if (cellsCopy == null) {
+        cellsCopy = new HashMap<>(entry.getValue());
+        copies.put(entry.getValue(), cellsCopy);
+      }
+      copy.put(entry.getKey(), cellsCopy);
+    }
+    return copy;
+  }
+
+  private long assertionsIn = 0;
+  public long getAssertionsIn() {
+    return this.assertionsIn;
+  }
+
+  private long assertionsOut = 0;
+  public long getAssertionsOut() {
+    return this.assertionsOut;
+  }
+
+  public SExpression getKnownValue(Symbol symbol) {
+    return knownValues.get(symbol);
+  }
+
+  public SExpression getKnownCell(Symbol array, SExpression index) {
+    Map<SExpression, SExpression> cells = knownCells.get(array);
+    BitVectorConstant address = asConstant(index);
+    return (cells == null || address == null) ? null : cells.get(address);
+  }
+
+  public List<SExpression> evaluate(List<SExpression> code) {
+    List<SExpression> result = new ArrayList<>(code.size());
+    List<SExpression> pending = new ArrayList<>();
+    for (SExpression expr : code) {
+      if (isAssertion(expr)) {
+        assertionsIn += 1;
+        pending.add(((ExpressionList)expr).get(1));
+      } else {
+        result.add(expr);
+      }
+    }
+    List<SExpression> facts = new ArrayList<>();
+    // keep going over what's left as long as we learn something new
+    boolean learned = true;
+    while (learned && !pending.isEmpty()) {
+      learned = false;
+      Map<SExpression, SExpression> memo = new IdentityHashMap<>();
+      List<SExpression> remaining = new ArrayList<>(pending.size());
+      for (SExpression assertion : pending) {
+        SExpression simplified = simplifier.simplify(substitute(assertion, memo, Collections.<Symbol>emptySet()));
+        List<SExpression> conjuncts = new ArrayList<>();
+        split(simplified, conjuncts);
+        for (SExpression conjunct : conjuncts) {
+          if (learn(conjunct)) {
+            facts.add(conjunct);
+            learned = true;
+          } else {
+            remaining.add(conjunct);
+          }
+        }
+      }
+      pending = remaining;
+    }
+    for (SExpression fact : facts) {
+      result.add(new Assertion(fact));
+    }
+    for (SExpression assertion : pending) {
+      result.add(new Assertion(assertion));
+    }
+    assertionsOut += facts.size() + pending.size();
+    return result;
+  }
+
+  private static boolean isAssertion(SExpression expr) {
+    if (expr instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)expr;
+      return list.size() == 2 && list.get(0).equals(ReservedSymbols.ASSERT);
+    } else {
+      return false;
+    }
+  }
+
+  private static boolean isApplication(SExpression expr, Symbol op, int arity) {
+    if (expr instanceof ExpressionList && !(expr instanceof IndexedIdentifier)) {
+      ExpressionList list = (ExpressionList)expr;
+      return list.size() == arity + 1 && list.get(0).equals(op);
+    } else {
+      return false;
+    }
+  }
+
+  private static boolean isConstant(SExpression expr) {
+    return expr instanceof BitVectorConstant || expr instanceof HexConstant || expr instanceof BinaryConstant
+        || expr instanceof BooleanLiteral;
+  }
+
+  // Flatten nested conjunctions; true disappears.
+  private static void split(SExpression expr, List<SExpression> out) {
+    if (BooleanLiteral.TRUE.equals(expr)) {
+      return;
+    } else if (expr instanceof ExpressionList && ((ExpressionList)expr).size() > 0
+        && ((ExpressionList)expr).get(0).equals(ReservedSymbols.AND)) {
+      ExpressionList list = (ExpressionList)expr;
+      for (int i = 1; i < list.size(); ++i) {
+        split(list.get(i), out);
+      }
+    } else {
+      out.add(expr);
+    }
+  }
+
+  // If fact pins down something we didn't know yet, remember it and return true.
+  private boolean learn(SExpression fact) {
+    if (!isApplication(fact, ReservedSymbols.EQUALS, 2)) {
+      return false;
+    }
+    ExpressionList eq = (ExpressionList)fact;
+    SExpression lhs = eq.get(1);
+    SExpression rhs = eq.get(2);
+    if (isConstant(lhs) && !isConstant(rhs)) {
+      SExpression tmp = lhs;
+      lhs = rhs;
+      rhs = tmp;
+    }
+    if (lhs instanceof Symbol && isConstant(rhs)) {
+      // (= sym constant)
+      if (knownValues.containsKey(lhs)) {
+        return false;
+      }
+      knownValues.put((Symbol)lhs, rhs);
+      return true;
+    } else if (isApplication(lhs, ReservedSymbols.SELECT, 2) && isConstant(rhs)) {
+      // (= (select array constant) constant)
+      ExpressionList select = (ExpressionList)lhs;
+      BitVectorConstant address = asConstant(select.get(2));
+      if (!(select.get(1) instanceof Symbol) || address == null) {
+        return false;
+      }
+      Symbol array = (Symbol)select.get(1);
+      Map<SExpression, SExpression> cells = knownCells.get(array);
+      if (cells == null) {
+        cells = new HashMap<>();
+        knownCells.put(array, cells);
+      } else if (cells.containsKey(address)) {
+        return false;
+      }
+      cells.put(address, rhs);
+      return true;
+    } else if (lhs instanceof Symbol && rhs instanceof Symbol) {
+      // (= new-array old-array): the new version has the same known cells
+      if (knownCells.containsKey(lhs) == knownCells.containsKey(rhs)) {
+        return false;
+      }
+      if (knownCells.containsKey(lhs)) {
+        knownCells.put((Symbol)rhs, knownCells.get(lhs));
+      } else {
+        knownCells.put((Symbol)lhs, knownCells.get(rhs));
+      }
+      return true;
+    }
+    return false;
+  }
+
+  // bound holds the symbols bound by an enclosing let, forall or exists, which
+  // mustn't be replaced; memo is only good for one set of them
+  private SExpression substitute(SExpression expr, Map<SExpression, SExpression> memo, Set<Symbol> bound) {
+    if (expr instanceof Symbol) {
+      SExpression value = bound.contains(expr) ? null : knownValues.get(expr);
+      return (value != null) ? value : expr;
+    } else if (!(expr instanceof ExpressionList) || expr instanceof IndexedIdentifier) {
+      return expr;
+    }
+    SExpression cached = memo.get(expr);
+    if (cached != null) {
+      return cached;
+    }
+    ExpressionList list = (ExpressionList)expr;
+    if (list.size() == 0) {
+      return expr;
+    }
+    SExpression op = list.get(0);
+    if (isBinder(list)) {
+      SExpression result = substituteBinder(list, memo, bound);
+      memo.put(expr, result);
+      return result;
+    }
+    SExpression[] args = new SExpression[list.size() - 1];
+    boolean changed = false;
+    for (int i = 0; i < args.length; ++i) {
+      SExpression arg = list.get(i + 1);
+      args[i] = substitute(arg, memo, bound);
+      if (args[i] != arg) {
+        changed = true;
+      }
+    }
+    SExpression result = null;
+    if (op.equals(ReservedSymbols.SELECT) && args.length == 2) {
+      // the address is often computed from values we just substituted in
+      args[1] = simplifier.simplify(args[1]);
+      result = readCell(args[0], args[1], bound);
+    }
+    if (result == null) {
+      result = changed ? new ExpressionList(op, args, false) : expr;
+    }
+    memo.put(expr, result);
+    return result;
+  }
+
+  // (let ((x e) ...) body), (forall ((x S) ...) body) or (exists ((x S) ...) body)
+  private static boolean isBinder(ExpressionList list) {
+    SExpression op = list.get(0);
+    return list.size() == 3 && list.get(1) instanceof ExpressionList
+        && (op.equals(ReservedSymbols.LET) || op.equals(ReservedSymbols.FORALL) || op.equals(ReservedSymbols.EXISTS));
+  }
+
+  private SExpression substituteBinder(ExpressionList binder, Map<SExpression, SExpression> memo, Set<Symbol> bound) {
+    boolean isLet = binder.get(0).equals(ReservedSymbols.LET);
+    ExpressionList bindings = (ExpressionList)binder.get(1);
+    Set<Symbol> inner = new HashSet<>(bound);
+    SExpression[] newBindings = new SExpression[bindings.size()];
+    boolean changed = false;
+    for (int i = 0; i < bindings.size(); ++i) {
+      SExpression binding = bindings.get(i);
+      newBindings[i] = binding;
+      if (!(binding instanceof ExpressionList) || ((ExpressionList)binding).size() != 2
+          || !(((ExpressionList)binding).get(0) instanceof Symbol)) {
+        // not something we understand; leave the whole thing alone
+        return binder;
+      }
+      ExpressionList pair = (ExpressionList)binding;
+      inner.add((Symbol)pair.get(0));
+      if (isLet) {
+        // let binds in parallel: the values are in the outer scope
+        SExpression value = substitute(pair.get(1), memo, bound);
+        if (value != pair.get(1)) {
+          newBindings[i] = new ExpressionList(pair.get(0), value);
+          changed = true;
+        }
+      }
+    }
+    SExpression body = binder.get(2);
+    SExpression newBody = substitute(body, new IdentityHashMap<SExpression, SExpression>(), inner);
+    if (newBody != body) {
+      changed = true;
+    }
+    if (!changed) {
+      return binder;
+    }
+    return new ExpressionList(binder.get(0), new ExpressionList(newBindings), newBody);
+  }
+
+  // Value of (select array index) if it can be determined, otherwise null.
+  private SExpression readCell(SExpression array, SExpression index, Set<Symbol> bound) {
+    BitVectorConstant address = asConstant(index);
+    if (address == null) {
+      return null;
+    }
+    while (isApplication(array, ReservedSymbols.STORE, 3)) {
+      ExpressionList store = (ExpressionList)array;
+      BitVectorConstant written = asConstant(store.get(2));
+      if (written == null) {
+        return null;
+      } else if (written.equals(address)) {
+        return store.get(3);
+      }
+      array = store.get(1);
+    }
+    if (array instanceof Symbol && !bound.contains(array)) {
+      Map<SExpression, SExpression> cells = knownCells.get(array);
+      if (cells != null) {
+        return cells.get(address);
+      }
+    }
+    return null;
+  }
+
+  private static BitVectorConstant asConstant(SExpression expr) {
+    if (expr instanceof BitVectorConstant) {
+      return (BitVectorConstant)expr;
+    } else if (expr instanceof HexConstant && ((HexConstant)expr).getDigits().length() <= 16) {
+      String digits = ((HexConstant)expr).getDigits();
+      return BitVectorConstant.of(Long.parseUnsignedLong(digits, 16), digits.length() * 4);
+    } else if (expr instanceof BinaryConstant && ((BinaryConstant)expr).getWidth() <= BitVectorConstant.MAX_WIDTH) {
+      String bits = ((BinaryConstant)expr).getBits();
+      return BitVectorConstant.of(Long.parseUnsignedLong(bits, 2), bits.length());
+    } else {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+package io.lp0onfire.smtnes.smt2;
+
+// Shared instances of the SMT-LIB operator and keyword symbols used by the
+// expression classes. These are all known-good names, so they skip
+// validation, and since Symbol is immutable one instance of each is enough.
+public final class ReservedSymbols {
+
+  private ReservedSymbols() {}
+  
+  // commands
+  public static final Symbol ASSERT = Symbol.trusted("assert");
+  public static final Symbol DECLARE_FUN = Symbol.trusted("declare-fun");
+  public static final Symbol DEFINE_FUN = Symbol.trusted("define-fun");
+  
+  // sorts and indexed identifiers
+  public static final Symbol UNDERSCORE = Symbol.trusted("_");
+  public static final Symbol BITVEC = Symbol.trusted("BitVec");
+  public static final Symbol ARRAY = Symbol.trusted("Array");
+  public static final Symbol BOOL = Symbol.trusted("Bool");
+  
+  // core theory
+  public static final Symbol AND = Symbol.trusted("and");
+  public static final Symbol OR = Symbol.trusted("or");
+  public static final Symbol XOR = Symbol.trusted("xor");
+  public static final Symbol NOT = Symbol.trusted("not");
+  public static final Symbol IMPLIES = Symbol.trusted("=>");
+  public static final Symbol EQUALS = Symbol.trusted("=");
+  public static final Symbol DISTINCT = Symbol.trusted("distinct");
+  public static final Symbol ITE = Symbol.trusted("ite");
+  
+  // binders
+  public static final Symbol LET = Symbol.trusted("let");
+  public static final Symbol FORALL = Symbol.trusted("forall");
+  public static final Symbol EXISTS = Symbol.trusted("exists");
+  
+  // arrays
+  public static final Symbol SELECT = Symbol.trusted("select");
+  public static final Symbol STORE = Symbol.trusted("store");
+  
+  // bitvectors
+  public static final Symbol CONCAT = Symbol.trusted("concat");
+  public static final Symbol EXTRACT = Symbol.trusted("extract");
+  public static final Symbol BVNOT = Symbol.trusted("bvnot");
+  public static final Symbol BVNEG = Symbol.trusted("bvneg");
+  public static final Symbol BVAND = Symbol.trusted("bvand");
+  public static final Symbol BVOR = Symbol.trusted("bvor");
+  public static final Symbol BVADD = Symbol.trusted("bvadd");
+  public static final Symbol BVSUB = Symbol.trusted("bvsub");
+  public static final Symbol BVMUL = Symbol.trusted("bvmul");
+  public static final Symbol BVUDIV = Symbol.trusted("bvudiv");
+  public static final Symbol BVUREM = Symbol.trusted("bvurem");
+  public static final Symbol BVSHL = Symbol.trusted("bvshl");
+  public static final Symbol BVLSHR = Symbol.trusted("bvlshr");
+  public static final Symbol BVULT = Symbol.trusted("bvult");
+  public static final Symbol BVUGE = Symbol.trusted("bvuge");
+  
+}
@@ -1,5 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
+import java.io.IOException;
+
+// Subclasses compare structurally: two expressions are equal (and hash equally)
+// whenever they would print the same SMT-LIB2 text. Expressions are immutable
+// once constructed, which makes it safe to share equal subterms between trees
+// (see ExpressionFactory).
 public abstract class SExpression {
 
+  // Write the SMT-LIB2 text of this expression directly to out.
+  // Compound expressions override this to stream their children one token at a time
+  // instead of building intermediate strings; the default just prints toString().
+  public void writeTo(Appendable out) throws IOException {
+    out.append(toString());
+  }
+  
 }
@@ -0,0 +1,74 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+
+// SHA-256 of the text a sequence of commands would be written out as
+// (one command per line, as ScriptWriter does it), so two scripts have the
+// same digest exactly when a solver would be sent the same thing.
+public final class ScriptDigest {
+
+  public static final ScriptDigest EMPTY = of(Collections.<SExpression>emptyList());
+
+  private final byte[] hash;
+
+  private ScriptDigest(byte[] hash) {
+    this.hash = hash;
+  }
+
+  public static ScriptDigest of(Iterable<? extends SExpression> script) {
+    return of(null, script);
+  }
+
+  // Digest of a line of context (e.g. which solver the script is for) followed by script.
+  public static ScriptDigest of(String context, Iterable<? extends SExpression> script) {
+    final MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to provide SHA-256
+      throw new IllegalStateException(e);
+    }
+    StringBuilder sb = new StringBuilder();
+    if (context != null) {
+      md.update((context + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+    try {
+      for (SExpression expr : script) {
+        sb.setLength(0);
+        expr.writeTo(sb);
+        sb.append('\n');
+        md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+      }
+    } catch (IOException e) {
+      // StringBuilder doesn't throw
+      throw new IllegalStateException(e);
+    }
+    return new ScriptDigest(md.digest());
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof ScriptDigest && Arrays.equals(hash, ((ScriptDigest)obj).hash);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(hash);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder(hash.length * 2);
+    for (byte b : hash) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,51 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+// Streams top-level commands (declarations, assertions, ...) to a character sink,
+// one command per line. Expressions are written token by token with
+// SExpression.writeTo(), so no per-command strings are ever built.
+public class ScriptWriter implements Closeable, Flushable {
+
+  private final Writer out;
+  
+  public ScriptWriter(Writer out) {
+    if (out instanceof BufferedWriter) {
+      this.out = out;
+    } else {
+      this.out = new BufferedWriter(out);
+    }
+  }
+  
+  public void write(SExpression expr) throws IOException {
+    expr.writeTo(out);
+    out.write('\n');
+  }
+  
+  public void writeAll(Iterable<? extends SExpression> exprs) throws IOException {
+    for (SExpression expr : exprs) {
+      write(expr);
+    }
+  }
+  
+  // Write a command that isn't represented as an expression, e.g. "(check-sat)".
+  public void write(String command) throws IOException {
+    out.write(command);
+    out.write('\n');
+  }
+  
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+  
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+  
+}
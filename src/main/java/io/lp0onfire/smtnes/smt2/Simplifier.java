@@ -0,0 +1,393 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Constant-folding pass over generated code.
+// Evaluates bvadd, bvsub, bvand, bvor, bvnot, bvneg, concat, extract,
+// bvult, bvuge, =, ite, and, or, not and => wherever their arguments are constants
+// (or otherwise decide the result, e.g. a false conjunct), and drops assertions
+// that simplify to true. Declarations are passed through untouched.
+// Simplified subterms come back as plain ExpressionLists rather than the typed
+// subclasses they were built from; only Assertion is reconstructed as such.
+public class Simplifier {
+
+  // Running totals for everything simplified on behalf of one source (usually a generator).
+  public static class Report {
+    private long nodesBefore = 0;
+    public long getNodesBefore() {
+      return this.nodesBefore;
+    }
+
+    private long nodesAfter = 0;
+    public long getNodesAfter() {
+      return this.nodesAfter;
+    }
+
+    private long assertionsDropped = 0;
+    public long getAssertionsDropped() {
+      return this.assertionsDropped;
+    }
+
+    public long getNodesEliminated() {
+      return nodesBefore - nodesAfter;
+    }
+
+    @Override
+    public String toString() {
+      return nodesBefore + " -> " + nodesAfter + " nodes (" + getNodesEliminated() + " eliminated, "
+          + assertionsDropped + " assertions dropped)";
+    }
+  }
+
+  private final Map<String, Report> reports = new LinkedHashMap<>();
+  public Map<String, Report> getReports() {
+    return Collections.unmodifiableMap(reports);
+  }
+
+  public String getReport() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Report> entry : reports.entrySet()) {
+      sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+    }
+    return sb.toString();
+  }
+
+  // Simplify a batch of top-level expressions produced by source,
+  // dropping assertions that become trivially true.
+  public List<SExpression> simplifyAll(String source, List<SExpression> exprs) {
+    Report report = reports.get(source);
+    if (report == null) {
+      report = new Report();
+      reports.put(source, report);
+    }
+    // generated code shares subterms heavily, so remember what we've already done
+    Map<SExpression, SExpression> memo = new IdentityHashMap<>();
+    List<SExpression> result = new ArrayList<>(exprs.size());
+    for (SExpression expr : exprs) {
+      report.nodesBefore += countNodes(expr);
+      SExpression simplified = simplify(expr, memo);
+      if (isTriviallyTrue(simplified)) {
+        report.assertionsDropped += 1;
+        continue;
+      }
+      report.nodesAfter += countNodes(simplified);
+      result.add(simplified);
+    }
+    return result;
+  }
+
+  public SExpression simplify(SExpression expr) {
+    return simplify(expr, new IdentityHashMap<SExpression, SExpression>());
+  }
+
+  public static long countNodes(SExpression expr) {
+    if (expr instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)expr;
+      long count = 1;
+      for (int i = 0; i < list.size(); ++i) {
+        count += countNodes(list.get(i));
+      }
+      return count;
+    } else {
+      return 1;
+    }
+  }
+
+  private static boolean isTriviallyTrue(SExpression expr) {
+    if (expr instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)expr;
+      return list.size() == 2 && list.get(0).equals(ReservedSymbols.ASSERT) && isTrue(list.get(1));
+    } else {
+      return false;
+    }
+  }
+
+  private SExpression simplify(SExpression expr, Map<SExpression, SExpression> memo) {
+    if (!(expr instanceof ExpressionList) || expr instanceof IndexedIdentifier) {
+      return expr;
+    }
+    ExpressionList list = (ExpressionList)expr;
+    if (list.size() == 0 || list.get(0).equals(ReservedSymbols.DECLARE_FUN)) {
+      return expr;
+    }
+    SExpression cached = memo.get(expr);
+    if (cached != null) {
+      return cached;
+    }
+    SExpression op = list.get(0);
+    SExpression[] args = new SExpression[list.size() - 1];
+    boolean changed = false;
+    for (int i = 0; i < args.length; ++i) {
+      SExpression arg = list.get(i + 1);
+      args[i] = simplify(arg, memo);
+      if (args[i] != arg) {
+        changed = true;
+      }
+    }
+    SExpression result = fold(op, args);
+    if (result == null) {
+      if (!changed) {
+        result = list;
+      } else if (list instanceof Assertion) {
+        result = new Assertion(args[0]);
+      } else {
+        result = new ExpressionList(op, args, false);
+      }
+    }
+    memo.put(expr, result);
+    return result;
+  }
+
+  private static boolean isTrue(SExpression expr) {
+    return BooleanLiteral.TRUE.equals(expr);
+  }
+
+  private static boolean isFalse(SExpression expr) {
+    return BooleanLiteral.FALSE.equals(expr);
+  }
+
+  private static boolean isBoolean(SExpression expr) {
+    return isTrue(expr) || isFalse(expr);
+  }
+
+  private static BitVectorConstant constant(SExpression expr) {
+    if (expr instanceof BitVectorConstant) {
+      return (BitVectorConstant)expr;
+    } else if (expr instanceof HexConstant) {
+      String digits = ((HexConstant)expr).getDigits();
+      if (digits.length() * 4 <= BitVectorConstant.MAX_WIDTH) {
+        return BitVectorConstant.of(Long.parseUnsignedLong(digits, 16), digits.length() * 4);
+      }
+    } else if (expr instanceof BinaryConstant) {
+      String bits = ((BinaryConstant)expr).getBits();
+      if (bits.length() <= BitVectorConstant.MAX_WIDTH) {
+        return BitVectorConstant.of(Long.parseUnsignedLong(bits, 2), bits.length());
+      }
+    }
+    return null;
+  }
+
+  private static BitVectorConstant[] constants(SExpression[] args) {
+    if (args.length == 0) {
+      return null;
+    }
+    BitVectorConstant[] values = new BitVectorConstant[args.length];
+    for (int i = 0; i < args.length; ++i) {
+      values[i] = constant(args[i]);
+      if (values[i] == null) {
+        return null;
+      }
+    }
+    return values;
+  }
+
+  // Returns the folded form of (op args...), or null if nothing could be done.
+  private static SExpression fold(SExpression op, SExpression[] args) {
+    if (op instanceof IndexedIdentifier) {
+      IndexedIdentifier id = (IndexedIdentifier)op;
+      if (id.getSymbol().equals(ReservedSymbols.EXTRACT) && args.length == 1) {
+        BitVectorConstant value = constant(args[0]);
+        if (value != null) {
+          int upper = Integer.parseInt(id.getIndices().get(0).getDigits());
+          int lower = Integer.parseInt(id.getIndices().get(1).getDigits());
+          return value.extract(upper, lower);
+        }
+      }
+      return null;
+    } else if (!(op instanceof Symbol)) {
+      return null;
+    }
+    switch (((Symbol)op).getName()) {
+    case "bvadd":
+    case "bvsub":
+    case "bvand":
+    case "bvor":
+    case "concat":
+      return foldBitVectorOperator(((Symbol)op).getName(), args);
+    case "bvnot": {
+      BitVectorConstant[] values = constants(args);
+      return (values == null || values.length != 1) ? null : values[0].not();
+    }
+    case "bvneg": {
+      BitVectorConstant[] values = constants(args);
+      return (values == null || values.length != 1) ? null : values[0].negate();
+    }
+    case "bvult":
+    case "bvuge": {
+      BitVectorConstant[] values = constants(args);
+      if (values == null || values.length != 2) {
+        return null;
+      }
+      boolean lessThan = values[0].unsignedLessThan(values[1]);
+      return BooleanLiteral.valueOf(op.equals(ReservedSymbols.BVULT) ? lessThan : !lessThan);
+    }
+    case "=":
+      return foldEquals(args);
+    case "not":
+      return foldNot(args);
+    case "and":
+      return foldJunction(ReservedSymbols.AND, args, BooleanLiteral.FALSE, BooleanLiteral.TRUE);
+    case "or":
+      return foldJunction(ReservedSymbols.OR, args, BooleanLiteral.TRUE, BooleanLiteral.FALSE);
+    case "=>":
+      return foldImplication(args);
+    case "ite":
+      return foldConditional(args);
+    default:
+      return null;
+    }
+  }
+
+  private static SExpression foldBitVectorOperator(String name, SExpression[] args) {
+    BitVectorConstant[] values = constants(args);
+    if (values == null) {
+      return null;
+    }
+    BitVectorConstant result = values[0];
+    int width = result.getWidth();
+    for (int i = 1; i < values.length; ++i) {
+      if (name.equals("concat")) {
+        width += values[i].getWidth();
+        if (width > BitVectorConstant.MAX_WIDTH) {
+          return null;
+        }
+      } else if (values[i].getWidth() != width) {
+        // ill-sorted; leave it for the solver to complain about
+        return null;
+      }
+      switch (name) {
+      case "bvadd":
+        result = result.add(values[i]);
+        break;
+      case "bvsub":
+        result = result.subtract(values[i]);
+        break;
+      case "bvand":
+        result = result.and(values[i]);
+        break;
+      case "bvor":
+        result = result.or(values[i]);
+        break;
+      case "concat":
+        result = result.concat(values[i]);
+        break;
+      }
+    }
+    return result;
+  }
+
+  private static SExpression foldEquals(SExpression[] args) {
+    if (args.length < 2) {
+      return null;
+    }
+    // syntactically identical terms are equal whatever their value
+    boolean identical = true;
+    for (int i = 1; i < args.length; ++i) {
+      if (!args[i].equals(args[0])) {
+        identical = false;
+        break;
+      }
+    }
+    if (identical) {
+      return BooleanLiteral.TRUE;
+    }
+    BitVectorConstant[] values = constants(args);
+    if (values != null) {
+      for (int i = 1; i < values.length; ++i) {
+        if (!values[i].equals(values[0])) {
+          return BooleanLiteral.FALSE;
+        }
+      }
+      return BooleanLiteral.TRUE;
+    }
+    boolean allBoolean = true;
+    for (SExpression arg : args) {
+      if (!isBoolean(arg)) {
+        allBoolean = false;
+        break;
+      }
+    }
+    if (allBoolean) {
+      // not identical, so at least one true and one false
+      return BooleanLiteral.FALSE;
+    }
+    return null;
+  }
+
+  private static SExpression foldNot(SExpression[] args) {
+    if (args.length != 1) {
+      return null;
+    }
+    if (isTrue(args[0])) {
+      return BooleanLiteral.FALSE;
+    } else if (isFalse(args[0])) {
+      return BooleanLiteral.TRUE;
+    } else if (args[0] instanceof ExpressionList) {
+      // (not (not x)) => x
+      ExpressionList inner = (ExpressionList)args[0];
+      if (inner.size() == 2 && inner.get(0).equals(ReservedSymbols.NOT)) {
+        return inner.get(1);
+      }
+    }
+    return null;
+  }
+
+  // and/or: an absorbing element decides the result, identity elements disappear
+  private static SExpression foldJunction(Symbol op, SExpression[] args,
+      BooleanLiteral absorbing, BooleanLiteral identity) {
+    List<SExpression> remaining = new ArrayList<>(args.length);
+    for (SExpression arg : args) {
+      if (absorbing.equals(arg)) {
+        return absorbing;
+      } else if (!identity.equals(arg)) {
+        remaining.add(arg);
+      }
+    }
+    if (remaining.size() == args.length) {
+      return null;
+    } else if (remaining.isEmpty()) {
+      return identity;
+    } else if (remaining.size() == 1) {
+      return remaining.get(0);
+    } else {
+      return new ExpressionList(op, remaining.toArray(new SExpression[remaining.size()]), false);
+    }
+  }
+
+  private static SExpression foldImplication(SExpression[] args) {
+    if (args.length != 2) {
+      return null;
+    }
+    SExpression premise = args[0];
+    SExpression conclusion = args[1];
+    if (isFalse(premise) || isTrue(conclusion) || premise.equals(conclusion)) {
+      return BooleanLiteral.TRUE;
+    } else if (isTrue(premise)) {
+      return conclusion;
+    } else if (isFalse(conclusion)) {
+      SExpression negated = foldNot(new SExpression[]{premise});
+      return (negated != null) ? negated : new NotExpression(premise);
+    }
+    return null;
+  }
+
+  private static SExpression foldConditional(SExpression[] args) {
+    if (args.length != 3) {
+      return null;
+    }
+    if (isTrue(args[0])) {
+      return args[1];
+    } else if (isFalse(args[0])) {
+      return args[2];
+    } else if (args[1].equals(args[2])) {
+      return args[1];
+    }
+    return null;
+  }
+
+}
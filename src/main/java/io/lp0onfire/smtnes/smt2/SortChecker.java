@@ -0,0 +1,167 @@
+package io.lp0onfire.smtnes.smt2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Works out the sort of a term from the declarations it has been shown.
+// This only covers the fragment we generate (Bool, bit-vectors, and arrays
+// of bit-vectors), and it does not check well-sortedness. It simply returns
+// null for anything it can't work out.
+public class SortChecker {
+
+  public static final SExpression BOOL = ReservedSymbols.BOOL;
+
+  private final Map<Symbol, SExpression> constantSorts = new HashMap<>();
+
+  // The same IndexedIdentifier instance for each width, so sorts can be
+  // compared and hashed cheaply.
+  private static final Map<Integer, SExpression> bitVectorSorts = new HashMap<>();
+
+  public static synchronized SExpression bitVectorSort(int width) {
+    SExpression sort = bitVectorSorts.get(width);
+    if (sort == null) {
+      sort = new IndexedIdentifier(ReservedSymbols.BITVEC, new Numeral(Integer.toString(width)));
+      bitVectorSorts.put(width, sort);
+    }
+    return sort;
+  }
+
+  // Returns the width of a (_ BitVec n) sort, or -1 if sort is anything else.
+  public static int bitVectorWidth(SExpression sort) {
+    if (sort instanceof IndexedIdentifier) {
+      IndexedIdentifier id = (IndexedIdentifier)sort;
+      if (id.getSymbol().equals(ReservedSymbols.BITVEC) && id.getIndices().size() == 1) {
+        return Integer.parseInt(id.getIndices().get(0).getDigits());
+      }
+    }
+    return -1;
+  }
+
+  public void declare(Symbol symbol, SExpression sort) {
+    constantSorts.put(symbol, sort);
+  }
+
+  public SExpression getDeclaredSort(Symbol symbol) {
+    return constantSorts.get(symbol);
+  }
+
+  // Record the symbol introduced by a nullary declare-fun or define-fun;
+  // any other command is ignored.
+  public void observe(SExpression command) {
+    if (!(command instanceof ExpressionList)) {
+      return;
+    }
+    ExpressionList list = (ExpressionList)command;
+    if (list.size() < 4) {
+      return;
+    }
+    SExpression op = list.get(0);
+    if (!(op.equals(ReservedSymbols.DECLARE_FUN) || op.equals(ReservedSymbols.DEFINE_FUN))) {
+      return;
+    }
+    SExpression name = list.get(1);
+    SExpression params = list.get(2);
+    if (name instanceof Symbol && params instanceof ExpressionList
+        && ((ExpressionList)params).size() == 0) {
+      declare((Symbol)name, list.get(3));
+    }
+  }
+
+  public SExpression sortOf(SExpression term) {
+    if (term instanceof BitVectorConstant) {
+      return bitVectorSort(((BitVectorConstant)term).getWidth());
+    } else if (term instanceof HexConstant) {
+      return bitVectorSort(((HexConstant)term).getDigits().length() * 4);
+    } else if (term instanceof BinaryConstant) {
+      return bitVectorSort(((BinaryConstant)term).getWidth());
+    } else if (term instanceof BooleanLiteral) {
+      return BOOL;
+    } else if (term instanceof Symbol) {
+      if (term.equals(BooleanLiteral.TRUE) || term.equals(BooleanLiteral.FALSE)) {
+        return BOOL;
+      }
+      return constantSorts.get(term);
+    } else if (term instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)term;
+      if (list.size() < 2) {
+        return null;
+      }
+      // every argument has to have a known sort, so a term that mentions a symbol
+      // this checker hasn't seen (one bound by a forall, say) never gets a sort
+      SExpression[] argSorts = new SExpression[list.size() - 1];
+      for (int i = 0; i < argSorts.length; ++i) {
+        argSorts[i] = sortOf(list.get(i + 1));
+        if (argSorts[i] == null) {
+          return null;
+        }
+      }
+      return sortOfApplication(list.get(0), argSorts);
+    } else {
+      return null;
+    }
+  }
+
+  private static SExpression sortOfApplication(SExpression op, SExpression[] argSorts) {
+    if (op instanceof IndexedIdentifier) {
+      IndexedIdentifier id = (IndexedIdentifier)op;
+      if (id.getSymbol().equals(ReservedSymbols.EXTRACT) && id.getIndices().size() == 2) {
+        int upper = Integer.parseInt(id.getIndices().get(0).getDigits());
+        int lower = Integer.parseInt(id.getIndices().get(1).getDigits());
+        return bitVectorSort(upper - lower + 1);
+      }
+      return null;
+    } else if (!(op instanceof Symbol)) {
+      return null;
+    }
+    switch (((Symbol)op).getName()) {
+    case "=":
+    case "distinct":
+    case "and":
+    case "or":
+    case "xor":
+    case "not":
+    case "=>":
+    case "bvult":
+    case "bvuge":
+      return BOOL;
+    case "bvadd":
+    case "bvsub":
+    case "bvmul":
+    case "bvudiv":
+    case "bvurem":
+    case "bvand":
+    case "bvor":
+    case "bvnot":
+    case "bvneg":
+    case "bvshl":
+    case "bvlshr":
+      return argSorts[0];
+    case "concat": {
+      int width = 0;
+      for (SExpression sort : argSorts) {
+        int w = bitVectorWidth(sort);
+        if (w < 0) {
+          return null;
+        }
+        width += w;
+      }
+      return bitVectorSort(width);
+    }
+    case "ite":
+      return (argSorts.length == 3) ? argSorts[1] : null;
+    case "select": {
+      SExpression arraySort = argSorts[0];
+      if (arraySort instanceof ExpressionList && ((ExpressionList)arraySort).size() == 3
+          && ((ExpressionList)arraySort).get(0).equals(ReservedSymbols.ARRAY)) {
+        return ((ExpressionList)arraySort).get(2);
+      }
+      return null;
+    }
+    case "store":
+      return argSorts[0];
+    default:
+      return null;
+    }
+  }
+
+}
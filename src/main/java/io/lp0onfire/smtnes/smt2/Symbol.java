@@ -1,5 +1,7 @@
 package io.lp0onfire.smtnes.smt2;
 
+import java.io.IOException;
+
 public class Symbol extends SExpression implements Identifier {
 
   private final String name;
@@ -36,10 +38,46 @@ public class Symbol extends SExpression implements Identifier {
   }
   
   public Symbol(String name) { 
-    validateName(name);
+    this(name, true);
+  }
+  
+  // Callers that pass validate=false must already know the name is legal;
+  // see trusted(String).
+  protected Symbol(String name, boolean validate) {
+    if (validate) {
+      validateName(name);
+    }
     this.name = name;
   }
   
+  // Fast path for names we build ourselves out of parts that have already
+  // been checked, e.g. the versioned state variables handed out by
+  // StateVariableRegistry. No validation is performed.
+  public static Symbol trusted(String name) {
+    return new Symbol(name, false);
+  }
+  
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if (o instanceof Symbol) {
+      return this.name.equals(((Symbol)o).name);
+    } else {
+      return false;
+    }
+  }
+  
+  @Override
+  public int hashCode() {
+    return this.name.hashCode();
+  }
+  
+  @Override
+  public void writeTo(Appendable out) throws IOException {
+    out.append(this.name);
+  }
+  
   @Override
   public String toString() {
     return this.name;
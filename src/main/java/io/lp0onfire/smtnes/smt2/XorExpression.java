@@ -1,12 +1,18 @@
 package io.lp0onfire.smtnes.smt2;
 
-import org.apache.commons.lang3.ArrayUtils;
-
 public class XorExpression extends ExpressionList {
 
   public XorExpression(SExpression... expr) {
-    super(ArrayUtils.addAll(
-        new SExpression[] { new Symbol("xor") }, expr));
+    super(ReservedSymbols.XOR, expr);
+  }
+  
+  private XorExpression(XorExpression original, SExpression[] children) {
+    super(original, children);
+  }
+  
+  @Override
+  protected XorExpression withChildren(SExpression[] children) {
+    return new XorExpression(this, children);
   }
   
 }
@@ -0,0 +1,44 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// The value a model gives a bit-vector array: every element is the default,
+// apart from the ones listed explicitly.
+public class ArrayValue {
+
+  private final BitVectorConstant defaultValue;
+  public BitVectorConstant getDefaultValue() {
+    return this.defaultValue;
+  }
+
+  private final SortedMap<Long, BitVectorConstant> entries;
+  // elements that differ from the default, or might; keyed by index
+  public SortedMap<Long, BitVectorConstant> getEntries() {
+    return this.entries;
+  }
+
+  public ArrayValue(BitVectorConstant defaultValue, SortedMap<Long, BitVectorConstant> entries) {
+    this.defaultValue = defaultValue;
+    this.entries = Collections.unmodifiableSortedMap(new TreeMap<>(entries));
+  }
+
+  public BitVectorConstant get(long index) {
+    BitVectorConstant value = entries.get(index);
+    return (value == null) ? defaultValue : value;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("default ").append(defaultValue);
+    for (SortedMap.Entry<Long, BitVectorConstant> entry : entries.entrySet()) {
+      sb.append(String.format(", [%x] = %s", entry.getKey(), entry.getValue()));
+    }
+    return sb.toString();
+  }
+
+}
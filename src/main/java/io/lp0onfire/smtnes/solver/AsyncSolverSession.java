@@ -0,0 +1,358 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A solver session that doesn't make the generator wait for the solver.
+// Commands written by the producer are queued and sent by a writer thread,
+// which also turns expressions into text, while a reader thread collects the
+// responses; check-sat and get-value return futures that are completed as the
+// responses come in. Since the solver's output is always being drained, it
+// can't fill the pipe and stall a large script half-way through.
+//
+// The queue is bounded, so a producer that gets far ahead of the solver waits
+// for it to catch up rather than holding the whole script in memory.
+//
+// Like SolverSession, this is meant to be written to by one thread at a time;
+// the futures can be waited on from anywhere. Once anything goes wrong, every
+// outstanding and later future fails with an IOException. Closing the session
+// isn't going wrong: the solver still answers whatever was sent before close().
+public class AsyncSolverSession implements AutoCloseable {
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 4096;
+
+  // One queued command. Exactly one of text or expr is set.
+  private static class Command {
+    final String text;
+    final SExpression expr;
+
+    Command(String text, SExpression expr) {
+      this.text = text;
+      this.expr = expr;
+    }
+  }
+
+  // tells the writer thread to close the solver's input and stop
+  private static final Command END = new Command(null, null);
+
+  private final SolverConfiguration config;
+  public SolverConfiguration getConfiguration() {
+    return this.config;
+  }
+
+  private final BlockingQueue<Command> commands;
+  // futures for the responses the solver still owes us, in the order it will send them
+  private final BlockingQueue<CompletableFuture<String>> responses = new LinkedBlockingQueue<>();
+  // tells the reader thread to stop; never completed, and only ever in this session's queue
+  private final CompletableFuture<String> noMoreResponses = new CompletableFuture<>();
+
+  private volatile Process process = null;
+  private ScriptWriter writer = null;
+  private ResponseReader reader = null;
+  private Thread writerThread = null;
+  private Thread readerThread = null;
+  private volatile IOException failure = null;
+  private volatile boolean closed = false;
+
+  // The counters are only changed by the thread writing to the session,
+  // but can be read from any thread.
+
+  // number of push commands not yet popped
+  private final AtomicInteger assertionLevel = new AtomicInteger(0);
+  public int getAssertionLevel() {
+    return assertionLevel.get();
+  }
+
+  private final AtomicLong checkSatCount = new AtomicLong(0);
+  public long getCheckSatCount() {
+    return checkSatCount.get();
+  }
+
+  public AsyncSolverSession(SolverConfiguration config) {
+    this(config, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  public AsyncSolverSession(SolverConfiguration config, int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queue capacity must be positive");
+    }
+    this.config = config;
+    this.commands = new LinkedBlockingQueue<>(queueCapacity);
+  }
+
+  // Talk to something other than a process, e.g. a canned transcript.
+  AsyncSolverSession(SolverConfiguration config, int queueCapacity, Writer out, Reader in) throws IOException {
+    this(config, queueCapacity);
+    start(out, in);
+  }
+
+  public boolean isOpen() {
+    return writer != null;
+  }
+
+  // Open, still running, and nothing has gone wrong so far.
+  public boolean isAlive() {
+    return isOpen() && !closed && failure == null && (process == null || process.isAlive());
+  }
+
+  public void open() throws IOException {
+    if (isOpen()) {
+      throw new IllegalStateException("solver session is already open");
+    }
+    ProcessBuilder builder = new ProcessBuilder(config.getCommand());
+    builder.redirectErrorStream(true);
+    process = builder.start();
+    start(new OutputStreamWriter(process.getOutputStream()),
+        new BufferedReader(new InputStreamReader(process.getInputStream())));
+  }
+
+  private void start(Writer out, Reader in) throws IOException {
+    writer = new ScriptWriter(out);
+    reader = new ResponseReader(in);
+    writerThread = new Thread(this::writeCommands, "solver-writer");
+    writerThread.setDaemon(true);
+    readerThread = new Thread(this::readResponses, "solver-reader");
+    readerThread.setDaemon(true);
+    writerThread.start();
+    readerThread.start();
+    if (config.getLogic() != null) {
+      write("(set-logic " + config.getLogic() + ")");
+    }
+  }
+
+  private void writeCommands() {
+    try {
+      while (true) {
+        Command command = commands.poll();
+        if (command == null) {
+          // caught up with the producer, so let the solver see what it has so far
+          writer.flush();
+          command = commands.take();
+        }
+        if (command == END) {
+          writer.close();
+          return;
+        }
+        if (command.expr != null) {
+          writer.write(command.expr);
+        } else {
+          writer.write(command.text);
+        }
+      }
+    } catch (IOException e) {
+      fail(e);
+    } catch (InterruptedException e) {
+      fail(new IOException("solver writer interrupted", e));
+    }
+  }
+
+  private void readResponses() {
+    try {
+      while (true) {
+        CompletableFuture<String> response = responses.take();
+        if (response == noMoreResponses) {
+          return;
+        }
+        try {
+          response.complete(reader.read());
+        } catch (IOException e) {
+          response.completeExceptionally(e);
+          fail(e);
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      fail(new IOException("solver reader interrupted", e));
+    }
+  }
+
+  // Record the first thing to go wrong and fail everything still waiting on the solver.
+  private void fail(IOException e) {
+    synchronized (this) {
+      if (failure == null) {
+        failure = e;
+      }
+    }
+    List<CompletableFuture<String>> outstanding = new ArrayList<>();
+    responses.drainTo(outstanding);
+    boolean closing = false;
+    for (CompletableFuture<String> response : outstanding) {
+      if (response == noMoreResponses) {
+        closing = true;
+      } else {
+        response.completeExceptionally(failure);
+      }
+    }
+    if (closing) {
+      // close() is waiting for the reader thread to see this
+      responses.add(noMoreResponses);
+    }
+    Process p = process;
+    if (p != null) {
+      // unblocks whichever thread is still talking to it
+      p.destroyForcibly();
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (!isOpen() || closed) {
+      throw new IllegalStateException("solver session is not open");
+    }
+    if (failure != null) {
+      throw new IOException("solver session failed earlier", failure);
+    }
+  }
+
+  private void enqueue(Command command) throws IOException {
+    checkOpen();
+    try {
+      while (!commands.offer(command, 100, TimeUnit.MILLISECONDS)) {
+        // don't wait forever on a writer thread that has given up
+        checkOpen();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for the solver", e);
+    }
+  }
+
+  // Queue a command whose response will complete the returned future.
+  // Once the session has failed, the future fails too rather than this throwing,
+  // however far the reader thread has got by the time it's called.
+  private CompletableFuture<String> request(String command) throws IOException {
+    if (!isOpen() || closed) {
+      throw new IllegalStateException("solver session is not open");
+    }
+    CompletableFuture<String> response = new CompletableFuture<>();
+    // registered first, so the reader thread is expecting it by the time the solver answers
+    responses.add(response);
+    try {
+      enqueue(new Command(command, null));
+    } catch (IOException e) {
+      if (failure == null) {
+        // interrupted; the command was never sent
+        responses.remove(response);
+        throw e;
+      }
+    }
+    if (failure != null) {
+      // the reader may have given up before the future was registered
+      response.completeExceptionally(failure);
+    }
+    return response;
+  }
+
+  public void write(String command) throws IOException {
+    enqueue(new Command(command, null));
+  }
+
+  public void write(SExpression expr) throws IOException {
+    enqueue(new Command(null, expr));
+  }
+
+  public void writeAll(Iterable<? extends SExpression> exprs) throws IOException {
+    for (SExpression expr : exprs) {
+      write(expr);
+    }
+  }
+
+  public void push() throws IOException {
+    write("(push 1)");
+    assertionLevel.incrementAndGet();
+  }
+
+  public void pop() throws IOException {
+    if (assertionLevel.get() == 0) {
+      throw new IllegalStateException("pop without matching push");
+    }
+    write("(pop 1)");
+    assertionLevel.decrementAndGet();
+  }
+
+  public CompletableFuture<SolverResult> checkSat() throws IOException {
+    return result(request("(check-sat)"));
+  }
+
+  public CompletableFuture<SolverResult> checkSatAssuming(SExpression... assumptions) throws IOException {
+    return result(request(SolverSession.withTerms("check-sat-assuming", assumptions)));
+  }
+
+  // Values of terms in the model from the preceding satisfiable check-sat,
+  // as the text of the solver's ((term value) ...) response.
+  public CompletableFuture<String> getValue(SExpression... terms) throws IOException {
+    return request(SolverSession.withTerms("get-value", terms));
+  }
+
+  private CompletableFuture<SolverResult> result(CompletableFuture<String> response) {
+    checkSatCount.incrementAndGet();
+    CompletableFuture<SolverResult> result = new CompletableFuture<>();
+    response.whenComplete((text, e) -> {
+      if (e != null) {
+        result.completeExceptionally(e);
+        return;
+      }
+      try {
+        result.complete(SolverResult.parse(text));
+      } catch (IllegalArgumentException ex) {
+        IOException unexpected = new IOException("unexpected response from solver: " + text);
+        result.completeExceptionally(unexpected);
+        fail(unexpected);
+      }
+    });
+    return result;
+  }
+
+  // Send everything queued so far and shut the solver down, waiting for the
+  // solver to answer the queries it has been sent. A future can only fail here
+  // if its command couldn't be sent or the solver didn't answer it.
+  @Override
+  public void close() {
+    if (!isOpen() || closed) {
+      return;
+    }
+    closed = true;
+    try {
+      finish(new Command("(exit)", null));
+      finish(END);
+      writerThread.join();
+      // everything has been sent, unless the writer failed, in which case fail()
+      // has already seen to the futures; the reader collects the rest of the answers
+      responses.put(noMoreResponses);
+      readerThread.join();
+      fail(new IOException("solver session closed"));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      reader.close();
+    } catch (IOException e) {
+      // the process is gone anyway
+    }
+    process = null;
+  }
+
+  // Queue a command while closing, unless the writer thread has already stopped.
+  private void finish(Command command) throws InterruptedException {
+    while (!commands.offer(command, 100, TimeUnit.MILLISECONDS)) {
+      if (!writerThread.isAlive()) {
+        return;
+      }
+    }
+  }
+
+}
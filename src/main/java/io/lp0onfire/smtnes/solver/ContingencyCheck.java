@@ -0,0 +1,114 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BooleanDeclaration;
+import io.lp0onfire.smtnes.smt2.Implication;
+import io.lp0onfire.smtnes.smt2.NotExpression;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Checks a property both ways against a formula that is only sent once.
+// The property and its negation are each guarded by a fresh Boolean selector,
+// (=> pos property) and (=> neg (not property)), and the two checks are
+// (check-sat-assuming (pos)) and (check-sat-assuming (neg)) in the same session.
+//
+// Properties can be written wherever they belong in the script with writeProperty().
+// Each one gets its own negation, so with several properties the negative check asks
+// whether they can all fail at once, not whether any of them can; that is the query
+// the instruction tests have always made, and holds() is only as strong as that.
+public class ContingencyCheck {
+
+  // selectors are never reused, so checks can share a session without popping
+  private static final AtomicLong nextSelector = new AtomicLong(0);
+
+  private final SolverSession session;
+  private final Symbol positive;
+  private final Symbol negative;
+  private int propertyCount = 0;
+
+  public ContingencyCheck(SolverSession session) throws IOException {
+    this.session = session;
+    long n = nextSelector.getAndIncrement();
+    this.positive = Symbol.trusted("pos!" + n);
+    this.negative = Symbol.trusted("neg!" + n);
+    session.write(new BooleanDeclaration(positive));
+    session.write(new BooleanDeclaration(negative));
+  }
+
+  // Write a Boolean term that the formula is expected to imply.
+  public void writeProperty(SExpression property) throws IOException {
+    propertyCount += 1;
+    session.write(new Assertion(new Implication(positive, property)));
+    session.write(new Assertion(new Implication(negative, new NotExpression(property))));
+  }
+
+  public void writeProperties(Iterable<? extends SExpression> properties) throws IOException {
+    for (SExpression property : properties) {
+      writeProperty(property);
+    }
+  }
+
+  public ContingencyResult check() throws IOException {
+    if (propertyCount == 0) {
+      throw new IllegalStateException("contingency check has no properties");
+    }
+    SolverResult pos = session.checkSatAssuming(positive);
+    SolverResult neg = session.checkSatAssuming(negative);
+    return new ContingencyResult(pos, neg);
+  }
+
+  // Check that formula implies properties, in a scope of its own.
+  public static ContingencyResult check(SolverSession session, List<? extends SExpression> formula,
+      List<? extends SExpression> properties) throws IOException {
+    session.push();
+    try {
+      session.writeAll(formula);
+      ContingencyCheck check = new ContingencyCheck(session);
+      check.writeProperties(properties);
+      return check.check();
+    } finally {
+      if (session.isAlive()) {
+        session.pop();
+      }
+    }
+  }
+
+  // Same, but answered from cache if possible. The two halves are cached as formula
+  // followed by (assert property) or (assert (not property)) for each property, which
+  // don't depend on the selector names, so they are found again in later runs.
+  // If what the session already holds isn't known, the cache is bypassed.
+  public static ContingencyResult check(SolverSession session, List<? extends SExpression> formula,
+      List<? extends SExpression> properties, SolverResultCache cache) throws IOException {
+    if (properties.isEmpty()) {
+      throw new IllegalStateException("contingency check has no properties");
+    }
+    ScriptDigest context = session.getContextDigest();
+    if (context == null) {
+      return check(session, formula, properties);
+    }
+    List<SExpression> posQuery = new ArrayList<SExpression>(formula);
+    List<SExpression> negQuery = new ArrayList<SExpression>(formula);
+    for (SExpression property : properties) {
+      posQuery.add(new Assertion(property));
+      negQuery.add(new Assertion(new NotExpression(property)));
+    }
+    ScriptDigest posKey = cache.key(context, posQuery);
+    ScriptDigest negKey = cache.key(context, negQuery);
+    SolverResultCache.Entry pos = cache.lookup(posKey);
+    SolverResultCache.Entry neg = cache.lookup(negKey);
+    if (pos != null && neg != null) {
+      return new ContingencyResult(pos.getResult(), neg.getResult());
+    }
+    ContingencyResult result = check(session, formula, properties);
+    cache.store(posKey, result.getPositive(), null);
+    cache.store(negKey, result.getNegative(), null);
+    return result;
+  }
+
+}
@@ -0,0 +1,47 @@
+package io.lp0onfire.smtnes.solver;
+
+// Outcome of a ContingencyCheck: whether the formula is satisfiable together
+// with the property, and whether it is satisfiable together with its negation.
+public class ContingencyResult {
+
+  private final SolverResult positive;
+  public SolverResult getPositive() {
+    return this.positive;
+  }
+
+  private final SolverResult negative;
+  public SolverResult getNegative() {
+    return this.negative;
+  }
+
+  public ContingencyResult(SolverResult positive, SolverResult negative) {
+    this.positive = positive;
+    this.negative = negative;
+  }
+
+  private static boolean decided(SolverResult result) {
+    if (result == SolverResult.UNKNOWN) {
+      throw new IllegalStateException("solver could not decide the formula");
+    }
+    return result == SolverResult.SAT;
+  }
+
+  public boolean isPositiveSatisfiable() {
+    return decided(positive);
+  }
+
+  public boolean isNegativeSatisfiable() {
+    return decided(negative);
+  }
+
+  // The formula is consistent and forces the property to hold.
+  public boolean holds() {
+    return positive == SolverResult.SAT && negative == SolverResult.UNSAT;
+  }
+
+  @Override
+  public String toString() {
+    return "property: " + positive + ", negation: " + negative;
+  }
+
+}
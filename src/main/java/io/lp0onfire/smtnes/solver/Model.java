@@ -0,0 +1,206 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
+import io.lp0onfire.smtnes.smt2.BooleanLiteral;
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.ExpressionParser;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.ReservedSymbols;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Values a solver assigned to terms, parsed from its response to get-value
+// or get-model. Values are kept as parsed; the accessors decode the forms
+// solvers use for bit-vectors ((_ bvN w) as well as #x and #b), Booleans,
+// and arrays (const/store chains, or a lambda over an ite chain).
+public class Model {
+
+  private static final Symbol AS = Symbol.trusted("as");
+  private static final Symbol CONST = Symbol.trusted("const");
+  private static final Symbol LAMBDA = Symbol.trusted("lambda");
+  private static final Symbol MODEL = Symbol.trusted("model");
+  private static final Symbol DEFINE_FUN = Symbol.trusted("define-fun");
+
+  private final Map<SExpression, SExpression> values;
+
+  public Model(Map<SExpression, SExpression> values) {
+    this.values = Collections.unmodifiableMap(new LinkedHashMap<>(values));
+  }
+
+  // From a ((term value) ...) response.
+  public static Model fromValues(String response) {
+    return fromValues(ExpressionParser.parse(response));
+  }
+
+  public static Model fromValues(SExpression response) {
+    Map<SExpression, SExpression> values = new LinkedHashMap<>();
+    for (SExpression pair : list(response, "get-value response").getExprs()) {
+      ExpressionList binding = list(pair, "get-value binding");
+      if (binding.size() != 2) {
+        throw new IllegalArgumentException("malformed get-value binding: " + pair);
+      }
+      values.put(binding.get(0), binding.get(1));
+    }
+    return new Model(values);
+  }
+
+  // From a get-model response, either (model (define-fun ...) ...) or just
+  // ((define-fun ...) ...). Only constants are kept; function definitions
+  // the solver made up for itself are skipped.
+  public static Model fromModel(String response) {
+    return fromModel(ExpressionParser.parse(response));
+  }
+
+  public static Model fromModel(SExpression response) {
+    Map<SExpression, SExpression> values = new LinkedHashMap<>();
+    for (SExpression item : list(response, "get-model response").getExprs()) {
+      if (item.equals(MODEL)) {
+        continue;
+      }
+      ExpressionList definition = list(item, "model definition");
+      if (definition.size() != 5 || !definition.get(0).equals(DEFINE_FUN)) {
+        throw new IllegalArgumentException("malformed model definition: " + item);
+      }
+      if (list(definition.get(2), "parameter list").size() == 0) {
+        values.put(definition.get(1), definition.get(4));
+      }
+    }
+    return new Model(values);
+  }
+
+  private static ExpressionList list(SExpression expr, String what) {
+    if (!(expr instanceof ExpressionList)) {
+      throw new IllegalArgumentException("expected a list for " + what + ", found " + expr);
+    }
+    return (ExpressionList)expr;
+  }
+
+  public Set<SExpression> getTerms() {
+    return values.keySet();
+  }
+
+  public boolean contains(SExpression term) {
+    return values.containsKey(term);
+  }
+
+  // The value as the solver wrote it, or null if the model doesn't mention term.
+  public SExpression get(SExpression term) {
+    return values.get(term);
+  }
+
+  private SExpression require(SExpression term) {
+    SExpression value = values.get(term);
+    if (value == null) {
+      throw new IllegalArgumentException("model has no value for " + term);
+    }
+    return value;
+  }
+
+  public BitVectorConstant getBitVector(SExpression term) {
+    return bitVector(require(term));
+  }
+
+  public boolean getBoolean(SExpression term) {
+    SExpression value = require(term);
+    if (!(value instanceof Symbol) || !(value.equals(BooleanLiteral.TRUE) || value.equals(BooleanLiteral.FALSE))) {
+      throw new IllegalArgumentException("not a Boolean value: " + value);
+    }
+    return value.equals(BooleanLiteral.TRUE);
+  }
+
+  public ArrayValue getArray(SExpression term) {
+    return array(require(term));
+  }
+
+  static BitVectorConstant bitVector(SExpression value) {
+    if (value instanceof BitVectorConstant) {
+      return (BitVectorConstant)value;
+    }
+    // (_ bvN w)
+    if (value instanceof ExpressionList) {
+      ExpressionList list = (ExpressionList)value;
+      if (list.size() == 3 && list.get(0).equals(ReservedSymbols.UNDERSCORE)
+          && list.get(1) instanceof Symbol && ((Symbol)list.get(1)).getName().startsWith("bv")
+          && list.get(2) instanceof Numeral) {
+        try {
+          long n = Long.parseUnsignedLong(((Symbol)list.get(1)).getName().substring(2));
+          int width = Integer.parseInt(((Numeral)list.get(2)).getDigits());
+          return BitVectorConstant.of(n, width);
+        } catch (NumberFormatException e) {
+          // fall through to the error below
+        }
+      }
+    }
+    throw new IllegalArgumentException("not a bit-vector value of at most " + BitVectorConstant.MAX_WIDTH + " bits: " + value);
+  }
+
+  static ArrayValue array(SExpression value) {
+    // stores nearer the top hide ones further down for the same index
+    TreeMap<Long, BitVectorConstant> entries = new TreeMap<>();
+    SExpression rest = value;
+    while (true) {
+      ExpressionList list = list(rest, "array value");
+      if (list.size() == 4 && list.get(0).equals(ReservedSymbols.STORE)) {
+        // (store array index value)
+        entries.putIfAbsent(bitVector(list.get(2)).getValue(), bitVector(list.get(3)));
+        rest = list.get(1);
+      } else if (list.size() == 2 && isConstArray(list.get(0))) {
+        // ((as const (Array ...)) value)
+        return new ArrayValue(bitVector(list.get(1)), entries);
+      } else if (list.size() == 3 && list.get(0).equals(LAMBDA)) {
+        // (lambda ((x Sort)) (ite (= x index) value ...))
+        List<SExpression> parameters = list(list.get(1), "lambda parameters").getExprs();
+        if (parameters.size() != 1) {
+          break;
+        }
+        SExpression parameter = list(parameters.get(0), "lambda parameter").get(0);
+        return lambda(parameter, list.get(2), entries);
+      } else {
+        break;
+      }
+    }
+    throw new IllegalArgumentException("cannot decode array value: " + value);
+  }
+
+  private static boolean isConstArray(SExpression head) {
+    if (!(head instanceof ExpressionList)) {
+      return false;
+    }
+    ExpressionList as = (ExpressionList)head;
+    return as.size() == 3 && as.get(0).equals(AS) && as.get(1).equals(CONST);
+  }
+
+  private static ArrayValue lambda(SExpression parameter, SExpression body, TreeMap<Long, BitVectorConstant> entries) {
+    SExpression rest = body;
+    while (rest instanceof ExpressionList && ((ExpressionList)rest).size() == 4
+        && ((ExpressionList)rest).get(0).equals(ReservedSymbols.ITE)) {
+      ExpressionList ite = (ExpressionList)rest;
+      ExpressionList test = list(ite.get(1), "lambda condition");
+      if (test.size() != 3 || !test.get(0).equals(ReservedSymbols.EQUALS)) {
+        throw new IllegalArgumentException("cannot decode array value: " + body);
+      }
+      SExpression index = test.get(1).equals(parameter) ? test.get(2) : test.get(1);
+      entries.putIfAbsent(bitVector(index).getValue(), bitVector(ite.get(2)));
+      rest = ite.get(3);
+    }
+    return new ArrayValue(bitVector(rest), entries);
+  }
+
+  @Override
+  public String toString() {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<SExpression, SExpression> entry : values.entrySet()) {
+      lines.add(entry.getKey() + " = " + entry.getValue());
+    }
+    return String.join("\n", lines);
+  }
+
+}
@@ -0,0 +1,34 @@
+package io.lp0onfire.smtnes.solver;
+
+// Outcome of a PortfolioSolver query: the answer, which configuration gave it
+// first, and how long that took from the start of the race.
+public class PortfolioResult {
+
+  private final SolverResult result;
+  public SolverResult getResult() {
+    return this.result;
+  }
+
+  // null if nobody could decide the query
+  private final SolverConfiguration winner;
+  public SolverConfiguration getWinner() {
+    return this.winner;
+  }
+
+  private final long elapsedMillis;
+  public long getElapsedMillis() {
+    return this.elapsedMillis;
+  }
+
+  public PortfolioResult(SolverResult result, SolverConfiguration winner, long elapsedMillis) {
+    this.result = result;
+    this.winner = winner;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return result + (winner == null ? "" : " from " + winner) + " in " + elapsedMillis + " ms";
+  }
+
+}
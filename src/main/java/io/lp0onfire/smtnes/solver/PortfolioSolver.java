@@ -0,0 +1,175 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.SExpression;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs the same query on several solver configurations at once and takes the
+// first definitive answer. Different solvers (and different settings of the
+// same solver) vary wildly in how long they take on these formulas, and it's
+// rarely obvious in advance which will be quickest, so racing them is usually
+// cheaper than guessing. The losers are killed as soon as there is a winner.
+//
+// Every query gets fresh solver processes, since killing the losers leaves
+// nothing worth reusing. Keep in mind that not every solver accepts every
+// formula; STP, for instance, needs CPURAMHandler.setUseArrayExtensionality(false).
+// A solver that rejects the script just drops out of the race.
+public class PortfolioSolver implements AutoCloseable {
+
+  // how the portfolio starts a solver; this is only replaced in tests
+  interface SessionFactory {
+    SolverSession create(SolverConfiguration config) throws IOException;
+  }
+
+  private final List<SolverConfiguration> configurations;
+  public List<SolverConfiguration> getConfigurations() {
+    return this.configurations;
+  }
+
+  private final SessionFactory factory;
+  private final ExecutorService executor;
+  // never changes shape after construction, so it can be read without locking
+  private final Map<SolverConfiguration, AtomicLong> wins = new LinkedHashMap<>();
+
+  public PortfolioSolver(List<SolverConfiguration> configurations) {
+    this(configurations, new SessionFactory() {
+      @Override
+      public SolverSession create(SolverConfiguration config) throws IOException {
+        SolverSession session = new SolverSession(config);
+        session.open();
+        return session;
+      }
+    });
+  }
+
+  PortfolioSolver(List<SolverConfiguration> configurations, SessionFactory factory) {
+    if (configurations.isEmpty()) {
+      throw new IllegalArgumentException("solver portfolio needs at least one configuration");
+    }
+    this.configurations = Collections.unmodifiableList(new ArrayList<>(configurations));
+    this.factory = factory;
+    for (SolverConfiguration config : configurations) {
+      wins.put(config, new AtomicLong(0));
+    }
+    this.executor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "portfolio-solver");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // How many queries config has answered first.
+  public long getWins(SolverConfiguration config) {
+    AtomicLong count = wins.get(config);
+    if (count == null) {
+      throw new IllegalArgumentException("not part of this portfolio: " + config);
+    }
+    return count.get();
+  }
+
+  public String getReport() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<SolverConfiguration, AtomicLong> entry : wins.entrySet()) {
+      sb.append(entry.getKey()).append(": ").append(entry.getValue().get()).append(" wins\n");
+    }
+    return sb.toString();
+  }
+
+  // Race every configuration on script. If none of them can decide it, the result is
+  // UNKNOWN with no winner; if none of them even gets that far, this throws the
+  // first failure, with the others attached as suppressed.
+  public PortfolioResult checkSat(final List<? extends SExpression> script) throws IOException {
+    final long start = System.nanoTime();
+    final CompletableFuture<PortfolioResult> first = new CompletableFuture<>();
+    // sessions that are running; only touched while holding the lock on it
+    final List<SolverSession> running = new ArrayList<>();
+    final List<IOException> failures = Collections.synchronizedList(new ArrayList<IOException>());
+    final AtomicInteger remaining = new AtomicInteger(configurations.size());
+
+    for (final SolverConfiguration config : configurations) {
+      executor.execute(() -> {
+        SolverSession session = null;
+        try {
+          if (first.isDone()) {
+            return;
+          }
+          // starting a solver can take a while, so it isn't done under the lock
+          session = factory.create(config);
+          synchronized (running) {
+            // nothing is registered once there is a winner, so the losers can all be found;
+            // one that finished starting too late is shut down by the finally block below
+            if (first.isDone()) {
+              return;
+            }
+            running.add(session);
+          }
+          session.writeAll(script);
+          SolverResult result = session.checkSat();
+          if (result != SolverResult.UNKNOWN) {
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            first.complete(new PortfolioResult(result, config, elapsed));
+          }
+        } catch (IOException e) {
+          failures.add(e);
+        } catch (RuntimeException e) {
+          failures.add(new IOException(config + " failed", e));
+        } finally {
+          if (session != null) {
+            session.close();
+          }
+          if (remaining.decrementAndGet() == 0 && !first.isDone()) {
+            if (failures.size() < configurations.size()) {
+              first.complete(new PortfolioResult(SolverResult.UNKNOWN, null, (System.nanoTime() - start) / 1000000));
+            } else {
+              IOException e = new IOException("no solver in the portfolio could check the script", failures.get(0));
+              for (IOException other : failures.subList(1, failures.size())) {
+                e.addSuppressed(other);
+              }
+              first.completeExceptionally(e);
+            }
+          }
+        }
+      });
+    }
+
+    try {
+      PortfolioResult result = first.get();
+      if (result.getWinner() != null) {
+        wins.get(result.getWinner()).incrementAndGet();
+      }
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      first.cancel(false);
+      InterruptedIOException ex = new InterruptedIOException("interrupted while waiting for the portfolio");
+      ex.initCause(e);
+      throw ex;
+    } catch (ExecutionException e) {
+      throw (IOException)e.getCause();
+    } finally {
+      synchronized (running) {
+        for (SolverSession session : running) {
+          session.kill();
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+}
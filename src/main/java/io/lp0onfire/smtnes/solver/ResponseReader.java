@@ -0,0 +1,93 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.ExpressionParser;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Splits a solver's output into responses: a parenthesized expression
+// (possibly over several lines), or a single token such as "sat".
+// An error response, or the solver going away, is an IOException.
+class ResponseReader {
+
+  private static final Symbol ERROR = Symbol.trusted("error");
+
+  private final Reader in;
+  private final ExpressionParser parser;
+
+  ResponseReader(Reader in) {
+    this.in = in;
+    this.parser = new ExpressionParser(in);
+  }
+
+  // Read a response that is a list, parsing it as it arrives rather than
+  // collecting the text first; models for big arrays can be long.
+  // Only use this when the response can't be a bare token.
+  SExpression readExpression() throws IOException {
+    SExpression response;
+    try {
+      response = parser.next();
+    } catch (IllegalArgumentException e) {
+      throw new IOException("malformed response from solver: " + e.getMessage());
+    }
+    if (response == null) {
+      throw new IOException("solver exited unexpectedly");
+    }
+    if (response instanceof ExpressionList && ((ExpressionList)response).size() > 0
+        && ((ExpressionList)response).get(0).equals(ERROR)) {
+      throw new IOException("solver reported an error: " + response);
+    }
+    return response;
+  }
+
+  String read() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int depth = 0;
+    boolean inString = false;
+    boolean inQuotedSymbol = false;
+    while (true) {
+      int c = in.read();
+      if (c == -1) {
+        throw new IOException("solver exited unexpectedly" + (sb.length() > 0 ? " after '" + sb + "'" : ""));
+      }
+      char ch = (char)c;
+      if (sb.length() == 0 && Character.isWhitespace(ch)) {
+        continue;
+      }
+      if (inString) {
+        // "" is an escaped quote, which this handles as two strings in a row
+        inString = (ch != '"');
+      } else if (inQuotedSymbol) {
+        inQuotedSymbol = (ch != '|');
+      } else if (ch == '"') {
+        inString = true;
+      } else if (ch == '|') {
+        inQuotedSymbol = true;
+      } else if (ch == '(') {
+        depth += 1;
+      } else if (ch == ')') {
+        depth -= 1;
+      } else if (depth == 0 && Character.isWhitespace(ch)) {
+        // end of a bare token
+        break;
+      }
+      sb.append(ch);
+      if (depth == 0 && ch == ')') {
+        break;
+      }
+    }
+    String response = sb.toString();
+    if (response.startsWith("(error")) {
+      throw new IOException("solver reported an error: " + response);
+    }
+    return response;
+  }
+
+  void close() throws IOException {
+    in.close();
+  }
+
+}
@@ -0,0 +1,74 @@
+package io.lp0onfire.smtnes.solver;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// How to start a solver: the command line of a process that reads
+// SMT-LIB2 on standard input, and the logic to declare at the start
+// of every session.
+public class SolverConfiguration {
+
+  public static final String DEFAULT_LOGIC = "QF_ABV";
+
+  private final List<String> command;
+  public List<String> getCommand() {
+    return this.command;
+  }
+
+  private final String logic;
+  public String getLogic() {
+    return this.logic;
+  }
+
+  public SolverConfiguration(List<String> command, String logic) {
+    if (command.isEmpty()) {
+      throw new IllegalArgumentException("solver command line cannot be empty");
+    }
+    this.command = Collections.unmodifiableList(new ArrayList<>(command));
+    this.logic = logic;
+  }
+
+  // Z3 in interactive SMT-LIB2 mode, found on the PATH (or in the working directory
+  // if there is no PATH). Options go on the command line after the mode flags,
+  // e.g. "smt.arith.solver=2" or "sat.random_seed=7", so differently tuned
+  // copies of Z3 can be told apart by their configurations.
+  public static SolverConfiguration z3(String... options) throws FileNotFoundException {
+    List<String> arguments = new ArrayList<>();
+    arguments.add("-smt2");
+    arguments.add("-in");
+    arguments.addAll(Arrays.asList(options));
+    return find("z3", DEFAULT_LOGIC, arguments.toArray(new String[arguments.size()]));
+  }
+
+  // Any other solver on the PATH that can read SMT-LIB2 interactively
+  // from standard input, given whatever arguments it needs to do that.
+  public static SolverConfiguration find(String name, String logic, String... arguments) throws FileNotFoundException {
+    List<String> command = new ArrayList<>();
+    command.add(findExecutable(name));
+    command.addAll(Arrays.asList(arguments));
+    return new SolverConfiguration(command, logic);
+  }
+
+  public static String findExecutable(String name) throws FileNotFoundException {
+    Map<String, String> env = System.getenv();
+    String[] paths = env.containsKey("PATH") ? env.get("PATH").split(File.pathSeparator) : new String[]{"."};
+    for (String path : paths) {
+      File exe = new File(path, name);
+      if (exe.exists() && !exe.isDirectory() && exe.canExecute()) {
+        return exe.getPath();
+      }
+    }
+    throw new FileNotFoundException("cannot find " + name + " executable");
+  }
+
+  @Override
+  public String toString() {
+    return String.join(" ", command) + " (" + logic + ")";
+  }
+
+}
@@ -0,0 +1,247 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+// A fixed number of solver processes, started up front and shared between
+// threads. acquire() hands out an idle session, waiting for one if necessary.
+// Closing the session returns it to the pool, which sends it (reset), unless
+// it holds a prefix loaded with usePrefix(); in that case only the scopes above the
+// prefix are popped, and acquire(digest) can hand it to someone who wants the same
+// prefix. Either way the pool then syncs with the solver (SolverSession.sync()), so
+// an error nobody read can't turn up as the next borrower's answer. A session whose
+// solver crashed or got out of step is thrown away and replaced, so callers never see
+// a dead one. The pool's lock only guards its own bookkeeping: starting, stopping and
+// talking to solvers is done without it, so one slow solver doesn't hold up the rest.
+public class SolverPool implements AutoCloseable {
+
+  // how the pool makes new sessions; this is only replaced in tests
+  interface SessionFactory {
+    SolverSession create() throws IOException;
+  }
+
+  private final SessionFactory factory;
+
+  private final int size;
+  public int getSize() {
+    return this.size;
+  }
+
+  private final Deque<SolverSession> idle = new ArrayDeque<>();
+  // sessions that are idle or lent out
+  private int live = 0;
+  private boolean closed = false;
+
+  private long sessionsStarted = 0;
+  public synchronized long getSessionsStarted() {
+    return this.sessionsStarted;
+  }
+
+  private long sessionsReplaced = 0;
+  public synchronized long getSessionsReplaced() {
+    return this.sessionsReplaced;
+  }
+
+  // One solver per available processor.
+  public SolverPool(SolverConfiguration config) throws IOException {
+    this(config, Runtime.getRuntime().availableProcessors());
+  }
+
+  public SolverPool(final SolverConfiguration config, int size) throws IOException {
+    this(size, new SessionFactory() {
+      @Override
+      public SolverSession create() throws IOException {
+        SolverSession session = new SolverSession(config);
+        session.open();
+        return session;
+      }
+    });
+  }
+
+  SolverPool(int size, SessionFactory factory) throws IOException {
+    if (size < 1) {
+      throw new IllegalArgumentException("solver pool needs at least one session");
+    }
+    this.size = size;
+    this.factory = factory;
+    try {
+      for (int i = 0; i < size; ++i) {
+        idle.addLast(start());
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private SolverSession start() throws IOException {
+    SolverSession session = factory.create();
+    session.pool = this;
+    live += 1;
+    sessionsStarted += 1;
+    return session;
+  }
+
+  // Start a session in a slot already counted in live, giving the slot back if that fails.
+  private SolverSession startReserved() throws IOException {
+    SolverSession session;
+    try {
+      session = factory.create();
+    } catch (IOException e) {
+      synchronized (this) {
+        live -= 1;
+        notifyAll();
+      }
+      throw e;
+    }
+    session.pool = this;
+    synchronized (this) {
+      sessionsStarted += 1;
+    }
+    return session;
+  }
+
+  // Take an idle session, blocking until one is returned if they are all in use.
+  public SolverSession acquire() throws IOException, InterruptedException {
+    return acquire(null);
+  }
+
+  // Same, but prefer a session that already holds the given prefix.
+  // Any other session is reset before it is handed out.
+  public SolverSession acquire(ScriptDigest prefix) throws IOException, InterruptedException {
+    while (true) {
+      SolverSession session;
+      synchronized (this) {
+        while (true) {
+          if (closed) {
+            throw new IllegalStateException("solver pool has been closed");
+          }
+          session = takeIdle(prefix);
+          if (session != null) {
+            break;
+          }
+          if (live < size) {
+            // a replacement couldn't be started earlier; try again now
+            live += 1;
+            break;
+          }
+          wait();
+        }
+      }
+      if (session == null) {
+        session = startReserved();
+      } else if (!session.isAlive()) {
+        // died while idle
+        discard(session);
+        continue;
+      } else if (session.getPrefixDigest() != null && !session.getPrefixDigest().equals(prefix)) {
+        // someone else's prefix; the caller expects a clean session
+        try {
+          session.reset();
+          session.sync();
+        } catch (IOException e) {
+          discard(session);
+          continue;
+        }
+      }
+      session.leased = true;
+      return session;
+    }
+  }
+
+  private SolverSession takeIdle(ScriptDigest prefix) {
+    if (prefix != null) {
+      Iterator<SolverSession> it = idle.iterator();
+      while (it.hasNext()) {
+        SolverSession session = it.next();
+        if (prefix.equals(session.getPrefixDigest())) {
+          it.remove();
+          return session;
+        }
+      }
+    }
+    return idle.pollFirst();
+  }
+
+  void release(SolverSession session) {
+    if (!isClosed() && session.isAlive()) {
+      try {
+        if (session.getPrefixDigest() != null) {
+          session.popAll();
+        } else {
+          session.reset();
+        }
+        session.sync();
+        if (giveBack(session)) {
+          return;
+        }
+      } catch (IOException e) {
+        // fall through and replace it
+      }
+    }
+    discard(session);
+    synchronized (this) {
+      if (closed || live >= size) {
+        return;
+      }
+      live += 1;
+    }
+    SolverSession replacement;
+    try {
+      replacement = startReserved();
+    } catch (IOException e) {
+      // acquire() will try again
+      return;
+    }
+    if (!giveBack(replacement)) {
+      discard(replacement);
+    }
+  }
+
+  private synchronized boolean isClosed() {
+    return closed;
+  }
+
+  // Put a session on the idle queue, unless the pool has been closed meanwhile.
+  private synchronized boolean giveBack(SolverSession session) {
+    if (closed) {
+      return false;
+    }
+    idle.addLast(session);
+    notifyAll();
+    return true;
+  }
+
+  private void discard(SolverSession session) {
+    session.terminate();
+    synchronized (this) {
+      live -= 1;
+      if (!closed) {
+        sessionsReplaced += 1;
+      }
+      notifyAll();
+    }
+  }
+
+  // Shut down the idle sessions now, and the others as they are returned.
+  @Override
+  public void close() {
+    List<SolverSession> sessions;
+    synchronized (this) {
+      closed = true;
+      sessions = new ArrayList<>(idle);
+      idle.clear();
+      notifyAll();
+    }
+    for (SolverSession session : sessions) {
+      discard(session);
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package io.lp0onfire.smtnes.solver;
+
+public enum SolverResult {
+  SAT,
+  UNSAT,
+  UNKNOWN;
+
+  // Interpret the solver's response to (check-sat).
+  public static SolverResult parse(String response) {
+    switch (response.trim()) {
+    case "sat":
+      return SAT;
+    case "unsat":
+      return UNSAT;
+    case "unknown":
+      return UNKNOWN;
+    default:
+      throw new IllegalArgumentException("not a check-sat response: " + response);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name().toLowerCase();
+  }
+
+}
@@ -0,0 +1,178 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.ExpressionList;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remembers the answers to queries on disk, so a script that has been solved
+// before never has to go to a solver again. Queries are keyed by the digest of the
+// script text plus the solver's identity (its command line, logic and the version
+// it reports, unless given explicitly), so changing a generator, switching solvers
+// or upgrading one in place can't give stale answers. The key also covers what the
+// session already holds (see SolverSession.getContextDigest()); a query sent to a
+// session whose contents aren't known goes straight to the solver and isn't stored.
+// Only sat and unsat are stored; unknown may mean the solver just ran out of time.
+//
+// Each entry is a file named after its key, holding the result on the first line
+// and the model (the solver's get-value response), if any, after it.
+// Entries are written to a temporary file and moved into place, so any number of
+// processes can share a cache directory.
+public class SolverResultCache {
+
+  public static class Entry {
+    private final SolverResult result;
+    public SolverResult getResult() {
+      return this.result;
+    }
+
+    // null if the query didn't ask for values
+    private final String model;
+    public String getModel() {
+      return this.model;
+    }
+
+    public Entry(SolverResult result, String model) {
+      this.result = result;
+      this.model = model;
+    }
+  }
+
+  private final Path directory;
+  private final String identity;
+
+  private final AtomicLong hits = new AtomicLong(0);
+  public long getHits() {
+    return hits.get();
+  }
+
+  private final AtomicLong misses = new AtomicLong(0);
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private final AtomicLong stores = new AtomicLong(0);
+  public long getStores() {
+    return stores.get();
+  }
+
+  // Identifies the solver by asking session for its version.
+  public SolverResultCache(File directory, SolverSession session) throws IOException {
+    this(directory, session.getConfiguration() + " " + session.getVersion());
+  }
+
+  public SolverResultCache(File directory, String identity) {
+    this.directory = directory.toPath();
+    this.identity = identity;
+  }
+
+  // The key for script, checked on its own in a fresh session.
+  public ScriptDigest key(List<? extends SExpression> script) {
+    return key(ScriptDigest.EMPTY, script);
+  }
+
+  // The key for script, checked on top of the given context.
+  public ScriptDigest key(ScriptDigest context, List<? extends SExpression> script) {
+    return ScriptDigest.of(identity + " " + context, script);
+  }
+
+  public String getReport() {
+    return hits.get() + " hits, " + misses.get() + " misses, " + stores.get() + " stored";
+  }
+
+  private Path pathOf(ScriptDigest key) {
+    String name = key.toString();
+    return directory.resolve(name.substring(0, 2)).resolve(name);
+  }
+
+  // The stored answer for key, or null if there isn't one.
+  public Entry lookup(ScriptDigest key) throws IOException {
+    byte[] data;
+    try {
+      data = Files.readAllBytes(pathOf(key));
+    } catch (NoSuchFileException e) {
+      misses.incrementAndGet();
+      return null;
+    }
+    String text = new String(data, StandardCharsets.UTF_8);
+    int newline = text.indexOf('\n');
+    String first = (newline < 0) ? text : text.substring(0, newline);
+    String model = (newline < 0 || newline == text.length() - 1) ? null : text.substring(newline + 1);
+    SolverResult result;
+    try {
+      result = SolverResult.parse(first);
+    } catch (IllegalArgumentException e) {
+      // damaged somehow; treat it as missing and let it be overwritten
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return new Entry(result, model);
+  }
+
+  public void store(ScriptDigest key, SolverResult result, String model) throws IOException {
+    if (result == SolverResult.UNKNOWN) {
+      return;
+    }
+    Path path = pathOf(key);
+    Files.createDirectories(path.getParent());
+    String text = result + "\n" + (model == null ? "" : model);
+    Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      stores.incrementAndGet();
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  // Answer script from the cache, or else check it in a scope of its own in session
+  // and remember the result. If the script is satisfiable and terms are given,
+  // their values are stored along with it.
+  public Entry checkSat(SolverSession session, List<? extends SExpression> script,
+      SExpression... terms) throws IOException {
+    ScriptDigest context = session.getContextDigest();
+    ScriptDigest key = null;
+    if (context != null) {
+      key = key(context, terms.length == 0 ? script : withGetValue(script, terms));
+      Entry entry = lookup(key);
+      if (entry != null) {
+        return entry;
+      }
+    }
+    session.push();
+    try {
+      session.writeAll(script);
+      SolverResult result = session.checkSat();
+      String model = (result == SolverResult.SAT && terms.length > 0) ? session.getValue(terms) : null;
+      if (key != null) {
+        store(key, result, model);
+      }
+      return new Entry(result, model);
+    } finally {
+      if (session.isAlive()) {
+        session.pop();
+      }
+    }
+  }
+
+  // The values asked for are part of the query, so they go into the key.
+  private static List<SExpression> withGetValue(List<? extends SExpression> script, SExpression... terms) {
+    List<SExpression> query = new ArrayList<SExpression>(script);
+    query.add(new ExpressionList(Symbol.trusted("get-value"), new ExpressionList(terms)));
+    return query;
+  }
+
+}
@@ -0,0 +1,404 @@
+package io.lp0onfire.smtnes.solver;
+
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.ScriptWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+
+// One long-lived solver process that can answer any number of queries.
+// Commands are streamed to the solver as they are written; nothing is
+// read back except the responses to check-sat and get-value, so an error
+// in an earlier command shows up as an IOException from the next of those.
+// After such an exception the session can't be trusted to stay in step with
+// the solver, and isAlive() returns false.
+//
+// A prefix shared by many queries (CPU power-on, ROM contents, the reset sequence)
+// can be kept at the bottom of the assertion stack; see usePrefix().
+//
+// Sessions handed out by a SolverPool go back to the pool when closed.
+public class SolverSession implements AutoCloseable {
+
+  private final SolverConfiguration config;
+  public SolverConfiguration getConfiguration() {
+    return this.config;
+  }
+
+  private volatile Process process = null;
+  private ScriptWriter writer = null;
+  private ResponseReader reader = null;
+  private boolean broken = false;
+
+  // the pool this session belongs to, if any, and whether it is currently lent out
+  SolverPool pool = null;
+  boolean leased = false;
+
+  // number of push commands not yet popped
+  private int assertionLevel = 0;
+  public int getAssertionLevel() {
+    return this.assertionLevel;
+  }
+
+  // what the bottom assertion level holds, if it was loaded with usePrefix() and hasn't changed since
+  private ScriptDigest prefixDigest = null;
+  public ScriptDigest getPrefixDigest() {
+    return this.prefixDigest;
+  }
+
+  // whether the bottom assertion level holds nothing at all, as after open() or reset()
+  private boolean bottomEmpty = true;
+
+  // the lowest assertion level above the bottom that has been written to since it was
+  // last pushed, or NOT_WRITTEN if every scope above the bottom level is still empty
+  private static final int NOT_WRITTEN = Integer.MAX_VALUE;
+  private int writtenLevel = NOT_WRITTEN;
+
+  private long prefixesLoaded = 0;
+  public long getPrefixesLoaded() {
+    return this.prefixesLoaded;
+  }
+
+  private long prefixesReused = 0;
+  public long getPrefixesReused() {
+    return this.prefixesReused;
+  }
+
+  // markers sent by sync()
+  private long syncCount = 0;
+
+  private long checkSatCount = 0;
+  public long getCheckSatCount() {
+    return this.checkSatCount;
+  }
+
+  public SolverSession(SolverConfiguration config) {
+    this.config = config;
+  }
+
+  // Talk to something other than a process, e.g. a canned transcript.
+  public SolverSession(SolverConfiguration config, Writer out, Reader in) throws IOException {
+    this.config = config;
+    this.writer = new ScriptWriter(out);
+    this.reader = new ResponseReader(in);
+    setLogic();
+  }
+
+  public boolean isOpen() {
+    return writer != null;
+  }
+
+  // Open, still running, and in step with the solver.
+  public boolean isAlive() {
+    return isOpen() && !broken && (process == null || process.isAlive());
+  }
+
+  public void open() throws IOException {
+    if (isOpen()) {
+      throw new IllegalStateException("solver session is already open");
+    }
+    ProcessBuilder builder = new ProcessBuilder(config.getCommand());
+    builder.redirectErrorStream(true);
+    process = builder.start();
+    writer = new ScriptWriter(new OutputStreamWriter(process.getOutputStream()));
+    reader = new ResponseReader(new BufferedReader(new InputStreamReader(process.getInputStream())));
+    setLogic();
+  }
+
+  private void setLogic() throws IOException {
+    if (config.getLogic() != null) {
+      control("(set-logic " + config.getLogic() + ")");
+    }
+  }
+
+  private void checkOpen() {
+    if (!isOpen()) {
+      throw new IllegalStateException("solver session has not been opened");
+    }
+  }
+
+  private void checkWrite() {
+    checkOpen();
+    if (assertionLevel == 0) {
+      // anything written at the bottom level becomes part of the prefix
+      prefixDigest = null;
+      bottomEmpty = false;
+    } else if (assertionLevel < writtenLevel) {
+      writtenLevel = assertionLevel;
+    }
+  }
+
+  public void write(String command) throws IOException {
+    checkWrite();
+    writer.write(command);
+  }
+
+  public void write(SExpression expr) throws IOException {
+    checkWrite();
+    writer.write(expr);
+  }
+
+  public void writeAll(Iterable<? extends SExpression> exprs) throws IOException {
+    checkWrite();
+    writer.writeAll(exprs);
+  }
+
+  // Commands that don't change what is asserted.
+  private void control(String command) throws IOException {
+    checkOpen();
+    writer.write(command);
+  }
+
+  public void flush() throws IOException {
+    checkOpen();
+    writer.flush();
+  }
+
+  public void push() throws IOException {
+    control("(push 1)");
+    assertionLevel += 1;
+  }
+
+  public void pop() throws IOException {
+    if (assertionLevel == 0) {
+      throw new IllegalStateException("pop without matching push");
+    }
+    control("(pop 1)");
+    assertionLevel -= 1;
+    if (writtenLevel > assertionLevel) {
+      writtenLevel = NOT_WRITTEN;
+    }
+  }
+
+  // Pop every scope, leaving only what was asserted at the bottom level.
+  public void popAll() throws IOException {
+    if (assertionLevel > 0) {
+      control("(pop " + assertionLevel + ")");
+      assertionLevel = 0;
+      writtenLevel = NOT_WRITTEN;
+    }
+  }
+
+  // Make prefix the bottom assertion level and push a new scope on top of it.
+  // If the bottom level already holds exactly this prefix, only the scopes above it
+  // are popped and the solver doesn't have to read the prefix again.
+  // Returns whether the prefix was reused.
+  public boolean usePrefix(List<? extends SExpression> prefix) throws IOException {
+    return usePrefix(ScriptDigest.of(prefix), prefix);
+  }
+
+  // Same, for a caller that has already worked out the prefix's digest.
+  public boolean usePrefix(ScriptDigest digest, Iterable<? extends SExpression> prefix) throws IOException {
+    boolean reused = digest.equals(prefixDigest);
+    if (reused) {
+      popAll();
+      prefixesReused += 1;
+    } else {
+      reset();
+      writeAll(prefix);
+      prefixDigest = digest;
+      prefixesLoaded += 1;
+    }
+    push();
+    return reused;
+  }
+
+  // What a query written now would be checked against, if that is known: the prefix
+  // loaded with usePrefix(), or ScriptDigest.EMPTY if nothing has been asserted, and in
+  // either case nothing written in the scopes pushed since. Otherwise null.
+  public ScriptDigest getContextDigest() {
+    if (writtenLevel != NOT_WRITTEN) {
+      return null;
+    } else if (prefixDigest != null) {
+      return prefixDigest;
+    } else {
+      return bottomEmpty ? ScriptDigest.EMPTY : null;
+    }
+  }
+
+  // Check prefix followed by suffix, reusing the prefix if it's already loaded.
+  // The suffix stays asserted afterwards, so get-value can be used on the result.
+  public SolverResult checkSat(List<? extends SExpression> prefix, List<? extends SExpression> suffix) throws IOException {
+    usePrefix(prefix);
+    writeAll(suffix);
+    return checkSat();
+  }
+
+  // Forget every declaration and assertion; the session can be used again
+  // as if it had just been opened. This is sent straight away so the solver
+  // can free its memory while the session is idle.
+  public void reset() throws IOException {
+    control("(reset)");
+    assertionLevel = 0;
+    prefixDigest = null;
+    bottomEmpty = true;
+    writtenLevel = NOT_WRITTEN;
+    setLogic();
+    writer.flush();
+  }
+
+  // Make sure there's nothing left to read from the solver, such as an error from a
+  // command nobody checked, by echoing a marker and reading up to it. Anything else
+  // read on the way means the session is out of step; it's marked broken and the
+  // error is thrown.
+  public void sync() throws IOException {
+    syncCount += 1;
+    String marker = "sync-" + syncCount;
+    control("(echo \"" + marker + "\")");
+    writer.flush();
+    String response = readResponse();
+    // the standard says the string comes back quoted, but z3 leaves the quotes off
+    if (!response.equals(marker) && !response.equals("\"" + marker + "\"")) {
+      broken = true;
+      throw new IOException("solver out of step: expected " + marker + ", got " + response);
+    }
+  }
+
+  // The solver's answer to (get-info :version), such as (:version "4.8.7").
+  public String getVersion() throws IOException {
+    control("(get-info :version)");
+    writer.flush();
+    return readResponse();
+  }
+
+  public SolverResult checkSat() throws IOException {
+    control("(check-sat)");
+    writer.flush();
+    return readResult();
+  }
+
+  // Check satisfiability with the given Boolean literals assumed true,
+  // without asserting them.
+  public SolverResult checkSatAssuming(SExpression... assumptions) throws IOException {
+    control(withTerms("check-sat-assuming", assumptions));
+    writer.flush();
+    return readResult();
+  }
+
+  // Values of terms in the model from the last satisfiable check-sat,
+  // as the text of the solver's ((term value) ...) response.
+  public String getValue(SExpression... terms) throws IOException {
+    control(withTerms("get-value", terms));
+    writer.flush();
+    return readResponse();
+  }
+
+  // Same, parsed as the response arrives.
+  public Model getValues(SExpression... terms) throws IOException {
+    control(withTerms("get-value", terms));
+    writer.flush();
+    SExpression response = readExpression();
+    try {
+      return Model.fromValues(response);
+    } catch (IllegalArgumentException e) {
+      broken = true;
+      throw new IOException("unexpected response to get-value: " + e.getMessage());
+    }
+  }
+
+  // Every constant in the model from the last satisfiable check-sat.
+  public Model getModel() throws IOException {
+    control("(get-model)");
+    writer.flush();
+    SExpression response = readExpression();
+    try {
+      return Model.fromModel(response);
+    } catch (IllegalArgumentException e) {
+      broken = true;
+      throw new IOException("unexpected response to get-model: " + e.getMessage());
+    }
+  }
+
+  // (command ( term ... )), as check-sat-assuming and get-value take.
+  static String withTerms(String command, SExpression... terms) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    sb.append('(').append(command).append(" (");
+    for (SExpression term : terms) {
+      sb.append(' ');
+      term.writeTo(sb);
+    }
+    sb.append(" ))");
+    return sb.toString();
+  }
+
+  private SolverResult readResult() throws IOException {
+    checkSatCount += 1;
+    String response = readResponse();
+    try {
+      return SolverResult.parse(response);
+    } catch (IllegalArgumentException e) {
+      broken = true;
+      throw new IOException("unexpected response from solver: " + response);
+    }
+  }
+
+  private String readResponse() throws IOException {
+    try {
+      return reader.read();
+    } catch (IOException e) {
+      broken = true;
+      throw e;
+    }
+  }
+
+  private SExpression readExpression() throws IOException {
+    try {
+      return reader.readExpression();
+    } catch (IOException e) {
+      broken = true;
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (pool != null) {
+      if (leased) {
+        leased = false;
+        pool.release(this);
+      }
+    } else {
+      terminate();
+    }
+  }
+
+  // Stop the solver in its tracks from another thread; whatever the owning
+  // thread is waiting for fails with an IOException, and it should then close
+  // the session as usual.
+  void kill() {
+    Process p = process;
+    if (p != null) {
+      p.destroyForcibly();
+    } else if (reader != null) {
+      // nothing to kill, so cut off the canned transcript instead
+      try {
+        reader.close();
+      } catch (IOException e) {
+        // it's going away anyway
+      }
+    }
+  }
+
+  // Shut the solver down, whoever owns this session.
+  void terminate() {
+    if (writer != null) {
+      try {
+        writer.write("(exit)");
+        writer.close();
+      } catch (IOException e) {
+        // the process is going away anyway
+      }
+      writer = null;
+    }
+    if (process != null) {
+      process.destroyForcibly();
+      process = null;
+    }
+  }
+
+}
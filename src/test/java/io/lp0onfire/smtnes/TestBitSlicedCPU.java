@@ -0,0 +1,225 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestBitSlicedCPU {
+
+  // every opcode CPUCycle implements
+  private static final int[] OPCODES = {
+    0x18, 0xD8, 0x58, 0xB8, 0x38, 0xF8, 0x78, 0xCA, 0x88, 0xE8, 0xC8,
+    0xAA, 0xA8, 0xBA, 0x8A, 0x9A, 0x98,
+    0xA9, 0xA5, 0xB5, 0xAD, 0xBD, 0xB9, 0xA1, 0xB1,
+    0xA2, 0xA6, 0xB6, 0xAE, 0xBE,
+    0x85, 0x95, 0x8D, 0x9D, 0x99, 0x81, 0x91,
+    0x86, 0x96, 0x8E, 0x84, 0x94, 0x8C,
+  };
+
+  // RAM on pages 0 and 1, a 4 KiB ROM on pages 8-15 holding program at $8000,
+  // and the reset vector at vector
+  private static ConcretePageHandler rom(int vector, int... program) {
+    byte[] rom = new byte[0x1000];
+    for (int i = 0; i < rom.length; ++i) {
+      rom[i] = (byte)0xEA;
+    }
+    for (int i = 0; i < program.length; ++i) {
+      rom[i] = (byte)program[i];
+    }
+    rom[0xFFC] = (byte)vector;
+    rom[0xFFD] = (byte)(vector >>> 8);
+    return ConcretePageHandler.rom(rom);
+  }
+
+  private static ConcreteCPU reference(ConcretePageHandler rom, byte[] ram) {
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setPageHandler(0, cpu.getRAMHandler());
+    cpu.setPageHandler(1, cpu.getRAMHandler());
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, rom);
+    }
+    for (int i = 0; i < ram.length; ++i) {
+      cpu.writeRAM(i, ram[i] & 0xFF);
+    }
+    return cpu;
+  }
+
+  private static BitSlicedCPU sliced(ConcretePageHandler rom) {
+    BitSlicedCPU sliced = new BitSlicedCPU();
+    sliced.setPageHandler(0, BitSlicedCPU.INTERNAL_RAM);
+    sliced.setPageHandler(1, BitSlicedCPU.INTERNAL_RAM);
+    for (int i = 8; i < 16; ++i) {
+      sliced.setPageHandler(i, rom);
+    }
+    return sliced;
+  }
+
+  // RAM filled with implemented opcodes, so that code run from it goes on for a while
+  private static byte[] randomCode(Random random) {
+    byte[] ram = new byte[2048];
+    for (int i = 0; i < ram.length; ++i) {
+      ram[i] = (byte)OPCODES[random.nextInt(OPCODES.length)];
+    }
+    return ram;
+  }
+
+  // false once cpu has hit an opcode it doesn't implement
+  private static boolean step(ConcreteCPU cpu) {
+    try {
+      cpu.step();
+      return true;
+    } catch (IllegalStateException e) {
+      return false;
+    }
+  }
+
+  private static void assertSameState(String where, ConcreteCPU cpu, long expectHalted, BitSlicedCPU sliced, int lane) {
+    for (String var : BitSlicedCPU.STATE_VARIABLES) {
+      assertEquals(var + " in lane " + lane + " " + where,
+          cpu.getStateVariable(var), sliced.getStateVariable(lane, var));
+    }
+    assertEquals("lane " + lane + " halted " + where, expectHalted != 0, sliced.isHalted(lane));
+  }
+
+  // runs each lane next to a ConcreteCPU, comparing every cycle
+  private void compare(ConcretePageHandler rom, byte[][] rams, int cycles) {
+    BitSlicedCPU sliced = sliced(rom);
+    ConcreteCPU[] cpus = new ConcreteCPU[BitSlicedCPU.LANES];
+    for (int lane = 0; lane < BitSlicedCPU.LANES; ++lane) {
+      cpus[lane] = reference(rom, rams[lane]);
+      for (int i = 0; i < rams[lane].length; ++i) {
+        sliced.writeRAM(lane, i, rams[lane][i] & 0xFF);
+      }
+    }
+    long halted = 0;
+    for (int cycle = 1; cycle <= cycles; ++cycle) {
+      sliced.step();
+      for (int lane = 0; lane < BitSlicedCPU.LANES; ++lane) {
+        if ((halted & (1L << lane)) == 0 && !step(cpus[lane])) {
+          halted |= 1L << lane;
+        }
+        assertSameState("in cycle " + cycle, cpus[lane], halted & (1L << lane), sliced, lane);
+      }
+    }
+    for (int lane = 0; lane < BitSlicedCPU.LANES; ++lane) {
+      byte[] ram = cpus[lane].getRAM();
+      for (int i = 0; i < ram.length; ++i) {
+        assertEquals("RAM[" + i + "] in lane " + lane, ram[i] & 0xFF, sliced.readRAM(lane, i));
+      }
+    }
+  }
+
+  @Test
+  public void testSameProgramDifferentData() {
+    // LDX $10; LDA $01F0,X; STA $20,X; LDA $11; TAY; LDA ($30),Y; STA ($40,X);
+    // TAX; INX; DEY; TSX; TXS; SEC; STA $0123,Y; STX $05,Y; STY $0200; LDA $1234;
+    // LDX $01FF,Y; LDA ($50,X); CLC; STA $07F0,X
+    int[] program = {
+        0xA6, 0x10, 0xBD, 0xF0, 0x01, 0x95, 0x20, 0xA5, 0x11, 0xA8, 0xB1, 0x30, 0x81, 0x40,
+        0xAA, 0xE8, 0x88, 0xBA, 0x9A, 0x38, 0x99, 0x23, 0x01, 0x96, 0x05, 0x8C, 0x00, 0x02,
+        0xAD, 0x34, 0x12, 0xBE, 0xFF, 0x01, 0xA1, 0x50, 0x18, 0x9D, 0xF0, 0x07,
+    };
+    Random random = new Random(1);
+    byte[][] rams = new byte[BitSlicedCPU.LANES][2048];
+    for (byte[] ram : rams) {
+      random.nextBytes(ram);
+    }
+    // the program ends at the first NOP, at different times in different lanes
+    compare(rom(0x8000, program), rams, 150);
+  }
+
+  @Test
+  public void testDivergentCode() {
+    // every lane runs different code out of its own RAM
+    Random random = new Random(2);
+    byte[][] rams = new byte[BitSlicedCPU.LANES][];
+    for (int lane = 0; lane < rams.length; ++lane) {
+      rams[lane] = randomCode(random);
+    }
+    compare(rom(0x0000), rams, 400);
+  }
+
+  @Test
+  public void testUnimplementedOpcodeHaltsOneLane() {
+    BitSlicedCPU sliced = sliced(rom(0x0000));
+    for (int lane = 0; lane < BitSlicedCPU.LANES; ++lane) {
+      // LDA #lane
+      sliced.writeRAM(lane, 0, 0xA9);
+      sliced.writeRAM(lane, 1, lane);
+    }
+    sliced.writeRAM(5, 0, 0xEA);
+    sliced.run(8 + 2);
+    assertEquals(1L << 5, sliced.getHaltedLanes());
+    assertEquals(CPUState.InstructionFetch, sliced.getState(5));
+    assertEquals(0x0001, sliced.getStateVariable(5, "CPU_PC"));
+    assertEquals(0, sliced.getStateVariable(5, "CPU_A"));
+    assertEquals(7, sliced.getStateVariable(7, "CPU_A"));
+  }
+
+  @Test
+  public void testLoadConcreteCPU() {
+    ConcreteCPU cpu = reference(rom(0x8000, 0xA9, 0x42, 0xAA), new byte[2048]);
+    cpu.run(8 + 2);
+    cpu.writeRAM(0x123, 0x77);
+    BitSlicedCPU sliced = sliced(rom(0x8000, 0xA9, 0x42, 0xAA));
+    sliced.load(3, cpu);
+    assertSameState("after loading", cpu, 0, sliced, 3);
+    assertEquals(0x77, sliced.readRAM(3, 0x123));
+    cpu.run(2);
+    sliced.run(2);
+    assertSameState("after TAX", cpu, 0, sliced, 3);
+    assertEquals(0x42, sliced.getStateVariable(3, "CPU_X"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStateVariableTooWide() {
+    new BitSlicedCPU().setStateVariable(0, "CPU_A", 0x100);
+  }
+
+  @Test
+  public void testBatch() {
+    // three slices, the last one partly used, on a pool of its own
+    int machines = 150;
+    int cycles = 300;
+    Random random = new Random(3);
+    ConcretePageHandler rom = rom(0x0000);
+    ForkJoinPool pool = new ForkJoinPool(3);
+    try {
+      BitSlicedBatch batch = new BitSlicedBatch(machines, pool);
+      assertEquals(3, batch.getSliceCount());
+      batch.setPageHandler(0, BitSlicedCPU.INTERNAL_RAM);
+      batch.setPageHandler(1, BitSlicedCPU.INTERNAL_RAM);
+      for (int i = 8; i < 16; ++i) {
+        batch.setPageHandler(i, rom);
+      }
+      ConcreteCPU[] cpus = new ConcreteCPU[machines];
+      for (int m = 0; m < machines; ++m) {
+        byte[] ram = randomCode(random);
+        cpus[m] = reference(rom, ram);
+        for (int i = 0; i < ram.length; ++i) {
+          batch.writeRAM(m, i, ram[i] & 0xFF);
+        }
+      }
+      batch.run(cycles);
+      for (int m = 0; m < machines; ++m) {
+        boolean running = true;
+        for (int cycle = 0; cycle < cycles && running; ++cycle) {
+          running = step(cpus[m]);
+        }
+        for (String var : BitSlicedCPU.STATE_VARIABLES) {
+          assertEquals(var + " in machine " + m, cpus[m].getStateVariable(var), batch.getStateVariable(m, var));
+        }
+        assertEquals("machine " + m + " halted", !running, batch.isHalted(m));
+        assertEquals(cpus[m].readRAM(0x10), batch.readRAM(m, 0x10));
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.PartialEvaluator;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// Runs the checker against canned solver output; see the intTest of the same name for the real thing.
+public class TestBoundedModelChecker {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), null);
+
+  // declares X, with any value
+  private static class DeclareX implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("X"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs, Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("X"), new Numeral("8")));
+      return exprs;
+    }
+  }
+
+  // asserts that X has the given value
+  private static class XIs implements CodeGenerator {
+    private final String value;
+
+    XIs(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("X"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs, Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new Assertion(new EqualsExpression(inputs.get("X"), new HexConstant(value))));
+      return exprs;
+    }
+  }
+
+  @Test
+  public void testEvaluatorForgetsUnreachableTarget() throws IOException {
+    StateVariableRegistry registry = new StateVariableRegistry();
+    PartialEvaluator evaluator = new PartialEvaluator();
+    registry.setPartialEvaluator(evaluator);
+    StringWriter out = new StringWriter();
+    try (SolverSession session = new SolverSession(config, out, new StringReader("unsat\nsat\n"))) {
+      BoundedModelChecker bmc = new BoundedModelChecker(session, registry,
+          Arrays.<CodeGenerator>asList(new DeclareX()));
+      bmc.apply(new DeclareX());
+      assertFalse(bmc.check(new XIs("05")));
+      // X_0 is still free, so this is asked as it stands rather than simplified to false
+      assertNull(evaluator.getKnownValue(new Symbol("X_0")));
+      assertTrue(bmc.check(new XIs("06")));
+      assertEquals(new HexConstant("06"), evaluator.getKnownValue(new Symbol("X_0")));
+      bmc.step();
+      assertEquals(0, evaluator.getScopeLevel());
+      assertNull(evaluator.getKnownValue(new Symbol("X_0")));
+    }
+    assertTrue(out.toString().contains("( assert ( = X_0 #x06 ) )\n"));
+    assertFalse(out.toString().contains("false"));
+  }
+
+  @Test
+  public void testTemplatedTargetRejected() throws IOException {
+    StateVariableRegistry registry = new StateVariableRegistry();
+    XIs target = new XIs("05");
+    registry.setTemplate(target, "x_is_5");
+    StringWriter out = new StringWriter();
+    try (SolverSession session = new SolverSession(config, out, new StringReader(""))) {
+      BoundedModelChecker bmc = new BoundedModelChecker(session, registry,
+          Arrays.<CodeGenerator>asList(new DeclareX()));
+      bmc.apply(new DeclareX());
+      try {
+        bmc.check(target);
+        fail("templated target accepted");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      assertEquals(0, session.getAssertionLevel());
+    }
+    assertFalse(out.toString().contains("x_is_5"));
+  }
+
+}
@@ -0,0 +1,170 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+import io.lp0onfire.smtnes.smt2.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestConcolicCPU {
+
+  // RAM on pages 0 and 1, nothing on pages 2-7, a 4 KiB ROM on pages 8-15
+  // holding program at $8000, and the reset vector at vector
+  private ConcreteCPU machine(int vector, int... program) {
+    byte[] rom = new byte[0x1000];
+    for (int i = 0; i < rom.length; ++i) {
+      rom[i] = (byte)0xEA;
+    }
+    for (int i = 0; i < program.length; ++i) {
+      rom[i] = (byte)program[i];
+    }
+    rom[0xFFC] = (byte)vector;
+    rom[0xFFD] = (byte)(vector >>> 8);
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setPageHandler(0, cpu.getRAMHandler());
+    cpu.setPageHandler(1, cpu.getRAMHandler());
+    ConcretePageHandler romHandler = ConcretePageHandler.rom(rom);
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, romHandler);
+    }
+    return cpu;
+  }
+
+  // run until the next instruction fetch
+  private void instruction(ConcolicCPU concolic) {
+    do {
+      concolic.step();
+    } while (concolic.getCPU().getState() != CPUState.InstructionFetch);
+  }
+
+  // whether condition holds with input name set to value
+  private boolean holds(SExpression condition, String name, int value) {
+    List<SExpression> code = new ArrayList<>();
+    code.add(new Assertion(new EqualsExpression(new Symbol(name), BitVectorConstant.of(value, 8))));
+    code.add(new Assertion(condition));
+    // only the input's value is left if the condition simplified to true
+    return new PartialEvaluator().evaluate(code).size() == 1;
+  }
+
+  @Test
+  public void testConcreteRunHasNoPath() {
+    // LDA #$5A; STA $10; LDX $10
+    ConcolicCPU concolic = new ConcolicCPU(machine(0x8000, 0xA9, 0x5A, 0x85, 0x10, 0xA6, 0x10));
+    concolic.run(8 + 2 + 3 + 3);
+    assertEquals(0x5A, concolic.getCPU().getX());
+    assertTrue(concolic.getPath().isEmpty());
+    assertNull(concolic.getSymbolicValue("CPU_X"));
+  }
+
+  @Test
+  public void testDataFlowIsNotADecision() {
+    // LDA $10; TAX; INX; STX $11
+    ConcolicCPU concolic = new ConcolicCPU(machine(0x8000, 0xA5, 0x10, 0xAA, 0xE8, 0x86, 0x11));
+    concolic.makeSymbolic(0x10, "in");
+    concolic.run(8);
+    for (int i = 0; i < 4; ++i) {
+      instruction(concolic);
+    }
+    assertTrue(concolic.getPath().isEmpty());
+    assertEquals(new Symbol("in"), concolic.getSymbolicValue("CPU_A"));
+    SExpression x = concolic.getSymbolicValue("CPU_X");
+    assertNotNull(x);
+    assertEquals(x, concolic.getSymbolicRAM(0x11));
+    assertTrue(holds(new EqualsExpression(x, BitVectorConstant.of(0x00, 8)), "in", 0xFF));
+    assertFalse(holds(new EqualsExpression(x, BitVectorConstant.of(0x00, 8)), "in", 0xFE));
+  }
+
+  @Test
+  public void testSymbolicAddress() {
+    // LDX $10; LDA $20,X
+    Map<String, Integer> assignment = new HashMap<>();
+    assignment.put("index", 0x05);
+    ConcolicCPU concolic = new ConcolicCPU(machine(0x8000, 0xA6, 0x10, 0xB5, 0x20), assignment);
+    concolic.makeSymbolic(0x10, "index");
+    concolic.getCPU().writeRAM(0x25, 0x77);
+    concolic.run(8);
+    instruction(concolic);
+    instruction(concolic);
+    assertEquals(0x77, concolic.getCPU().getA());
+    assertEquals(1, concolic.getPath().size());
+    PathConstraint decision = concolic.getPath().get(0);
+    assertEquals("address $0025", decision.getDecision());
+    assertTrue(holds(decision.getCondition(), "index", 0x05));
+    assertFalse(holds(decision.getCondition(), "index", 0x06));
+
+    List<SExpression> alternative = concolic.getAlternative(0);
+    assertEquals(Arrays.asList(
+        new BitVectorDeclaration(new Symbol("index"), new Numeral("8")),
+        new Assertion(new NotExpression(decision.getCondition()))), alternative);
+  }
+
+  @Test
+  public void testPageCrossing() {
+    // LDA $2000; TAY; LDA $01F0,Y
+    ConcolicCPU concolic = new ConcolicCPU(machine(0x8000, 0xAD, 0x00, 0x20, 0xA8, 0xB9, 0xF0, 0x01));
+    concolic.makeSymbolicReads(0x2000, "pad");
+    concolic.run(8);
+    for (int i = 0; i < 3; ++i) {
+      instruction(concolic);
+    }
+    assertEquals(Arrays.asList("pad_0"), new ArrayList<>(concolic.getInputs().keySet()));
+    // nothing is attached at $2000, so the pad reads $00
+    assertEquals(0x00, (int)concolic.getInputs().get("pad_0"));
+    assertEquals("page not crossed", concolic.getPath().get(0).getDecision());
+    assertEquals("address $01F0", concolic.getPath().get(1).getDecision());
+    SExpression notCrossed = concolic.getPath().get(0).getCondition();
+    for (int pad = 0; pad < 0x100; ++pad) {
+      assertEquals(pad < 0x10, holds(notCrossed, "pad_0", pad));
+    }
+
+    // and a run that takes the other way
+    Map<String, Integer> assignment = new HashMap<>();
+    assignment.put("pad_0", 0x20);
+    concolic = new ConcolicCPU(machine(0x8000, 0xAD, 0x00, 0x20, 0xA8, 0xB9, 0xF0, 0x01), assignment);
+    concolic.makeSymbolicReads(0x2000, "pad");
+    concolic.run(8);
+    instruction(concolic);
+    instruction(concolic);
+    concolic.getCPU().writeRAM(0x210, 0x42);
+    instruction(concolic);
+    assertEquals(0x42, concolic.getCPU().getA());
+    assertEquals("page crossed", concolic.getPath().get(0).getDecision());
+  }
+
+  @Test
+  public void testSymbolicOpcode() {
+    // execute from RAM, with the first opcode an input
+    ConcreteCPU cpu = machine(0x0000);
+    cpu.writeRAM(0x0001, 0x5A);
+    Map<String, Integer> assignment = new HashMap<>();
+    assignment.put("op", 0xA9);
+    ConcolicCPU concolic = new ConcolicCPU(cpu, assignment);
+    concolic.makeSymbolic(0x0000, "op");
+    concolic.run(8);
+    instruction(concolic);
+    assertEquals(0x5A, cpu.getA());
+    assertEquals(1, concolic.getPath().size());
+    assertEquals("opcode A9", concolic.getPath().get(0).getDecision());
+    assertEquals(8, concolic.getPath().get(0).getCycle());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInputNamesAreUnique() {
+    ConcolicCPU concolic = new ConcolicCPU(machine(0x8000));
+    concolic.makeSymbolic(0x10, "in");
+    concolic.makeSymbolic(0x11, "in");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoSuchDecision() {
+    new ConcolicCPU(machine(0x8000)).getAlternative(0);
+  }
+
+}
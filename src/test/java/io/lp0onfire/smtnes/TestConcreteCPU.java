@@ -0,0 +1,209 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+import io.lp0onfire.smtnes.generators.mappers.Mapper000;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestConcreteCPU {
+
+  // RAM on pages 0 and 1, a 4 KiB ROM mirrored over pages 8-15 holding program at $8000
+  // and a reset vector pointing at it
+  private ConcreteCPU boot(int... program) {
+    byte[] rom = new byte[0x1000];
+    for (int i = 0; i < rom.length; ++i) {
+      rom[i] = (byte)0xEA;
+    }
+    for (int i = 0; i < program.length; ++i) {
+      rom[i] = (byte)program[i];
+    }
+    rom[0xFFC] = 0x00;
+    rom[0xFFD] = (byte)0x80;
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setPageHandler(0, cpu.getRAMHandler());
+    cpu.setPageHandler(1, cpu.getRAMHandler());
+    ConcretePageHandler romHandler = ConcretePageHandler.rom(rom);
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, romHandler);
+    }
+    cpu.run(8);
+    return cpu;
+  }
+
+  // run until the next instruction fetch, returning the number of cycles taken
+  private int instruction(ConcreteCPU cpu) {
+    int cycles = 0;
+    do {
+      cpu.step();
+      cycles += 1;
+    } while (cpu.getState() != CPUState.InstructionFetch);
+    return cycles;
+  }
+
+  @Test
+  public void testReset() {
+    ConcreteCPU cpu = boot(0xA9, 0x5A);
+    assertEquals(CPUState.InstructionFetch, cpu.getState());
+    assertEquals(0x8001, cpu.getPC());
+    assertEquals(0x8000, cpu.getAddressBus());
+    assertEquals(0xA9, cpu.getDataIn());
+    // three reads from the stack, and P[I] set
+    assertEquals(0xFD, cpu.getSP());
+    assertEquals(0x24, cpu.getP());
+    assertEquals(0, cpu.getResetSequence());
+    assertEquals(8, cpu.getCycleCount());
+  }
+
+  @Test
+  public void testResetPhases() {
+    ConcreteCPU cpu = new ConcreteCPU();
+    for (int phase = 0; phase < 8; ++phase) {
+      assertEquals(CPUState.Resetting, cpu.getState());
+      assertEquals(phase, cpu.getResetSequence());
+      cpu.step();
+    }
+    assertEquals(CPUState.InstructionFetch, cpu.getState());
+  }
+
+  @Test
+  public void testLoadAndStore() {
+    // LDA #$5A; STA $10; LDX $10; STX $0123
+    ConcreteCPU cpu = boot(0xA9, 0x5A, 0x85, 0x10, 0xA6, 0x10, 0x8E, 0x23, 0x01);
+    assertEquals(2, instruction(cpu));
+    assertEquals(0x5A, cpu.getA());
+    assertEquals(3, instruction(cpu));
+    assertEquals(0x5A, cpu.readRAM(0x10));
+    assertEquals(3, instruction(cpu));
+    assertEquals(0x5A, cpu.getX());
+    assertEquals(4, instruction(cpu));
+    assertEquals(0x5A, cpu.readRAM(0x123));
+    // $0923 is a mirror of $0123
+    assertEquals(0x5A, cpu.readRAM(0x923));
+  }
+
+  @Test
+  public void testFlags() {
+    // LDA #$00; LDA #$80; SEC; CLC; SED
+    ConcreteCPU cpu = boot(0xA9, 0x00, 0xA9, 0x80, 0x38, 0x18, 0xF8);
+    instruction(cpu);
+    // P[Z] is bit 7 in CPUCycle
+    assertEquals(0x80, cpu.getP() & 0x82);
+    instruction(cpu);
+    // and P[N] is bit 1
+    assertEquals(0x02, cpu.getP() & 0x82);
+    assertEquals(2, instruction(cpu));
+    assertEquals(0x01, cpu.getP() & 0x01);
+    instruction(cpu);
+    assertEquals(0x00, cpu.getP() & 0x01);
+    instruction(cpu);
+    assertEquals(0x08, cpu.getP() & 0x08);
+  }
+
+  @Test
+  public void testTransfersAndIncrements() {
+    // LDX #$FF; TXS; INX; TXA; DEY; TAY
+    ConcreteCPU cpu = boot(0xA2, 0xFF, 0x9A, 0xE8, 0x8A, 0x88, 0xA8);
+    instruction(cpu);
+    instruction(cpu);
+    assertEquals(0xFF, cpu.getSP());
+    instruction(cpu);
+    assertEquals(0x00, cpu.getX());
+    assertEquals(0x80, cpu.getP() & 0x80);
+    instruction(cpu);
+    assertEquals(0x00, cpu.getA());
+    instruction(cpu);
+    assertEquals(0xFF, cpu.getY());
+    assertEquals(0x02, cpu.getP() & 0x82);
+    instruction(cpu);
+    assertEquals(0x00, cpu.getY());
+  }
+
+  @Test
+  public void testAbsoluteIndexedPageCrossing() {
+    // LDX #$01; LDA $01FF,X; LDA $01FE,X
+    ConcreteCPU cpu = boot(0xA2, 0x01, 0xBD, 0xFF, 0x01, 0xBD, 0xFE, 0x01);
+    cpu.writeRAM(0x200, 0x11);
+    cpu.writeRAM(0x1FF, 0x22);
+    instruction(cpu);
+    // crossing into page 2 costs a cycle
+    assertEquals(5, instruction(cpu));
+    assertEquals(0x11, cpu.getA());
+    assertEquals(4, instruction(cpu));
+    assertEquals(0x22, cpu.getA());
+  }
+
+  @Test
+  public void testIndirectIndexed() {
+    // LDA #$05; TAY; LDA #$77; STA ($20),Y; LDA #$00; LDA ($20),Y
+    ConcreteCPU cpu = boot(0xA9, 0x05, 0xA8, 0xA9, 0x77, 0x91, 0x20, 0xA9, 0x00, 0xB1, 0x20);
+    cpu.writeRAM(0x20, 0x00);
+    cpu.writeRAM(0x21, 0x03);
+    instruction(cpu);
+    instruction(cpu);
+    instruction(cpu);
+    assertEquals(6, instruction(cpu));
+    assertEquals(0x77, cpu.readRAM(0x305));
+    instruction(cpu);
+    assertEquals(5, instruction(cpu));
+    assertEquals(0x77, cpu.getA());
+  }
+
+  @Test
+  public void testIndexedIndirect() {
+    // LDX #$04; LDA #$99; STA ($1C,X); LDA #$00; LDA ($1C,X)
+    ConcreteCPU cpu = boot(0xA2, 0x04, 0xA9, 0x99, 0x81, 0x1C, 0xA9, 0x00, 0xA1, 0x1C);
+    cpu.writeRAM(0x20, 0x34);
+    cpu.writeRAM(0x21, 0x02);
+    instruction(cpu);
+    instruction(cpu);
+    assertEquals(6, instruction(cpu));
+    assertEquals(0x99, cpu.readRAM(0x234));
+    instruction(cpu);
+    assertEquals(6, instruction(cpu));
+    assertEquals(0x99, cpu.getA());
+  }
+
+  @Test
+  public void testUnimplementedOpcode() {
+    // NOP isn't in CPUCycle
+    ConcreteCPU cpu = boot(0xEA);
+    try {
+      cpu.step();
+      fail("NOP should not have been executed");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("EA"));
+    }
+  }
+
+  @Test
+  public void testMapper000() {
+    // NROM-128: 16 KiB of PRG ROM at $8000, mirrored at $C000
+    byte[] prg = new byte[16384];
+    prg[0x0000] = (byte)0xA9;
+    prg[0x0001] = 0x42;
+    prg[0x3FFC] = 0x00;
+    prg[0x3FFD] = (byte)0x80;
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.attachMapper(new Mapper000(new ROM(prg, 0)));
+    cpu.run(10);
+    assertEquals(0x42, cpu.getA());
+  }
+
+  @Test
+  public void testStateVariables() {
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setStateVariable("CPU_State", CPUState.InstructionFetch.getIndex());
+    cpu.setStateVariable("CPU_PC", 0x1234);
+    assertEquals(CPUState.InstructionFetch, cpu.getState());
+    assertEquals(0x1234, cpu.getStateVariable("CPU_PC"));
+    assertEquals(0x20, cpu.getStateVariable("CPU_P"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStateVariableTooWide() {
+    new ConcreteCPU().setStateVariable("CPU_A", 0x100);
+  }
+
+}
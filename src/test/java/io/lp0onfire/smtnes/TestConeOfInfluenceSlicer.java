@@ -0,0 +1,174 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.AndExpression;
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorAddExpression;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestConeOfInfluenceSlicer {
+
+  // foo := 0, bar := 0
+  private static class Init implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("foo", "bar"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("foo"), new Numeral("4")));
+      exprs.add(new BitVectorDeclaration(outputs.get("bar"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("foo"), new BinaryConstant("0000"))));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("bar"), new BinaryConstant("0000"))));
+      return exprs;
+    }
+  }
+
+  // foo := foo + 1, bar := bar + foo, in a single assertion
+  private static class Step implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("foo", "bar"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("foo", "bar"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("foo"), new Numeral("4")));
+      exprs.add(new BitVectorDeclaration(outputs.get("bar"), new Numeral("4")));
+      exprs.add(new Assertion(new AndExpression(
+          new EqualsExpression(outputs.get("foo"), new BitVectorAddExpression(inputs.get("foo"), new BinaryConstant("0001"))),
+          new EqualsExpression(outputs.get("bar"), new BitVectorAddExpression(inputs.get("bar"), inputs.get("foo"))))));
+      return exprs;
+    }
+  }
+
+  // assert that var has the given value
+  private static class Check implements CodeGenerator {
+    private final String var;
+    private final String value;
+
+    public Check(String var, String value) {
+      this.var = var;
+      this.value = value;
+    }
+
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList(var));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new Assertion(new EqualsExpression(inputs.get(var), new BinaryConstant(value))));
+      return exprs;
+    }
+  }
+
+  private List<SExpression> run(StateVariableRegistry reg, int steps) {
+    List<SExpression> exprs = new LinkedList<>();
+    exprs.addAll(reg.apply(new Init()));
+    CodeGenerator step = new Step();
+    for (int i = 0; i < steps; ++i) {
+      exprs.addAll(reg.apply(step));
+    }
+    return exprs;
+  }
+
+  @Test
+  public void testSliceFromRoot() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ConeOfInfluenceSlicer slicer = new ConeOfInfluenceSlicer();
+    reg.setSlicer(slicer);
+    List<SExpression> script = run(reg, 2);
+    assertEquals("foo_2", reg.getCurrentVersion("foo").getName());
+
+    // foo never depends on bar
+    List<SExpression> sliced = slicer.slice(script, Arrays.asList(reg.getCurrentVersion("foo")));
+    for (SExpression expr : sliced) {
+      assertFalse(expr + " mentions bar", expr.toString().contains("bar_"));
+    }
+    assertEquals(6, sliced.size());
+    assertEquals("( assert ( = foo_1 ( bvadd foo_0 #b0001 ) ) )", sliced.get(3).toString());
+    assertEquals(3, slicer.getDeclarationsRemoved());
+    assertEquals(1, slicer.getAssertionsRemoved());
+    assertEquals(2, slicer.getConjunctsRemoved());
+  }
+
+  @Test
+  public void testSliceKeepsChecks() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ConeOfInfluenceSlicer slicer = new ConeOfInfluenceSlicer();
+    reg.setSlicer(slicer);
+    List<SExpression> script = run(reg, 2);
+    script.addAll(reg.apply(new Check("bar", "0001")));
+
+    // bar depends on foo, so only foo_2 can go
+    List<SExpression> sliced = slicer.slice(script);
+    assertEquals(script.size() - 1, sliced.size());
+    assertEquals(script.get(script.size() - 1), sliced.get(sliced.size() - 1));
+    assertEquals(1, slicer.getDeclarationsRemoved());
+    assertEquals(1, slicer.getConjunctsRemoved());
+    for (SExpression expr : sliced) {
+      assertFalse(expr + " mentions foo_2", expr.toString().contains("foo_2"));
+    }
+  }
+
+  @Test
+  public void testSliceUnrecordedCodeKept() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ConeOfInfluenceSlicer slicer = new ConeOfInfluenceSlicer();
+    reg.setSlicer(slicer);
+    List<SExpression> script = run(reg, 1);
+    // written by hand, so the slicer treats it as a property
+    script.add(new Assertion(new EqualsExpression(reg.getCurrentVersion("foo"), new BinaryConstant("0001"))));
+
+    List<SExpression> sliced = slicer.slice(script);
+    assertEquals(script.get(script.size() - 1), sliced.get(sliced.size() - 1));
+    for (SExpression expr : sliced) {
+      assertFalse(expr + " mentions bar", expr.toString().contains("bar_"));
+    }
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testCurrentVersionOfUndefined_Illegal() {
+    new StateVariableRegistry().getCurrentVersion("foo");
+  }
+
+}
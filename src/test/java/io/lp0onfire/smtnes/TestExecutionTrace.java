@@ -0,0 +1,132 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorAddExpression;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.Model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestExecutionTrace {
+
+  // count := 0, we := 0
+  private static class Init implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("count", "we"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("count"), new Numeral("4")));
+      exprs.add(new BitVectorDeclaration(outputs.get("we"), new Numeral("1")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("count"), new BinaryConstant("0000"))));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("we"), new BinaryConstant("0"))));
+      return exprs;
+    }
+  }
+
+  // count := count + 1; we is left alone
+  private static class Step implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("count"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("count"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("count"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("count"),
+          new BitVectorAddExpression(inputs.get("count"), new BinaryConstant("0001")))));
+      return exprs;
+    }
+  }
+
+  @Test
+  public void testVersionsPerCycle() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    reg.apply(new Init());
+    trace.markCycle();
+    reg.apply(new Step());
+    trace.markCycle();
+    reg.apply(new Step());
+    trace.markCycle();
+
+    assertEquals(3, trace.getCycleCount());
+    assertEquals(new Symbol("count_2"), trace.getSymbol(2, "count"));
+    assertEquals(new Symbol("we_0"), trace.getSymbol(2, "we"));
+    // we never changed, so it's only asked for once
+    List<SExpression> terms = trace.getTerms(Arrays.asList("count", "we"));
+    assertEquals(Arrays.asList(new Symbol("count_0"), new Symbol("we_0"), new Symbol("count_1"), new Symbol("count_2")), terms);
+  }
+
+  @Test
+  public void testValues() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    reg.apply(new Init());
+    trace.markCycle();
+    reg.apply(new Step());
+    trace.markCycle();
+
+    trace.setModel(Model.fromValues("((count_0 #x0) (we_0 #b1) (count_1 #x1) (addr_0 #x7))"));
+    assertEquals(1, trace.getValue(1, "count").getValue());
+    assertEquals("0: count=#x0 we=#b1\n1: count=#x1 we=#b1\n", trace.format(Arrays.asList("count", "we")));
+  }
+
+  @Test
+  public void testWrites() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    reg.apply(new Init());
+    trace.markCycle();
+    reg.apply(new Step());
+    trace.markCycle();
+
+    // pretend we is the write enable and count is both address and data
+    trace.setModel(Model.fromValues("((count_0 #x0) (we_0 #b1) (count_1 #x3))"));
+    List<ExecutionTrace.Write> writes = trace.getWrites("we", "count", "count");
+    assertEquals(2, writes.size());
+    assertEquals(1, writes.get(1).getCycle());
+    assertEquals(3, writes.get(1).getAddress());
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testNotLoaded_Illegal() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    ExecutionTrace trace = new ExecutionTrace(reg);
+    reg.apply(new Init());
+    trace.markCycle();
+    trace.getValue(0, "count");
+  }
+
+}
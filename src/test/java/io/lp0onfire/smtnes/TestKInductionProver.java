@@ -0,0 +1,139 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+import io.lp0onfire.smtnes.solver.SolverConfiguration;
+import io.lp0onfire.smtnes.solver.SolverSession;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+// Runs the prover against canned solver output, checking what each session is asked.
+public class TestKInductionProver {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), null);
+
+  // K is a constant 5, like a byte of ROM, and X starts out the same
+  private static class Init implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("K", "X"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs, Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      for (String var : Arrays.asList("K", "X")) {
+        exprs.add(new BitVectorDeclaration(outputs.get(var), new Numeral("8")));
+        exprs.add(new Assertion(new EqualsExpression(outputs.get(var), new HexConstant("05"))));
+      }
+      return exprs;
+    }
+  }
+
+  // X := K
+  private static class LoadX implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("K"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("X"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs, Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("X"), new Numeral("8")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("X"), inputs.get("K"))));
+      return exprs;
+    }
+  }
+
+  // X = 5
+  private static class XIsFive implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("X"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs, Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new Assertion(new EqualsExpression(inputs.get("X"), new HexConstant("05"))));
+      return exprs;
+    }
+  }
+
+  @Test
+  public void testConstantsKeepInitialValues() throws IOException {
+    StringWriter baseOut = new StringWriter();
+    StringWriter stepOut = new StringWriter();
+    InductionResult result;
+    try (SolverSession baseSession = new SolverSession(config, baseOut, new StringReader("unsat\n"));
+        SolverSession stepSession = new SolverSession(config, stepOut, new StringReader("unsat\n"))) {
+      KInductionProver prover = new KInductionProver(baseSession, stepSession,
+          Arrays.<CodeGenerator>asList(new Init()), Arrays.<CodeGenerator>asList(new LoadX()));
+      result = prover.prove(new XIsFive(), 1);
+    }
+    assertEquals(InductionResult.Outcome.PROVED, result.getOutcome());
+    assertEquals(1, result.getDepth());
+
+    String step = stepOut.toString();
+    // K is never written, so it is the same K as at power-on...
+    assertTrue(step.contains("( assert ( = K_0 #x05 ) )\n"));
+    assertFalse(step.contains("K_1"));
+    assertTrue(step.contains("( assert ( = X_2 K_0 ) )\n"));
+    // ...but X starts out as anything that satisfies the property
+    assertTrue(step.contains("( declare-fun X_1 ( ) ( _ BitVec 8 ) )\n"));
+    assertTrue(step.contains("( assert ( = X_1 #x05 ) )\n"));
+    assertTrue(step.contains("( assert ( not ( = X_2 #x05 ) ) )\n"));
+  }
+
+  @Test
+  public void testPropertyAssumedAtEveryDepth() throws IOException {
+    StringWriter stepOut = new StringWriter();
+    InductionResult result;
+    try (SolverSession baseSession = new SolverSession(config, new StringWriter(), new StringReader("unsat\nunsat\n"));
+        SolverSession stepSession = new SolverSession(config, stepOut, new StringReader("sat\nunsat\n"))) {
+      KInductionProver prover = new KInductionProver(baseSession, stepSession,
+          Arrays.<CodeGenerator>asList(new Init()), Arrays.<CodeGenerator>asList(new LoadX()));
+      result = prover.prove(new XIsFive(), 2);
+    }
+    assertEquals(InductionResult.Outcome.PROVED, result.getOutcome());
+    assertEquals(2, result.getDepth());
+    String step = stepOut.toString();
+    assertTrue(step.contains("( assert ( = X_1 #x05 ) )\n"));
+    assertTrue(step.contains("( assert ( = X_2 #x05 ) )\n"));
+    assertTrue(step.contains("( assert ( not ( = X_3 #x05 ) ) )\n"));
+  }
+
+}
@@ -0,0 +1,201 @@
+package io.lp0onfire.smtnes;
+
+import io.lp0onfire.smtnes.generators.cpu.CPUState;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestRecompiler {
+
+  // every opcode CPUCycle implements, and how many bytes it takes
+  private static final int[][] OPCODES = {
+    {0x18, 1}, {0xD8, 1}, {0x58, 1}, {0xB8, 1}, {0x38, 1}, {0xF8, 1}, {0x78, 1},
+    {0xCA, 1}, {0x88, 1}, {0xE8, 1}, {0xC8, 1},
+    {0xAA, 1}, {0xA8, 1}, {0xBA, 1}, {0x8A, 1}, {0x9A, 1}, {0x98, 1},
+    {0xA9, 2}, {0xA5, 2}, {0xB5, 2}, {0xAD, 3}, {0xBD, 3}, {0xB9, 3}, {0xA1, 2}, {0xB1, 2},
+    {0xA2, 2}, {0xA6, 2}, {0xB6, 2}, {0xAE, 3}, {0xBE, 3},
+    {0x85, 2}, {0x95, 2}, {0x8D, 3}, {0x9D, 3}, {0x99, 3}, {0x81, 2}, {0x91, 2},
+    {0x86, 2}, {0x96, 2}, {0x8E, 3}, {0x84, 2}, {0x94, 2}, {0x8C, 3},
+  };
+
+  // a 4 KiB ROM of random instructions from $x000 up, running into the reset vector
+  private static byte[] randomProgram(Random random, int vector) {
+    byte[] rom = new byte[0x1000];
+    int address = 0;
+    while (address < 0xFF0) {
+      int[] opcode = OPCODES[random.nextInt(OPCODES.length)];
+      rom[address] = (byte)opcode[0];
+      for (int i = 1; i < opcode[1]; ++i) {
+        // mostly RAM, the rest anywhere
+        rom[address + i] = (byte)(i == 2 && random.nextInt(4) != 0 ? random.nextInt(8) : random.nextInt(256));
+      }
+      address += opcode[1];
+    }
+    while (address < 0xFFC) {
+      rom[address++] = (byte)0xE8;
+    }
+    rom[0xFFC] = (byte)vector;
+    rom[0xFFD] = (byte)(vector >>> 8);
+    return rom;
+  }
+
+  // RAM on pages 0 and 1, nothing on pages 2-7, rom on pages 8-15
+  private static ConcreteCPU machine(byte[] rom, byte[] ram) {
+    ConcreteCPU cpu = new ConcreteCPU();
+    cpu.setPageHandler(0, cpu.getRAMHandler());
+    cpu.setPageHandler(1, cpu.getRAMHandler());
+    ConcretePageHandler romHandler = ConcretePageHandler.rom(rom);
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, romHandler);
+    }
+    for (int i = 0; i < ram.length; ++i) {
+      cpu.writeRAM(i, ram[i] & 0xFF);
+    }
+    return cpu;
+  }
+
+  // false once cpu has hit an opcode it doesn't implement
+  private static boolean run(ConcreteCPU cpu, Recompiler recompiler, long cycles) {
+    try {
+      if (recompiler == null) {
+        cpu.run(cycles);
+      } else {
+        recompiler.run(cpu, cycles);
+      }
+      return true;
+    } catch (IllegalStateException e) {
+      return false;
+    }
+  }
+
+  private static void assertSameState(String where, ConcreteCPU expected, ConcreteCPU actual) {
+    for (String var : BitSlicedCPU.STATE_VARIABLES) {
+      assertEquals(var + " " + where, expected.getStateVariable(var), actual.getStateVariable(var));
+    }
+    assertEquals("cycle count " + where, expected.getCycleCount(), actual.getCycleCount());
+    assertTrue("RAM " + where, Arrays.equals(expected.getRAM(), actual.getRAM()));
+  }
+
+  // runs both in steps of random length until the interpreter stops, comparing after each
+  private void compare(Random random, ConcreteCPU interpreted, ConcreteCPU compiled, Recompiler recompiler) {
+    boolean running = true;
+    while (running) {
+      long cycles = 1 + random.nextInt(random.nextBoolean() ? 8 : 400);
+      running = run(interpreted, null, cycles);
+      assertEquals("stopped after " + interpreted.getCycleCount() + " cycles",
+          running, run(compiled, recompiler, cycles));
+      assertSameState("after " + interpreted.getCycleCount() + " cycles", interpreted, compiled);
+    }
+  }
+
+  @Test
+  public void testRandomROMCode() {
+    Random random = new Random(1);
+    for (int trial = 0; trial < 20; ++trial) {
+      byte[] rom = randomProgram(random, 0x8000);
+      byte[] ram = new byte[2048];
+      random.nextBytes(ram);
+      Recompiler recompiler = new Recompiler();
+      compare(random, machine(rom, ram), machine(rom, ram), recompiler);
+      assertTrue(recompiler.getCompiledCycles() > recompiler.getInterpretedCycles());
+    }
+  }
+
+  @Test
+  public void testWholeRun() {
+    Random random = new Random(2);
+    byte[] rom = randomProgram(random, 0x8000);
+    byte[] ram = new byte[2048];
+    random.nextBytes(ram);
+    ConcreteCPU interpreted = machine(rom, ram);
+    ConcreteCPU compiled = machine(rom, ram);
+    // stop at an instruction fetch a little before the end of the random code
+    long cycles = 0;
+    while (interpreted.getPC() < 0x8FE0 || interpreted.getState() != CPUState.InstructionFetch) {
+      interpreted.step();
+      cycles += 1;
+    }
+    Recompiler recompiler = new Recompiler();
+    recompiler.run(compiled, cycles);
+    assertSameState("at the end", interpreted, compiled);
+    // the reset sequence is interpreted, and perhaps the last instruction, if it
+    // might not have finished in time
+    assertTrue(recompiler.getInterpretedCycles() >= 8);
+    assertTrue(recompiler.getInterpretedCycles() < 8 + 6);
+  }
+
+  @Test
+  public void testRAMCodeIsInterpreted() {
+    // LDA #$E8; STA $06; LDX #$10; DEX, which the STA turns into INX
+    byte[] ram = new byte[2048];
+    int[] program = {0xA9, 0xE8, 0x85, 0x06, 0xA2, 0x10, 0xCA};
+    for (int i = 0; i < program.length; ++i) {
+      ram[i] = (byte)program[i];
+    }
+    byte[] rom = randomProgram(new Random(3), 0x0000);
+    ConcreteCPU interpreted = machine(rom, ram);
+    ConcreteCPU compiled = machine(rom, ram);
+    interpreted.run(8 + 2 + 3 + 2 + 2);
+    Recompiler recompiler = new Recompiler();
+    recompiler.run(compiled, 8 + 2 + 3 + 2 + 2);
+    assertSameState("after INX", interpreted, compiled);
+    assertEquals(0x11, compiled.getX());
+    assertEquals(0, recompiler.getCompiledCycles());
+  }
+
+  @Test
+  public void testBlocksAreCachedByROMContents() {
+    Random random = new Random(4);
+    byte[] rom = randomProgram(random, 0x8000);
+    byte[] ram = new byte[2048];
+    Recompiler.clear();
+    new Recompiler().run(machine(rom, ram), 2000);
+    long compiled = Recompiler.getBlocksCompiled();
+    assertTrue(compiled > 0);
+
+    // another copy of the same ROM, and another Recompiler
+    ConcreteCPU interpreted = machine(rom.clone(), ram);
+    ConcreteCPU again = machine(rom.clone(), ram);
+    interpreted.run(2000);
+    new Recompiler().run(again, 2000);
+    assertEquals(compiled, Recompiler.getBlocksCompiled());
+    assertSameState("after 2000 cycles", interpreted, again);
+  }
+
+  @Test
+  public void testClear() {
+    byte[] rom = randomProgram(new Random(5), 0x8000);
+    byte[] ram = new byte[2048];
+    new Recompiler().run(machine(rom, ram), 2000);
+    Recompiler.clear();
+    assertEquals(0, Recompiler.getBlocksCompiled());
+    // the same ROM is compiled all over again
+    new Recompiler().run(machine(rom, ram), 2000);
+    assertTrue(Recompiler.getBlocksCompiled() > 0);
+  }
+
+  @Test
+  public void testUnimplementedOpcode() {
+    // LDA #$42; NOP
+    byte[] rom = new byte[0x1000];
+    rom[0] = (byte)0xA9;
+    rom[1] = 0x42;
+    rom[2] = (byte)0xEA;
+    rom[0xFFD] = (byte)0x80;
+    ConcreteCPU cpu = machine(rom, new byte[2048]);
+    try {
+      new Recompiler().run(cpu, 100);
+      fail("NOP is not implemented");
+    } catch (IllegalStateException e) {
+      // stopped at the fetch of the NOP, having run LDA
+    }
+    assertEquals(8 + 2, cpu.getCycleCount());
+    assertEquals(0x42, cpu.getA());
+    assertEquals(0x8003, cpu.getPC());
+  }
+
+}
@@ -1,5 +1,11 @@
 package io.lp0onfire.smtnes;
 
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BinaryConstant;
+import io.lp0onfire.smtnes.smt2.BitVectorAddExpression;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.Numeral;
 import io.lp0onfire.smtnes.smt2.Symbol;
 import io.lp0onfire.smtnes.smt2.SExpression;
 
@@ -126,4 +132,119 @@ public class TestStateVariableRegistry {
     reg.apply(update);
   }
   
+  @Test(expected=IllegalArgumentException.class)
+  public void testInvalidVariableName_Illegal() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    CodeGenerator gen  = new CodeGenerator(){
+      @Override
+      public Set<String> getStateVariablesRead() {
+        return new HashSet<>();
+      }
+
+      @Override
+      public Set<String> getStateVariablesWritten() {
+        return new HashSet<>(Arrays.asList("1foo"));
+      }
+
+      @Override
+      public List<SExpression> generateCode(Map<String, Symbol> inputs,
+          Map<String, Symbol> outputs) {
+        return new LinkedList<>();
+      }
+    };
+    reg.apply(gen);
+  }
+  
+  // foo := 0
+  private static class InitFoo implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("foo"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("foo"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("foo"), new BinaryConstant("0000"))));
+      return exprs;
+    }
+  }
+  
+  // foo := foo + 1
+  private static class IncrementFoo implements CodeGenerator {
+    @Override
+    public Set<String> getStateVariablesRead() {
+      return new HashSet<>(Arrays.asList("foo"));
+    }
+
+    @Override
+    public Set<String> getStateVariablesWritten() {
+      return new HashSet<>(Arrays.asList("foo"));
+    }
+
+    @Override
+    public List<SExpression> generateCode(Map<String, Symbol> inputs,
+        Map<String, Symbol> outputs) {
+      List<SExpression> exprs = new LinkedList<>();
+      exprs.add(new BitVectorDeclaration(outputs.get("foo"), new Numeral("4")));
+      exprs.add(new Assertion(new EqualsExpression(outputs.get("foo"), 
+          new BitVectorAddExpression(inputs.get("foo"), new BinaryConstant("0001")))));
+      return exprs;
+    }
+  }
+  
+  @Test
+  public void testTemplate() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    CodeGenerator inc = new IncrementFoo();
+    reg.setTemplate(inc, "inc");
+    reg.apply(new InitFoo());
+    
+    List<SExpression> first = reg.apply(inc);
+    assertEquals(3, first.size());
+    assertEquals("( define-fun inc ( ( in!foo ( _ BitVec 4 ) ) ( out!foo ( _ BitVec 4 ) ) ) Bool "
+        + "( = out!foo ( bvadd in!foo #b0001 ) ) )", first.get(0).toString());
+    assertEquals("( declare-fun foo_1 ( ) ( _ BitVec 4 ) )", first.get(1).toString());
+    assertEquals("( assert ( inc foo_0 foo_1 ) )", first.get(2).toString());
+    
+    // later applications don't repeat the definition
+    List<SExpression> second = reg.apply(inc);
+    assertEquals(2, second.size());
+    assertEquals("( declare-fun foo_2 ( ) ( _ BitVec 4 ) )", second.get(0).toString());
+    assertEquals("( assert ( inc foo_1 foo_2 ) )", second.get(1).toString());
+  }
+  
+  @Test(expected=IllegalStateException.class)
+  public void testTemplate_UnknownInputSort_Illegal() {
+    StateVariableRegistry reg = new StateVariableRegistry();
+    CodeGenerator inc = new IncrementFoo();
+    reg.setTemplate(inc, "inc");
+    // foo is written, but never declared, so its sort is unknown
+    reg.apply(new CodeGenerator() {
+      @Override
+      public Set<String> getStateVariablesRead() {
+        return new HashSet<>();
+      }
+
+      @Override
+      public Set<String> getStateVariablesWritten() {
+        return new HashSet<>(Arrays.asList("foo"));
+      }
+
+      @Override
+      public List<SExpression> generateCode(Map<String, Symbol> inputs,
+          Map<String, Symbol> outputs) {
+        return new LinkedList<>();
+      }
+    });
+    reg.apply(inc);
+  }
+  
 }
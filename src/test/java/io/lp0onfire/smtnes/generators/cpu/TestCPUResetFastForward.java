@@ -0,0 +1,78 @@
+package io.lp0onfire.smtnes.generators.cpu;
+
+import io.lp0onfire.smtnes.CodeGenerator;
+import io.lp0onfire.smtnes.ConcreteCPU;
+import io.lp0onfire.smtnes.ConcretePageHandler;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TestCPUResetFastForward {
+
+  // a 4 KiB ROM on pages 8-15 with the reset vector pointing at $8123, which holds LDA #$5A
+  private ConcreteCPU memoryMap() {
+    byte[] rom = new byte[0x1000];
+    rom[0x123] = (byte)0xA9;
+    rom[0x124] = 0x5A;
+    rom[0xFFC] = 0x23;
+    rom[0xFFD] = (byte)0x81;
+    ConcreteCPU cpu = new ConcreteCPU();
+    ConcretePageHandler romHandler = ConcretePageHandler.rom(rom);
+    for (int i = 8; i < 16; ++i) {
+      cpu.setPageHandler(i, romHandler);
+    }
+    return cpu;
+  }
+
+  @Test
+  public void testMatchesFullReset() {
+    ConcreteCPU cpu = memoryMap();
+    CPUResetFastForward ff = new CPUResetFastForward(cpu);
+    assertEquals(0x8123, ff.getResetVector());
+    assertEquals(0xA9, ff.getFirstOpcode());
+
+    cpu.run(CPUResetFastForward.RESET_CYCLES);
+    assertEquals(CPUState.InstructionFetch, cpu.getState());
+    assertEquals(ff.getResetVector(), cpu.getAddressBus());
+    assertEquals(ff.getResetVector() + 1, cpu.getPC());
+    assertEquals(ff.getFirstOpcode(), cpu.getDataIn());
+  }
+
+  @Test
+  public void testWritesEveryResetOutput() {
+    CPUResetFastForward ff = new CPUResetFastForward(memoryMap());
+    // every register and bus signal the reset changes
+    for (String var : CPUTrace.VARIABLES) {
+      if (var.equals("CPU_A") || var.equals("CPU_X") || var.equals("CPU_Y")) {
+        assertFalse(var, ff.getStateVariablesWritten().contains(var));
+      } else {
+        assertTrue(var, ff.getStateVariablesWritten().contains(var));
+      }
+    }
+  }
+
+  @Test
+  public void testResetSequence() {
+    ConcreteCPU cpu = memoryMap();
+    List<CodeGenerator> cycle = Arrays.asList(new CPUCycle(), new CPUPowerOn());
+    List<CodeGenerator> gens = CPUResetFastForward.resetSequence(cpu, cycle);
+    assertEquals(1, gens.size());
+    assertTrue(gens.get(0) instanceof CPUResetFastForward);
+
+    CPUResetFastForward.setUseFullResetSequence(true);
+    try {
+      gens = CPUResetFastForward.resetSequence(cpu, cycle);
+      assertEquals(CPUResetFastForward.RESET_CYCLES * cycle.size(), gens.size());
+      for (int i = 0; i < gens.size(); ++i) {
+        assertSame(cycle.get(i % cycle.size()), gens.get(i));
+      }
+    } finally {
+      CPUResetFastForward.setUseFullResetSequence(false);
+    }
+  }
+
+}
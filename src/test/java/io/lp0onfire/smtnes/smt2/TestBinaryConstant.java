@@ -35,4 +35,24 @@ public class TestBinaryConstant {
     assertEquals("#b" + bits, b.toString());
   }
   
+  @Test
+  public void testEquals() {
+    assertEquals(new BinaryConstant("0110"), new BinaryConstant("0110"));
+    assertEquals(new BinaryConstant("0110").hashCode(), new BinaryConstant("0110").hashCode());
+    assertNotEquals(new BinaryConstant("0110"), new BinaryConstant("110"));
+  }
+  
+  @Test
+  public void testCreation_Wide() {
+    String bits = "1" + new String(new char[64]).replace('\0', '0');
+    BinaryConstant b = new BinaryConstant(bits);
+    assertEquals(65, b.getWidth());
+    assertEquals("#b" + bits, b.toString());
+  }
+  
+  @Test
+  public void testCreation_Byte() {
+    assertEquals("#b00000101", new BinaryConstant((byte)5).toString());
+  }
+  
 }
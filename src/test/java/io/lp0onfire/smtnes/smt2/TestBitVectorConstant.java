@@ -0,0 +1,97 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestBitVectorConstant {
+
+  @Test
+  public void testToString_Hex() {
+    assertEquals("#x0a", BitVectorConstant.of(0x0A, 8).toString());
+    assertEquals("#xfffc", BitVectorConstant.of(0xFFFC, 16).toString());
+  }
+  
+  @Test
+  public void testToString_Binary() {
+    assertEquals("#b1", BitVectorConstant.of(1, 1).toString());
+    assertEquals("#b00000000101", BitVectorConstant.of(5, 11).toString());
+  }
+  
+  @Test
+  public void testPooled() {
+    assertSame(BitVectorConstant.of(0x42, 8), BitVectorConstant.of(0x42, 8));
+    assertSame(BitVectorConstant.of(2047, 11), BitVectorConstant.of(2047, 11));
+  }
+  
+  @Test(expected=java.lang.IllegalArgumentException.class)
+  public void testCreation_ValueTooWide_Illegal() {
+    BitVectorConstant.of(0x100, 8);
+  }
+  
+  @Test(expected=java.lang.IllegalArgumentException.class)
+  public void testCreation_ZeroWidth_Illegal() {
+    BitVectorConstant.of(0, 0);
+  }
+  
+  @Test
+  public void testEquals_BinaryConstant() {
+    // same text, same constant
+    assertEquals(BitVectorConstant.of(5, 3), new BinaryConstant("101"));
+    assertEquals(new BinaryConstant("101"), BitVectorConstant.of(5, 3));
+    assertEquals(BitVectorConstant.of(5, 3).hashCode(), new BinaryConstant("101").hashCode());
+    // #x6 and #b0110 are different text
+    assertNotEquals(BitVectorConstant.of(6, 4), new BinaryConstant("0110"));
+    assertNotEquals(new BinaryConstant("0110"), BitVectorConstant.of(6, 4));
+    assertNotEquals(BitVectorConstant.of(6, 4), BitVectorConstant.of(6, 8));
+  }
+  
+  @Test
+  public void testEquals_HexConstant() {
+    assertEquals(BitVectorConstant.of(1, 8), new HexConstant("01"));
+    assertEquals(new HexConstant("01"), BitVectorConstant.of(1, 8));
+    assertEquals(BitVectorConstant.of(1, 8).hashCode(), new HexConstant("01").hashCode());
+    assertNotEquals(new HexConstant("01"), new BinaryConstant("00000001"));
+    assertNotEquals(new BinaryConstant("00000001"), new HexConstant("01"));
+    // digits are compared as written
+    assertNotEquals(BitVectorConstant.of(0xFC, 8), new HexConstant("FC"));
+  }
+  
+  @Test
+  public void testBinaryConstant_KeepsBinaryForm() {
+    assertEquals("#b00001111", new BinaryConstant("00001111").toString());
+    assertEquals("#b11111111", new BinaryConstant((byte)0xFF).toString());
+  }
+  
+  @Test
+  public void testArithmetic_Wraps() {
+    BitVectorConstant ff = BitVectorConstant.of(0xFF, 8);
+    BitVectorConstant one = BitVectorConstant.of(1, 8);
+    assertEquals(BitVectorConstant.of(0, 8), ff.add(one));
+    assertEquals(ff, BitVectorConstant.of(0, 8).subtract(one));
+    assertEquals(ff, one.negate().add(BitVectorConstant.of(0, 8)).and(ff));
+    assertEquals(BitVectorConstant.of(0xFE, 8), one.not());
+  }
+  
+  @Test
+  public void testConcatExtract() {
+    BitVectorConstant hi = BitVectorConstant.of(0xFF, 8);
+    BitVectorConstant lo = BitVectorConstant.of(0xFC, 8);
+    BitVectorConstant addr = hi.concat(lo);
+    assertEquals(BitVectorConstant.of(0xFFFC, 16), addr);
+    assertEquals(BitVectorConstant.of(0xF, 4), addr.extract(15, 12));
+    assertEquals(BitVectorConstant.of(0x7FC, 11), addr.extract(10, 0));
+  }
+  
+  @Test
+  public void testUnsignedCompare() {
+    assertTrue(BitVectorConstant.of(1, 8).unsignedLessThan(BitVectorConstant.of(0x80, 8)));
+    assertTrue(BitVectorConstant.of(0xFF, 8).unsignedGreaterEqual(BitVectorConstant.of(0x80, 8)));
+  }
+  
+  @Test(expected=java.lang.IllegalArgumentException.class)
+  public void testAdd_WidthMismatch_Illegal() {
+    BitVectorConstant.of(1, 8).add(BitVectorConstant.of(1, 16));
+  }
+  
+}
@@ -0,0 +1,81 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestCommonSubexpressionEliminator {
+
+  private final Symbol state = new Symbol("State");
+  private final Symbol a = new Symbol("A");
+  private final Symbol x = new Symbol("X");
+  
+  @Test
+  public void testRepeatedTermIsBoundOnce() {
+    SExpression inState = new EqualsExpression(state, new BinaryConstant("001"));
+    List<SExpression> exprs = Arrays.asList(
+        new BitVectorDeclaration(state, new Numeral("3")),
+        new BitVectorDeclaration(a, new Numeral("8")),
+        new BitVectorDeclaration(x, new Numeral("8")),
+        new Assertion(new Implication(inState, new EqualsExpression(a, new BinaryConstant("00000000")))),
+        new Assertion(new Implication(inState, new EqualsExpression(x, new BinaryConstant("00000000")))));
+    CommonSubexpressionEliminator cse = new CommonSubexpressionEliminator();
+    List<SExpression> result = cse.eliminate(exprs);
+    
+    assertEquals(6, result.size());
+    assertEquals("( define-fun cse!0 ( ) Bool ( = State #b001 ) )", result.get(3).toString());
+    assertEquals("( assert ( => cse!0 ( = A #b00000000 ) ) )", result.get(4).toString());
+    assertEquals("( assert ( => cse!0 ( = X #b00000000 ) ) )", result.get(5).toString());
+    assertEquals(1, cse.getDefinitionsIntroduced());
+  }
+  
+  @Test
+  public void testNestedDefinitionsComeFirst() {
+    SExpression page = new BitVectorExtractExpression(a, new Numeral("7"), new Numeral("4"));
+    SExpression onPage = new EqualsExpression(page, new BinaryConstant("0000"));
+    List<SExpression> exprs = Arrays.asList(
+        new BitVectorDeclaration(a, new Numeral("8")),
+        new BitVectorDeclaration(x, new Numeral("4")),
+        new Assertion(onPage),
+        new Assertion(new NotExpression(onPage)),
+        new Assertion(new EqualsExpression(x, page)));
+    List<SExpression> result = new CommonSubexpressionEliminator().eliminate(exprs);
+    
+    assertEquals("( define-fun cse!0 ( ) ( _ BitVec 4 ) ( ( _ extract 7 4 ) A ) )", result.get(2).toString());
+    assertEquals("( define-fun cse!1 ( ) Bool ( = cse!0 #b0000 ) )", result.get(3).toString());
+    assertEquals("( assert cse!1 )", result.get(4).toString());
+    assertEquals("( assert ( = X cse!0 ) )", result.get(6).toString());
+  }
+  
+  @Test
+  public void testUnknownSortIsLeftAlone() {
+    Symbol undeclared = new Symbol("U");
+    SExpression term = new BitVectorNotExpression(undeclared);
+    List<SExpression> exprs = Arrays.asList(
+        new Assertion(new EqualsExpression(term, a)),
+        new Assertion(new EqualsExpression(term, x)));
+    List<SExpression> result = new CommonSubexpressionEliminator().eliminate(exprs);
+    assertEquals(exprs, result);
+  }
+  
+  @Test
+  public void testBinderBodiesAreLeftAlone() {
+    // ( bvadd I A ) repeats, but I only means something inside each forall
+    Symbol i = new Symbol("I");
+    SExpression sum = new BitVectorAddExpression(i, a);
+    SExpression binding = new ExpressionList(new ExpressionList(i, SortChecker.bitVectorSort(8)));
+    List<SExpression> exprs = Arrays.asList(
+        new BitVectorDeclaration(a, new Numeral("8")),
+        new BitVectorDeclaration(x, new Numeral("8")),
+        new Assertion(new ExpressionList(ReservedSymbols.FORALL, binding,
+            new Implication(new EqualsExpression(sum, x), new EqualsExpression(sum, a)))),
+        new Assertion(new ExpressionList(ReservedSymbols.EXISTS, binding, new EqualsExpression(sum, x))));
+    CommonSubexpressionEliminator cse = new CommonSubexpressionEliminator();
+    assertEquals(exprs, cse.eliminate(exprs));
+    assertEquals(0, cse.getDefinitionsIntroduced());
+  }
+  
+}
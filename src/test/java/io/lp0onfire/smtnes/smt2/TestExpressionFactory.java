@@ -0,0 +1,92 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestExpressionFactory {
+
+  @Test
+  public void testIntern_EqualAtoms() {
+    ExpressionFactory factory = new ExpressionFactory();
+    Symbol a = factory.intern(new Symbol("foo"));
+    Symbol b = factory.intern(new Symbol("foo"));
+    assertSame(a, b);
+  }
+  
+  @Test
+  public void testIntern_DistinctAtoms() {
+    ExpressionFactory factory = new ExpressionFactory();
+    Symbol a = factory.symbol("foo");
+    Symbol b = factory.symbol("bar");
+    assertNotSame(a, b);
+  }
+  
+  @Test
+  public void testIntern_EqualLists() {
+    ExpressionFactory factory = new ExpressionFactory();
+    EqualsExpression e1 = factory.intern(new EqualsExpression(new Symbol("x"), new BinaryConstant("0101")));
+    EqualsExpression e2 = factory.intern(new EqualsExpression(new Symbol("x"), new BinaryConstant("0101")));
+    assertSame(e1, e2);
+  }
+  
+  @Test
+  public void testIntern_SharesSubexpressions() {
+    ExpressionFactory factory = new ExpressionFactory();
+    EqualsExpression inner = factory.intern(new EqualsExpression(new Symbol("x"), new Symbol("y")));
+    AndExpression outer = factory.intern(new AndExpression(
+        new EqualsExpression(new Symbol("x"), new Symbol("y")), new Symbol("z")));
+    assertSame(inner, outer.getExprs().get(1));
+  }
+  
+  @Test
+  public void testIntern_LeavesArgumentAlone() {
+    ExpressionFactory factory = new ExpressionFactory();
+    EqualsExpression inner = factory.intern(new EqualsExpression(new Symbol("x"), new Symbol("y")));
+    EqualsExpression ownInner = new EqualsExpression(new Symbol("x"), new Symbol("y"));
+    AndExpression own = new AndExpression(ownInner, new Symbol("z"));
+    AndExpression outer = factory.intern(own);
+    assertSame(ownInner, own.getExprs().get(1));
+    assertNotSame(own, outer);
+    assertEquals(own, outer);
+    assertTrue(outer.getClass() == AndExpression.class);
+    assertSame(inner, outer.getExprs().get(1));
+  }
+  
+  @Test
+  public void testIntern_CopyKeepsSubclassFields() {
+    ExpressionFactory factory = new ExpressionFactory();
+    factory.intern(new EqualsExpression(new Symbol("x"), new Symbol("y")));
+    DefineFunction own = new DefineFunction(new Symbol("f"), ReservedSymbols.BOOL,
+        new EqualsExpression(new Symbol("x"), new Symbol("y")));
+    DefineFunction interned = factory.intern(own);
+    assertNotSame(own, interned);
+    assertEquals(new Symbol("f"), interned.getSymbol());
+    assertEquals(ReservedSymbols.BOOL, interned.getSort());
+    assertEquals(own.getBody(), interned.getBody());
+  }
+  
+  @Test
+  public void testIntern_DifferentClassesNotMerged() {
+    ExpressionFactory factory = new ExpressionFactory();
+    AndExpression and = factory.intern(new AndExpression(new Symbol("x"), new Symbol("y")));
+    ExpressionList list = factory.intern(new ExpressionList(new Symbol("and"), new Symbol("x"), new Symbol("y")));
+    assertEquals(and, list);
+    assertNotSame(and, list);
+    assertTrue(list.getClass() == ExpressionList.class);
+  }
+  
+  @Test
+  public void testInternAll() {
+    ExpressionFactory factory = new ExpressionFactory();
+    List<SExpression> exprs = new LinkedList<>();
+    exprs.add(new NotExpression(new Symbol("x")));
+    exprs.add(new NotExpression(new Symbol("x")));
+    factory.internAll(exprs);
+    assertSame(exprs.get(0), exprs.get(1));
+  }
+  
+}
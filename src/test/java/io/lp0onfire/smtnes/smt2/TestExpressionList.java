@@ -2,6 +2,7 @@ package io.lp0onfire.smtnes.smt2;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -51,4 +52,65 @@ public class TestExpressionList {
     assertEquals("( 1 )", l.toString());
   }
   
+  @Test
+  public void testEquals_Structural() {
+    ExpressionList l1 = new ExpressionList(new Symbol("foo"), new Numeral("1"));
+    ExpressionList l2 = new ExpressionList(new Symbol("foo"), new Numeral("1"));
+    assertEquals(l1, l2);
+    assertEquals(l1.hashCode(), l2.hashCode());
+  }
+  
+  @Test
+  public void testEquals_DifferentChildren() {
+    ExpressionList l1 = new ExpressionList(new Symbol("foo"), new Numeral("1"));
+    ExpressionList l2 = new ExpressionList(new Symbol("foo"), new Numeral("2"));
+    assertNotEquals(l1, l2);
+  }
+  
+  @Test
+  public void testWriteTo_Nested() throws IOException {
+    ExpressionList l = new ExpressionList(new Symbol("foo"), 
+        new ExpressionList(new Numeral("1"), new BinaryConstant("01")));
+    StringBuilder sb = new StringBuilder();
+    l.writeTo(sb);
+    assertEquals("( foo ( 1 #b01 ) )", sb.toString());
+    assertEquals(sb.toString(), l.toString());
+  }
+  
+  @Test(expected=java.lang.UnsupportedOperationException.class)
+  public void testGetExprs_Unmodifiable() {
+    ExpressionList l = new ExpressionList(new Numeral("1"));
+    l.getExprs().add(new Numeral("2"));
+  }
+  
+  @Test
+  public void testGetExprs_IncludesOperator() {
+    AndExpression and = new AndExpression(new Symbol("x"), new Symbol("y"));
+    assertEquals(3, and.size());
+    assertEquals(3, and.getExprs().size());
+    assertEquals(new Symbol("and"), and.get(0));
+    assertEquals(new Symbol("y"), and.getExprs().get(2));
+  }
+  
+  @Test
+  public void testEquals_OperatorSlot() {
+    AndExpression and = new AndExpression(new Symbol("x"), new Symbol("y"));
+    ExpressionList l = new ExpressionList(new Symbol("and"), new Symbol("x"), new Symbol("y"));
+    assertEquals(and, l);
+    assertEquals(and.hashCode(), l.hashCode());
+  }
+  
+  @Test
+  public void testCreation_CopiesArray() {
+    SExpression[] exprs = new SExpression[]{ new Numeral("1") };
+    ExpressionList l = new ExpressionList(exprs);
+    exprs[0] = new Numeral("2");
+    assertEquals("( 1 )", l.toString());
+  }
+  
+  @Test(expected=java.lang.NullPointerException.class)
+  public void testCreation_NullElement_Illegal() {
+    new ExpressionList(new Numeral("1"), null);
+  }
+  
 }
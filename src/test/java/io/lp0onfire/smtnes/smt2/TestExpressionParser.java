@@ -0,0 +1,83 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestExpressionParser {
+
+  @Test
+  public void testAtoms() {
+    assertEquals(BitVectorConstant.of(0x5a, 8), ExpressionParser.parse("#x5a"));
+    assertEquals(BitVectorConstant.of(5, 3), ExpressionParser.parse("#b101"));
+    assertEquals(new Numeral("42"), ExpressionParser.parse("42"));
+    assertSame(BooleanLiteral.TRUE, ExpressionParser.parse("true"));
+    assertEquals(new Symbol("CPU_PC_12"), ExpressionParser.parse("CPU_PC_12"));
+    // too wide for a BitVectorConstant
+    assertEquals(new HexConstant("00112233445566778899"), ExpressionParser.parse("#x00112233445566778899"));
+    String bits = "10000000000000000000000000000000000000000000000000000000000000001";
+    assertEquals(new BinaryConstant(bits), ExpressionParser.parse("#b" + bits));
+  }
+
+  @Test
+  public void testLists() {
+    SExpression expr = ExpressionParser.parse("((CPU_A_7 #x5a)\n (CPU_P_3 #b00100000))");
+    assertEquals(new ExpressionList(
+        new ExpressionList(new Symbol("CPU_A_7"), BitVectorConstant.of(0x5a, 8)),
+        new ExpressionList(new Symbol("CPU_P_3"), BitVectorConstant.of(0x20, 8))), expr);
+    assertEquals(new ExpressionList(), ExpressionParser.parse("()"));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    String text = "( ite ( = x #x01 ) ( _ bv5 8 ) ( select a #b00000000001 ) )";
+    assertEquals(text, ExpressionParser.parse(text).toString());
+  }
+
+  @Test
+  public void testQuoting() {
+    List<SExpression> exprs = ExpressionParser.parseAll("|odd ) name| \"a \"\"(\" ; comment (\n:keyword");
+    assertEquals(3, exprs.size());
+    assertEquals("|odd ) name|", exprs.get(0).toString());
+    assertEquals("\"a \"\"(\"", exprs.get(1).toString());
+    assertEquals(":keyword", exprs.get(2).toString());
+  }
+
+  @Test
+  public void testStreaming() throws IOException {
+    ExpressionParser parser = new ExpressionParser(new StringReader("sat (a b)(c)"));
+    assertEquals(new Symbol("sat"), parser.next());
+    assertEquals(new ExpressionList(new Symbol("a"), new Symbol("b")), parser.next());
+    assertEquals(new ExpressionList(new Symbol("c")), parser.next());
+    assertNull(parser.next());
+  }
+
+  @Test
+  public void testDeepNesting() {
+    // a model for a large array can be nested thousands of levels deep
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10000; ++i) {
+      sb.append("(store ");
+    }
+    sb.append("a");
+    for (int i = 0; i < 10000; ++i) {
+      sb.append(" #x00 #x00)");
+    }
+    assertTrue(ExpressionParser.parse(sb.toString()) instanceof ExpressionList);
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testUnbalanced_Illegal() {
+    ExpressionParser.parse("(a (b)");
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testExtraClose_Illegal() {
+    ExpressionParser.parse("a)");
+  }
+
+}
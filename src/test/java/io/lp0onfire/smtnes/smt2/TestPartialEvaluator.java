@@ -0,0 +1,149 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestPartialEvaluator {
+
+  private final Symbol x = new Symbol("x");
+  private final Symbol y = new Symbol("y");
+  private final Symbol z = new Symbol("z");
+  private final Symbol mem0 = new Symbol("mem0");
+  private final Symbol mem1 = new Symbol("mem1");
+
+  @Test
+  public void testLearnAndSubstitute() {
+    PartialEvaluator pe = new PartialEvaluator();
+    List<SExpression> out = pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(y, new BitVectorAddExpression(x, BitVectorConstant.of(1, 8)))),
+        new Assertion(new EqualsExpression(x, BitVectorConstant.of(4, 8)))));
+    assertEquals(BitVectorConstant.of(4, 8), pe.getKnownValue(x));
+    assertEquals(BitVectorConstant.of(5, 8), pe.getKnownValue(y));
+    assertEquals(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, BitVectorConstant.of(4, 8))),
+        new Assertion(new EqualsExpression(y, BitVectorConstant.of(5, 8)))), out);
+  }
+
+  @Test
+  public void testDeclarationsPassedThrough() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression decl = new BitVectorDeclaration(x, new Numeral("8"));
+    List<SExpression> out = pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, BitVectorConstant.of(4, 8))), decl));
+    assertEquals(decl, out.get(0));
+    assertEquals(1, pe.getAssertionsIn());
+    assertEquals(1, pe.getAssertionsOut());
+  }
+
+  @Test
+  public void testFalsePremiseDropped() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression one = new BinaryConstant("1");
+    List<SExpression> out = pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, new BinaryConstant("0"))),
+        new Assertion(new Implication(new EqualsExpression(x, one), new EqualsExpression(y, one))),
+        new Assertion(new Implication(new NotExpression(new EqualsExpression(x, one)),
+            new AndExpression(new EqualsExpression(y, x), new EqualsExpression(z, y))))));
+    assertEquals(BitVectorConstant.of(0, 1), pe.getKnownValue(y));
+    assertEquals(BitVectorConstant.of(0, 1), pe.getKnownValue(z));
+    // x, y and z, and nothing else
+    assertEquals(3, out.size());
+    assertEquals(3, pe.getAssertionsIn());
+    assertEquals(3, pe.getAssertionsOut());
+  }
+
+  @Test
+  public void testArrayCells() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression addr = new HexConstant("10");
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(new ArrayReadExpression(mem0, addr), new HexConstant("5a"))),
+        new Assertion(new EqualsExpression(mem1, mem0)),
+        new Assertion(new EqualsExpression(x, new ArrayReadExpression(mem1, new BitVectorAddExpression(
+            new HexConstant("0f"), new HexConstant("01")))))));
+    assertEquals(new HexConstant("5a"), pe.getKnownCell(mem0, addr));
+    assertEquals(new HexConstant("5a"), pe.getKnownCell(mem1, addr));
+    assertEquals(new HexConstant("5a"), pe.getKnownValue(x));
+  }
+
+  @Test
+  public void testSelectOverStore() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression written = new ArrayWriteExpression(
+        new ArrayWriteExpression(mem0, new HexConstant("01"), new HexConstant("aa")),
+        new HexConstant("02"), new HexConstant("bb"));
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, new ArrayReadExpression(written, new HexConstant("01")))),
+        new Assertion(new EqualsExpression(y, new ArrayReadExpression(written, new HexConstant("03"))))));
+    assertEquals(new HexConstant("aa"), pe.getKnownValue(x));
+    // nothing is known about cell 3 of the original array
+    assertNull(pe.getKnownValue(y));
+  }
+
+  @Test
+  public void testSymbolicIndexStopsLookup() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression written = new ArrayWriteExpression(mem0, z, new HexConstant("aa"));
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(new ArrayReadExpression(mem0, new HexConstant("01")), new HexConstant("bb"))),
+        new Assertion(new EqualsExpression(x, new ArrayReadExpression(written, new HexConstant("01"))))));
+    // z might be 01
+    assertNull(pe.getKnownValue(x));
+  }
+
+  @Test
+  public void testPopForgetsWhatWasLearned() {
+    PartialEvaluator pe = new PartialEvaluator();
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(mem1, mem0)),
+        new Assertion(new EqualsExpression(new ArrayReadExpression(mem0, BitVectorConstant.of(1, 16)),
+            BitVectorConstant.of(7, 8)))));
+    pe.push();
+    assertEquals(1, pe.getScopeLevel());
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, BitVectorConstant.of(4, 8))),
+        new Assertion(new EqualsExpression(new ArrayReadExpression(mem1, BitVectorConstant.of(2, 16)),
+            BitVectorConstant.of(9, 8)))));
+    assertEquals(BitVectorConstant.of(4, 8), pe.getKnownValue(x));
+    assertEquals(BitVectorConstant.of(9, 8), pe.getKnownCell(mem0, BitVectorConstant.of(2, 16)));
+    pe.pop();
+    assertEquals(0, pe.getScopeLevel());
+    assertNull(pe.getKnownValue(x));
+    assertNull(pe.getKnownCell(mem0, BitVectorConstant.of(2, 16)));
+    assertNull(pe.getKnownCell(mem1, BitVectorConstant.of(2, 16)));
+    assertEquals(BitVectorConstant.of(7, 8), pe.getKnownCell(mem1, BitVectorConstant.of(1, 16)));
+    // and mem0 and mem1 still share their cells
+    pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(new ArrayReadExpression(mem1, BitVectorConstant.of(3, 16)),
+            BitVectorConstant.of(5, 8)))));
+    assertEquals(BitVectorConstant.of(5, 8), pe.getKnownCell(mem0, BitVectorConstant.of(3, 16)));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testPopWithoutPush() {
+    new PartialEvaluator().pop();
+  }
+
+  @Test
+  public void testBoundSymbolsNotReplaced() {
+    PartialEvaluator pe = new PartialEvaluator();
+    SExpression sort = new ExpressionList(ReservedSymbols.UNDERSCORE, ReservedSymbols.BITVEC, new Numeral("8"));
+    // (forall ((x (_ BitVec 8))) (= y x)) and (let ((x y)) (= z x)), with x known
+    SExpression forall = new ExpressionList(ReservedSymbols.FORALL,
+        new ExpressionList(new ExpressionList(x, sort)), new EqualsExpression(y, x));
+    SExpression let = new ExpressionList(ReservedSymbols.LET,
+        new ExpressionList(new ExpressionList(x, x)), new EqualsExpression(z, x));
+    List<SExpression> out = pe.evaluate(Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, BitVectorConstant.of(4, 8))),
+        new Assertion(forall), new Assertion(let)));
+    assertTrue(out.contains(new Assertion(forall)));
+    // the value bound to x is outside the let, but its body isn't
+    assertTrue(out.contains(new Assertion(new ExpressionList(ReservedSymbols.LET,
+        new ExpressionList(new ExpressionList(x, BitVectorConstant.of(4, 8))), new EqualsExpression(z, x)))));
+  }
+
+}
@@ -0,0 +1,47 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestScriptDigest {
+
+  private final Symbol x = new Symbol("x");
+  private final Symbol y = new Symbol("y");
+
+  private List<SExpression> script(Symbol var) {
+    return Arrays.<SExpression>asList(
+        new BitVectorDeclaration(var, new Numeral("8")),
+        new Assertion(new EqualsExpression(var, new HexConstant("5a"))));
+  }
+
+  @Test
+  public void testSameText_SameDigest() {
+    // built separately, and from different constant classes, but printed the same
+    List<SExpression> other = Arrays.<SExpression>asList(
+        new BitVectorDeclaration(new Symbol("x"), new Numeral("8")),
+        new Assertion(new EqualsExpression(new Symbol("x"), BitVectorConstant.of(0x5a, 8))));
+    assertEquals(ScriptDigest.of(script(x)), ScriptDigest.of(other));
+    assertEquals(ScriptDigest.of(script(x)).hashCode(), ScriptDigest.of(other).hashCode());
+  }
+
+  @Test
+  public void testDifferentText_DifferentDigest() {
+    assertNotEquals(ScriptDigest.of(script(x)), ScriptDigest.of(script(y)));
+    List<SExpression> reversed = Arrays.asList(script(x).get(1), script(x).get(0));
+    assertNotEquals(ScriptDigest.of(script(x)), ScriptDigest.of(reversed));
+    assertNotEquals(ScriptDigest.of(script(x)), ScriptDigest.of(script(x).subList(0, 1)));
+  }
+
+  @Test
+  public void testToString() {
+    // SHA-256 of the empty string
+    assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+        ScriptDigest.of(Collections.<SExpression>emptyList()).toString());
+  }
+
+}
@@ -0,0 +1,36 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestScriptWriter {
+
+  @Test
+  public void testWrite_Expression() throws IOException {
+    StringWriter sw = new StringWriter();
+    try (ScriptWriter out = new ScriptWriter(sw)) {
+      out.write(new Assertion(new BooleanLiteral(true)));
+    }
+    assertEquals("( assert true )\n", sw.toString());
+  }
+  
+  @Test
+  public void testWriteAll() throws IOException {
+    StringWriter sw = new StringWriter();
+    try (ScriptWriter out = new ScriptWriter(sw)) {
+      out.writeAll(Arrays.asList(
+          new BitVectorDeclaration(new Symbol("x"), new Numeral("8")),
+          new Assertion(new EqualsExpression(new Symbol("x"), new HexConstant("5A")))));
+      out.write("(check-sat)");
+    }
+    assertEquals("( declare-fun x ( ) ( _ BitVec 8 ) )\n"
+        + "( assert ( = x #x5A ) )\n"
+        + "(check-sat)\n", sw.toString());
+  }
+  
+}
@@ -0,0 +1,87 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestSimplifier {
+
+  private final Symbol x = new Symbol("x");
+  private final Symbol y = new Symbol("y");
+  
+  @Test
+  public void testFold_Add() {
+    SExpression e = new BitVectorAddExpression(new BinaryConstant("11111111"), new BinaryConstant("00000010"));
+    assertEquals(BitVectorConstant.of(1, 8), new Simplifier().simplify(e));
+  }
+  
+  @Test
+  public void testFold_ConcatExtract() {
+    SExpression addr = new BitVectorConcatExpression(new BinaryConstant("11111111"), new HexConstant("fc"));
+    SExpression e = new BitVectorExtractExpression(addr, new Numeral("15"), new Numeral("12"));
+    assertEquals(BitVectorConstant.of(0xF, 4), new Simplifier().simplify(e));
+  }
+  
+  @Test
+  public void testFold_Equals() {
+    Simplifier s = new Simplifier();
+    assertEquals(BooleanLiteral.TRUE, s.simplify(new EqualsExpression(new BinaryConstant("0110"), BitVectorConstant.of(6, 4))));
+    assertEquals(BooleanLiteral.FALSE, s.simplify(new EqualsExpression(new BinaryConstant("0110"), new BinaryConstant("0111"))));
+    assertEquals(BooleanLiteral.TRUE, s.simplify(new EqualsExpression(x, x)));
+    assertEquals(new EqualsExpression(x, y), s.simplify(new EqualsExpression(x, y)));
+  }
+  
+  @Test
+  public void testFold_Conditional() {
+    SExpression cond = new EqualsExpression(new BinaryConstant("1"), new BinaryConstant("0"));
+    assertEquals(y, new Simplifier().simplify(new ConditionalExpression(cond, x, y)));
+    assertEquals(x, new Simplifier().simplify(new ConditionalExpression(new EqualsExpression(x, y), x, x)));
+  }
+  
+  @Test
+  public void testFold_AndOr() {
+    Simplifier s = new Simplifier();
+    SExpression t = new EqualsExpression(x, x);
+    assertEquals(new EqualsExpression(x, y), s.simplify(new AndExpression(t, new EqualsExpression(x, y))));
+    assertEquals(BooleanLiteral.FALSE, s.simplify(new AndExpression(new EqualsExpression(x, y), new NotExpression(t))));
+    assertEquals(BooleanLiteral.TRUE, s.simplify(new OrExpression(new EqualsExpression(x, y), t)));
+  }
+  
+  @Test
+  public void testFold_Implication() {
+    Simplifier s = new Simplifier();
+    SExpression f = new EqualsExpression(new BinaryConstant("1"), new BinaryConstant("0"));
+    assertEquals(BooleanLiteral.TRUE, s.simplify(new Implication(f, new EqualsExpression(x, y))));
+    assertEquals(new EqualsExpression(x, y), s.simplify(new Implication(new NotExpression(f), new EqualsExpression(x, y))));
+  }
+  
+  @Test
+  public void testLeavesSymbolicTermsAlone() {
+    SExpression e = new BitVectorAddExpression(x, new BinaryConstant("00000001"));
+    assertSame(e, new Simplifier().simplify(e));
+  }
+  
+  @Test
+  public void testSimplifyAll_DropsTrueAssertions() {
+    Simplifier s = new Simplifier();
+    List<SExpression> exprs = Arrays.asList(
+        new BitVectorDeclaration(x, new Numeral("8")),
+        new Assertion(new EqualsExpression(new BinaryConstant("0001"), new HexConstant("1"))),
+        new Assertion(new EqualsExpression(x, new BitVectorAddExpression(new BinaryConstant("00000001"), new BinaryConstant("00000001"))))
+        );
+    List<SExpression> result = s.simplifyAll("test", exprs);
+    assertEquals(2, result.size());
+    assertSame(exprs.get(0), result.get(0));
+    assertEquals("( assert ( = x #x02 ) )", result.get(1).toString());
+    assertTrue(result.get(1) instanceof Assertion);
+    
+    Simplifier.Report report = s.getReports().get("test");
+    assertEquals(1, report.getAssertionsDropped());
+    assertEquals(Simplifier.countNodes(exprs.get(0)) + 6, report.getNodesAfter());
+    assertEquals(report.getNodesBefore() - report.getNodesAfter(), report.getNodesEliminated());
+  }
+  
+}
@@ -0,0 +1,60 @@
+package io.lp0onfire.smtnes.smt2;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestSortChecker {
+
+  private final Symbol pc = new Symbol("PC");
+  private final Symbol ram = new Symbol("RAM");
+  
+  private SortChecker checker() {
+    SortChecker sorts = new SortChecker();
+    sorts.observe(new BitVectorDeclaration(pc, new Numeral("16")));
+    sorts.observe(new ArrayDeclaration(ram, new Numeral("11"), new Numeral("8")));
+    return sorts;
+  }
+  
+  @Test
+  public void testDeclaredSymbol() {
+    assertEquals(SortChecker.bitVectorSort(16), checker().sortOf(pc));
+    assertNull(checker().sortOf(new Symbol("undeclared")));
+  }
+  
+  @Test
+  public void testBitVectorTerms() {
+    SortChecker sorts = checker();
+    assertEquals(SortChecker.bitVectorSort(4),
+        sorts.sortOf(new BitVectorExtractExpression(pc, new Numeral("15"), new Numeral("12"))));
+    assertEquals(SortChecker.bitVectorSort(24),
+        sorts.sortOf(new BitVectorConcatExpression(pc, new HexConstant("ff"))));
+    assertEquals(SortChecker.bitVectorSort(16),
+        sorts.sortOf(new BitVectorAddExpression(pc, new BinaryConstant("0000000000000001"))));
+    assertEquals(SortChecker.bitVectorSort(8),
+        sorts.sortOf(new ArrayReadExpression(ram, BitVectorConstant.of(0, 11))));
+  }
+  
+  @Test
+  public void testBooleanTerms() {
+    SortChecker sorts = checker();
+    assertEquals(SortChecker.BOOL, sorts.sortOf(new EqualsExpression(pc, pc)));
+    assertEquals(SortChecker.BOOL, sorts.sortOf(BooleanLiteral.TRUE));
+  }
+  
+  @Test
+  public void testUnknownArgument() {
+    SortChecker sorts = checker();
+    Symbol bound = new Symbol("i");
+    assertNull(sorts.sortOf(new EqualsExpression(pc, bound)));
+    assertNull(sorts.sortOf(new BitVectorAddExpression(pc, bound)));
+    assertNull(sorts.sortOf(new BitVectorExtractExpression(bound, new Numeral("7"), new Numeral("0"))));
+  }
+  
+  @Test
+  public void testBitVectorWidth() {
+    assertEquals(11, SortChecker.bitVectorWidth(SortChecker.bitVectorSort(11)));
+    assertEquals(-1, SortChecker.bitVectorWidth(SortChecker.BOOL));
+  }
+  
+}
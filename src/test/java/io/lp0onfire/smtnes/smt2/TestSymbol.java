@@ -50,4 +50,25 @@ public class TestSymbol {
     new Symbol("#");
   }
   
+  @Test
+  public void testEquals() {
+    assertEquals(new Symbol("foo"), new Symbol("foo"));
+    assertEquals(new Symbol("foo").hashCode(), new Symbol("foo").hashCode());
+    assertNotEquals(new Symbol("foo"), new Symbol("bar"));
+  }
+  
+  @Test
+  public void testTrusted_EqualsValidated() {
+    assertEquals(new Symbol("CPU_A_17"), Symbol.trusted("CPU_A_17"));
+  }
+  
+  @Test
+  public void testReservedSymbols_AreValidNames() {
+    // every entry in the table must also pass the normal validation
+    assertEquals(new Symbol("declare-fun"), ReservedSymbols.DECLARE_FUN);
+    assertEquals(new Symbol("=>"), ReservedSymbols.IMPLIES);
+    assertEquals(new Symbol("_"), ReservedSymbols.UNDERSCORE);
+    assertEquals(new Symbol("bvadd"), ReservedSymbols.BVADD);
+  }
+  
 }
@@ -0,0 +1,136 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Test;
+
+// Runs sessions against canned solver output; see the intTest of the same name for the real thing.
+public class TestAsyncSolverSession {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), "QF_BV");
+
+  @Test(timeout=5000)
+  public void testCommands() throws Exception {
+    StringWriter out = new StringWriter();
+    String response = "((x #x5))";
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, out, new StringReader("sat\n" + response + "\nunsat\n"))) {
+      session.write(new BitVectorDeclaration(new Symbol("x"), new Numeral("4")));
+      session.push();
+      CompletableFuture<SolverResult> first = session.checkSat();
+      CompletableFuture<String> value = session.getValue(new Symbol("x"));
+      session.pop();
+      CompletableFuture<SolverResult> second = session.checkSatAssuming(new Symbol("p"));
+      assertEquals(0, session.getAssertionLevel());
+      assertEquals(SolverResult.SAT, first.get());
+      assertEquals(response, value.get());
+      assertEquals(SolverResult.UNSAT, second.get());
+      assertEquals(2, session.getCheckSatCount());
+    }
+    assertEquals("(set-logic QF_BV)\n( declare-fun x ( ) ( _ BitVec 4 ) )\n(push 1)\n(check-sat)\n"
+        + "(get-value ( x ))\n(pop 1)\n(check-sat-assuming ( p ))\n(exit)\n", out.toString());
+  }
+
+  @Test(timeout=5000)
+  public void testSmallQueue() throws Exception {
+    StringWriter out = new StringWriter();
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 1, out, new StringReader("sat\n"))) {
+      for (int i = 0; i < 100; ++i) {
+        session.write("(declare-fun x" + i + " () Bool)");
+      }
+      assertEquals(SolverResult.SAT, session.checkSat().get());
+    }
+    // everything still goes out, in order
+    String script = out.toString();
+    for (int i = 1; i < 100; ++i) {
+      assertTrue(script.indexOf("x" + (i - 1) + " ") < script.indexOf("x" + i + " "));
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testErrorFailsEverything() throws Exception {
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, new StringWriter(),
+        new StringReader("(error \"line 2: unknown constant y\")\n"))) {
+      CompletableFuture<SolverResult> first = session.checkSat();
+      CompletableFuture<SolverResult> second = session.checkSat();
+      assertFailed(first);
+      assertFailed(second);
+      assertFalse(session.isAlive());
+      try {
+        session.write("(check-sat)");
+        fail("expected an IOException");
+      } catch (IOException e) {
+        // the session is no use any more
+      }
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testUnexpectedResponse() throws Exception {
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, new StringWriter(), new StringReader("success\n"))) {
+      assertFailed(session.checkSat());
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testCloseWaitsForAnswers() throws Exception {
+    CompletableFuture<SolverResult> first;
+    CompletableFuture<String> value;
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, new StringWriter(),
+        new StringReader("sat\n((x #x5))\n"))) {
+      first = session.checkSat();
+      value = session.getValue(new Symbol("x"));
+    }
+    assertEquals(SolverResult.SAT, first.get());
+    assertEquals("((x #x5))", value.get());
+  }
+
+  @Test(timeout=5000)
+  public void testUnansweredFailsOnClose() throws Exception {
+    CompletableFuture<SolverResult> result;
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, new StringWriter(), new StringReader(""))) {
+      result = session.checkSat();
+    }
+    assertFailed(result);
+  }
+
+  @Test(timeout=5000)
+  public void testCountsSeenFromOtherThreads() throws Exception {
+    try (AsyncSolverSession session = new AsyncSolverSession(config, 16, new StringWriter(), new StringReader("sat\n"))) {
+      session.push();
+      // most likely run on the reader thread
+      CompletableFuture<String> seen = session.checkSat().thenApply(
+          result -> session.getCheckSatCount() + " " + session.getAssertionLevel());
+      assertEquals("1 1", seen.get());
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testSessionsCloseIndependently() throws Exception {
+    AsyncSolverSession first = new AsyncSolverSession(config, 16, new StringWriter(), new StringReader(""));
+    try (AsyncSolverSession second = new AsyncSolverSession(config, 16, new StringWriter(), new StringReader("sat\n"))) {
+      first.close();
+      assertEquals(SolverResult.SAT, second.checkSat().get());
+    }
+  }
+
+  private void assertFailed(CompletableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      fail("expected the future to fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestContingencyCheck {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), null);
+  private final Symbol x = new Symbol("x");
+
+  @Test
+  public void testHolds() throws IOException {
+    StringWriter out = new StringWriter();
+    List<SExpression> formula = Arrays.<SExpression>asList(new BitVectorDeclaration(x, new Numeral("8")));
+    List<SExpression> properties = Arrays.<SExpression>asList(new EqualsExpression(x, new HexConstant("5a")));
+    ContingencyResult result;
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\nunsat\n"))) {
+      result = ContingencyCheck.check(session, formula, properties);
+      assertEquals(0, session.getAssertionLevel());
+    }
+    assertTrue(result.holds());
+    assertTrue(result.isPositiveSatisfiable());
+    assertFalse(result.isNegativeSatisfiable());
+
+    // the formula is only sent once
+    String script = out.toString();
+    assertEquals(script.indexOf("declare-fun x "), script.lastIndexOf("declare-fun x "));
+    String pos = script.substring(script.indexOf("pos!"), script.indexOf(' ', script.indexOf("pos!")));
+    String neg = script.substring(script.indexOf("neg!"), script.indexOf(' ', script.indexOf("neg!")));
+    assertTrue(script.contains("( assert ( => " + pos + " ( = x #x5a ) ) )\n"));
+    assertTrue(script.contains("( assert ( => " + neg + " ( not ( = x #x5a ) ) ) )\n"));
+    assertTrue(script.contains("(check-sat-assuming ( " + pos + " ))\n(check-sat-assuming ( " + neg + " ))\n(pop 1)\n"));
+  }
+
+  @Test
+  public void testSeveralProperties() throws IOException {
+    StringWriter out = new StringWriter();
+    ContingencyResult result;
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\nsat\n"))) {
+      ContingencyCheck check = new ContingencyCheck(session);
+      session.write(new BitVectorDeclaration(x, new Numeral("8")));
+      check.writeProperty(new EqualsExpression(x, new HexConstant("01")));
+      check.writeProperty(new EqualsExpression(x, new HexConstant("02")));
+      result = check.check();
+    }
+    assertFalse(result.holds());
+    // each property is negated on its own
+    String script = out.toString();
+    String neg = script.substring(script.indexOf("neg!"), script.indexOf(' ', script.indexOf("neg!")));
+    assertTrue(script.contains("( assert ( => " + neg + " ( not ( = x #x01 ) ) ) )\n"));
+    assertTrue(script.contains("( assert ( => " + neg + " ( not ( = x #x02 ) ) ) )\n"));
+    assertFalse(script.contains("( and "));
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testUnknown() throws IOException {
+    new ContingencyResult(SolverResult.SAT, SolverResult.UNKNOWN).isNegativeSatisfiable();
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testNoProperties_Illegal() throws IOException {
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(""))) {
+      new ContingencyCheck(session).check();
+    }
+  }
+
+}
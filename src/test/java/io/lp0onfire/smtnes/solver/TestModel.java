@@ -0,0 +1,67 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorConstant;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import org.junit.Test;
+
+public class TestModel {
+
+  private final Symbol x = new Symbol("x");
+  private final Symbol ram = new Symbol("CPU_RAM_3");
+
+  @Test
+  public void testBitVectorForms() {
+    Model model = Model.fromValues("((x #x5a) (y #b101) (z (_ bv300 16)) (p true))");
+    assertEquals(BitVectorConstant.of(0x5a, 8), model.getBitVector(x));
+    assertEquals(BitVectorConstant.of(5, 3), model.getBitVector(new Symbol("y")));
+    assertEquals(BitVectorConstant.of(300, 16), model.getBitVector(new Symbol("z")));
+    assertTrue(model.getBoolean(new Symbol("p")));
+  }
+
+  @Test
+  public void testStoreChain() {
+    Model model = Model.fromValues("((CPU_RAM_3 (store (store ((as const (Array (_ BitVec 11) (_ BitVec 8))) #x00)"
+        + " #b00000000001 #x11) #b00000000001 #x22)))");
+    ArrayValue value = model.getArray(ram);
+    assertEquals(BitVectorConstant.of(0, 8), value.getDefaultValue());
+    // the outer store wins
+    assertEquals(BitVectorConstant.of(0x22, 8), value.get(1));
+    assertEquals(BitVectorConstant.of(0, 8), value.get(2));
+    assertEquals(1, value.getEntries().size());
+  }
+
+  @Test
+  public void testLambda() {
+    Model model = Model.fromValues("((CPU_RAM_3 (lambda ((x!1 (_ BitVec 11)))"
+        + " (ite (= x!1 #b00000000010) #x5a (ite (= #b00000000011 x!1) #x5b #x00)))))");
+    ArrayValue value = model.getArray(ram);
+    assertEquals(BitVectorConstant.of(0x5a, 8), value.get(2));
+    assertEquals(BitVectorConstant.of(0x5b, 8), value.get(3));
+    assertEquals(BitVectorConstant.of(0, 8), value.get(4));
+  }
+
+  @Test
+  public void testFromModel() {
+    Model model = Model.fromModel("(model\n  (define-fun x () (_ BitVec 8) #x5a)\n"
+        + "  (define-fun k!0 ((x!1 (_ BitVec 11))) (_ BitVec 8) #x00))");
+    assertEquals(BitVectorConstant.of(0x5a, 8), model.getBitVector(x));
+    // functions aren't values
+    assertEquals(1, model.getTerms().size());
+    // newer Z3 leaves out the "model" keyword
+    assertTrue(Model.fromModel("((define-fun x () (_ BitVec 8) #x5a))").contains(x));
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testMissing_Illegal() {
+    Model.fromValues("((y #x00))").getBitVector(x);
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testAsArray_Illegal() {
+    Model.fromValues("((CPU_RAM_3 (_ as-array k!0)))").getArray(ram);
+  }
+
+}
@@ -0,0 +1,113 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestPortfolioSolver {
+
+  private final SolverConfiguration fast = new SolverConfiguration(Arrays.asList("fast"), null);
+  private final SolverConfiguration slow = new SolverConfiguration(Arrays.asList("slow"), null);
+  private final SolverConfiguration unsure = new SolverConfiguration(Arrays.asList("unsure"), null);
+  private final SolverConfiguration stuck = new SolverConfiguration(Arrays.asList("stuck"), null);
+  private final List<SExpression> script = Arrays.<SExpression>asList(new BitVectorDeclaration(new Symbol("x"), new Numeral("8")));
+
+  // Sessions with canned answers; "slow" never answers at all until it is killed,
+  // and "stuck" doesn't even finish starting until started is counted down.
+  private static class CannedFactory implements PortfolioSolver.SessionFactory {
+    private final Map<String, String> answers = new HashMap<>();
+    final CountDownLatch started = new CountDownLatch(1);
+    volatile SolverSession stuckSession = null;
+
+    CannedFactory answer(String name, String response) {
+      answers.put(name, response);
+      return this;
+    }
+
+    @Override
+    public SolverSession create(SolverConfiguration config) throws IOException {
+      String name = config.getCommand().get(0);
+      if (name.equals("slow")) {
+        PipedWriter never = new PipedWriter();
+        return new SolverSession(config, new StringWriter(), new PipedReader(never));
+      } else if (name.equals("stuck")) {
+        try {
+          started.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        stuckSession = new SolverSession(config, new StringWriter(), new PipedReader(new PipedWriter()));
+        return stuckSession;
+      }
+      return new SolverSession(config, new StringWriter(), new StringReader(answers.get(name)));
+    }
+  }
+
+  @Test(timeout=10000)
+  public void testFirstDefinitiveAnswerWins() throws IOException {
+    CannedFactory factory = new CannedFactory().answer("fast", "unsat\n").answer("unsure", "unknown\n");
+    try (PortfolioSolver portfolio = new PortfolioSolver(Arrays.asList(slow, unsure, fast), factory)) {
+      PortfolioResult result = portfolio.checkSat(script);
+      assertEquals(SolverResult.UNSAT, result.getResult());
+      assertSame(fast, result.getWinner());
+      assertEquals(1, portfolio.getWins(fast));
+      assertEquals(0, portfolio.getWins(slow));
+      // the slow one was killed rather than waited for, so it can be raced again
+      assertSame(fast, portfolio.checkSat(script).getWinner());
+      assertEquals(2, portfolio.getWins(fast));
+    }
+  }
+
+  @Test(timeout=10000)
+  public void testSlowStartDoesNotHoldUpOthers() throws Exception {
+    CannedFactory factory = new CannedFactory().answer("fast", "sat\n");
+    try (PortfolioSolver portfolio = new PortfolioSolver(Arrays.asList(stuck, fast), factory)) {
+      assertSame(fast, portfolio.checkSat(script).getWinner());
+      // it finishes starting after the race is over, and is shut down straight away
+      factory.started.countDown();
+      while (factory.stuckSession == null || factory.stuckSession.isOpen()) {
+        Thread.sleep(10);
+      }
+    }
+  }
+
+  @Test(timeout=10000)
+  public void testNobodyKnows() throws IOException {
+    CannedFactory factory = new CannedFactory().answer("unsure", "unknown\n").answer("fast", "(error \"unsupported\")\n");
+    try (PortfolioSolver portfolio = new PortfolioSolver(Arrays.asList(unsure, fast), factory)) {
+      PortfolioResult result = portfolio.checkSat(script);
+      assertEquals(SolverResult.UNKNOWN, result.getResult());
+      assertNull(result.getWinner());
+    }
+  }
+
+  @Test(timeout=10000, expected=IOException.class)
+  public void testEverybodyFails() throws IOException {
+    CannedFactory factory = new CannedFactory().answer("unsure", "").answer("fast", "(error \"unsupported\")\n");
+    try (PortfolioSolver portfolio = new PortfolioSolver(Arrays.asList(unsure, fast), factory)) {
+      portfolio.checkSat(script);
+    }
+  }
+
+  @Test(expected=IllegalArgumentException.class)
+  public void testEmpty_Illegal() {
+    new PortfolioSolver(Arrays.<SolverConfiguration>asList());
+  }
+
+}
@@ -0,0 +1,273 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TestSolverPool {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), "QF_BV");
+
+  // A solver that answers each check-sat with the next of the given responses,
+  // echoes what it is asked to echo, and reports an error for any command
+  // mentioning "bad". Responses are only produced once the command is written.
+  private static class FakeSolver extends Reader {
+    private final List<String> responses;
+    private final StringBuilder pending = new StringBuilder();
+    // while set, reads wait for it
+    volatile CountDownLatch stall = null;
+    // everything written to it
+    final StringWriter transcript = new StringWriter();
+
+    final Writer in = new Writer() {
+      private final StringBuilder line = new StringBuilder();
+
+      @Override
+      public void write(char[] cbuf, int off, int len) {
+        for (int i = off; i < off + len; ++i) {
+          if (cbuf[i] == '\n') {
+            command(line.toString());
+            line.setLength(0);
+          } else {
+            line.append(cbuf[i]);
+          }
+        }
+        transcript.write(cbuf, off, len);
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    FakeSolver(String... responses) {
+      this.responses = new ArrayList<>(Arrays.asList(responses));
+    }
+
+    private synchronized void command(String command) {
+      if (command.contains("bad")) {
+        pending.append("(error \"bad command\")\n");
+      } else if (command.startsWith("(echo \"")) {
+        // unquoted, like z3
+        pending.append(command, 7, command.length() - 2).append('\n');
+      } else if (command.equals("(check-sat)")) {
+        pending.append(responses.isEmpty() ? "unknown" : responses.remove(0)).append('\n');
+      }
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      CountDownLatch latch = stall;
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+      synchronized (this) {
+        if (pending.length() == 0) {
+          return -1;
+        }
+        int n = Math.min(len, pending.length());
+        pending.getChars(0, n, cbuf, off);
+        pending.delete(0, n);
+        return n;
+      }
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  // Starts a FakeSolver with the given responses for each session; keeps hold of them.
+  private class FakeFactory implements SolverPool.SessionFactory {
+    final String[] responses;
+    final List<FakeSolver> solvers = new ArrayList<>();
+
+    FakeFactory(String... responses) {
+      this.responses = responses;
+    }
+
+    @Override
+    public SolverSession create() throws IOException {
+      FakeSolver solver = new FakeSolver(responses);
+      synchronized (solvers) {
+        solvers.add(solver);
+      }
+      return new SolverSession(config, solver.in, solver);
+    }
+
+    String transcript(int i) {
+      synchronized (solvers) {
+        return solvers.get(i).transcript.toString();
+      }
+    }
+  }
+
+  @Test
+  public void testPrestartAndReuse() throws Exception {
+    FakeFactory factory = new FakeFactory("sat", "sat");
+    try (SolverPool pool = new SolverPool(3, factory)) {
+      assertEquals(3, pool.getSessionsStarted());
+      SolverSession first = pool.acquire();
+      first.push();
+      assertEquals(SolverResult.SAT, first.checkSat());
+      first.close();
+      assertEquals(0, first.getAssertionLevel());
+      assertTrue(factory.transcript(0).endsWith("(check-sat)\n(reset)\n(set-logic QF_BV)\n(echo \"sync-1\")\n"));
+      // closing twice must not shut the solver down
+      first.close();
+      assertTrue(first.isAlive());
+      assertEquals(3, pool.getSessionsStarted());
+    }
+  }
+
+  @Test
+  public void testBrokenSessionReplaced() throws Exception {
+    FakeFactory factory = new FakeFactory();
+    try (SolverPool pool = new SolverPool(1, factory)) {
+      SolverSession session = pool.acquire();
+      session.write("(assert bad)");
+      try {
+        session.checkSat();
+        fail("error response not reported");
+      } catch (IOException e) {
+        // expected
+      }
+      assertFalse(session.isAlive());
+      session.close();
+      assertEquals(1, pool.getSessionsReplaced());
+      assertEquals(2, pool.getSessionsStarted());
+      SolverSession replacement = pool.acquire();
+      assertNotSame(session, replacement);
+      assertTrue(replacement.isAlive());
+      replacement.close();
+    }
+  }
+
+  @Test
+  public void testPrefixKept() throws Exception {
+    List<SExpression> prefix = Arrays.<SExpression>asList(new BitVectorDeclaration(new Symbol("x"), new Numeral("4")));
+    ScriptDigest digest = ScriptDigest.of(prefix);
+    FakeFactory factory = new FakeFactory();
+    try (SolverPool pool = new SolverPool(2, factory)) {
+      SolverSession session = pool.acquire();
+      session.usePrefix(digest, prefix);
+      session.write("(assert (= x #x1))");
+      session.close();
+      assertTrue(factory.transcript(0).endsWith("(push 1)\n(assert (= x #x1))\n(pop 1)\n(echo \"sync-1\")\n"));
+      assertEquals(digest, session.getPrefixDigest());
+
+      // the other session is first in line, but this one has the prefix
+      SolverSession again = pool.acquire(digest);
+      assertSame(session, again);
+      assertTrue(again.usePrefix(digest, prefix));
+      again.close();
+
+      // nobody asking for a prefix gets a session with one
+      SolverSession first = pool.acquire();
+      SolverSession second = pool.acquire();
+      assertNull(first.getPrefixDigest());
+      assertNull(second.getPrefixDigest());
+      first.close();
+      second.close();
+    }
+  }
+
+  @Test
+  public void testUnreadErrorNotPassedOn() throws Exception {
+    FakeFactory factory = new FakeFactory("sat");
+    try (SolverPool pool = new SolverPool(1, factory)) {
+      SolverSession session = pool.acquire();
+      // nobody reads the error this causes
+      session.write("(assert bad)");
+      session.close();
+      assertEquals(1, pool.getSessionsReplaced());
+      SolverSession next = pool.acquire();
+      assertNotSame(session, next);
+      assertEquals(SolverResult.SAT, next.checkSat());
+      next.close();
+      assertEquals(1, pool.getSessionsReplaced());
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testHungSolverDoesNotBlockPool() throws Exception {
+    FakeFactory factory = new FakeFactory("sat");
+    try (final SolverPool pool = new SolverPool(2, factory)) {
+      final SolverSession hung = pool.acquire();
+      CountDownLatch stall = new CountDownLatch(1);
+      factory.solvers.get(0).stall = stall;
+      Thread t = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          // waits for the echo
+          hung.close();
+        }
+      });
+      t.start();
+      t.join(100);
+      assertTrue("release didn't wait for the solver", t.isAlive());
+      assertEquals(2, pool.getSessionsStarted());
+      SolverSession other = pool.acquire();
+      assertEquals(SolverResult.SAT, other.checkSat());
+      other.close();
+      stall.countDown();
+      t.join();
+      assertEquals(0, pool.getSessionsReplaced());
+    }
+  }
+
+  @Test(timeout=5000)
+  public void testAcquireWaits() throws Exception {
+    try (final SolverPool pool = new SolverPool(1, new FakeFactory())) {
+      final SolverSession session = pool.acquire();
+      final SolverSession[] acquired = new SolverSession[1];
+      Thread t = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try (SolverSession s = pool.acquire()) {
+            acquired[0] = s;
+          } catch (IOException | InterruptedException e) {
+            // leaves acquired[0] unset
+          }
+        }
+      });
+      t.start();
+      t.join(100);
+      assertTrue("second acquire didn't wait", t.isAlive());
+      session.close();
+      t.join();
+      assertSame(session, acquired[0]);
+    }
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testAcquireAfterClose_Illegal() throws Exception {
+    SolverPool pool = new SolverPool(1, new FakeFactory());
+    pool.close();
+    pool.acquire();
+  }
+
+}
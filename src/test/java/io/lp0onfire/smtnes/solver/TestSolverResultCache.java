@@ -0,0 +1,181 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.Assertion;
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.EqualsExpression;
+import io.lp0onfire.smtnes.smt2.HexConstant;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestSolverResultCache {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), null);
+  private final Symbol x = new Symbol("x");
+
+  // a cache for a solver that reports the given version
+  private SolverResultCache cache(String version) throws IOException {
+    String response = "(:version \"" + version + "\")\n";
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(response))) {
+      return new SolverResultCache(folder.getRoot(), session);
+    }
+  }
+
+  private List<SExpression> script(String value) {
+    return Arrays.<SExpression>asList(
+        new BitVectorDeclaration(x, new Numeral("8")),
+        new Assertion(new EqualsExpression(x, new HexConstant(value))));
+  }
+
+  @Test
+  public void testMissThenHit() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    ScriptDigest key = cache.key(script("01"));
+    assertNull(cache.lookup(key));
+    cache.store(key, SolverResult.UNSAT, null);
+
+    // a fresh cache on the same directory sees it too
+    SolverResultCache other = cache("4.8.7");
+    SolverResultCache.Entry entry = other.lookup(key);
+    assertNotNull(entry);
+    assertEquals(SolverResult.UNSAT, entry.getResult());
+    assertNull(entry.getModel());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getStores());
+    assertEquals(1, other.getHits());
+  }
+
+  @Test
+  public void testUnknownNotStored() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    ScriptDigest key = cache.key(script("01"));
+    cache.store(key, SolverResult.UNKNOWN, null);
+    assertNull(cache.lookup(key));
+    assertEquals(0, cache.getStores());
+  }
+
+  @Test
+  public void testKeyDependsOnSolver() {
+    SolverResultCache a = new SolverResultCache(folder.getRoot(), "z3 -smt2 -in");
+    SolverResultCache b = new SolverResultCache(folder.getRoot(), "cvc4 --lang smt2");
+    assertEquals(a.key(script("01")), a.key(script("01")));
+    assertNotEquals(a.key(script("01")), a.key(script("02")));
+    assertNotEquals(a.key(script("01")), b.key(script("01")));
+  }
+
+  @Test
+  public void testKeyDependsOnSolverVersion() throws IOException {
+    // the same command line, after an upgrade
+    assertNotEquals(cache("4.8.7").key(script("01")), cache("4.8.8").key(script("01")));
+    assertEquals(cache("4.8.7").key(script("01")), cache("4.8.7").key(script("01")));
+  }
+
+  @Test
+  public void testCheckSat() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    StringWriter out = new StringWriter();
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\n((x #x01))\n"))) {
+      SolverResultCache.Entry entry = cache.checkSat(session, script("01"), x);
+      assertEquals(SolverResult.SAT, entry.getResult());
+      assertEquals("((x #x01))", entry.getModel());
+      assertEquals(0, session.getAssertionLevel());
+    }
+    assertTrue(out.toString().contains("(check-sat)\n(get-value ( x ))\n(pop 1)\n"));
+
+    // answered without a solver the second time round
+    try (SolverSession session = new SolverSession(config, out, new StringReader(""))) {
+      SolverResultCache.Entry entry = cache.checkSat(session, script("01"), x);
+      assertEquals(SolverResult.SAT, entry.getResult());
+      assertEquals("((x #x01))", entry.getModel());
+    }
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+
+    // asking for values is a different query
+    assertNull(cache.lookup(cache.key(script("01"))));
+  }
+
+  @Test
+  public void testKeyDependsOnPrefix() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    List<SExpression> query = Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, new HexConstant("01"))));
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader("sat\n"))) {
+      session.usePrefix(Arrays.<SExpression>asList(new BitVectorDeclaration(x, new Numeral("8"))));
+      assertEquals(SolverResult.SAT, cache.checkSat(session, query).getResult());
+    }
+    // the same query on top of a prefix that rules it out isn't answered from the first one
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader("unsat\n"))) {
+      session.usePrefix(script("02"));
+      assertEquals(SolverResult.UNSAT, cache.checkSat(session, query).getResult());
+    }
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getStores());
+  }
+
+  @Test
+  public void testUnknownContextNotCached() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    List<SExpression> query = Arrays.<SExpression>asList(
+        new Assertion(new EqualsExpression(x, new HexConstant("01"))));
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader("unsat\n"))) {
+      session.push();
+      session.writeAll(script("02"));
+      assertNull(session.getContextDigest());
+      assertEquals(SolverResult.UNSAT, cache.checkSat(session, query).getResult());
+      // once that scope is gone the session is empty again
+      session.pop();
+      assertEquals(ScriptDigest.EMPTY, session.getContextDigest());
+    }
+    assertEquals(0, cache.getMisses());
+    assertEquals(0, cache.getStores());
+  }
+
+  @Test
+  public void testDamagedEntryIsMiss() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    ScriptDigest key = cache.key(script("01"));
+    cache.store(key, SolverResult.SAT, null);
+    String name = key.toString();
+    File file = new File(new File(folder.getRoot(), name.substring(0, 2)), name);
+    Files.write(file.toPath(), "garbage".getBytes("UTF-8"));
+    assertNull(cache.lookup(key));
+  }
+
+  @Test
+  public void testContingency() throws IOException {
+    SolverResultCache cache = cache("4.8.7");
+    List<SExpression> formula = script("5a");
+    List<SExpression> properties = Arrays.<SExpression>asList(new EqualsExpression(x, new HexConstant("5a")));
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader("sat\nunsat\n"))) {
+      assertTrue(ContingencyCheck.check(session, formula, properties, cache).holds());
+    }
+    assertEquals(2, cache.getStores());
+    // the selectors are fresh each time, but the cached queries don't mention them
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(""))) {
+      ContingencyResult result = ContingencyCheck.check(session, formula, properties, cache);
+      assertTrue(result.holds());
+      assertEquals(SolverResult.UNSAT, result.getNegative());
+    }
+    assertEquals(2, cache.getHits());
+  }
+
+}
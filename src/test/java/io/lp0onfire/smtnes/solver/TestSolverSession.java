@@ -0,0 +1,138 @@
+package io.lp0onfire.smtnes.solver;
+
+import static org.junit.Assert.*;
+
+import io.lp0onfire.smtnes.smt2.BitVectorDeclaration;
+import io.lp0onfire.smtnes.smt2.Numeral;
+import io.lp0onfire.smtnes.smt2.SExpression;
+import io.lp0onfire.smtnes.smt2.ScriptDigest;
+import io.lp0onfire.smtnes.smt2.Symbol;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+// Runs sessions against canned solver output; see the intTest of the same name for the real thing.
+public class TestSolverSession {
+
+  private final SolverConfiguration config = new SolverConfiguration(Arrays.asList("solver"), "QF_BV");
+
+  @Test
+  public void testCommands() throws IOException {
+    StringWriter out = new StringWriter();
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\nunsat\n"))) {
+      session.write("(declare-fun x () (_ BitVec 4))");
+      session.push();
+      assertEquals(1, session.getAssertionLevel());
+      assertEquals(SolverResult.SAT, session.checkSat());
+      session.pop();
+      session.reset();
+      assertEquals(SolverResult.UNSAT, session.checkSat());
+      assertEquals(2, session.getCheckSatCount());
+    }
+    assertEquals("(set-logic QF_BV)\n(declare-fun x () (_ BitVec 4))\n(push 1)\n(check-sat)\n(pop 1)\n"
+        + "(reset)\n(set-logic QF_BV)\n(check-sat)\n(exit)\n", out.toString());
+  }
+
+  @Test
+  public void testGetValue() throws IOException {
+    StringWriter out = new StringWriter();
+    String response = "((x #x5)\n (|odd ) name| \"a \"\"(\" ))";
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\n" + response + "\nsat\n"))) {
+      assertEquals(SolverResult.SAT, session.checkSat());
+      assertEquals(response, session.getValue(new Symbol("x"), new Symbol("y")));
+      // nothing left over from the multi-line response
+      assertEquals(SolverResult.SAT, session.checkSat());
+    }
+    assertTrue(out.toString().contains("(get-value ( x y ))\n"));
+  }
+
+  @Test
+  public void testGetValues() throws IOException {
+    StringWriter out = new StringWriter();
+    String values = "((x #x5)\n (y (_ bv3 4)))";
+    String model = "(model (define-fun x () (_ BitVec 4) #x5))";
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\n" + values + "\n" + model + "\nunsat\n"))) {
+      assertEquals(SolverResult.SAT, session.checkSat());
+      Model m = session.getValues(new Symbol("x"), new Symbol("y"));
+      assertEquals(5, m.getBitVector(new Symbol("x")).getValue());
+      assertEquals(3, m.getBitVector(new Symbol("y")).getValue());
+      assertEquals(5, session.getModel().getBitVector(new Symbol("x")).getValue());
+      // still in step afterwards
+      assertEquals(SolverResult.UNSAT, session.checkSat());
+    }
+    assertTrue(out.toString().contains("(get-value ( x y ))\n(get-model)\n"));
+  }
+
+  @Test
+  public void testUsePrefix() throws IOException {
+    List<SExpression> prefix = Arrays.<SExpression>asList(new BitVectorDeclaration(new Symbol("x"), new Numeral("4")));
+    List<SExpression> other = Arrays.<SExpression>asList(new BitVectorDeclaration(new Symbol("y"), new Numeral("4")));
+    StringWriter out = new StringWriter();
+    try (SolverSession session = new SolverSession(config, out, new StringReader("sat\nsat\n"))) {
+      assertFalse(session.usePrefix(prefix));
+      assertEquals(ScriptDigest.of(prefix), session.getPrefixDigest());
+      session.write("(assert (= x #x1))");
+      session.push();
+      assertEquals(SolverResult.SAT, session.checkSat());
+      // only the scopes above the prefix are popped; it isn't sent again
+      assertTrue(session.usePrefix(prefix));
+      assertEquals(1, session.getAssertionLevel());
+      assertEquals(SolverResult.SAT, session.checkSat());
+      assertFalse(session.usePrefix(other));
+      assertEquals(2, session.getPrefixesLoaded());
+      assertEquals(1, session.getPrefixesReused());
+    }
+    assertEquals("(set-logic QF_BV)\n"
+        + "(reset)\n(set-logic QF_BV)\n( declare-fun x ( ) ( _ BitVec 4 ) )\n(push 1)\n"
+        + "(assert (= x #x1))\n(push 1)\n(check-sat)\n"
+        + "(pop 2)\n(push 1)\n(check-sat)\n"
+        + "(reset)\n(set-logic QF_BV)\n( declare-fun y ( ) ( _ BitVec 4 ) )\n(push 1)\n(exit)\n", out.toString());
+  }
+
+  @Test
+  public void testPrefixInvalidatedByBaseLevelWrite() throws IOException {
+    List<SExpression> prefix = Arrays.<SExpression>asList(new BitVectorDeclaration(new Symbol("x"), new Numeral("4")));
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(""))) {
+      session.usePrefix(prefix);
+      session.popAll();
+      session.write("(assert (= x #x1))");
+      assertNull(session.getPrefixDigest());
+      assertFalse(session.usePrefix(prefix));
+    }
+  }
+
+  @Test(expected=IOException.class)
+  public void testErrorResponse() throws IOException {
+    String error = "(error \"line 2 column 10: unknown constant y\")\n";
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(error + "sat\n"))) {
+      session.checkSat();
+    }
+  }
+
+  @Test(expected=IOException.class)
+  public void testSolverExited() throws IOException {
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(""))) {
+      session.checkSat();
+    }
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testPopWithoutPush_Illegal() throws IOException {
+    try (SolverSession session = new SolverSession(config, new StringWriter(), new StringReader(""))) {
+      session.pop();
+    }
+  }
+
+  @Test(expected=IllegalStateException.class)
+  public void testWriteBeforeOpen_Illegal() throws IOException {
+    try (SolverSession session = new SolverSession(config)) {
+      session.write("(check-sat)");
+    }
+  }
+
+}